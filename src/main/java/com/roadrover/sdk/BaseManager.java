@@ -7,16 +7,21 @@ import android.content.IntentFilter;
 import android.content.ServiceConnection;
 import android.os.IBinder;
 import android.os.IInterface;
+import android.os.Looper;
 import android.text.TextUtils;
 
 import com.roadrover.sdk.system.IVISystem;
 import com.roadrover.sdk.utils.EventBusUtil;
+import com.roadrover.sdk.utils.LaneExecutor;
 import com.roadrover.sdk.utils.Logcat;
 
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * 所有aidl服务连接管理类的基类
@@ -111,6 +116,64 @@ public abstract class BaseManager {
 		void onServiceDisconnected();
 	}
 
+	/**
+	 * 事件监听的执行线程，见 {@link #addEventListener(Class, EventListener, int)}
+	 */
+	public static class Lane {
+		/**
+		 * 主线程，和 manager 内部的 @Subscribe(threadMode = ThreadMode.MAIN) 一样
+		 */
+		public static final int MAIN       = 0;
+
+		/**
+		 * 进程共用的后台串行线程，适合数据量大或者处理比较慢的监听，例如电话本、GPS
+		 */
+		public static final int BACKGROUND = 1;
+
+		/**
+		 * 直接在binder线程中回调，不经过任何队列，监听里不能做耗时操作，也不能操作界面
+		 */
+		public static final int BINDER     = 2;
+
+		public static String getName(int lane) {
+			switch (lane) {
+				case MAIN: return "MAIN";
+				case BACKGROUND: return "BACKGROUND";
+				case BINDER: return "BINDER";
+				default: return "UNKNOWN(" + lane + ")";
+			}
+		}
+	}
+
+	/**
+	 * 事件监听
+	 * @param <T> 事件类型
+	 */
+	public interface EventListener<T> {
+		void onEvent(T event);
+	}
+
+	/**
+	 * 按事件类型缓存的监听
+	 */
+	private final Map<Class<?>, List<ListenerRecord>> mEventListeners = new ConcurrentHashMap<Class<?>, List<ListenerRecord>>();
+
+	private static class ListenerRecord {
+		final EventListener mListener;
+		final int mLane;
+		volatile boolean mRemoved = false; // 移除之后，已经在队列里的事件不再回调
+
+		ListenerRecord(EventListener listener, int lane) {
+			mListener = listener;
+			mLane = lane;
+		}
+	}
+
+	/**
+	 * binder线程直接回调的耗时统计，子类在直接回调监听时记录
+	 */
+	protected final DirectCallbackMonitor mDirectCallbackMonitor = new DirectCallbackMonitor(getClass().getSimpleName());
+
 	protected Context mContext = null;
 	private boolean mIsConnected = false; // 是否已经绑定服务
 	private ConnectListener mConnectListener;
@@ -263,6 +326,15 @@ public abstract class BaseManager {
             mEventBus.destroy(this);
             mEventBus = null;
         }
+
+        synchronized (mEventListeners) {
+            for (List<ListenerRecord> records : mEventListeners.values()) {
+                for (ListenerRecord record : records) {
+                    record.mRemoved = true;
+                }
+            }
+            mEventListeners.clear();
+        }
 	}
 
 	/**
@@ -334,6 +406,31 @@ public abstract class BaseManager {
 		}
 	};
 
+    /**
+     * 获取进程内所有 manager 的 IPC 统计，包括 aidl 调用耗时、回调速率和主线程排队延时
+     */
+    public static IpcMetrics getIpcMetrics() {
+        return IpcMetrics.getInstance();
+    }
+
+    /**
+     * 包装 services 的接口，统计通过该接口的所有 aidl 调用，
+     * 子类在 onServiceConnected 里使用，例：mCarInterface = wrapInterface(ICar.class, ICar.Stub.asInterface(service));
+     * @param type aidl 接口类
+     * @param service Stub.asInterface 返回的对象
+     * @return 统计用的代理对象
+     */
+    protected <T> T wrapInterface(Class<T> type, T service) {
+        return IpcMetrics.getInstance().wrap(type, service);
+    }
+
+    /**
+     * 获取binder线程直接回调的耗时统计，用来找出耗时太长的直接回调监听
+     */
+    public DirectCallbackMonitor getDirectCallbackMonitor() {
+        return mDirectCallbackMonitor;
+    }
+
     /**
      * 注册EventBus
      * @param object 宿主对象
@@ -354,14 +451,77 @@ public abstract class BaseManager {
         }
     }
 
+    /**
+     * 添加事件监听，可以指定回调的线程，和 registerEventBus 不同，每个监听可以使用不同的线程 <br/>
+     * 按事件的类型精确匹配，不包括子类
+     * @param eventClass 事件类型，例：IVIKey.Key.class
+     * @param listener 监听
+     * @param lane 回调的线程，见 {@link Lane}
+     */
+    public <T> void addEventListener(Class<T> eventClass, EventListener<? super T> listener, int lane) {
+        if (eventClass == null || listener == null) {
+            return;
+        }
+
+        synchronized (mEventListeners) {
+            List<ListenerRecord> records = mEventListeners.get(eventClass);
+            if (records == null) {
+                records = new CopyOnWriteArrayList<ListenerRecord>();
+                mEventListeners.put(eventClass, records);
+            }
+            for (ListenerRecord record : records) {
+                if (record.mListener == listener) {
+                    record.mRemoved = true;
+                    records.remove(record); // 同一个监听只保留最后一次设置的线程
+                }
+            }
+            records.add(new ListenerRecord(listener, lane));
+        }
+        Logcat.d(eventClass.getSimpleName() + " lane:" + Lane.getName(lane));
+    }
+
+    /**
+     * 移除事件监听
+     * @param eventClass 事件类型
+     * @param listener 监听，要和 addEventListener 对应
+     */
+    public <T> void removeEventListener(Class<T> eventClass, EventListener<? super T> listener) {
+        if (eventClass == null || listener == null) {
+            return;
+        }
+
+        synchronized (mEventListeners) {
+            List<ListenerRecord> records = mEventListeners.get(eventClass);
+            if (records != null) {
+                for (ListenerRecord record : records) {
+                    if (record.mListener == listener) {
+                        record.mRemoved = true;
+                        records.remove(record);
+                    }
+                }
+                if (records.isEmpty()) {
+                    mEventListeners.remove(eventClass);
+                }
+            }
+        }
+    }
+
+    /**
+     * 是否是紧急事件，紧急事件走优先通道，跳过已经排队的普通事件，例如方控按键不会被大量电话本数据延迟；
+     * 子类按自己发送的事件重写，默认都不是紧急事件
+     * @param object 事件对象，不为null
+     * @return 紧急事件走优先通道
+     */
+    protected boolean isUrgentEvent(Object object) {
+        return false;
+    }
+
     /**
      * 发送一个消息
      * @param object 事件对象
      */
     protected void post(Object object) {
-        if (mEventBus != null) {
-            mEventBus.post(object);
-        }
+        post(object, false);
     }
 
     /**
@@ -369,8 +529,79 @@ public abstract class BaseManager {
      * @param object 时间对象
      */
     protected void postSticky(Object object) {
-        if (mEventBus != null) {
-            mEventBus.postSticky(object);
+        post(object, true);
+    }
+
+    private void post(final Object object, final boolean sticky) {
+        if (object == null) {
+            return;
+        }
+
+        IpcMetrics.getInstance().onCallback(object);
+        final boolean urgent = isUrgentEvent(object);
+        dispatchEventListeners(object, urgent);
+
+        if (urgent && Looper.myLooper() != Looper.getMainLooper()) {
+            final EventBusUtil eventBus = mEventBus;
+            if (sticky && (eventBus == null || !eventBus.setSticky(object))) {
+                postEventBus(object, true); // 不能只保存粘性消息时直接发送，保证粘性消息是最新的
+                return;
+            }
+            // 粘性消息已经保存，在主线程的优先通道里再发给EventBus，主线程的订阅会直接执行，不用在EventBus的队列里排队
+            LaneExecutor.getMain().execute(new Runnable() {
+                @Override
+                public void run() {
+                    postEventBus(object, false);
+                }
+            }, true);
+        } else {
+            postEventBus(object, sticky);
+        }
+    }
+
+    private void postEventBus(Object object, boolean sticky) {
+        final EventBusUtil eventBus = mEventBus;
+        if (eventBus != null) {
+            if (sticky) {
+                eventBus.postSticky(object);
+            } else {
+                eventBus.post(object);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void dispatchEventListeners(final Object object, boolean urgent) {
+        final List<ListenerRecord> records = mEventListeners.get(object.getClass());
+        if (records == null) {
+            return;
+        }
+
+        for (final ListenerRecord record : records) {
+            switch (record.mLane) {
+                case Lane.BINDER:
+                    try {
+                        record.mListener.onEvent(object);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                    break;
+
+                case Lane.BACKGROUND:
+                case Lane.MAIN:
+                default:
+                    final LaneExecutor executor = (record.mLane == Lane.BACKGROUND) ?
+                            LaneExecutor.getBackground() : LaneExecutor.getMain();
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (!record.mRemoved) {
+                                record.mListener.onEvent(object);
+                            }
+                        }
+                    }, urgent);
+                    break;
+            }
         }
     }
 }
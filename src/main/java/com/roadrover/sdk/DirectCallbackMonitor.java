@@ -0,0 +1,155 @@
+package com.roadrover.sdk;
+
+import com.roadrover.sdk.utils.LatencyHistogram;
+import com.roadrover.sdk.utils.Logcat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * binder线程直接回调的耗时统计 <br/>
+ * 直接回调的监听在services调用回调的binder线程中执行，services 会等待回调返回，
+ * 监听里耗时太长会拖慢services给所有应用的回调，这里按方法统计次数和耗时，超过 {@link #SLOW_CALLBACK_MS} 的打印警告 <br/>
+ * 每个回调方法先用 {@link #getStat(String)} 取得统计对象，回调时：<br/>
+ * long begin = monitor.begin(); listener.onX(a, b); monitor.end(stat, begin); <br/>
+ * 直接调用监听，不经过反射，参数不装箱，记录时不分配对象
+ */
+public class DirectCallbackMonitor {
+
+    /**
+     * 单次回调超过该时间认为是慢回调，单位ms
+     */
+    public static final int SLOW_CALLBACK_MS = 5;
+
+    private static final long SLOW_CALLBACK_US = SLOW_CALLBACK_MS * 1000L;
+
+    /**
+     * 一个回调方法的统计
+     */
+    public static class Stat {
+        /** 方法名 */
+        public final String mMethod;
+        /** 耗时，单位us */
+        public final LatencyHistogram mLatency = new LatencyHistogram();
+        private final AtomicLong mSlowCount = new AtomicLong();
+        private final AtomicLong mFailures = new AtomicLong();
+
+        Stat(String method) {
+            mMethod = method;
+        }
+
+        public long getCount() {
+            return mLatency.getCount();
+        }
+
+        /**
+         * 慢回调次数
+         */
+        public long getSlowCount() {
+            return mSlowCount.get();
+        }
+
+        /**
+         * 监听抛出异常的次数
+         */
+        public long getFailures() {
+            return mFailures.get();
+        }
+
+        @Override
+        public String toString() {
+            return mMethod + " slow:" + getSlowCount() + " failures:" + getFailures() + " " + mLatency;
+        }
+    }
+
+    private final String mName;
+    private final Map<String, Stat> mStats = new ConcurrentHashMap<>();
+
+    /**
+     * @param name 名字，一般是 manager 的类名，打印 log 时使用
+     */
+    public DirectCallbackMonitor(String name) {
+        mName = name;
+    }
+
+    /**
+     * 获取一个回调方法的统计对象，在设置监听时取得并保存，回调时不需要再查找
+     * @param method 回调方法名
+     */
+    public Stat getStat(String method) {
+        Stat stat = mStats.get(method);
+        if (stat == null) {
+            synchronized (mStats) {
+                stat = mStats.get(method);
+                if (stat == null) {
+                    stat = new Stat(method);
+                    mStats.put(method, stat);
+                }
+            }
+        }
+        return stat;
+    }
+
+    /**
+     * 开始一次回调
+     * @return 传给 {@link #end(Stat, long)} 的开始时间
+     */
+    public long begin() {
+        return System.nanoTime();
+    }
+
+    /**
+     * 结束一次回调，记录耗时，超过 {@link #SLOW_CALLBACK_MS} 的打印警告
+     * @param stat {@link #getStat(String)} 返回的统计对象
+     * @param begin {@link #begin()} 的返回值
+     */
+    public void end(Stat stat, long begin) {
+        final long micros = (System.nanoTime() - begin) / 1000;
+        final long max = stat.mLatency.getMax();
+        stat.mLatency.record(micros);
+        if (micros > SLOW_CALLBACK_US) {
+            stat.mSlowCount.incrementAndGet();
+            if (micros > max) { // 只在出现新的最长耗时时打印，免得刷屏
+                Logcat.w(mName + "." + stat.mMethod + " took " + micros + "us on binder thread");
+            }
+        }
+    }
+
+    /**
+     * 监听抛出了异常，打印之后继续，不抛回 services
+     */
+    public void fail(Stat stat, RuntimeException e) {
+        stat.mFailures.incrementAndGet();
+        e.printStackTrace();
+    }
+
+    /**
+     * 获取所有回调方法的统计
+     */
+    public List<Stat> getStats() {
+        return new ArrayList<>(mStats.values());
+    }
+
+    /**
+     * 清除统计，已经取得的统计对象继续有效
+     */
+    public void reset() {
+        for (Stat stat : mStats.values()) {
+            stat.mLatency.reset();
+            stat.mSlowCount.set(0);
+            stat.mFailures.set(0);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(mName).append(" direct callbacks:");
+        for (Stat stat : getStats()) {
+            builder.append("\n  ").append(stat);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,365 @@
+package com.roadrover.sdk;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.roadrover.sdk.utils.LatencyHistogram;
+import com.roadrover.sdk.utils.Logcat;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内所有 manager 的 IPC 统计 <br/>
+ * 1. aidl 调用：{@link BaseManager} 把 services 的接口包装一层代理，按 "接口.方法" 统计调用次数、失败次数和耗时直方图；<br/>
+ * 2. 回调：按事件类型统计 post 的次数和速率；<br/>
+ * 3. EventBus 排队延时：回调发往主线程时，每隔 {@link #QUEUE_PROBE_INTERVAL_MS} 在主线程队列里放一个探测任务，
+ * 统计从 post 到主线程执行的时间，EventBus 的主线程订阅和探测任务在同一个队列里排队。<br/>
+ * 可以通过 {@link #dump(PrintWriter)} 随时查看，或者 {@link #dump(File)} 写到文件里带回分析 <br/>
+ * 开销：代理每次调用增加约0.2us，每个回调的计数约0.1us，相对一次 binder 调用（几十us）可以忽略；
+ * 要完全去掉可以 {@link #setEnabled(boolean)} 关闭
+ */
+public class IpcMetrics {
+
+    /**
+     * 主线程排队延时的探测间隔，单位ms
+     */
+    public static final int QUEUE_PROBE_INTERVAL_MS = 100;
+
+    /**
+     * 一个 aidl 方法的统计
+     */
+    public static class CallStats {
+        /** 接口.方法 */
+        public final String mName;
+        /** 耗时，单位us */
+        public final LatencyHistogram mLatency = new LatencyHistogram();
+        private final AtomicLong mFailures = new AtomicLong();
+
+        CallStats(String name) {
+            mName = name;
+        }
+
+        public long getCount() {
+            return mLatency.getCount();
+        }
+
+        /**
+         * 失败次数，RemoteException 或者其它异常
+         */
+        public long getFailures() {
+            return mFailures.get();
+        }
+
+        @Override
+        public String toString() {
+            return mName + " failures:" + getFailures() + " " + mLatency;
+        }
+    }
+
+    /**
+     * 一种回调事件的统计
+     */
+    public static class CallbackStats {
+        /** 事件类名 */
+        public final String mName;
+        private final AtomicLong mCount = new AtomicLong();
+        private volatile long mFirstTime = 0;
+        private volatile long mLastTime = 0;
+
+        CallbackStats(String name) {
+            mName = name;
+        }
+
+        public long getCount() {
+            return mCount.get();
+        }
+
+        /**
+         * 平均每秒的回调次数
+         */
+        public float getRate() {
+            final long duration = mLastTime - mFirstTime;
+            return (duration > 0) ? (mCount.get() - 1) * 1000.0f / duration : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s count:%d rate:%.2f/s", mName, getCount(), getRate());
+        }
+    }
+
+    private static IpcMetrics sInstance = null;
+
+    private volatile boolean mEnabled = true;
+    private final Map<String, CallStats> mCalls = new ConcurrentHashMap<>();
+    private final Map<Class<?>, CallbackStats> mCallbacks = new ConcurrentHashMap<>();
+    private final LatencyHistogram mQueueDelay = new LatencyHistogram();
+    private final AtomicLong mLastProbeTime = new AtomicLong(0);
+    private Handler mMainHandler = null;
+
+    private IpcMetrics() {
+    }
+
+    public static synchronized IpcMetrics getInstance() {
+        if (sInstance == null) {
+            sInstance = new IpcMetrics();
+        }
+        return sInstance;
+    }
+
+    /**
+     * 打开或者关闭统计，默认打开，关闭之后代理直接调用，不再记录
+     */
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * 包装 services 的接口，之后通过该接口的调用都会被统计
+     * @param type aidl 接口类，例：ICar.class
+     * @param service ICar.Stub.asInterface 返回的对象
+     * @return 代理对象，service 为null时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T wrap(Class<T> type, final T service) {
+        if (type == null || service == null || !type.isInterface()) {
+            return service;
+        }
+
+        final String prefix = type.getSimpleName() + ".";
+        final Map<Method, CallStats> cache = new ConcurrentHashMap<>(); // 免得每次调用都拼接方法名
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getDeclaringClass() == Object.class) {
+                    if ("equals".equals(method.getName())) { // 和原对象比较，保持 asBinder 的语义
+                        return args[0] == proxy || service.equals(args[0]);
+                    }
+                    return method.invoke(service, args);
+                }
+                if (!mEnabled || "asBinder".equals(method.getName())) {
+                    return invokeTarget(service, method, args);
+                }
+
+                final long begin = System.nanoTime();
+                CallStats stats = cache.get(method);
+                if (stats == null) {
+                    stats = getCallStats(prefix + method.getName());
+                    cache.put(method, stats);
+                }
+                try {
+                    return invokeTarget(service, method, args);
+                } catch (Throwable e) {
+                    stats.mFailures.incrementAndGet();
+                    throw e;
+                } finally {
+                    stats.mLatency.record((System.nanoTime() - begin) / 1000);
+                }
+            }
+        });
+    }
+
+    private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause(); // 原样抛出 RemoteException，调用方的 catch 不用修改
+        }
+    }
+
+    /**
+     * 记录一次回调，在 post 事件时调用
+     * @param event 事件对象
+     */
+    void onCallback(Object event) {
+        if (!mEnabled || event == null) {
+            return;
+        }
+
+        final long now = SystemClock.elapsedRealtime();
+        CallbackStats stats = mCallbacks.get(event.getClass());
+        if (stats == null) {
+            synchronized (mCallbacks) {
+                stats = mCallbacks.get(event.getClass());
+                if (stats == null) {
+                    stats = new CallbackStats(event.getClass().getName());
+                    stats.mFirstTime = now;
+                    mCallbacks.put(event.getClass(), stats);
+                }
+            }
+        }
+        stats.mCount.incrementAndGet();
+        stats.mLastTime = now;
+
+        probeQueueDelay(now);
+    }
+
+    /**
+     * 非主线程post时，按间隔在主线程队列里放一个探测任务
+     */
+    private void probeQueueDelay(long now) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            return;
+        }
+        final long last = mLastProbeTime.get();
+        if (now - last < QUEUE_PROBE_INTERVAL_MS || !mLastProbeTime.compareAndSet(last, now)) {
+            return;
+        }
+
+        final long begin = System.nanoTime();
+        getMainHandler().post(new Runnable() {
+            @Override
+            public void run() {
+                mQueueDelay.record((System.nanoTime() - begin) / 1000);
+            }
+        });
+    }
+
+    private synchronized Handler getMainHandler() {
+        if (mMainHandler == null) {
+            mMainHandler = new Handler(Looper.getMainLooper());
+        }
+        return mMainHandler;
+    }
+
+    private CallStats getCallStats(String name) {
+        CallStats stats = mCalls.get(name);
+        if (stats == null) {
+            synchronized (mCalls) {
+                stats = mCalls.get(name);
+                if (stats == null) {
+                    stats = new CallStats(name);
+                    mCalls.put(name, stats);
+                }
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * 获取 aidl 方法的统计
+     * @param type aidl 接口类，例：ICar.class
+     * @param method 方法名，例："getCcdStatus"
+     * @return 没有调用过返回null
+     */
+    public CallStats getCallStats(Class<?> type, String method) {
+        return (type != null) ? mCalls.get(type.getSimpleName() + "." + method) : null;
+    }
+
+    /**
+     * 获取所有 aidl 方法的统计，按总耗时从大到小排列
+     */
+    public List<CallStats> getCallStats() {
+        List<CallStats> list = new ArrayList<>(mCalls.values());
+        Collections.sort(list, new Comparator<CallStats>() {
+            @Override
+            public int compare(CallStats lhs, CallStats rhs) {
+                final long l = lhs.mLatency.getMean() * lhs.getCount();
+                final long r = rhs.mLatency.getMean() * rhs.getCount();
+                return (l > r) ? -1 : ((l == r) ? 0 : 1);
+            }
+        });
+        return list;
+    }
+
+    /**
+     * 获取所有回调事件的统计，按次数从大到小排列
+     */
+    public List<CallbackStats> getCallbackStats() {
+        List<CallbackStats> list = new ArrayList<>(mCallbacks.values());
+        Collections.sort(list, new Comparator<CallbackStats>() {
+            @Override
+            public int compare(CallbackStats lhs, CallbackStats rhs) {
+                final long l = lhs.getCount();
+                final long r = rhs.getCount();
+                return (l > r) ? -1 : ((l == r) ? 0 : 1);
+            }
+        });
+        return list;
+    }
+
+    /**
+     * 获取主线程排队延时的直方图，单位us
+     */
+    public LatencyHistogram getQueueDelay() {
+        return mQueueDelay;
+    }
+
+    /**
+     * 清除所有统计
+     */
+    public void reset() {
+        for (CallStats stats : mCalls.values()) { // 代理里缓存了统计对象，只清除数据
+            stats.mLatency.reset();
+            stats.mFailures.set(0);
+        }
+        mCallbacks.clear();
+        mQueueDelay.reset();
+    }
+
+    /**
+     * 输出所有统计
+     */
+    public void dump(PrintWriter writer) {
+        writer.println("IPC calls:");
+        for (CallStats stats : getCallStats()) {
+            writer.println("  " + stats);
+        }
+        writer.println("Callbacks:");
+        for (CallbackStats stats : getCallbackStats()) {
+            writer.println("  " + stats);
+        }
+        writer.println("Main queue delay: " + mQueueDelay);
+        writer.flush();
+    }
+
+    /**
+     * 把所有统计追加写到文件里
+     * @param file 文件
+     * @return 成功返回true
+     */
+    public boolean dump(File file) {
+        if (file == null) {
+            return false;
+        }
+
+        PrintWriter writer = null;
+        try {
+            writer = new PrintWriter(new FileWriter(file, true));
+            writer.println("==== " + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US).format(new Date()) +
+                    " pid:" + android.os.Process.myPid());
+            dump(writer);
+            return !writer.checkError();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+        Logcat.w("dump ipc metrics to " + file + " failed");
+        return false;
+    }
+}
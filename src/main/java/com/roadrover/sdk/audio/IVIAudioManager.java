@@ -88,7 +88,7 @@ public class IVIAudioManager extends BaseManager {
 
     @Override
     protected void onServiceConnected(IBinder service) {
-        mAudioInterface = IAudio.Stub.asInterface(service);
+        mAudioInterface = wrapInterface(IAudio.class, IAudio.Stub.asInterface(service));
         if (mAudioCallback != null) {
             registerCallback(mAudioCallback);
         }
@@ -2,6 +2,8 @@ package com.roadrover.sdk.avin;
 
 import android.content.Context;
 import android.graphics.ImageFormat;
+import android.os.Handler;
+import android.os.Looper;
 import android.text.TextUtils;
 import android.view.Surface;
 import android.view.SurfaceHolder;
@@ -9,7 +11,6 @@ import android.view.SurfaceHolder;
 import com.roadrover.sdk.system.IVIConfig;
 import com.roadrover.sdk.utils.FieldUtil;
 import com.roadrover.sdk.utils.Logcat;
-import com.roadrover.sdk.utils.TimerUtil;
 
 import java.io.IOException;
 import java.lang.reflect.InvocationHandler;
@@ -87,15 +88,71 @@ public class ATCCamera {
     private Context mContext;
 
     /** 视频是否有信号 */
-    private int mSignal = IVIAVIn.Signal.HAS_SIGNAL;
-    /** 视频信号检测定时器 */
-    private TimerUtil mVideoSignalTimer = null;
+    private volatile int mSignal = IVIAVIn.Signal.HAS_SIGNAL;
+    /** 视频信号去抖，去抖之后才刷新surface和回调 */
+    private final AVInSignalStateMachine mSignalStateMachine = new AVInSignalStateMachine("ATCCamera",
+            new AVInSignalStateMachine.Listener() {
+                @Override
+                public void onResolutionChanged(int width, int height) {
+                    setAVINSignalType(width, height);
+                    if (mSignal == IVIAVIn.Signal.HAS_SIGNAL) {
+                        mSurfaceHolderCallback.surfaceChanged(mSurfaceHolder, 0, mWidth, mHeight);
+                    }
+                }
+
+                @Override
+                public void onSignalChanged(int signal) {
+                    mSignal = signal;
+                    if (mAVInCallback != null) {
+                        mAVInCallback.onVideoSignalChanged(IVIAVIn.Id.AV, signal);
+                    }
+                    if (signal == IVIAVIn.Signal.HAS_SIGNAL) {
+                        mSurfaceHolderCallback.surfaceChanged(mSurfaceHolder, 0, mWidth, mHeight);
+                    }
+                }
+            });
+    /** 视频信号检测定时，在主线程中执行，不需要每次倒车都创建定时器线程 */
+    private Handler mVideoSignalHandler = new Handler(Looper.getMainLooper());
+    /** 第一帧的回调 */
+    private CameraUtil.OnFirstFrameListener mOnFirstFrameListener = null;
+    /** 开始预览之后是否在等待第一帧 */
+    private volatile boolean mWaitingFirstFrame = false;
     /** 检测时间3s */
     private static final int VIDEO_SIGNAL_DETECTION_MS = 3 * 1000;
 
     /** ATC摄像头调节的对象 */
     private ATCCameraVideoSetting mATCCameraVideoSetting = new ATCCameraVideoSetting();
 
+    /**
+     * InputSourceClient 的方法，第一次使用时查找一次，之后直接调用
+     */
+    private static final class InputSourceMethods {
+        static final Class<?> AVIN = FieldUtil.findClass(AVIN_CLASS);
+        static final Class<?> ON_SIGNAL_LISTENER = FieldUtil.findClass(ON_SIGNAL_LISTENER_CLASS);
+        static final Method SET_ON_SIGNAL_LISTENER = FieldUtil.findMethod(FieldUtil.findClass(INPUT_SOURCE_CLIENT_CLASS),
+                "setOnSignalListener", ON_SIGNAL_LISTENER);
+        static final Method SET_DESTINATION = find("setDestination", int.class);
+        static final Method SET_SOURCE = find("setSource", int.class, int.class, int.class, int.class);
+        static final Method SET_SOURCE_RECT = find("setSourceRect", int.class, int.class, int.class, int.class, int.class);
+        static final Method SET_DISPLAY = find("setDisplay", SurfaceHolder.class);
+        static final Method PLAY = find("play");
+        static final Method STOP = find("stop");
+        static final Method RELEASE = find("release");
+
+        private static Method find(String name, Class<?>... parameterTypes) {
+            return FieldUtil.findMethod(AVIN, name, parameterTypes);
+        }
+    }
+
+    /**
+     * 预先查找 InputSourceClient 的反射方法，倒车启动时不需要再查找，可以在开机时调用
+     */
+    public static void warmUp() {
+        if (InputSourceMethods.AVIN == null) {
+            Logcat.w(AVIN_CLASS + " not found");
+        }
+    }
+
     /**
      * Creates a new Camera object to access a particular hardware camera. If
      * the same camera is opened by other applications, this will throw a
@@ -150,6 +207,8 @@ public class ATCCamera {
         }
 
         Logcat.d("retValueVideo:" + retValueVideo);
+        mWaitingFirstFrame = (mOnFirstFrameListener != null);
+        mSignalStateMachine.start();
         startVideoSignalDetectionTimer();
         if (mCurrentVideoStatus == STATUS_STOPED || mCurrentVideoStatus == STATUS_NONE) {
             mCurrentVideoStatus = STATUS_STARTED;
@@ -163,7 +222,9 @@ public class ATCCamera {
      */
     public final void stopPreview() {
         Logcat.d();
+        mWaitingFirstFrame = false;
         stopVideoSignalDetectionTimer();
+        mSignalStateMachine.stop();
         if (mInputSourceClientV != null) {
             mCurrentVideoStatus = STATUS_STOPED;
             stop();
@@ -181,7 +242,7 @@ public class ATCCamera {
         if (mInputSourceClientV != null) {
             mCurrentVideoStatus = STATUS_NONE;
             stop();
-            invoke("release"); // 执行实际的释放动作
+            FieldUtil.invoke(InputSourceMethods.RELEASE, mInputSourceClientV); // 执行实际的释放动作
             mInputSourceClientV = null;
         }
 
@@ -266,6 +327,14 @@ public class ATCCamera {
         mAVInCallback = listener;
     }
 
+    /**
+     * 设置第一帧的回调，ATC平台以开始预览之后的第一次 SIGNAL_READY 作为第一帧，在 InputSourceClient 的回调线程中执行
+     * @param listener
+     */
+    public void setOnFirstFrameListener(CameraUtil.OnFirstFrameListener listener) {
+        mOnFirstFrameListener = listener;
+    }
+
     /**
      * 获取视频有无信号
      * @return
@@ -289,11 +358,12 @@ public class ATCCamera {
             return;
         }
         // 使用代理的方式设置回调
-        final Class<?> callbackClass = Class.forName(ON_SIGNAL_LISTENER_CLASS);
+        final Class<?> callbackClass = InputSourceMethods.ON_SIGNAL_LISTENER;
+        if (callbackClass == null || InputSourceMethods.SET_ON_SIGNAL_LISTENER == null) {
+            throw new NoSuchMethodException("setOnSignalListener");
+        }
         Object mObj = Proxy.newProxyInstance(ATCCamera.class.getClassLoader(), new Class[] { callbackClass }, (InputSourceClientCallback) listener);
-        Method method = Class.forName(INPUT_SOURCE_CLIENT_CLASS)
-                .getMethod("setOnSignalListener", new Class[]{callbackClass});
-        method.invoke(mInputSourceClientV, new Object[] {mObj});
+        InputSourceMethods.SET_ON_SIGNAL_LISTENER.invoke(mInputSourceClientV, mObj);
     }
 
     /**
@@ -307,7 +377,7 @@ public class ATCCamera {
      */
     private int setDestination(int destination)
             throws Exception {
-        return (int) FieldUtil.invoke(mInputSourceClientV, "setDestination", destination);
+        return FieldUtil.invokeInt(InputSourceMethods.SET_DESTINATION, mInputSourceClientV, ERR_FAILED, destination);
     }
 
     /**
@@ -315,7 +385,7 @@ public class ATCCamera {
      * @return
      */
     private void play() {
-        invoke("play");
+        FieldUtil.invoke(InputSourceMethods.PLAY, mInputSourceClientV);
     }
 
     /**
@@ -323,16 +393,7 @@ public class ATCCamera {
      * @return
      */
     private void stop() {
-        invoke("stop");
-    }
-
-    /**
-     * 执行一次无参数反射操作
-     * @param methodName 方法名
-     * @return
-     */
-    private void invoke(String methodName) {
-        FieldUtil.invoke(mInputSourceClientV, methodName);
+        FieldUtil.invoke(InputSourceMethods.STOP, mInputSourceClientV);
     }
 
     /**
@@ -344,9 +405,8 @@ public class ATCCamera {
             Logcat.d("mInputSourceClientV is null!");
             return;
         }
-        Logcat.d("sh:" + sh.getClass().getName());
-        FieldUtil.invoke(mInputSourceClientV, "setDisplay",
-                new Class<?>[]{SurfaceHolder.class}, new Object[]{sh});
+        Logcat.d("sh:" + sh);
+        FieldUtil.invoke(InputSourceMethods.SET_DISPLAY, mInputSourceClientV, sh);
     }
 
     /**
@@ -360,7 +420,8 @@ public class ATCCamera {
      */
     private int setSourceRect(int destination, int left, int top, int width, int height)
             throws Exception {
-        return (int) FieldUtil.invoke(mInputSourceClientV, "setSourceRect", destination, left, top, width, height);
+        return FieldUtil.invokeInt(InputSourceMethods.SET_SOURCE_RECT, mInputSourceClientV, ERR_FAILED,
+                destination, left, top, width, height);
     }
 
     /**
@@ -372,7 +433,8 @@ public class ATCCamera {
      * @return
      */
     private int setSource(int inputSrcType, int portV, int portA, int priority) {
-        return (int) FieldUtil.invoke(mInputSourceClientV, "setSource", inputSrcType, portV, portA, priority);
+        return FieldUtil.invokeInt(InputSourceMethods.SET_SOURCE, mInputSourceClientV, ERR_FAILED,
+                inputSrcType, portV, portA, priority);
     }
 
     /**
@@ -396,29 +458,24 @@ public class ATCCamera {
                 switch (msg) {
                     case SIGNAL_READY:
                         Logcat.d("Get SIGNAL_READY");
-                        mSignal = IVIAVIn.Signal.HAS_SIGNAL;
-                        setAVINSignalType(param1, param2);
-                        if (mAVInCallback != null) {
-                            mAVInCallback.onVideoSignalChanged(IVIAVIn.Id.AV, IVIAVIn.Signal.HAS_SIGNAL);
+                        if (mWaitingFirstFrame) {
+                            mWaitingFirstFrame = false;
+                            CameraUtil.OnFirstFrameListener firstFrameListener = mOnFirstFrameListener;
+                            if (firstFrameListener != null) {
+                                firstFrameListener.onFirstFrame();
+                            }
                         }
-                        mSurfaceHolderCallback.surfaceChanged(mSurfaceHolder, 0, mWidth, mHeight);
+                        mSignalStateMachine.onRawSignal(IVIAVIn.Signal.HAS_SIGNAL, param1, param2);
                         break;
 
                     case SIGNAL_LOST:
-                        mSignal = IVIAVIn.Signal.NO_SIGNAL;
                         Logcat.d("Get SIGNAL_LOST");
-                        if (mAVInCallback != null) {
-                            mAVInCallback.onVideoSignalChanged(IVIAVIn.Id.AV, IVIAVIn.Signal.NO_SIGNAL);
-                        }
+                        mSignalStateMachine.onRawSignal(IVIAVIn.Signal.NO_SIGNAL, 0, 0);
                         break;
 
                     case SIGNAL_CHANGE:
-                        mSignal = IVIAVIn.Signal.UNSTABLE_SIGNAL;
                         Logcat.d("Get SIGNAL_CHANGE, new resolution: " + param1 + "x" + param2);
-                        setAVINSignalType(param1, param2);
-                        if (mAVInCallback != null) {
-                            mAVInCallback.onVideoSignalChanged(IVIAVIn.Id.AV, IVIAVIn.Signal.UNSTABLE_SIGNAL);
-                        }
+                        mSignalStateMachine.onRawSignal(IVIAVIn.Signal.UNSTABLE_SIGNAL, param1, param2);
                         break;
 
                     default:
@@ -447,34 +504,28 @@ public class ATCCamera {
         return mATCCameraVideoSetting.getParamValue(mCameraId, id);
     }
 
+    /**
+     * 视频信号检测时间到，认为无信号
+     */
+    private Runnable mVideoSignalTimeout = new Runnable() {
+        @Override
+        public void run() {
+            mSignalStateMachine.onRawSignal(IVIAVIn.Signal.NO_SIGNAL, 0, 0);
+        }
+    };
+
     /**
      * 开启视频有无信号检测定时器，如果时间到，则认为无信号
      */
     private void startVideoSignalDetectionTimer() {
-        if (mVideoSignalTimer == null) {
-            mVideoSignalTimer = new TimerUtil(new TimerUtil.TimerCallback() {
-                @Override
-                public void timeout() {
-                    if (mVideoSignalTimer != null) {
-                        mVideoSignalTimer.stop();
-                    }
-
-                    if (mAVInCallback != null) {
-                        mAVInCallback.onVideoSignalChanged(IVIAVIn.Id.AV, IVIAVIn.Signal.NO_SIGNAL);
-                    }
-                }
-            });
-        }
-        mVideoSignalTimer.start(VIDEO_SIGNAL_DETECTION_MS);
+        mVideoSignalHandler.removeCallbacks(mVideoSignalTimeout);
+        mVideoSignalHandler.postDelayed(mVideoSignalTimeout, VIDEO_SIGNAL_DETECTION_MS);
     }
 
     /**
      * 停止检测定时器
      */
     private void stopVideoSignalDetectionTimer() {
-        if (mVideoSignalTimer != null) {
-            mVideoSignalTimer.stop();
-            mVideoSignalTimer = null;
-        }
+        mVideoSignalHandler.removeCallbacks(mVideoSignalTimeout);
     }
 }
@@ -3,6 +3,9 @@ package com.roadrover.sdk.avin;
 import com.roadrover.sdk.utils.FieldUtil;
 import com.roadrover.sdk.utils.Logcat;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
 /**
  * atc 摄像头视频参数调节
  */
@@ -19,6 +22,21 @@ public class ATCCameraVideoSetting {
     /** 亮度，对比度，饱和度，调节对象 */
     private Object mContrastBrightnessSaturation;
 
+    /**
+     * AtcVcpSettings 的方法和变量，第一次使用时查找一次，之后直接调用
+     */
+    private static final class VcpSettings {
+        static final Class<?> CONTR_BRIT_SATR = FieldUtil.findClass(CONTR_BRIT_SATR_CLASS_NAME);
+        static final Method SET_LEVEL = FieldUtil.findMethod(FieldUtil.findClass(ATC_VCP_SETTINGS_CLASS_NAME),
+                "SetVcpContrBritSatrLevel", CONTR_BRIT_SATR);
+        static final Method GET_LEVEL = FieldUtil.findMethod(FieldUtil.findClass(ATC_VCP_SETTINGS_CLASS_NAME),
+                "GetVcpContrBritSatrLevel", CONTR_BRIT_SATR);
+        static final Field SRC_TYPE = FieldUtil.getField(CONTR_BRIT_SATR_CLASS_NAME, "srctype");
+        static final Field BRIGHTNESS = FieldUtil.getField(CONTR_BRIT_SATR_CLASS_NAME, "i4Brit");
+        static final Field CONTRAST = FieldUtil.getField(CONTR_BRIT_SATR_CLASS_NAME, "i4Contr");
+        static final Field SATURATION = FieldUtil.getField(CONTR_BRIT_SATR_CLASS_NAME, "i4Satr");
+    }
+
     public ATCCameraVideoSetting() {
         mContrastBrightnessSaturation = FieldUtil.createObject(ATC_VCP_SETTINGS_CLASS_NAME, CONTR_BRIT_SATR_CLASS_NAME);
     }
@@ -87,8 +105,8 @@ public class ATCCameraVideoSetting {
      */
     private void setBrightnessLevel(int srcType, int brightness) {
         Object contrBritSatr = getContrBritSatr(srcType);
-        FieldUtil.setFieldValue(contrBritSatr, "i4Brit", brightness);
-        FieldUtil.invoke(ATC_VCP_SETTINGS_CLASS_NAME, "SetVcpContrBritSatrLevel", contrBritSatr);
+        FieldUtil.setFieldIntValue(VcpSettings.BRIGHTNESS, contrBritSatr, brightness);
+        FieldUtil.invoke(VcpSettings.SET_LEVEL, (Object) null, contrBritSatr);
 
         Logcat.d("brightness:" + brightness + " " + getBrightnessLevel(srcType));
     }
@@ -99,7 +117,7 @@ public class ATCCameraVideoSetting {
      * @return
      */
     private int getBrightnessLevel(int srcType) {
-        return FieldUtil.getFieldIntValue(CONTR_BRIT_SATR_CLASS_NAME, getContrBritSatr(srcType), "i4Brit");
+        return FieldUtil.getFieldIntValue(VcpSettings.BRIGHTNESS, getContrBritSatr(srcType), -1);
     }
 
     /**
@@ -109,8 +127,8 @@ public class ATCCameraVideoSetting {
      */
     private void setContrastLevel(int srcType, int contrast) {
         Object contrBritSatr = getContrBritSatr(srcType);
-        FieldUtil.setFieldValue(contrBritSatr, "i4Contr", contrast);
-        FieldUtil.invoke(ATC_VCP_SETTINGS_CLASS_NAME, "SetVcpContrBritSatrLevel", contrBritSatr);
+        FieldUtil.setFieldIntValue(VcpSettings.CONTRAST, contrBritSatr, contrast);
+        FieldUtil.invoke(VcpSettings.SET_LEVEL, (Object) null, contrBritSatr);
         Logcat.d("contrast:" + contrast + " " + getContrastLevel(srcType));
     }
 
@@ -119,7 +137,7 @@ public class ATCCameraVideoSetting {
      * @return
      */
     private int getContrastLevel(int srcType) {
-        return FieldUtil.getFieldIntValue(CONTR_BRIT_SATR_CLASS_NAME, getContrBritSatr(srcType), "i4Contr");
+        return FieldUtil.getFieldIntValue(VcpSettings.CONTRAST, getContrBritSatr(srcType), -1);
     }
 
     /**
@@ -129,8 +147,8 @@ public class ATCCameraVideoSetting {
      */
     private void setSaturationLevel(int srcType, int saturation) {
         Object contrBritSatr = getContrBritSatr(srcType);
-        FieldUtil.setFieldValue(contrBritSatr, "i4Satr", saturation);
-        FieldUtil.invoke(ATC_VCP_SETTINGS_CLASS_NAME, "SetVcpContrBritSatrLevel", contrBritSatr);
+        FieldUtil.setFieldIntValue(VcpSettings.SATURATION, contrBritSatr, saturation);
+        FieldUtil.invoke(VcpSettings.SET_LEVEL, (Object) null, contrBritSatr);
         Logcat.d("saturation:" + saturation + " " + getSaturationLevel(srcType));
     }
 
@@ -140,7 +158,7 @@ public class ATCCameraVideoSetting {
      * @return
      */
     private int getSaturationLevel(int srcType) {
-        return FieldUtil.getFieldIntValue(CONTR_BRIT_SATR_CLASS_NAME, getContrBritSatr(srcType), "i4Satr");
+        return FieldUtil.getFieldIntValue(VcpSettings.SATURATION, getContrBritSatr(srcType), -1);
     }
 
     /**
@@ -148,8 +166,8 @@ public class ATCCameraVideoSetting {
      * @return
      */
     private Object getContrBritSatr(int srcType) {
-        FieldUtil.setFieldValue(CONTR_BRIT_SATR_CLASS_NAME, mContrastBrightnessSaturation, "srctype", srcType);
-        FieldUtil.invoke(ATC_VCP_SETTINGS_CLASS_NAME, "GetVcpContrBritSatrLevel", mContrastBrightnessSaturation);
+        FieldUtil.setFieldIntValue(VcpSettings.SRC_TYPE, mContrastBrightnessSaturation, srcType);
+        FieldUtil.invoke(VcpSettings.GET_LEVEL, (Object) null, mContrastBrightnessSaturation);
         return mContrastBrightnessSaturation;
     }
 
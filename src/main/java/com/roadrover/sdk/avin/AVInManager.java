@@ -26,6 +26,8 @@ public class AVInManager extends BaseManager {
     private IAVIn mAVInInterface;
     /**{@link com.roadrover.sdk.avin.IVIAVIn.AVInListener} 监听对象*/
     private IVIAVIn.AVInListener mAvInListener;
+    /**在binder线程中直接回调的监听*/
+    private final DirectAVInListener mDirectAvIn = new DirectAVInListener(mDirectCallbackMonitor); // 在binder线程中直接回调的监听
     /**{@link com.roadrover.sdk.avin.IVIAVIn.Id}*/
     private int mAvId = IVIAVIn.Id.NONE;
     /**媒体是否打开*/
@@ -80,6 +82,16 @@ public class AVInManager extends BaseManager {
         mAvInListener = avInListener;
     }
 
+    /**
+     * 设置在binder线程中直接回调的监听，不经过EventBus和主线程，适合对信号变化延时敏感的应用 <br/>
+     * 回调时services在等待返回，监听里不能做耗时操作，也不能直接操作界面，
+     * 耗时见 {@link #getDirectCallbackMonitor()}；和构造函数传入的监听互不影响，可以同时使用
+     * @param listener 监听，null表示取消
+     */
+    public void setDirectAVInListener(IVIAVIn.AVInListener listener) {
+        mDirectAvIn.setListener(listener);
+    }
+
     @Override
     public void disconnect() {
         if (mAVInInterface != null) {
@@ -94,6 +106,7 @@ public class AVInManager extends BaseManager {
 
         mAVInInterface = null;
         mAvInListener = null;
+        mDirectAvIn.setListener(null);
         mAVInCallback = null;
 
         super.disconnect();
@@ -106,7 +119,7 @@ public class AVInManager extends BaseManager {
 
     @Override
     protected void onServiceConnected(IBinder service) {
-        mAVInInterface = IAVIn.Stub.asInterface(service);
+        mAVInInterface = wrapInterface(IAVIn.class, IAVIn.Stub.asInterface(service));
         registerCallback();
 
         // 对是媒体类型的AVIN，重新打开它
@@ -207,48 +220,57 @@ public class AVInManager extends BaseManager {
     private IAVInCallback mAVInCallback = new IAVInCallback.Stub() {
         @Override
         public void onVideoSignalChanged(int avId, int signal) {
+            mDirectAvIn.onVideoSignalChanged(avId, signal);
             post(new IVIAVIn.EventVideoSignalChanged(avId, signal));
         }
 
         @Override
         public void onVideoPermitChanged(boolean show) {
+            mDirectAvIn.onVideoPermitChanged(show);
             post(new IVIAVIn.EventControl(IVIAVIn.EventControl.Action.VIDEO_PERMIT, show ? 1 : 0));
         }
 
         @Override
         public void stop() throws RemoteException {
             mMediaIsOpen = false;
+            mDirectAvIn.stop();
             post(new IVIAVIn.EventControl(IVIAVIn.EventControl.Action.STOP));
         }
 
         @Override
         public void resume() throws RemoteException {
             mMediaIsOpen = true;
+            mDirectAvIn.resume();
             post(new IVIAVIn.EventControl(IVIAVIn.EventControl.Action.RESUME));
         }
 
         @Override
         public void quitApp() {
+            mDirectAvIn.quitApp();
             post(new IVIAVIn.EventControl(IVIAVIn.EventControl.Action.QUIT_APP));
         }
 
         @Override
         public void next() {
+            mDirectAvIn.next();
             post(new IVIAVIn.EventControl(IVIAVIn.EventControl.Action.NEXT));
         }
 
         @Override
         public void prev() {
+            mDirectAvIn.prev();
             post(new IVIAVIn.EventControl(IVIAVIn.EventControl.Action.PREV));
         }
 
         @Override
         public void select(int index) {
+            mDirectAvIn.select(index);
             post(new IVIAVIn.EventControl(IVIAVIn.EventControl.Action.SELECT, index));
         }
 
         @Override
         public void onCvbsTypeChanged(int avId, int cvbsType) {
+            mDirectAvIn.onCvbsTypeChanged(avId, cvbsType);
             post(new IVIAVIn.EventCvbsTypeChanged(avId, cvbsType));
         }
 
@@ -527,6 +549,22 @@ public class AVInManager extends BaseManager {
         post(new EventRequestVideoSignal(avId));
     }
 
+    /**
+     * 获取视频信号的统计，包括出图时间直方图和每次预览的信号抖动次数直方图，
+     * 目前由ATC平台的摄像头（{@link #openAndroidCamera(int)}）统计
+     * @return 统计数据的拷贝
+     */
+    public AVInSignalStateMachine.Stats getSignalStats() {
+        return AVInSignalStateMachine.getStats();
+    }
+
+    /**
+     * 清除视频信号的统计
+     */
+    public void resetSignalStats() {
+        AVInSignalStateMachine.resetStats();
+    }
+
     /**
      * 视频是否允许观看
      * @return 允许返回true，否则返回false
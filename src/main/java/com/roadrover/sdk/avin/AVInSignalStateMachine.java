@@ -0,0 +1,407 @@
+package com.roadrover.sdk.avin;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.roadrover.sdk.system.IVIConfig;
+import com.roadrover.sdk.utils.Logcat;
+
+/**
+ * AVIN视频信号状态机 <br/>
+ * 平台上报的原始信号（有信号、无信号、分辨率变化）经过去抖之后才回调：<br/>
+ * 1. 检测中或者无信号时收到有信号，立即回调，保证出图时间；<br/>
+ * 2. 其它变化需要在去抖时间内保持不变才回调，去抖时间内又恢复原状态的记为一次抖动，不回调；<br/>
+ * 3. 去抖时间内多次分辨率变化只回调最后一次，一直抖动时最迟 {@link #MAX_DEBOUNCE_FACTOR} 倍去抖时间回调一次。<br/>
+ * 所有回调都在主线程中执行，出图时间和抖动次数的统计通过 {@link #getStats()} 获取
+ */
+public class AVInSignalStateMachine {
+
+    /**
+     * 信号状态回调
+     */
+    public interface Listener {
+        /**
+         * 分辨率改变，有信号时在 {@link #onSignalChanged(int)} 之前回调
+         * @param width 宽
+         * @param height 高
+         */
+        void onResolutionChanged(int width, int height);
+
+        /**
+         * 去抖之后的信号改变
+         * @param signal {@link IVIAVIn.Signal}
+         */
+        void onSignalChanged(int signal);
+    }
+
+    /**
+     * 状态定义
+     */
+    public static class State {
+        /** 没有开始检测 */
+        public static final int IDLE      = 0;
+        /** 已开始预览，等待第一次信号 */
+        public static final int DETECTING = 1;
+        /** 有信号 */
+        public static final int SIGNAL    = 2;
+        /** 无信号 */
+        public static final int NO_SIGNAL = 3;
+        /** 信号不稳定 */
+        public static final int UNSTABLE  = 4;
+
+        public static String getName(int state) {
+            switch (state) {
+                case IDLE: return "IDLE";
+                case DETECTING: return "DETECTING";
+                case SIGNAL: return "SIGNAL";
+                case NO_SIGNAL: return "NO_SIGNAL";
+                case UNSTABLE: return "UNSTABLE";
+                default:
+                    return "Unknown state: " + state;
+            }
+        }
+    }
+
+    /**
+     * 默认的去抖检测次数，AVIN配置中没有配置时使用
+     */
+    public static final int DEFAULT_DEBOUNCE_COUNT = 1;
+    /**
+     * 每次去抖检测的时间，单位ms，和AVIN配置中的检测次数一致，见 {@link IVIConfig#getAVInChangeCVBSTypeCount(int)}
+     */
+    public static final int DEBOUNCE_STEP_MS = 500;
+    /**
+     * 一直抖动时，最长等待去抖时间的倍数
+     */
+    public static final int MAX_DEBOUNCE_FACTOR = 4;
+
+    /**
+     * 出图时间和抖动次数的统计
+     */
+    public static class Stats {
+        /** 出图时间直方图的上界，单位ms，最后一个桶为大于等于最后一个上界 */
+        public static final int[] TIME_TO_SIGNAL_BOUNDS_MS = {100, 200, 500, 1000, 2000};
+        /** 每次预览抖动次数直方图的上界，最后一个桶为大于最后一个上界 */
+        public static final int[] FLAP_BOUNDS = {0, 1, 3, 7};
+
+        /** 出图时间直方图，长度为 TIME_TO_SIGNAL_BOUNDS_MS.length + 1 */
+        public final int[] mTimeToSignal = new int[TIME_TO_SIGNAL_BOUNDS_MS.length + 1];
+        /** 每次预览抖动次数直方图，长度为 FLAP_BOUNDS.length + 1 */
+        public final int[] mFlaps = new int[FLAP_BOUNDS.length + 1];
+        /** 预览次数 */
+        public int mSessions;
+        /** 一直没有信号的预览次数 */
+        public int mSessionsWithoutSignal;
+        /** 总的抖动次数 */
+        public int mTotalFlaps;
+        /** 最长出图时间，单位ms */
+        public long mMaxTimeToSignal;
+        /** 出图时间总和，单位ms */
+        public long mTotalTimeToSignal;
+        /** 统计到出图时间的次数 */
+        public int mSignalCount;
+
+        /**
+         * 获取平均出图时间，单位ms
+         */
+        public long getAverageTimeToSignal() {
+            return (mSignalCount > 0) ? (mTotalTimeToSignal / mSignalCount) : 0;
+        }
+
+        private void addTimeToSignal(long time) {
+            mTimeToSignal[bucketOf(TIME_TO_SIGNAL_BOUNDS_MS, time, false)]++;
+            mTotalTimeToSignal += time;
+            mSignalCount++;
+            if (time > mMaxTimeToSignal) {
+                mMaxTimeToSignal = time;
+            }
+        }
+
+        private void addSession(boolean hasSignal, int flaps) {
+            mSessions++;
+            if (!hasSignal) {
+                mSessionsWithoutSignal++;
+            }
+            mFlaps[bucketOf(FLAP_BOUNDS, flaps, true)]++;
+        }
+
+        private Stats copy() {
+            Stats stats = new Stats();
+            System.arraycopy(mTimeToSignal, 0, stats.mTimeToSignal, 0, mTimeToSignal.length);
+            System.arraycopy(mFlaps, 0, stats.mFlaps, 0, mFlaps.length);
+            stats.mSessions = mSessions;
+            stats.mSessionsWithoutSignal = mSessionsWithoutSignal;
+            stats.mTotalFlaps = mTotalFlaps;
+            stats.mMaxTimeToSignal = mMaxTimeToSignal;
+            stats.mTotalTimeToSignal = mTotalTimeToSignal;
+            stats.mSignalCount = mSignalCount;
+            return stats;
+        }
+
+        /**
+         * @param inclusive true 表示上界包含在桶内
+         */
+        private static int bucketOf(int[] bounds, long value, boolean inclusive) {
+            int i = 0;
+            while (i < bounds.length && (inclusive ? value > bounds[i] : value >= bounds[i])) {
+                ++i;
+            }
+            return i;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            builder.append("sessions:").append(mSessions)
+                    .append(" noSignal:").append(mSessionsWithoutSignal)
+                    .append(" flaps:").append(mTotalFlaps)
+                    .append(" avgTimeToSignal:").append(getAverageTimeToSignal()).append("ms")
+                    .append(" maxTimeToSignal:").append(mMaxTimeToSignal).append("ms")
+                    .append(" timeToSignal[");
+            for (int i = 0; i < mTimeToSignal.length; ++i) {
+                builder.append(i == 0 ? "" : " ").append(mTimeToSignal[i]);
+            }
+            builder.append("] flapsPerSession[");
+            for (int i = 0; i < mFlaps.length; ++i) {
+                builder.append(i == 0 ? "" : " ").append(mFlaps[i]);
+            }
+            return builder.append("]").toString();
+        }
+    }
+
+    /** 进程内所有状态机的统计，由类锁保护 */
+    private static Stats sStats = new Stats();
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final String mName;
+    private Listener mListener;
+    private int mDebounceMs;
+
+    // 以下只在主线程中使用
+    private int mState = State.IDLE;
+    private int mWidth = 0;
+    private int mHeight = 0;
+    private long mStartTime = 0;
+    private boolean mSignalRecorded = false;
+    private int mSessionFlaps = 0;
+
+    private boolean mPending = false;
+    private int mPendingSignal;
+    private int mPendingWidth;
+    private int mPendingHeight;
+    private long mPendingSince;
+
+    private final Runnable mCommitRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mPending) {
+                mPending = false;
+                commit(mPendingSignal, mPendingWidth, mPendingHeight);
+            }
+        }
+    };
+
+    /**
+     * @param name 日志中的名字
+     * @param listener 回调
+     */
+    public AVInSignalStateMachine(String name, Listener listener) {
+        mName = name;
+        mListener = listener;
+        setDebounceCount(IVIConfig.getAVInChangeCVBSTypeCount(DEFAULT_DEBOUNCE_COUNT));
+    }
+
+    /**
+     * 设置去抖检测次数
+     * @param count 次数，每次 {@link #DEBOUNCE_STEP_MS}，0表示不去抖
+     */
+    public void setDebounceCount(int count) {
+        mDebounceMs = Math.max(0, count) * DEBOUNCE_STEP_MS;
+    }
+
+    /**
+     * 开始预览时调用，开始统计出图时间，任意线程中调用
+     */
+    public void start() {
+        final long now = SystemClock.elapsedRealtime();
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (mState != State.IDLE) {
+                    endSession();
+                }
+                mState = State.DETECTING;
+                mStartTime = now;
+                mSignalRecorded = false;
+                mSessionFlaps = 0;
+            }
+        });
+    }
+
+    /**
+     * 停止预览时调用，丢弃还没有回调的变化，任意线程中调用
+     */
+    public void stop() {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (mState != State.IDLE) {
+                    endSession();
+                    mState = State.IDLE;
+                }
+            }
+        });
+    }
+
+    /**
+     * 平台上报的原始信号，任意线程中调用
+     * @param signal {@link IVIAVIn.Signal}
+     * @param width 宽，没有时传0
+     * @param height 高，没有时传0
+     */
+    public void onRawSignal(final int signal, final int width, final int height) {
+        final long now = SystemClock.elapsedRealtime();
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                handleRawSignal(signal, width, height, now);
+            }
+        });
+    }
+
+    private void handleRawSignal(int signal, int width, int height, long time) {
+        if (mState == State.IDLE) { // 没有调用start，从第一次上报开始统计
+            mState = State.DETECTING;
+            mStartTime = time;
+            mSignalRecorded = false;
+            mSessionFlaps = 0;
+        }
+
+        if ((mState == State.DETECTING || mState == State.NO_SIGNAL) && signal == IVIAVIn.Signal.HAS_SIGNAL) {
+            cancelPending();
+            commit(signal, width, height); // 出图不去抖
+            return;
+        }
+        if (mState == State.DETECTING && signal == IVIAVIn.Signal.NO_SIGNAL) {
+            cancelPending();
+            commit(signal, width, height);
+            return;
+        }
+
+        if (isCommitted(signal, width, height)) {
+            if (mPending) { // 去抖时间内恢复了原状态
+                cancelPending();
+                mSessionFlaps++;
+                synchronized (AVInSignalStateMachine.class) {
+                    sStats.mTotalFlaps++;
+                }
+                Logcat.d(mName + " flap " + IVIAVIn.Signal.getName(signal) + " count:" + mSessionFlaps);
+            }
+            return;
+        }
+
+        if (!mPending) {
+            mPending = true;
+            mPendingSince = time;
+        }
+        mPendingSignal = signal;
+        mPendingWidth = width;
+        mPendingHeight = height;
+        mHandler.removeCallbacks(mCommitRunnable);
+        final long maxDelay = mPendingSince + (long) mDebounceMs * MAX_DEBOUNCE_FACTOR - SystemClock.elapsedRealtime();
+        mHandler.postDelayed(mCommitRunnable, Math.max(0, Math.min(mDebounceMs, maxDelay)));
+    }
+
+    private boolean isCommitted(int signal, int width, int height) {
+        if (signal != getSignal()) {
+            return false;
+        }
+        return (width <= 0 || height <= 0) || (width == mWidth && height == mHeight);
+    }
+
+    private void cancelPending() {
+        mPending = false;
+        mHandler.removeCallbacks(mCommitRunnable);
+    }
+
+    private void commit(int signal, int width, int height) {
+        final boolean signalChanged = (signal != getSignal());
+        final boolean resolutionChanged = (signal != IVIAVIn.Signal.NO_SIGNAL) && width > 0 && height > 0 &&
+                (width != mWidth || height != mHeight);
+
+        mState = stateOf(signal);
+        if (resolutionChanged) {
+            mWidth = width;
+            mHeight = height;
+        }
+
+        if (signal == IVIAVIn.Signal.HAS_SIGNAL && !mSignalRecorded) {
+            mSignalRecorded = true;
+            final long timeToSignal = SystemClock.elapsedRealtime() - mStartTime;
+            synchronized (AVInSignalStateMachine.class) {
+                sStats.addTimeToSignal(timeToSignal);
+            }
+            Logcat.d(mName + " time to signal:" + timeToSignal + "ms");
+        }
+
+        Logcat.d(mName + " " + State.getName(mState) + " " + mWidth + "x" + mHeight);
+        if (mListener != null) {
+            if (resolutionChanged) {
+                mListener.onResolutionChanged(mWidth, mHeight);
+            }
+            if (signalChanged) {
+                mListener.onSignalChanged(signal);
+            }
+        }
+    }
+
+    private void endSession() {
+        cancelPending();
+        synchronized (AVInSignalStateMachine.class) {
+            sStats.addSession(mSignalRecorded, mSessionFlaps);
+        }
+    }
+
+    /**
+     * 获取当前去抖之后的信号
+     * @return {@link IVIAVIn.Signal}，检测中返回 UNSTABLE_SIGNAL
+     */
+    private int getSignal() {
+        switch (mState) {
+            case State.SIGNAL: return IVIAVIn.Signal.HAS_SIGNAL;
+            case State.NO_SIGNAL: return IVIAVIn.Signal.NO_SIGNAL;
+            case State.UNSTABLE: return IVIAVIn.Signal.UNSTABLE_SIGNAL;
+            default:
+                return Integer.MIN_VALUE; // 检测中，任何信号都是变化
+        }
+    }
+
+    private static int stateOf(int signal) {
+        switch (signal) {
+            case IVIAVIn.Signal.HAS_SIGNAL: return State.SIGNAL;
+            case IVIAVIn.Signal.NO_SIGNAL: return State.NO_SIGNAL;
+            default:
+                return State.UNSTABLE;
+        }
+    }
+
+    /**
+     * 获取进程内所有AVIN信号状态机的统计
+     * @return 统计数据的拷贝
+     */
+    public static Stats getStats() {
+        synchronized (AVInSignalStateMachine.class) {
+            return sStats.copy();
+        }
+    }
+
+    /**
+     * 清除统计数据
+     */
+    public static void resetStats() {
+        synchronized (AVInSignalStateMachine.class) {
+            sStats = new Stats();
+        }
+    }
+}
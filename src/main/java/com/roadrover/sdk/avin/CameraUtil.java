@@ -13,8 +13,19 @@ import java.io.IOException;
 
 public class CameraUtil {
 
+    /**
+     * 开始预览之后第一帧的回调，用于统计倒车出图时间
+     */
+    public interface OnFirstFrameListener {
+        /**
+         * 收到第一帧，可能在任意线程中回调
+         */
+        void onFirstFrame();
+    }
+
     private ATCCamera mATCCamera; // ATC平台摄像头对象
     private Camera mCamera; // 标准的摄像头接口
+    private OnFirstFrameListener mOnFirstFrameListener = null;
 
     /**
      * 创建一个CameraUtil对象
@@ -134,10 +145,30 @@ public class CameraUtil {
         if (mATCCamera != null) {
             mATCCamera.startPreview();
         } else if (mCamera != null) {
+            final OnFirstFrameListener listener = mOnFirstFrameListener;
+            if (listener != null) {
+                mCamera.setOneShotPreviewCallback(new Camera.PreviewCallback() {
+                    @Override
+                    public void onPreviewFrame(byte[] data, Camera camera) {
+                        listener.onFirstFrame();
+                    }
+                });
+            }
             mCamera.startPreview();
         }
     }
 
+    /**
+     * 设置开始预览之后第一帧的回调
+     * @param listener 为空取消回调
+     */
+    public void setOnFirstFrameListener(OnFirstFrameListener listener) {
+        mOnFirstFrameListener = listener;
+        if (mATCCamera != null) {
+            mATCCamera.setOnFirstFrameListener(listener);
+        }
+    }
+
     /**
      * Stops capturing and drawing preview frames to the surface, and
      * resets the camera for a future call to {@link #startPreview()}.
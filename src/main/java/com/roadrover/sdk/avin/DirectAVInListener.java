@@ -0,0 +1,168 @@
+package com.roadrover.sdk.avin;
+
+import com.roadrover.sdk.DirectCallbackMonitor;
+
+/**
+ * 在binder线程中直接回调的监听，见 {@link AVInManager#setDirectAVInListener(IVIAVIn.AVInListener)} <br/>
+ * 没有设置监听时直接返回；设置了时直接调用并统计耗时，监听抛出的异常在这里捕获，不影响之后的 EventBus 通知
+ */
+final class DirectAVInListener implements IVIAVIn.AVInListener {
+
+    private final DirectCallbackMonitor mMonitor;
+    private final DirectCallbackMonitor.Stat mOnVideoSignalChanged;
+    private final DirectCallbackMonitor.Stat mOnCvbsTypeChanged;
+    private final DirectCallbackMonitor.Stat mOnVideoPermitChanged;
+    private final DirectCallbackMonitor.Stat mStop;
+    private final DirectCallbackMonitor.Stat mResume;
+    private final DirectCallbackMonitor.Stat mNext;
+    private final DirectCallbackMonitor.Stat mPrev;
+    private final DirectCallbackMonitor.Stat mQuitApp;
+    private final DirectCallbackMonitor.Stat mSelect;
+    private volatile IVIAVIn.AVInListener mListener = null;
+
+    DirectAVInListener(DirectCallbackMonitor monitor) {
+        mMonitor = monitor;
+        mOnVideoSignalChanged = monitor.getStat("onVideoSignalChanged");
+        mOnCvbsTypeChanged = monitor.getStat("onCvbsTypeChanged");
+        mOnVideoPermitChanged = monitor.getStat("onVideoPermitChanged");
+        mStop = monitor.getStat("stop");
+        mResume = monitor.getStat("resume");
+        mNext = monitor.getStat("next");
+        mPrev = monitor.getStat("prev");
+        mQuitApp = monitor.getStat("quitApp");
+        mSelect = monitor.getStat("select");
+    }
+
+    /**
+     * @param listener 监听，null表示取消
+     */
+    void setListener(IVIAVIn.AVInListener listener) {
+        mListener = listener;
+    }
+
+    @Override
+    public void onVideoSignalChanged(int avId, int signal) {
+        final IVIAVIn.AVInListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onVideoSignalChanged(avId, signal);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnVideoSignalChanged, e);
+            }
+            mMonitor.end(mOnVideoSignalChanged, begin);
+        }
+    }
+
+    @Override
+    public void onCvbsTypeChanged(int avId, int cvbsType) {
+        final IVIAVIn.AVInListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onCvbsTypeChanged(avId, cvbsType);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnCvbsTypeChanged, e);
+            }
+            mMonitor.end(mOnCvbsTypeChanged, begin);
+        }
+    }
+
+    @Override
+    public void onVideoPermitChanged(boolean show) {
+        final IVIAVIn.AVInListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onVideoPermitChanged(show);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnVideoPermitChanged, e);
+            }
+            mMonitor.end(mOnVideoPermitChanged, begin);
+        }
+    }
+
+    @Override
+    public void stop() {
+        final IVIAVIn.AVInListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.stop();
+            } catch (RuntimeException e) {
+                mMonitor.fail(mStop, e);
+            }
+            mMonitor.end(mStop, begin);
+        }
+    }
+
+    @Override
+    public void resume() {
+        final IVIAVIn.AVInListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.resume();
+            } catch (RuntimeException e) {
+                mMonitor.fail(mResume, e);
+            }
+            mMonitor.end(mResume, begin);
+        }
+    }
+
+    @Override
+    public void next() {
+        final IVIAVIn.AVInListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.next();
+            } catch (RuntimeException e) {
+                mMonitor.fail(mNext, e);
+            }
+            mMonitor.end(mNext, begin);
+        }
+    }
+
+    @Override
+    public void prev() {
+        final IVIAVIn.AVInListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.prev();
+            } catch (RuntimeException e) {
+                mMonitor.fail(mPrev, e);
+            }
+            mMonitor.end(mPrev, begin);
+        }
+    }
+
+    @Override
+    public void quitApp() {
+        final IVIAVIn.AVInListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.quitApp();
+            } catch (RuntimeException e) {
+                mMonitor.fail(mQuitApp, e);
+            }
+            mMonitor.end(mQuitApp, begin);
+        }
+    }
+
+    @Override
+    public void select(int index) {
+        final IVIAVIn.AVInListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.select(index);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mSelect, e);
+            }
+            mMonitor.end(mSelect, begin);
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.roadrover.sdk.avin;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.SurfaceHolder;
+
+import com.roadrover.sdk.car.IVICar;
+import com.roadrover.sdk.utils.LatencyHistogram;
+import com.roadrover.sdk.utils.Logcat;
+
+import org.greenrobot.eventbus.Subscribe;
+import org.greenrobot.eventbus.ThreadMode;
+
+/**
+ * 倒车摄像头热备 <br/>
+ * ACC 打开期间保持摄像头打开、预览窗口绑定，倒车时只需要调用一次 startPreview；ACC 关闭时才释放摄像头。<br/>
+ * 通过 CarManager.registerEventBus(standby) 注册之后，直接由 {@link IVICar.Acc} 和 {@link IVICar.Ccd} 的粘性事件驱动，
+ * 注册时会立即收到最近一次的 ACC 和 CCD 状态。<br/>
+ * 每次倒车都会统计从收到 CCD ON 到第一帧的时间，通过 {@link OnFirstFrameListener} 回调并打印日志，
+ * 热备和冷启动的出图时间分别记录到直方图，见 {@link #getTimeToFirstFrameHistogram(boolean)}。
+ */
+public class ReverseCameraStandby {
+
+    /**
+     * 倒车出图时间回调
+     */
+    public interface OnFirstFrameListener {
+        /**
+         * 收到第一帧，在主线程中回调
+         * @param timeToFirstFrame 从收到 CCD ON 到第一帧的时间，单位ms
+         * @param warm 是否是热备状态下开始的预览，false 表示倒车时摄像头还没有打开
+         */
+        void onFirstFrame(long timeToFirstFrame, boolean warm);
+    }
+
+    private final Context mContext;
+    private final int mCameraId;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    private CameraUtil mCamera = null;
+    private SurfaceHolder mSurfaceHolder = null;
+    private IVIAVIn.AVInListener mAVInListener = null;
+    private OnFirstFrameListener mOnFirstFrameListener = null;
+
+    private boolean mAccOn = false;
+    private boolean mPreviewing = false;
+    private boolean mWarmStart = false;
+    /** 收到 CCD ON 的时间，System.nanoTime()，0表示没有在等待第一帧 */
+    private long mCcdOnTime = 0;
+    /** 最近一次的倒车出图时间，单位ms，-1表示还没有统计到 */
+    private long mLastTimeToFirstFrame = -1;
+    private final LatencyHistogram mWarmFirstFrame = new LatencyHistogram(); // 热备状态下的出图时间
+    private final LatencyHistogram mColdFirstFrame = new LatencyHistogram(); // 倒车时才打开摄像头的出图时间
+    private final LatencyHistogram mPrepareTime = new LatencyHistogram(); // 打开摄像头并绑定预览窗口的时间
+
+    /**
+     * @param context
+     * @param cameraId 倒车摄像头的id
+     */
+    public ReverseCameraStandby(Context context, int cameraId) {
+        mContext = (context != null) ? context.getApplicationContext() : null;
+        mCameraId = cameraId;
+    }
+
+    /**
+     * 设置预览窗口，摄像头已经打开时立即绑定，之后倒车不需要再绑定
+     * @param holder
+     */
+    public void setPreviewDisplay(SurfaceHolder holder) {
+        mSurfaceHolder = holder;
+        bindSurface();
+    }
+
+    /**
+     * 设置视频信号的回调
+     * @param listener
+     */
+    public void setAVInCallback(IVIAVIn.AVInListener listener) {
+        mAVInListener = listener;
+        if (mCamera != null) {
+            mCamera.setAVInCallback(listener);
+        }
+    }
+
+    /**
+     * 设置倒车出图时间的回调
+     * @param listener
+     */
+    public void setOnFirstFrameListener(OnFirstFrameListener listener) {
+        mOnFirstFrameListener = listener;
+    }
+
+    /**
+     * 获取最近一次的倒车出图时间
+     * @return 单位ms，-1表示还没有统计到
+     */
+    public long getLastTimeToFirstFrame() {
+        return mLastTimeToFirstFrame;
+    }
+
+    /**
+     * 获取出图时间的直方图，单位us，可以用来比较热备和冷启动的效果
+     * @param warm true 热备状态下开始的预览，false 倒车时才打开摄像头的预览
+     */
+    public LatencyHistogram getTimeToFirstFrameHistogram(boolean warm) {
+        return warm ? mWarmFirstFrame : mColdFirstFrame;
+    }
+
+    /**
+     * 获取打开摄像头并绑定预览窗口的时间的直方图，单位us，即热备省掉的时间
+     */
+    public LatencyHistogram getPrepareHistogram() {
+        return mPrepareTime;
+    }
+
+    /**
+     * 摄像头是否已经打开
+     * @return
+     */
+    public boolean isPrepared() {
+        return mCamera != null;
+    }
+
+    @Subscribe(threadMode = ThreadMode.MAIN, sticky = true)
+    public void onEventAcc(IVICar.Acc event) {
+        if (event != null) {
+            onAccChanged(event.mOn);
+        }
+    }
+
+    @Subscribe(threadMode = ThreadMode.MAIN, sticky = true)
+    public void onEventCcd(IVICar.Ccd event) {
+        if (event != null) {
+            onCcdChanged(event.mStatus);
+        }
+    }
+
+    /**
+     * ACC 状态改变，打开时预先打开摄像头，关闭时释放摄像头
+     * @param on
+     */
+    public void onAccChanged(boolean on) {
+        Logcat.d("on:" + on);
+        mAccOn = on;
+        if (on) {
+            prepare();
+        } else if (!mPreviewing) {
+            release();
+        }
+    }
+
+    /**
+     * CCD 状态改变，打开时开始预览，关闭时只停止预览，摄像头保持打开
+     * @param status {@link IVICar.Ccd.Status}
+     */
+    public void onCcdChanged(int status) {
+        Logcat.d("status:" + IVICar.Ccd.Status.getName(status));
+        if (status == IVICar.Ccd.Status.ON || status == IVICar.Ccd.Status.ALREADY_ON) {
+            startPreview();
+        } else if (status == IVICar.Ccd.Status.OFF) {
+            stopPreview();
+            if (!mAccOn) {
+                release();
+            }
+        }
+    }
+
+    /**
+     * 打开摄像头并绑定预览窗口
+     */
+    public void prepare() {
+        if (mCamera != null) {
+            return;
+        }
+
+        final long start = System.nanoTime();
+        if (CameraUtil.isATCPlatform()) {
+            ATCCamera.warmUp();
+        }
+        try {
+            mCamera = CameraUtil.open(mCameraId, mContext);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            mCamera = null;
+            return;
+        }
+        mCamera.setAVInCallback(mAVInListener);
+        mCamera.setOnFirstFrameListener(new CameraUtil.OnFirstFrameListener() {
+            @Override
+            public void onFirstFrame() {
+                final long now = System.nanoTime();
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onFirstFrameArrived(now);
+                    }
+                });
+            }
+        });
+        bindSurface();
+        final long micros = (System.nanoTime() - start) / 1000;
+        mPrepareTime.record(micros);
+        Logcat.d("camera " + mCameraId + " prepared in " + micros / 1000 + "ms");
+    }
+
+    /**
+     * 开始倒车预览，摄像头没有打开时先打开
+     */
+    public void startPreview() {
+        if (mPreviewing) {
+            return;
+        }
+
+        mCcdOnTime = System.nanoTime();
+        mWarmStart = (mCamera != null);
+        prepare();
+        if (mCamera == null) {
+            mCcdOnTime = 0;
+            return;
+        }
+        mCamera.startPreview();
+        mPreviewing = true;
+    }
+
+    /**
+     * 停止倒车预览，不释放摄像头
+     */
+    public void stopPreview() {
+        if (!mPreviewing) {
+            return;
+        }
+
+        mPreviewing = false;
+        mCcdOnTime = 0;
+        if (mCamera != null) {
+            mCamera.stopPreview();
+        }
+    }
+
+    /**
+     * 释放摄像头
+     */
+    public void release() {
+        stopPreview();
+        if (mCamera != null) {
+            mCamera.setOnFirstFrameListener(null);
+            mCamera.setAVInCallback(null);
+            mCamera.release();
+            mCamera = null;
+            Logcat.d("camera " + mCameraId + " released");
+        }
+    }
+
+    private void bindSurface() {
+        if (mCamera != null && mSurfaceHolder != null) {
+            try {
+                mCamera.setPreviewDisplay(mSurfaceHolder);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void onFirstFrameArrived(long time) {
+        if (mCcdOnTime == 0) {
+            return;
+        }
+
+        final long micros = (time - mCcdOnTime) / 1000;
+        mLastTimeToFirstFrame = micros / 1000;
+        mCcdOnTime = 0;
+        final LatencyHistogram histogram = getTimeToFirstFrameHistogram(mWarmStart);
+        histogram.record(micros);
+        Logcat.d("time to first frame:" + mLastTimeToFirstFrame + "ms warm:" + mWarmStart + " " + histogram);
+        if (mOnFirstFrameListener != null) {
+            mOnFirstFrameListener.onFirstFrame(mLastTimeToFirstFrame, mWarmStart);
+        }
+    }
+}
@@ -105,6 +105,11 @@ public class BluetoothManager extends BaseManager {
         super.disconnect();
     }
 
+    @Override
+    protected boolean isUrgentEvent(Object object) {
+        return object instanceof IVIBluetooth.CallStatus; // 来电不能被电话本等大量数据延迟
+    }
+
     @Override
     protected String getServiceActionName() {
         return ServiceAction.BLUETOOTH_ACTION;
@@ -112,7 +117,7 @@ public class BluetoothManager extends BaseManager {
 
     @Override
     protected void onServiceConnected(IBinder service) {
-        mIBluetooth = IBluetooth.Stub.asInterface(service);
+        mIBluetooth = wrapInterface(IBluetooth.class, IBluetooth.Stub.asInterface(service));
     }
 
     @Override
@@ -1863,7 +1868,7 @@ public class BluetoothManager extends BaseManager {
     private IBluetoothVCardCallback.Stub mIBluetoothVCardCallback = new IBluetoothVCardCallback.Stub() {
         @Override
         public void onProgress(List<BluetoothVCardBook> books) throws RemoteException {
-            Logcat.d("books.size:" + books.size());
+            Logcat.dFormat("books.size:%d", books.size());
             startGetVCardTimer();
             post(new IVIBluetooth.EventVCard(IVIBluetooth.EventVCard.ON_PROGRESS, -1, "", books));
         }
@@ -28,6 +28,7 @@ import java.util.Set;
 public class CarManager extends BaseManager {
     private ICar mCarInterface;
     private CarListener mCarListener;
+    private final DirectCarListener mDirectCar = new DirectCarListener(mDirectCallbackMonitor); // 在binder线程中直接回调的监听
     private Set<Integer> mFilters = new HashSet<Integer>();
     private int mCarId;
     private int mDoorStatusMask, mDoorOldStatusMask;
@@ -140,6 +141,16 @@ public class CarManager extends BaseManager {
         mCarListener = carListener;
     }
 
+    /**
+     * 设置在binder线程中直接回调的监听，不经过EventBus和主线程，适合全景、仪表这类对延时敏感的应用 <br/>
+     * 回调时services在等待返回，监听里不能做耗时操作，也不能直接操作界面，
+     * 耗时见 {@link #getDirectCallbackMonitor()}；和构造函数传入的监听互不影响，可以同时使用
+     * @param listener 监听，null表示取消
+     */
+    public void setDirectCarListener(CarListener listener) {
+        mDirectCar.setListener(listener);
+    }
+
     @Override
     public void disconnect() {
         if (mCarCallback != null) {
@@ -148,6 +159,7 @@ public class CarManager extends BaseManager {
         }
         mCarInterface = null;
         mCarListener = null;
+        mDirectCar.setListener(null);
         mFilters = null;
         mClimates = null;
         mRadar = null;
@@ -157,6 +169,11 @@ public class CarManager extends BaseManager {
         super.disconnect();
     }
 
+    @Override
+    protected boolean isUrgentEvent(Object object) {
+        return object instanceof IVIKey.Key || object instanceof IVICar.Ccd; // 方控按键和倒车不能被其它事件延迟
+    }
+
     @Override
     protected String getServiceActionName() {
         return ServiceAction.CAR_ACTION;
@@ -165,7 +182,7 @@ public class CarManager extends BaseManager {
     @Override
     protected void onServiceConnected(IBinder service) {
         Logcat.d();
-        mCarInterface = ICar.Stub.asInterface(service);
+        mCarInterface = wrapInterface(ICar.class, ICar.Stub.asInterface(service));
         registerCallback(mCarCallback);
         if (mFilters != null) {
             for (Integer id : mFilters) {
@@ -443,21 +460,25 @@ public class CarManager extends BaseManager {
     private ICarCallback mCarCallback = new ICarCallback.Stub() {
         @Override
         public void onMcuVersion(String version) {
+            mDirectCar.onMcuVersion(version);
             post(new IVICar.EventMcuVersion(version));
         }
 
         @Override
         public void onAccChanged(boolean on) {
+            mDirectCar.onAccChanged(on);
             postSticky(new IVICar.Acc(on));
         }
 
         @Override
         public void onCcdChanged(int status) {
+            mDirectCar.onCcdChanged(status);
             postSticky(new IVICar.Ccd(status));
         }
 
         @Override
         public void onHandbrakeChanged(boolean hold) {
+            mDirectCar.onHandbrakeChanged(hold);
             post(new IVICar.Handbrake(hold));
         }
 
@@ -465,17 +486,20 @@ public class CarManager extends BaseManager {
         public void onDoorChanged(int changeMask, int statusMask) {
             mDoorOldStatusMask = mDoorStatusMask;
             mDoorStatusMask = statusMask;
+            mDirectCar.onDoorChanged(changeMask, statusMask);
             post(new IVICar.Door(changeMask, statusMask));
         }
 
         @Override
         public void onLightChanged(int changeMask, int statusMask) {
             mLightStatusMask = statusMask;
+            mDirectCar.onLightChanged(changeMask, statusMask);
             post(new IVICar.Light(changeMask, statusMask));
         }
 
         @Override
         public void onHeadLightChanged(boolean on) {
+            mDirectCar.onHeadLightChanged(on);
             post(new IVICar.HeadLight(on));
         }
 
@@ -490,99 +514,119 @@ public class CarManager extends BaseManager {
             if (id == Climate.Id.INSIDE_TEMP) {
                 post(new IVICar.InsideTemp(rawValue));
             } else {
+                mDirectCar.onClimateChanged(id, rawValue);
                 post(new Climate(id, rawValue));
             }
         }
 
         @Override
         public void onOutsideTempChanged(int rawValue) {
+            mDirectCar.onOutsideTempChanged(IVICar.OutsideTemp.getTemp(rawValue, IVICar.TemperatureUnit.C));
             post(new IVICar.OutsideTemp(rawValue));
         }
 
         @Override
         public void onTirePressureChanged(int id, int rawValue, int extraValue, int dotType) {
+            mDirectCar.onTirePressureChanged(id, rawValue, extraValue, dotType);
             post(new TirePressure(id, rawValue, extraValue, dotType));
         }
 
         @Override
         public void onEventHardwareVersion(int status, String hardware, String supplier, String ecn, String date, String manufactureDate) throws RemoteException {
+            mDirectCar.onEventHardwareVersion(status, hardware, supplier, ecn, date, manufactureDate);
             post(new HardwareVersion(status, hardware, supplier, ecn, date, manufactureDate));
         }
 
         @Override
         public void onKeyPushed(int id, int type) {
+            mDirectCar.onKeyPushed(id, type);
             post(new IVIKey.Key(id, type));
         }
 
         @Override
         public void onAlertMessage(int messageCode) {
+            mDirectCar.onAlertMessage(messageCode);
             post(new IVICar.AlertMessage(messageCode));
         }
 
         @Override
         public void onRealTimeInfoChanged(int id, float value) {
+            mDirectCar.onRealTimeInfoChanged(id, value);
             post(new IVICar.RealTimeInfo(id, value));
         }
 
         @Override
         public void onTripChanged(int id, int index, float value) {
+            mDirectCar.onTripChanged(id, index, value);
             post(new Trip(id, index, value));
         }
 
         @Override
         public void onExtraStateChanged(int id, float value) {
+            mDirectCar.onExtraStateChanged(id, value);
             post(new IVICar.ExtraState(id, value));
         }
 
         @Override
         public void onRadarChanged(int radarType, byte[] radarData) {
-            mRadar = new IVICar.Radar(radarType, radarData);
-            post(mRadar);
+            final IVICar.Radar radar = new IVICar.Radar(radarType, radarData);
+            mRadar = radar;
+            mDirectCar.onRadarChanged(radar);
+            post(radar);
         }
 
         @Override
         public void onCarSettingChanged(int carId, byte[] data) {
+            mDirectCar.onCarSettingChanged(carId, data);
             post(new IVICar.Setting(carId, data));
         }
 
         @Override
         public void onExtraDeviceChanged(int carId, int deviceId, byte[] extraDeviceData) {
+            mDirectCar.onExtraDeviceChanged(carId, deviceId, extraDeviceData);
             mExtraDevice = new IVICar.ExtraDevice(carId, deviceId, extraDeviceData);
             post(mExtraDevice);
         }
 
         @Override
         public void onCmdParamChanged(int id, byte[] paramData) {
+            mDirectCar.onCmdParamChanged(id, paramData);
             post(new IVICar.CmdParam(id, paramData));
         }
 
         @Override
         public void onMaintenanceChanged(int id, int mileage, int days) {
+            mDirectCar.onMaintenanceChanged(id, mileage, days);
             post(new IVICar.Maintenance(id, mileage, days));
         }
 
         @Override
         public void onCarVINChanged(String VIN, int keyNumber) {
+            mDirectCar.onCarVINChanged(VIN, keyNumber);
             post(new IVICar.CarVIN(VIN, keyNumber));
         }
 
         @Override
         public void onCarReportChanged(int carid, int type, int[] list) {
+            mDirectCar.onCarReportChanged(carid, type, list);
             post(new IVICar.CarReport(carid, type, list));
         }
 
         @Override
         public void onAutoParkChanged(int status) {
+            mDirectCar.onAutoParkChanged(new IVICar.AutoPark(status));
             post(new IVICar.AutoPark(status));
         }
 		
 		@Override
         public void onEnergyFlowChanged(int battery, int engineToTyre, int engineToMotor, int motorToTyre, int motorToBattery){
+            mDirectCar.onEnergyFlowChanged(battery, engineToTyre, engineToMotor, motorToTyre, motorToBattery);
             post(new IVICar.EnergyFlow(battery, engineToTyre, engineToMotor, motorToTyre, motorToBattery));
         }
 
         @Override
         public void onFastReverseChanged(boolean on) {
+            mDirectCar.onFastReverseChanged(on);
             post(new IVICar.FastReverse(on));
         }
 
@@ -0,0 +1,442 @@
+package com.roadrover.sdk.car;
+
+import com.roadrover.sdk.DirectCallbackMonitor;
+
+/**
+ * 在binder线程中直接回调的监听，见 {@link CarManager#setDirectCarListener(CarManager.CarListener)} <br/>
+ * 没有设置监听时直接返回；设置了时直接调用并统计耗时，监听抛出的异常在这里捕获，不影响之后的 EventBus 通知
+ */
+final class DirectCarListener implements CarManager.CarListener {
+
+    private final DirectCallbackMonitor mMonitor;
+    private final DirectCallbackMonitor.Stat mOnMcuVersion;
+    private final DirectCallbackMonitor.Stat mOnAccChanged;
+    private final DirectCallbackMonitor.Stat mOnCcdChanged;
+    private final DirectCallbackMonitor.Stat mOnHandbrakeChanged;
+    private final DirectCallbackMonitor.Stat mOnDoorChanged;
+    private final DirectCallbackMonitor.Stat mOnLightChanged;
+    private final DirectCallbackMonitor.Stat mOnHeadLightChanged;
+    private final DirectCallbackMonitor.Stat mOnClimateChanged;
+    private final DirectCallbackMonitor.Stat mOnOutsideTempChanged;
+    private final DirectCallbackMonitor.Stat mOnTirePressureChanged;
+    private final DirectCallbackMonitor.Stat mOnKeyPushed;
+    private final DirectCallbackMonitor.Stat mOnAlertMessage;
+    private final DirectCallbackMonitor.Stat mOnRealTimeInfoChanged;
+    private final DirectCallbackMonitor.Stat mOnRadarChanged;
+    private final DirectCallbackMonitor.Stat mOnTripChanged;
+    private final DirectCallbackMonitor.Stat mOnExtraStateChanged;
+    private final DirectCallbackMonitor.Stat mOnCarSettingChanged;
+    private final DirectCallbackMonitor.Stat mOnExtraDeviceChanged;
+    private final DirectCallbackMonitor.Stat mOnCmdParamChanged;
+    private final DirectCallbackMonitor.Stat mOnMaintenanceChanged;
+    private final DirectCallbackMonitor.Stat mOnCarVINChanged;
+    private final DirectCallbackMonitor.Stat mOnCarReportChanged;
+    private final DirectCallbackMonitor.Stat mOnAutoParkChanged;
+    private final DirectCallbackMonitor.Stat mOnEnergyFlowChanged;
+    private final DirectCallbackMonitor.Stat mOnFastReverseChanged;
+    private final DirectCallbackMonitor.Stat mOnEventHardwareVersion;
+    private volatile CarManager.CarListener mListener = null;
+
+    DirectCarListener(DirectCallbackMonitor monitor) {
+        mMonitor = monitor;
+        mOnMcuVersion = monitor.getStat("onMcuVersion");
+        mOnAccChanged = monitor.getStat("onAccChanged");
+        mOnCcdChanged = monitor.getStat("onCcdChanged");
+        mOnHandbrakeChanged = monitor.getStat("onHandbrakeChanged");
+        mOnDoorChanged = monitor.getStat("onDoorChanged");
+        mOnLightChanged = monitor.getStat("onLightChanged");
+        mOnHeadLightChanged = monitor.getStat("onHeadLightChanged");
+        mOnClimateChanged = monitor.getStat("onClimateChanged");
+        mOnOutsideTempChanged = monitor.getStat("onOutsideTempChanged");
+        mOnTirePressureChanged = monitor.getStat("onTirePressureChanged");
+        mOnKeyPushed = monitor.getStat("onKeyPushed");
+        mOnAlertMessage = monitor.getStat("onAlertMessage");
+        mOnRealTimeInfoChanged = monitor.getStat("onRealTimeInfoChanged");
+        mOnRadarChanged = monitor.getStat("onRadarChanged");
+        mOnTripChanged = monitor.getStat("onTripChanged");
+        mOnExtraStateChanged = monitor.getStat("onExtraStateChanged");
+        mOnCarSettingChanged = monitor.getStat("onCarSettingChanged");
+        mOnExtraDeviceChanged = monitor.getStat("onExtraDeviceChanged");
+        mOnCmdParamChanged = monitor.getStat("onCmdParamChanged");
+        mOnMaintenanceChanged = monitor.getStat("onMaintenanceChanged");
+        mOnCarVINChanged = monitor.getStat("onCarVINChanged");
+        mOnCarReportChanged = monitor.getStat("onCarReportChanged");
+        mOnAutoParkChanged = monitor.getStat("onAutoParkChanged");
+        mOnEnergyFlowChanged = monitor.getStat("onEnergyFlowChanged");
+        mOnFastReverseChanged = monitor.getStat("onFastReverseChanged");
+        mOnEventHardwareVersion = monitor.getStat("onEventHardwareVersion");
+    }
+
+    /**
+     * @param listener 监听，null表示取消
+     */
+    void setListener(CarManager.CarListener listener) {
+        mListener = listener;
+    }
+
+    @Override
+    public void onMcuVersion(String version) {
+        final CarManager.CarListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onMcuVersion(version);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnMcuVersion, e);
+            }
+            mMonitor.end(mOnMcuVersion, begin);
+        }
+    }
+
+    @Override
+    public void onAccChanged(boolean on) {
+        final CarManager.CarListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onAccChanged(on);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnAccChanged, e);
+            }
+            mMonitor.end(mOnAccChanged, begin);
+        }
+    }
+
+    @Override
+    public void onCcdChanged(int status) {
+        final CarManager.CarListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onCcdChanged(status);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnCcdChanged, e);
+            }
+            mMonitor.end(mOnCcdChanged, begin);
+        }
+    }
+
+    @Override
+    public void onHandbrakeChanged(boolean hold) {
+        final CarManager.CarListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onHandbrakeChanged(hold);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnHandbrakeChanged, e);
+            }
+            mMonitor.end(mOnHandbrakeChanged, begin);
+        }
+    }
+
+    @Override
+    public void onDoorChanged(int changeMask, int statusMask) {
+        final CarManager.CarListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onDoorChanged(changeMask, statusMask);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnDoorChanged, e);
+            }
+            mMonitor.end(mOnDoorChanged, begin);
+        }
+    }
+
+    @Override
+    public void onLightChanged(int changeMask, int statusMask) {
+        final CarManager.CarListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onLightChanged(changeMask, statusMask);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnLightChanged, e);
+            }
+            mMonitor.end(mOnLightChanged, begin);
+        }
+    }
+
+    @Override
+    public void onHeadLightChanged(boolean on) {
+        final CarManager.CarListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onHeadLightChanged(on);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnHeadLightChanged, e);
+            }
+            mMonitor.end(mOnHeadLightChanged, begin);
+        }
+    }
+
+    @Override
+    public void onClimateChanged(int id, int rawValue) {
+        final CarManager.CarListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onClimateChanged(id, rawValue);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnClimateChanged, e);
+            }
+            mMonitor.end(mOnClimateChanged, begin);
+        }
+    }
+
+    @Override
+    public void onOutsideTempChanged(float tempC) {
+        final CarManager.CarListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onOutsideTempChanged(tempC);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnOutsideTempChanged, e);
+            }
+            mMonitor.end(mOnOutsideTempChanged, begin);
+        }
+    }
+
+    @Override
+    public void onTirePressureChanged(int id, int rawValue, int extraValue, int dotType) {
+        final CarManager.CarListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onTirePressureChanged(id, rawValue, extraValue, dotType);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnTirePressureChanged, e);
+            }
+            mMonitor.end(mOnTirePressureChanged, begin);
+        }
+    }
+
+    @Override
+    public void onKeyPushed(int id, int type) {
+        final CarManager.CarListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onKeyPushed(id, type);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnKeyPushed, e);
+            }
+            mMonitor.end(mOnKeyPushed, begin);
+        }
+    }
+
+    @Override
+    public void onAlertMessage(int messageCode) {
+        final CarManager.CarListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onAlertMessage(messageCode);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnAlertMessage, e);
+            }
+            mMonitor.end(mOnAlertMessage, begin);
+        }
+    }
+
+    @Override
+    public void onRealTimeInfoChanged(int id, float value) {
+        final CarManager.CarListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onRealTimeInfoChanged(id, value);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnRealTimeInfoChanged, e);
+            }
+            mMonitor.end(mOnRealTimeInfoChanged, begin);
+        }
+    }
+
+    @Override
+    public void onRadarChanged(IVICar.Radar radar) {
+        final CarManager.CarListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onRadarChanged(radar);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnRadarChanged, e);
+            }
+            mMonitor.end(mOnRadarChanged, begin);
+        }
+    }
+
+    @Override
+    public void onTripChanged(int id, int index, float value) {
+        final CarManager.CarListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onTripChanged(id, index, value);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnTripChanged, e);
+            }
+            mMonitor.end(mOnTripChanged, begin);
+        }
+    }
+
+    @Override
+    public void onExtraStateChanged(int id, float value) {
+        final CarManager.CarListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onExtraStateChanged(id, value);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnExtraStateChanged, e);
+            }
+            mMonitor.end(mOnExtraStateChanged, begin);
+        }
+    }
+
+    @Override
+    public void onCarSettingChanged(int carId, byte[] data) {
+        final CarManager.CarListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onCarSettingChanged(carId, data);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnCarSettingChanged, e);
+            }
+            mMonitor.end(mOnCarSettingChanged, begin);
+        }
+    }
+
+    @Override
+    public void onExtraDeviceChanged(int carId, int deviceId, byte[] extraDeviceData) {
+        final CarManager.CarListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onExtraDeviceChanged(carId, deviceId, extraDeviceData);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnExtraDeviceChanged, e);
+            }
+            mMonitor.end(mOnExtraDeviceChanged, begin);
+        }
+    }
+
+    @Override
+    public void onCmdParamChanged(int id, byte[] paramData) {
+        final CarManager.CarListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onCmdParamChanged(id, paramData);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnCmdParamChanged, e);
+            }
+            mMonitor.end(mOnCmdParamChanged, begin);
+        }
+    }
+
+    @Override
+    public void onMaintenanceChanged(int id, int mileage, int days) {
+        final CarManager.CarListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onMaintenanceChanged(id, mileage, days);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnMaintenanceChanged, e);
+            }
+            mMonitor.end(mOnMaintenanceChanged, begin);
+        }
+    }
+
+    @Override
+    public void onCarVINChanged(String VIN, int keyNumber) {
+        final CarManager.CarListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onCarVINChanged(VIN, keyNumber);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnCarVINChanged, e);
+            }
+            mMonitor.end(mOnCarVINChanged, begin);
+        }
+    }
+
+    @Override
+    public void onCarReportChanged(int carid, int type, int[] list) {
+        final CarManager.CarListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onCarReportChanged(carid, type, list);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnCarReportChanged, e);
+            }
+            mMonitor.end(mOnCarReportChanged, begin);
+        }
+    }
+
+    @Override
+    public void onAutoParkChanged(IVICar.AutoPark status) {
+        final CarManager.CarListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onAutoParkChanged(status);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnAutoParkChanged, e);
+            }
+            mMonitor.end(mOnAutoParkChanged, begin);
+        }
+    }
+
+    @Override
+    public void onEnergyFlowChanged(int battery, int engineToTyre, int engineToMotor, int motorToTyre,
+            int motorToBattery) {
+        final CarManager.CarListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onEnergyFlowChanged(battery, engineToTyre, engineToMotor, motorToTyre, motorToBattery);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnEnergyFlowChanged, e);
+            }
+            mMonitor.end(mOnEnergyFlowChanged, begin);
+        }
+    }
+
+    @Override
+    public void onFastReverseChanged(boolean on) {
+        final CarManager.CarListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onFastReverseChanged(on);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnFastReverseChanged, e);
+            }
+            mMonitor.end(mOnFastReverseChanged, begin);
+        }
+    }
+
+    @Override
+    public void onEventHardwareVersion(int status, String hardware, String supplier, String ecn, String date,
+            String manufactureDate) {
+        final CarManager.CarListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onEventHardwareVersion(status, hardware, supplier, ecn, date, manufactureDate);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnEventHardwareVersion, e);
+            }
+            mMonitor.end(mOnEventHardwareVersion, begin);
+        }
+    }
+}
@@ -7,6 +7,8 @@ import com.roadrover.sdk.utils.IniFileUtil;
 import com.roadrover.sdk.utils.Logcat;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -143,23 +145,51 @@ public class StudyKeyUtil {
 
     /**
      * 存储学习完的方控表到ini文件
+     * 和文件中已有的表比较，只把新增、改变和删除的键值以一次事务追加到日志文件中，
+     * 不再整体重写ini文件，见 {@link IniFileUtil#enableJournal()}
      * @param list
      */
-    public static void saveListToFile(List<IVICar.StudyKeyItem> list) {
+    public static synchronized void saveListToFile(List<IVICar.StudyKeyItem> list) {
         if (list == null || list.size() == 0) {
             return;
         }
         if (checkRead() && mIniFileUtil != null) {
-            mIniFileUtil.remove(SECTION_STUDY_KEY);
+            Map<String, String> keyCodes = new LinkedHashMap<>();
             for (IVICar.StudyKeyItem item : list) {
-                mIniFileUtil.set(SECTION_STUDY_KEY,
-                        makeMixKeyId(item.mChannel, item.mMax, item.mMin),
+                keyCodes.put(makeMixKeyId(item.mChannel, item.mMax, item.mMin),
                         makeMixKeyValue(item.mShortAction, item.mLongAction));
             }
-            mIniFileUtil.save();
+
+            IniFileUtil.Section section = mIniFileUtil.get(SECTION_STUDY_KEY);
+            if (section != null) {
+                List<String> removed = new ArrayList<>();
+                for (String key : section.getValues().keySet()) {
+                    if (!keyCodes.containsKey(key)) {
+                        removed.add(key);
+                    }
+                }
+                for (String key : removed) {
+                    mIniFileUtil.remove(SECTION_STUDY_KEY, key);
+                }
+            }
+            for (Map.Entry<String, String> entry : keyCodes.entrySet()) {
+                Object value = (section != null) ? section.get(entry.getKey()) : null;
+                if (value == null || !TextUtils.equals(value.toString(), entry.getValue())) {
+                    mIniFileUtil.set(SECTION_STUDY_KEY, entry.getKey(), entry.getValue());
+                }
+            }
+            mIniFileUtil.save(); // 没有改变时不会写日志
         }
     }
 
+    /**
+     * 把日志中的修改整体写回ini文件，可以在ACC OFF等空闲时调用
+     * @return 成功返回true，失败时日志保留，下次加载时依然有效
+     */
+    public static synchronized boolean compact() {
+        return mIniFileUtil != null && mIniFileUtil.compact();
+    }
+
     /**
      * 检查可读
      */
@@ -169,6 +199,7 @@ public class StudyKeyUtil {
             if (file.exists()) {
                 Logcat.d("ready to read " + INI_STUDY_FILE_PATH);
                 mIniFileUtil = new IniFileUtil(file);
+                mIniFileUtil.enableJournal(); // 方控学习会频繁写入，使用日志模式
                 return true;
             } else {
                 Logcat.e("failed, file " + INI_STUDY_FILE_PATH + " not exist.");
@@ -20,6 +20,11 @@ public class DABManager extends BaseManager {
      */
     private IDAB mDABInterface = null;
 
+    /**
+     * 集合/服务/服务组件数据库
+     */
+    private volatile DABServiceDatabase mServiceDatabase = null;
+
     /**
      * DAB服务回调对象
      */
@@ -27,17 +32,69 @@ public class DABManager extends BaseManager {
 
         @Override
         public void onSystemNotification(int systemState) throws RemoteException {
+            final DABServiceDatabase database = mServiceDatabase;
+            if (database != null) {
+                database.onSystemNotification(systemState);
+            }
             post(new IVIDAB.EventSystemStateChanged(systemState));
         }
+
+        @Override
+        public void onEnsembleUpdate(int eid, int frequency, String label) throws RemoteException {
+            final DABServiceDatabase database = mServiceDatabase;
+            if (database != null) {
+                database.onEnsembleUpdate(eid, frequency, label);
+            }
+        }
+
+        @Override
+        public void onServiceUpdate(int eid, int sid, String label, int pty) throws RemoteException {
+            final DABServiceDatabase database = mServiceDatabase;
+            if (database != null) {
+                database.onServiceUpdate(eid, sid, label, pty);
+            }
+        }
+
+        @Override
+        public void onComponentUpdate(int sid, int scids, String label, int type) throws RemoteException {
+            final DABServiceDatabase database = mServiceDatabase;
+            if (database != null) {
+                database.onComponentUpdate(sid, scids, label, type);
+            }
+        }
     };
 
+    /**
+     * 构造，同时在后台加载上次保存的服务数据库，加载完成后以 {@link IVIDAB.EventServiceDatabaseChanged} 通知
+     */
     public DABManager(Context context, ConnectListener connectListener) {
         super(context, connectListener, true);
+        if (mContext != null) {
+            mServiceDatabase = new DABServiceDatabase(mContext, new DABServiceDatabase.OnChangedListener() {
+                @Override
+                public void onChanged(IVIDAB.EventServiceDatabaseChanged event) {
+                    post(event);
+                }
+            });
+        }
+    }
+
+    /**
+     * 获取集合/服务/服务组件数据库，不需要等待扫描，数据库的改变通过 {@link IVIDAB.EventServiceDatabaseChanged} 获取
+     * @return context 为空或者 {@link #disconnect()} 之后返回null
+     */
+    public DABServiceDatabase getServiceDatabase() {
+        return mServiceDatabase;
     }
 
     @Override
     public void disconnect() {
         mDABCallback = null;
+        final DABServiceDatabase database = mServiceDatabase;
+        mServiceDatabase = null;
+        if (database != null) {
+            database.release();
+        }
 
         super.disconnect();
     }
@@ -49,7 +106,7 @@ public class DABManager extends BaseManager {
 
     @Override
     protected void onServiceConnected(IBinder service) {
-        mDABInterface = IDAB.Stub.asInterface(service);
+        mDABInterface = wrapInterface(IDAB.class, IDAB.Stub.asInterface(service));
     }
 
     @Override
@@ -137,6 +194,32 @@ public class DABManager extends BaseManager {
         return null;
     }
 
+    /**
+     * 调谐到数据库中已知的服务，不需要全频段扫描
+     * @param sid 服务id
+     * @param scids 服务组件id，0为主组件
+     * @return 服务或者所在的集合不在数据库中，或者服务没有连接返回false，此时需要 {@link #triggerBandScan()}
+     */
+    public boolean selectService(int sid, int scids) {
+        final DABServiceDatabase database = mServiceDatabase; // disconnect 可能同时把它置空，只读一次
+        IVIDAB.Service service = (database != null) ? database.getService(sid) : null;
+        IVIDAB.Ensemble ensemble = (service != null) ? database.getEnsemble(service.mEId) : null;
+        if (ensemble == null) {
+            Logcat.d("unknown service " + sid);
+            return false;
+        }
+        if (mDABInterface != null) {
+            try {
+                return mDABInterface.selectService(ensemble.mFrequency, ensemble.mEId, sid, scids);
+            } catch (RemoteException e) {
+                e.printStackTrace();
+            }
+        } else {
+            Logcat.d("Service not connected");
+        }
+        return false;
+    }
+
     /**
      * 单个调谐器系统以触发全频段扫描
      */
@@ -0,0 +1,495 @@
+package com.roadrover.sdk.dab;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.text.TextUtils;
+import android.util.SparseArray;
+
+import com.roadrover.sdk.utils.Logcat;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * DAB 集合/服务/服务组件数据库
+ * 扫描时由服务端的回调增量填充，按 SId/EId 索引，保存到应用的私有目录，下次启动不需要扫描就可以显示服务列表；
+ * 改变的部分合并后以 {@link IVIDAB.EventServiceDatabaseChanged} 通知，
+ * 已知的服务可以通过 {@link DABManager#selectService(int, int)} 直接调谐
+ * @注意 返回的对象是共享的，调用者不要修改，数据改变时会替换成新的对象
+ */
+public final class DABServiceDatabase {
+
+    private static final int MAGIC = 0x52524442; // "RRDB"
+    private static final int VERSION = 1;
+    private static final String FILE_NAME = "dab-services.dat";
+    /**改变合并通知的时间，单位ms*/
+    private static final int NOTIFY_DELAY_MS = 200;
+    /**最后一次改变之后多久保存，单位ms*/
+    private static final int SAVE_DELAY_MS = 2000;
+
+    /**
+     * 数据库改变的回调，在数据库线程中执行
+     */
+    interface OnChangedListener {
+        void onChanged(IVIDAB.EventServiceDatabaseChanged event);
+    }
+
+    private static final Object sFileLock = new Object(); // 同一个进程多个 DABManager 时不能同时写文件
+
+    private final File mFile;
+    private final Handler mHandler; // 数据库线程，所有的修改和文件读写都在该线程
+    private final OnChangedListener mListener;
+
+    // 以下由 this 保护
+    private final SparseArray<IVIDAB.Ensemble> mEnsembles = new SparseArray<>(); // EId -> 集合
+    private final SparseArray<IVIDAB.Service> mServices = new SparseArray<>(); // SId -> 服务
+    private final Map<Long, IVIDAB.Component> mComponents = new LinkedHashMap<>(); // SId + SCIdS -> 服务组件
+    private boolean mLoaded = false;
+
+    // 以下只在数据库线程中使用
+    private final Map<Integer, IVIDAB.Ensemble> mChangedEnsembles = new LinkedHashMap<>();
+    private final Map<Integer, IVIDAB.Service> mChangedServices = new LinkedHashMap<>();
+    private final Map<Long, IVIDAB.Component> mChangedComponents = new LinkedHashMap<>();
+    private final List<IVIDAB.Ensemble> mRemovedEnsembles = new ArrayList<>();
+    private final List<IVIDAB.Service> mRemovedServices = new ArrayList<>();
+    private final List<IVIDAB.Component> mRemovedComponents = new ArrayList<>();
+    private boolean mNotifyScheduled = false;
+    private Set<Integer> mScannedEnsembles = null; // 扫描中收到的集合，不扫描时为空
+    private Set<Integer> mScannedServices = null; // 扫描中收到的服务，不扫描时为空
+
+    private final Runnable mNotifyRunnable = new Runnable() {
+        @Override
+        public void run() {
+            notifyChanged();
+        }
+    };
+
+    private final Runnable mSaveRunnable = new Runnable() {
+        @Override
+        public void run() {
+            save();
+        }
+    };
+
+    DABServiceDatabase(Context context, OnChangedListener listener) {
+        mFile = new File(context.getFilesDir(), FILE_NAME);
+        mListener = listener;
+        HandlerThread thread = new HandlerThread("DABServiceDatabase");
+        thread.start();
+        mHandler = new Handler(thread.getLooper());
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                load();
+            }
+        });
+    }
+
+    /**
+     * 保存未保存的改变，然后退出数据库线程，之后收到的数据都丢弃，在 {@link DABManager#disconnect()} 中调用
+     */
+    void release() {
+        mHandler.removeCallbacks(mNotifyRunnable);
+        mHandler.removeCallbacks(mSaveRunnable);
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                save();
+                mHandler.getLooper().quit();
+            }
+        });
+    }
+
+    /**
+     * 数据库是否已经从文件加载完成
+     */
+    public synchronized boolean isLoaded() {
+        return mLoaded;
+    }
+
+    /**
+     * 获取集合
+     * @param eid 集合id
+     * @return 没有返回null
+     */
+    public synchronized IVIDAB.Ensemble getEnsemble(int eid) {
+        return mEnsembles.get(eid);
+    }
+
+    /**
+     * 获取服务
+     * @param sid 服务id
+     * @return 没有返回null
+     */
+    public synchronized IVIDAB.Service getService(int sid) {
+        return mServices.get(sid);
+    }
+
+    /**
+     * 获取所有集合，按 EId 排列
+     */
+    public synchronized List<IVIDAB.Ensemble> getEnsembles() {
+        List<IVIDAB.Ensemble> ensembles = new ArrayList<>(mEnsembles.size());
+        for (int i = 0; i < mEnsembles.size(); ++i) {
+            ensembles.add(mEnsembles.valueAt(i));
+        }
+        return ensembles;
+    }
+
+    /**
+     * 获取所有服务，按 SId 排列
+     */
+    public synchronized List<IVIDAB.Service> getServices() {
+        List<IVIDAB.Service> services = new ArrayList<>(mServices.size());
+        for (int i = 0; i < mServices.size(); ++i) {
+            services.add(mServices.valueAt(i));
+        }
+        return services;
+    }
+
+    /**
+     * 获取一个集合中的所有服务
+     * @param eid 集合id
+     */
+    public synchronized List<IVIDAB.Service> getServices(int eid) {
+        List<IVIDAB.Service> services = new ArrayList<>();
+        for (int i = 0; i < mServices.size(); ++i) {
+            if (mServices.valueAt(i).mEId == eid) {
+                services.add(mServices.valueAt(i));
+            }
+        }
+        return services;
+    }
+
+    /**
+     * 获取一个服务的所有服务组件
+     * @param sid 服务id
+     */
+    public synchronized List<IVIDAB.Component> getComponents(int sid) {
+        List<IVIDAB.Component> components = new ArrayList<>();
+        for (IVIDAB.Component component : mComponents.values()) {
+            if (component.mSId == sid) {
+                components.add(component);
+            }
+        }
+        return components;
+    }
+
+    void onSystemNotification(final int systemState) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (systemState == IVIDAB.SystemState.BACKGROUND_SCAN_STARTED) {
+                    mScannedEnsembles = new HashSet<>();
+                    mScannedServices = new HashSet<>();
+                } else if (systemState == IVIDAB.SystemState.BACKGROUND_SCAN_FINISHED) {
+                    removeUnscanned();
+                }
+            }
+        });
+    }
+
+    void onEnsembleUpdate(final int eid, final int frequency, final String label) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (mScannedEnsembles != null) {
+                    mScannedEnsembles.add(eid);
+                }
+                synchronized (DABServiceDatabase.this) {
+                    IVIDAB.Ensemble old = mEnsembles.get(eid);
+                    if (old != null && old.mFrequency == frequency && TextUtils.equals(old.mLabel, label)) {
+                        return;
+                    }
+                    IVIDAB.Ensemble ensemble = new IVIDAB.Ensemble(eid, frequency, label);
+                    mEnsembles.put(eid, ensemble);
+                    mChangedEnsembles.put(eid, ensemble);
+                }
+                scheduleNotify();
+            }
+        });
+    }
+
+    void onServiceUpdate(final int eid, final int sid, final String label, final int pty) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (mScannedServices != null) {
+                    mScannedServices.add(sid);
+                }
+                synchronized (DABServiceDatabase.this) {
+                    IVIDAB.Service old = mServices.get(sid);
+                    if (old != null && old.mEId == eid && old.mPty == pty && TextUtils.equals(old.mLabel, label)) {
+                        return;
+                    }
+                    IVIDAB.Service service = new IVIDAB.Service(eid, sid, label, pty);
+                    mServices.put(sid, service);
+                    mChangedServices.put(sid, service);
+                }
+                scheduleNotify();
+            }
+        });
+    }
+
+    void onComponentUpdate(final int sid, final int scids, final String label, final int type) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                final long key = getComponentKey(sid, scids);
+                synchronized (DABServiceDatabase.this) {
+                    IVIDAB.Component old = mComponents.get(key);
+                    if (old != null && old.mType == type && TextUtils.equals(old.mLabel, label)) {
+                        return;
+                    }
+                    IVIDAB.Component component = new IVIDAB.Component(sid, scids, label, type);
+                    mComponents.put(key, component);
+                    mChangedComponents.put(key, component);
+                }
+                scheduleNotify();
+            }
+        });
+    }
+
+    /**
+     * 扫描完成后删除这次没有扫描到的集合和服务
+     */
+    private void removeUnscanned() {
+        if (mScannedEnsembles == null || mScannedServices == null) {
+            return;
+        }
+        synchronized (this) {
+            for (int i = mServices.size() - 1; i >= 0; --i) {
+                IVIDAB.Service service = mServices.valueAt(i);
+                if (!mScannedServices.contains(service.mSId)) {
+                    mServices.removeAt(i);
+                    mChangedServices.remove(service.mSId);
+                    mRemovedServices.add(service);
+                    removeComponents(service.mSId);
+                }
+            }
+            for (int i = mEnsembles.size() - 1; i >= 0; --i) {
+                IVIDAB.Ensemble ensemble = mEnsembles.valueAt(i);
+                if (!mScannedEnsembles.contains(ensemble.mEId)) {
+                    mEnsembles.removeAt(i);
+                    mChangedEnsembles.remove(ensemble.mEId);
+                    mRemovedEnsembles.add(ensemble);
+                }
+            }
+        }
+        mScannedEnsembles = null;
+        mScannedServices = null;
+        scheduleNotify();
+    }
+
+    private void removeComponents(int sid) {
+        List<Long> keys = new ArrayList<>();
+        for (Map.Entry<Long, IVIDAB.Component> entry : mComponents.entrySet()) {
+            if (entry.getValue().mSId == sid) {
+                keys.add(entry.getKey());
+            }
+        }
+        for (Long key : keys) {
+            mRemovedComponents.add(mComponents.remove(key));
+            mChangedComponents.remove(key);
+        }
+    }
+
+    private void scheduleNotify() {
+        if (!mNotifyScheduled) { // 扫描时持续改变也按固定间隔通知，不等待扫描结束
+            mNotifyScheduled = true;
+            mHandler.postDelayed(mNotifyRunnable, NOTIFY_DELAY_MS);
+        }
+        mHandler.removeCallbacks(mSaveRunnable);
+        mHandler.postDelayed(mSaveRunnable, SAVE_DELAY_MS);
+    }
+
+    private void notifyChanged() {
+        mNotifyScheduled = false;
+        IVIDAB.EventServiceDatabaseChanged event;
+        synchronized (this) {
+            if (mChangedEnsembles.isEmpty() && mChangedServices.isEmpty() && mChangedComponents.isEmpty()
+                    && mRemovedEnsembles.isEmpty() && mRemovedServices.isEmpty() && mRemovedComponents.isEmpty()) {
+                return;
+            }
+            event = new IVIDAB.EventServiceDatabaseChanged(
+                    new ArrayList<>(mChangedEnsembles.values()),
+                    new ArrayList<>(mChangedServices.values()),
+                    new ArrayList<>(mChangedComponents.values()),
+                    new ArrayList<>(mRemovedEnsembles),
+                    new ArrayList<>(mRemovedServices),
+                    new ArrayList<>(mRemovedComponents));
+            mChangedEnsembles.clear();
+            mChangedServices.clear();
+            mChangedComponents.clear();
+            mRemovedEnsembles.clear();
+            mRemovedServices.clear();
+            mRemovedComponents.clear();
+        }
+        if (mListener != null) {
+            mListener.onChanged(event);
+        }
+    }
+
+    private static long getComponentKey(int sid, int scids) {
+        return ((long) sid << 32) | (scids & 0xFFFFFFFFL);
+    }
+
+    /**
+     * 从文件加载，加载之前已经收到的数据优先，加载的数据作为一次改变通知
+     */
+    private void load() {
+        List<IVIDAB.Ensemble> ensembles = new ArrayList<>();
+        List<IVIDAB.Service> services = new ArrayList<>();
+        List<IVIDAB.Component> components = new ArrayList<>();
+        if (mFile.exists()) {
+            DataInputStream in = null;
+            try {
+                in = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)));
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    throw new IOException("bad header");
+                }
+                for (int i = in.readInt(); i > 0; --i) {
+                    ensembles.add(new IVIDAB.Ensemble(in.readInt(), in.readInt(), readString(in)));
+                }
+                for (int i = in.readInt(); i > 0; --i) {
+                    services.add(new IVIDAB.Service(in.readInt(), in.readInt(), readString(in), in.readInt()));
+                }
+                for (int i = in.readInt(); i > 0; --i) {
+                    components.add(new IVIDAB.Component(in.readInt(), in.readInt(), readString(in), in.readInt()));
+                }
+            } catch (IOException e) {
+                Logcat.w("load " + mFile + " failed, " + e);
+                ensembles.clear();
+                services.clear();
+                components.clear();
+            } finally {
+                if (in != null) {
+                    try {
+                        in.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        }
+
+        synchronized (this) {
+            for (IVIDAB.Ensemble ensemble : ensembles) {
+                if (mEnsembles.get(ensemble.mEId) == null) {
+                    mEnsembles.put(ensemble.mEId, ensemble);
+                    mChangedEnsembles.put(ensemble.mEId, ensemble);
+                }
+            }
+            for (IVIDAB.Service service : services) {
+                if (mServices.get(service.mSId) == null) {
+                    mServices.put(service.mSId, service);
+                    mChangedServices.put(service.mSId, service);
+                }
+            }
+            for (IVIDAB.Component component : components) {
+                final long key = getComponentKey(component.mSId, component.mSCIdS);
+                if (!mComponents.containsKey(key)) {
+                    mComponents.put(key, component);
+                    mChangedComponents.put(key, component);
+                }
+            }
+            mLoaded = true;
+        }
+        Logcat.d("ensembles:" + ensembles.size() + " services:" + services.size() + " components:" + components.size());
+        notifyChanged();
+    }
+
+    /**
+     * 保存到文件，先写临时文件再重命名，掉电时不会破坏原来的文件
+     */
+    private void save() {
+        List<IVIDAB.Ensemble> ensembles;
+        List<IVIDAB.Service> services;
+        List<IVIDAB.Component> components;
+        synchronized (this) {
+            if (!mLoaded) {
+                return;
+            }
+            ensembles = getEnsembles();
+            services = getServices();
+            components = new ArrayList<>(mComponents.values());
+        }
+
+        synchronized (sFileLock) {
+            write(ensembles, services, components);
+        }
+    }
+
+    private void write(List<IVIDAB.Ensemble> ensembles, List<IVIDAB.Service> services,
+                       List<IVIDAB.Component> components) {
+        File tmp = new File(mFile.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            FileOutputStream fos = new FileOutputStream(tmp);
+            out = new DataOutputStream(new BufferedOutputStream(fos));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(ensembles.size());
+            for (IVIDAB.Ensemble ensemble : ensembles) {
+                out.writeInt(ensemble.mEId);
+                out.writeInt(ensemble.mFrequency);
+                writeString(out, ensemble.mLabel);
+            }
+            out.writeInt(services.size());
+            for (IVIDAB.Service service : services) {
+                out.writeInt(service.mEId);
+                out.writeInt(service.mSId);
+                writeString(out, service.mLabel);
+                out.writeInt(service.mPty);
+            }
+            out.writeInt(components.size());
+            for (IVIDAB.Component component : components) {
+                out.writeInt(component.mSId);
+                out.writeInt(component.mSCIdS);
+                writeString(out, component.mLabel);
+                out.writeInt(component.mType);
+            }
+            out.flush();
+            fos.getFD().sync();
+            out.close();
+            out = null;
+            if (!tmp.renameTo(mFile)) {
+                Logcat.w("rename " + tmp + " failed");
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        out.writeBoolean(string != null);
+        if (string != null) {
+            out.writeUTF(string);
+        }
+    }
+}
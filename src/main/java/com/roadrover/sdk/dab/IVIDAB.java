@@ -2,6 +2,8 @@ package com.roadrover.sdk.dab;
 
 import com.roadrover.sdk.utils.LogNameUtil;
 
+import java.util.List;
+
 /**
  * 数字音频广播定义.
  */
@@ -128,6 +130,107 @@ public class IVIDAB {
         }
     }
 
+    /**
+     * 服务组件类型
+     */
+    public static class ComponentType {
+        public static final int AUDIO = 0;
+        public static final int DATA = 1;
+        public static final int UNKNOWN = 0xFF;
+
+        public static String getName(int type) {
+            return LogNameUtil.getName(type, ComponentType.class);
+        }
+    }
+
+    /**
+     * 集合，一个频率上的一组服务
+     */
+    public static class Ensemble {
+        public int mEId;        // 集合id
+        public int mFrequency;  // 频率 KHz
+        public String mLabel;   // 集合名称
+
+        public Ensemble(int eid, int frequency, String label) {
+            mEId = eid;
+            mFrequency = frequency;
+            mLabel = label;
+        }
+
+        @Override
+        public String toString() {
+            return "mEId = " + mEId + ", mFrequency = " + mFrequency + ", mLabel = " + mLabel;
+        }
+    }
+
+    /**
+     * 服务，即一个电台
+     */
+    public static class Service {
+        public int mEId;        // 所在的集合id
+        public int mSId;        // 服务id
+        public String mLabel;   // 服务名称
+        public int mPty;        // 节目类型
+
+        public Service(int eid, int sid, String label, int pty) {
+            mEId = eid;
+            mSId = sid;
+            mLabel = label;
+            mPty = pty;
+        }
+
+        @Override
+        public String toString() {
+            return "mEId = " + mEId + ", mSId = " + mSId + ", mLabel = " + mLabel + ", mPty = " + mPty;
+        }
+    }
+
+    /**
+     * 服务组件
+     */
+    public static class Component {
+        public int mSId;        // 所属服务id
+        public int mSCIdS;      // 服务组件id，0为主组件
+        public String mLabel;   // 组件名称
+        public int mType;       // 组件类型，见{@link ComponentType}
+
+        public Component(int sid, int scids, String label, int type) {
+            mSId = sid;
+            mSCIdS = scids;
+            mLabel = label;
+            mType = type;
+        }
+
+        @Override
+        public String toString() {
+            return "mSId = " + mSId + ", mSCIdS = " + mSCIdS + ", mLabel = " + mLabel
+                    + ", mType = " + ComponentType.getName(mType);
+        }
+    }
+
+    /**
+     * 服务数据库的改变，只包含改变了的部分，见 {@link DABServiceDatabase}
+     */
+    public static class EventServiceDatabaseChanged {
+        public List<Ensemble> mEnsembles;          // 新增或者改变的集合
+        public List<Service> mServices;            // 新增或者改变的服务
+        public List<Component> mComponents;        // 新增或者改变的服务组件
+        public List<Ensemble> mRemovedEnsembles;   // 删除的集合
+        public List<Service> mRemovedServices;     // 删除的服务，其服务组件也一起删除
+        public List<Component> mRemovedComponents; // 删除的服务组件
+
+        EventServiceDatabaseChanged(List<Ensemble> ensembles, List<Service> services, List<Component> components,
+                                    List<Ensemble> removedEnsembles, List<Service> removedServices,
+                                    List<Component> removedComponents) {
+            mEnsembles = ensembles;
+            mServices = services;
+            mComponents = components;
+            mRemovedEnsembles = removedEnsembles;
+            mRemovedServices = removedServices;
+            mRemovedComponents = removedComponents;
+        }
+    }
+
     public static class EventSystemStateChanged {
         public int mSystemState;
 
@@ -0,0 +1,95 @@
+package com.roadrover.sdk.media;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 按内容哈希缓存专辑图片，最近最少使用的先淘汰 <br/>
+ * services 用来保存应用传过来的图片，应用用来保存从 services 获取的图片，
+ * 同一张图片只需要跨进程传一次像素，之后只传 {@link IVIMedia.ArtImage#getHash()}
+ */
+public class ArtImageCache {
+
+    /**
+     * 默认的缓存大小，单位字节，大约9张240x240的ARGB图片
+     */
+    public static final int DEFAULT_MAX_BYTES = 2 * 1024 * 1024;
+
+    private final LinkedHashMap<Long, IVIMedia.ArtImage> mImages = new LinkedHashMap<>(16, 0.75f, true);
+    private final int mMaxBytes;
+    private int mBytes = 0;
+
+    /**
+     * 构造函数
+     * @param maxBytes 缓存的最大字节数
+     */
+    public ArtImageCache(int maxBytes) {
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * 根据内容哈希获取图片
+     * @param hash 内容哈希
+     * @return 没有缓存时返回null
+     */
+    public synchronized IVIMedia.ArtImage get(long hash) {
+        return mImages.get(hash);
+    }
+
+    /**
+     * 缓存图片，没有图片或者超过缓存大小的不缓存
+     * @param image 图片
+     * @return 已经缓存了相同内容的图片时返回缓存中的对象，否则返回传入的对象
+     */
+    public synchronized IVIMedia.ArtImage put(IVIMedia.ArtImage image) {
+        if (image == null || image.isEmpty()) {
+            return image;
+        }
+
+        final long hash = image.getHash();
+        IVIMedia.ArtImage cached = mImages.get(hash);
+        if (cached != null) {
+            return cached;
+        }
+
+        final int bytes = image.getByteCount();
+        if (bytes > mMaxBytes) {
+            return image;
+        }
+        mImages.put(hash, image);
+        mBytes += bytes;
+        trimToSize();
+        return image;
+    }
+
+    /**
+     * 清空缓存
+     */
+    public synchronized void clear() {
+        mImages.clear();
+        mBytes = 0;
+    }
+
+    /**
+     * 获取缓存的图片数
+     */
+    public synchronized int size() {
+        return mImages.size();
+    }
+
+    /**
+     * 获取缓存占用的字节数
+     */
+    public synchronized int getBytes() {
+        return mBytes;
+    }
+
+    private void trimToSize() {
+        Iterator<Map.Entry<Long, IVIMedia.ArtImage>> iterator = mImages.entrySet().iterator();
+        while (mBytes > mMaxBytes && iterator.hasNext()) {
+            mBytes -= iterator.next().getValue().getByteCount();
+            iterator.remove();
+        }
+    }
+}
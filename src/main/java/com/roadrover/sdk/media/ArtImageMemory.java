@@ -0,0 +1,128 @@
+package com.roadrover.sdk.media;
+
+import android.os.MemoryFile;
+import android.os.ParcelFileDescriptor;
+
+import com.roadrover.sdk.utils.FieldUtil;
+import com.roadrover.sdk.utils.Logcat;
+
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 通过共享内存（ashmem）传输专辑图片 <br/>
+ * 写入方把像素写到 MemoryFile 里，只把文件描述符通过binder传给对方，不会产生大的binder数据包；
+ * services 保存描述符，其它应用需要时再把描述符传过去，各方按位置直接从共享内存读取像素。<br/>
+ * 共享内存的格式：4字节标识，宽，高，像素字节数（都是int），之后是像素，RGB_565 每个像素2字节，ARGB_8888 4字节
+ */
+public final class ArtImageMemory {
+
+    private static final int MAGIC = 0x41525431; // "ART1"
+    private static final int HEADER_SIZE = 16;
+    /** 像素的最大字节数，超过认为数据错误 */
+    private static final int MAX_BYTE_COUNT = 4 * 1024 * 1024;
+
+    /** MemoryFile.getFileDescriptor 是隐藏接口 */
+    private static final Method GET_FILE_DESCRIPTOR = FieldUtil.findMethod(MemoryFile.class, "getFileDescriptor");
+
+    private ArtImageMemory() {
+    }
+
+    /**
+     * 当前系统是否支持共享内存传输
+     * @return
+     */
+    public static boolean isSupported() {
+        return GET_FILE_DESCRIPTOR != null;
+    }
+
+    /**
+     * 把图片写入一块新的共享内存
+     * @param image 图片
+     * @return 共享内存的描述符，调用者用完之后需要close，失败返回null
+     */
+    public static ParcelFileDescriptor write(IVIMedia.ArtImage image) {
+        if (image == null || image.isEmpty() || !isSupported()) {
+            return null;
+        }
+
+        final byte[] pixels = image.mPixels;
+        MemoryFile file = null;
+        try {
+            file = new MemoryFile("art-" + Long.toHexString(image.getHash()), HEADER_SIZE + pixels.length);
+            byte[] header = ByteBuffer.allocate(HEADER_SIZE)
+                    .putInt(MAGIC)
+                    .putInt(image.mWidth)
+                    .putInt(image.mHeight)
+                    .putInt(pixels.length)
+                    .array();
+            file.writeBytes(header, 0, 0, HEADER_SIZE);
+            file.writeBytes(pixels, 0, HEADER_SIZE, pixels.length);
+
+            FileDescriptor fd = (FileDescriptor) FieldUtil.invoke(GET_FILE_DESCRIPTOR, file);
+            if (fd == null) {
+                return null;
+            }
+            // 复制的描述符引用同一块共享内存，MemoryFile 关闭之后共享内存仍然有效
+            return ParcelFileDescriptor.dup(fd);
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            if (file != null) {
+                file.close();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 从共享内存读取图片，按位置读取，多个进程同时读取同一块共享内存互不影响
+     * @param fd 共享内存的描述符，读取之后不会关闭
+     * @param hash 图片内容的哈希，0表示不知道，需要时再计算
+     * @return 格式错误或者读取失败返回null
+     */
+    public static IVIMedia.ArtImage read(ParcelFileDescriptor fd, long hash) {
+        if (fd == null) {
+            return null;
+        }
+
+        // 不关闭 FileInputStream，描述符由调用者管理
+        FileChannel channel = new FileInputStream(fd.getFileDescriptor()).getChannel();
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, header, 0);
+            header.flip();
+            final int magic = header.getInt();
+            final int width = header.getInt();
+            final int height = header.getInt();
+            final int byteCount = header.getInt();
+            if (magic != MAGIC || width <= 0 || height <= 0 || byteCount > MAX_BYTE_COUNT ||
+                    (byteCount != width * height * 2 && byteCount != width * height * 4)) {
+                Logcat.w("invalid art memory " + width + "x" + height + " bytes:" + byteCount);
+                return null;
+            }
+
+            byte[] pixels = new byte[byteCount];
+            readFully(channel, ByteBuffer.wrap(pixels), HEADER_SIZE);
+            return (hash != 0) ? new IVIMedia.ArtImage(width, height, pixels, hash)
+                    : new IVIMedia.ArtImage(width, height, pixels);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int count = channel.read(buffer, position);
+            if (count < 0) {
+                throw new IOException("unexpected end of art memory");
+            }
+            position += count;
+        }
+    }
+}
@@ -2,10 +2,10 @@ package com.roadrover.sdk.media;
 
 import android.graphics.Bitmap;
 import android.graphics.Matrix;
+import android.os.SystemClock;
 import android.text.TextUtils;
 
 import com.roadrover.sdk.audio.IVIAudio;
-import com.roadrover.sdk.utils.ByteUtil;
 import com.roadrover.sdk.utils.LogNameUtil;
 
 import java.nio.ByteBuffer;
@@ -310,10 +310,27 @@ public class IVIMedia {
          * 图片的最大尺寸，单位像素
          */
         public static final int MAX_SIZE = 240;
+
+        /**
+         * 专辑图片的传输方式：每次都传像素，其值为 {@value}
+         */
+        public static final int TRANSPORT_PIXELS = 0;
+        /**
+         * 专辑图片的传输方式：services缓存了图片之后只传内容哈希，其值为 {@value}
+         */
+        public static final int TRANSPORT_HASH = 1;
+        /**
+         * 专辑图片的传输方式：第一次通过共享内存传像素，之后只传内容哈希，其值为 {@value}
+         */
+        public static final int TRANSPORT_SHARED_MEMORY = 2;
+
         public int mWidth;
         public int mHeight;
         public byte[] mPixels;
 
+        /** 内容哈希，0表示还没有计算 */
+        private long mHash = 0;
+
         /**
          * 构造函数
          * @param width 图片宽度
@@ -326,11 +343,32 @@ public class IVIMedia {
             mPixels = pixels;
         }
 
+        /**
+         * 构造函数，内容哈希已知时使用，不需要再计算
+         * @param width 图片宽度
+         * @param height 高度
+         * @param pixels 图片的像素内容
+         * @param hash 内容哈希，见 {@link #getHash()}
+         */
+        public ArtImage(int width, int height, byte[] pixels, long hash) {
+            this(width, height, pixels);
+            mHash = hash;
+        }
+
         /**
          * 构造函数
          * @param image 图片的 Bitmap
          */
         public ArtImage(Bitmap image) {
+            this(image, false);
+        }
+
+        /**
+         * 构造函数
+         * @param image 图片的 Bitmap
+         * @param rgb565 是否转换成 RGB_565 格式，像素占用的内存减半，专辑图片一般没有透明度
+         */
+        public ArtImage(Bitmap image, boolean rgb565) {
             mWidth = 0;
             mHeight = 0;
             mPixels = new byte[0];
@@ -351,6 +389,16 @@ public class IVIMedia {
                 gotImage = Bitmap.createBitmap(image, 0, 0, width, height, m, true);
             }
 
+            if (rgb565 && gotImage != null && gotImage.getConfig() != Bitmap.Config.RGB_565) {
+                Bitmap converted = gotImage.copy(Bitmap.Config.RGB_565, false);
+                if (converted != null) {
+                    if (gotImage != image) {
+                        gotImage.recycle();
+                    }
+                    gotImage = converted;
+                }
+            }
+
             if (gotImage != null) {
                 ByteBuffer buff = ByteBuffer.allocate(gotImage.getByteCount());
                 gotImage.copyPixelsToBuffer(buff);
@@ -380,6 +428,45 @@ public class IVIMedia {
             return image;
         }
 
+        /**
+         * 是否没有图片
+         * @return
+         */
+        public boolean isEmpty() {
+            return mWidth <= 0 || mHeight <= 0 || mPixels == null || mPixels.length == 0;
+        }
+
+        /**
+         * 获取图片内容的哈希（64位FNV-1a，包括宽高），用于按内容传输和缓存图片，第一次调用时计算
+         * @return 没有图片时返回0
+         */
+        public long getHash() {
+            if (mHash == 0 && !isEmpty()) {
+                long hash = 0xcbf29ce484222325L;
+                hash = (hash ^ mWidth) * 0x100000001b3L;
+                hash = (hash ^ mHeight) * 0x100000001b3L;
+                for (byte b : mPixels) {
+                    hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+                }
+                mHash = (hash != 0) ? hash : 1;
+            }
+            return mHash;
+        }
+
+        /**
+         * 获取像素占用的字节数
+         * @return
+         */
+        public int getByteCount() {
+            return (mPixels != null) ? mPixels.length : 0;
+        }
+
+        @Override
+        public int hashCode() {
+            long hash = getHash();
+            return (int) (hash ^ (hash >>> 32));
+        }
+
         @Override
         public boolean equals(Object o) {
             if (o == this) {
@@ -387,9 +474,12 @@ public class IVIMedia {
             }
             if (o != null && o instanceof ArtImage) {
                 ArtImage other = (ArtImage) o;
+                if (other.isEmpty() && isEmpty()) {
+                    return true;
+                }
                 if (other.mHeight == mHeight &&
                         other.mWidth == mWidth &&
-                        ByteUtil.equals(other.mPixels, mPixels)) {
+                        other.getHash() == getHash()) { // 比较哈希，不再逐字节比较像素
                     return true;
                 }
             }
@@ -447,6 +537,27 @@ public class IVIMedia {
             mPopup = popup;
         }
 
+        /**
+         * 构造函数
+         * @param mediaType 媒体类型 {@link Type}
+         * @param name 媒体名字，如果是收音机，则为 FM 97.1
+         * @param info 媒体信息，音乐为歌手，收音机如果有RDS为电台名称，无RDS为空
+         * @param artImage 歌手图片，音乐才有，其他媒体无
+         * @param index 第几首媒体
+         * @param totalCount 媒体总数
+         * @param popup 是否弹出媒体信息变化的对话框，在上下曲的时候为true，其他为false
+         */
+        public MediaInfo(int mediaType, String name, String info, ArtImage artImage,
+                         int index, int totalCount, boolean popup) {
+            mMediaType = mediaType;
+            mName = name;
+            mInfo = info;
+            mIndex = index;
+            mTotalCount = totalCount;
+            mArtImage = (artImage != null) ? artImage : new ArtImage(0, 0, null);
+            mPopup = popup;
+        }
+
         /**
          * 当前媒体是否有效
          * @return 如果无效，则返回false
@@ -565,6 +676,85 @@ public class IVIMedia {
         }
     }
 
+    /**
+     * 媒体播放时钟，只在播放状态、进度跳变（拖动、切歌）、总时间改变时发送，
+     * 接收方根据锚点时间和播放速率自己推算当前进度，不需要每秒刷新
+     */
+    public static class MediaClock {
+        public int mMediaType;
+        /** 状态 {@link MediaState} */
+        public int mState;
+        /** 锚点时间的进度，单位ms */
+        public int mPositionMs;
+        /** 总时间，单位ms */
+        public int mDurationMs;
+        /** 锚点时间，{@link SystemClock#elapsedRealtime()}，所有进程相同 */
+        public long mAnchorTime;
+        /** 播放速率，播放时为1，其它状态为0 */
+        public float mRate;
+
+        /**
+         * 构造函数
+         * @param mediaType 媒体类型 {@link Type}
+         * @param state 状态 {@link MediaState}
+         * @param positionMs 锚点时间的进度，单位ms
+         * @param durationMs 总时间，单位ms
+         * @param anchorTime 锚点时间，{@link SystemClock#elapsedRealtime()}
+         * @param rate 播放速率
+         */
+        public MediaClock(int mediaType, int state, int positionMs, int durationMs, long anchorTime, float rate) {
+            mMediaType = mediaType;
+            mState = state;
+            mPositionMs = positionMs;
+            mDurationMs = durationMs;
+            mAnchorTime = anchorTime;
+            mRate = rate;
+        }
+
+        /**
+         * 推算指定时间的进度
+         * @param now {@link SystemClock#elapsedRealtime()}
+         * @return 单位ms，不会超过总时间
+         */
+        public int getPositionMs(long now) {
+            long position = mPositionMs;
+            if (mRate > 0 && now > mAnchorTime) {
+                position += (long) ((now - mAnchorTime) * mRate);
+            }
+            if (mDurationMs > 0 && position > mDurationMs) {
+                position = mDurationMs;
+            }
+            return (int) Math.max(0, position);
+        }
+
+        /**
+         * 推算当前的进度
+         * @return 单位ms
+         */
+        public int getPositionMs() {
+            return getPositionMs(SystemClock.elapsedRealtime());
+        }
+
+        /**
+         * 当前是否是播放状态
+         */
+        public boolean isPlaying() {
+            return mState == MediaState.PLAYING;
+        }
+
+        /**
+         * 转换成当前时间的 {@link MediaState}，进度单位为秒
+         */
+        public MediaState toMediaState() {
+            return new MediaState(mMediaType, mState, getPositionMs() / 1000, mDurationMs / 1000);
+        }
+
+        @Override
+        public String toString() {
+            return LogNameUtil.toString(this);
+        }
+    }
+
     /**
      * 媒体多分区
      */
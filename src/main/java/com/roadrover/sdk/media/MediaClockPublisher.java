@@ -0,0 +1,79 @@
+package com.roadrover.sdk.media;
+
+/**
+ * 媒体播放时钟的发送判断 <br/>
+ * 媒体应用仍然可以每秒调用 setMediaState，这里按上一次发送的锚点推算当前进度，
+ * 只有状态、媒体类型、总时间改变，或者实际进度和推算进度相差超过 {@link #DRIFT_TOLERANCE_MS}（拖动、切歌、卡顿），
+ * 或者距离上一次发送超过 {@link #MAX_ANCHOR_AGE_MS} 时才需要发送，其它调用不产生binder通信；
+ * 发送成功之后才调用 {@link #commit(IVIMedia.MediaClock)} 更新锚点，发送失败时下一次调用会重新发送
+ */
+final class MediaClockPublisher {
+
+    /**
+     * 允许的进度误差，单位ms，setMediaState 的进度单位是秒，本身就有1秒的误差
+     */
+    static final int DRIFT_TOLERANCE_MS = 1500;
+    /**
+     * 锚点最长有效时间，超过之后重新发送一次，修正播放器时钟和系统时钟的累计误差
+     */
+    static final int MAX_ANCHOR_AGE_MS = 60 * 1000;
+
+    private IVIMedia.MediaClock mAnchor = null;
+
+    private int mCallCount = 0;
+    private int mPublishCount = 0;
+
+    /**
+     * 根据新的进度判断是否需要发送，不更新锚点
+     * @param mediaType 媒体类型
+     * @param state 状态
+     * @param positionMs 当前进度，单位ms
+     * @param durationMs 总时间，单位ms
+     * @param now SystemClock.elapsedRealtime()
+     * @return 需要发送时返回新的时钟，否则返回null
+     */
+    synchronized IVIMedia.MediaClock check(int mediaType, int state, int positionMs, int durationMs, long now) {
+        ++mCallCount;
+        if (mAnchor != null &&
+                mAnchor.mMediaType == mediaType &&
+                mAnchor.mState == state &&
+                mAnchor.mDurationMs == durationMs &&
+                now - mAnchor.mAnchorTime < MAX_ANCHOR_AGE_MS &&
+                Math.abs(mAnchor.getPositionMs(now) - positionMs) <= DRIFT_TOLERANCE_MS) {
+            return null;
+        }
+
+        return new IVIMedia.MediaClock(mediaType, state, positionMs, durationMs, now,
+                (state == IVIMedia.MediaState.PLAYING) ? 1.0f : 0.0f);
+    }
+
+    /**
+     * 时钟发送成功，作为新的锚点
+     * @param clock {@link #check} 返回的时钟
+     */
+    synchronized void commit(IVIMedia.MediaClock clock) {
+        mAnchor = clock;
+        ++mPublishCount;
+    }
+
+    /**
+     * 清除锚点，下一次调用一定会发送，services 重连之后调用
+     */
+    synchronized void reset() {
+        mAnchor = null;
+    }
+
+    /**
+     * 获取 setMediaState 的调用次数
+     */
+    synchronized int getCallCount() {
+        return mCallCount;
+    }
+
+    /**
+     * 获取实际发送的次数
+     */
+    synchronized int getPublishCount() {
+        return mPublishCount;
+    }
+}
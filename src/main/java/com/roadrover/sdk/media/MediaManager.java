@@ -2,8 +2,14 @@ package com.roadrover.sdk.media;
 
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.IBinder;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
 import android.os.RemoteException;
+import android.os.SystemClock;
 import android.text.TextUtils;
 
 import com.roadrover.sdk.BaseManager;
@@ -13,6 +19,7 @@ import com.roadrover.services.media.IGetMediaListCallback;
 import com.roadrover.services.media.IMedia;
 import com.roadrover.services.media.IMediaControlCallback;
 import com.roadrover.services.media.IMediaInfoCallback;
+import com.roadrover.services.media.IMediaInfoHashCallback;
 import com.roadrover.services.media.IMediaScannerCallback;
 import com.roadrover.services.media.IMusicControlCallback;
 import com.roadrover.services.media.StMusic;
@@ -20,6 +27,7 @@ import com.roadrover.services.media.StMusic;
 import org.greenrobot.eventbus.Subscribe;
 import org.greenrobot.eventbus.ThreadMode;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -66,6 +74,40 @@ public class MediaManager extends BaseManager {
     private IVIMedia.MediaControlListener mMediaControlListener;
     private Set<IMediaInfoCallback.Stub> mMediaInfoListeners = new HashSet<>();
     private Set<MediaScannerCallback> mMediaScannerListeners = new HashSet<>();
+    /** services 支持的专辑图片传输方式，见 {@link IVIMedia.ArtImage#TRANSPORT_PIXELS} */
+    private int mArtTransportVersion = IVIMedia.ArtImage.TRANSPORT_PIXELS;
+    /** 是否注册的是只传图片哈希的媒体信息回调 */
+    private boolean mMediaInfoHashCallbackRegistered = false;
+    /** 上一次 setMediaInfo 的图片，图片没变时不需要重新转换像素 */
+    private WeakReference<Bitmap> mLastArtBitmap = null;
+    private int mLastArtGenerationId = 0;
+    private IVIMedia.ArtImage mLastArtImage = null;
+    /** 专辑图片是否转换成 RGB_565 传输 */
+    private boolean mArtRgb565 = false;
+    /** setMediaState 的进度只在跳变时发送 */
+    private final MediaClockPublisher mMediaClockPublisher = new MediaClockPublisher();
+    /** services 是否支持播放时钟，老版本只能每秒发送进度 */
+    private boolean mMediaClockSupported = true;
+    /** 最近一次收到的播放时钟 */
+    private volatile IVIMedia.MediaClock mMediaClock = null;
+    /** 播放时钟只在跳变时收到，播放中在本地按秒合成 MediaState，只监听 MediaState 的应用和老的回调仍然每秒收到进度 */
+    private final Handler mMediaStateTicker = new Handler(Looper.getMainLooper());
+    private final Runnable mMediaStateTickRunnable = new Runnable() {
+        @Override
+        public void run() {
+            IVIMedia.MediaClock clock = mMediaClock;
+            if (clock != null && clock.mRate > 0) {
+                post(clock.toMediaState());
+                scheduleMediaStateTick(clock);
+            }
+        }
+    };
+    /** 当前媒体会话的状态，只有字段改变时才回调给监听者 */
+    private final MediaSessionState mMediaSession = new MediaSessionState();
+    /** 进程内共享的专辑图片缓存，按内容哈希保存从 services 获取的图片 */
+    private static final ArtImageCache sArtImageCache = new ArtImageCache(ArtImageCache.DEFAULT_MAX_BYTES);
+    /** 进程内共享的专辑图片获取线程，不在binder回调里同步调用 services */
+    private static Handler sArtHandler = null;
     private int mMediaType = IVIMedia.Type.NONE; // 记录 mediaType，如果服务挂掉了，重新open
     private int mMediaZone = IVIMedia.Zone.UNKNOWN;
 
@@ -594,6 +636,8 @@ public class MediaManager extends BaseManager {
     @Override
     public void disconnect() {
         mMediaInterface = null;
+        mMediaStateTicker.removeCallbacks(mMediaStateTickRunnable);
+        mMediaClock = null;
         mMediaInfoListeners = null;
         mAppGetAllMediaListCallbackMaps = null;
         mAppGetAppointPathMediaListCallbackMaps = null;
@@ -606,6 +650,7 @@ public class MediaManager extends BaseManager {
         unregisterMusicControlCallback();
         mMediaScannerCallback = null;
         mMediaInfoCallback = null;
+        mMediaInfoHashCallback = null;
         mMediaControlCallback = null;
         mMusicControlCallback = null;
         if (null != mMediaScannerListeners) {
@@ -624,14 +669,21 @@ public class MediaManager extends BaseManager {
 
     @Override
     protected void onServiceConnected(IBinder service) {
-        mMediaInterface = IMedia.Stub.asInterface(service);
+        mMediaInterface = wrapInterface(IMedia.class, IMedia.Stub.asInterface(service));
+        try {
+            mArtTransportVersion = mMediaInterface.getArtTransportVersion();
+        } catch (Exception e) { // 老版本services没有该接口
+            e.printStackTrace();
+            mArtTransportVersion = IVIMedia.ArtImage.TRANSPORT_PIXELS;
+        }
+        Logcat.d("art transport version:" + mArtTransportVersion);
+        mMediaClockSupported = true;
+        mMediaClockPublisher.reset();
         registerScannerCallback();
 
-        if (mMediaInfoListeners != null) {
-            if (mMediaInfoListeners.size() > 0) {
-                registerMediaInfoCallback();
-                requestMediaInfoAndStateEvent();
-            }
+        if (hasMediaInfoListeners()) {
+            registerMediaInfoCallback();
+            requestMediaInfoAndStateEvent();
         }
 
         // 重新打开 media
@@ -654,6 +706,7 @@ public class MediaManager extends BaseManager {
     @Override
     protected void onServiceDisconnected() {
         mMediaInterface = null;
+        mMediaSession.clear();
     }
 
     private IMediaControlCallback.Stub mMediaControlCallback = new IMediaControlCallback.Stub() {
@@ -1046,6 +1099,113 @@ public class MediaManager extends BaseManager {
         }
     };
 
+    private IMediaInfoHashCallback.Stub mMediaInfoHashCallback = new IMediaInfoHashCallback.Stub() {
+        @Override
+        public void onMediaChange(final int mediaType, final String name, final String info, final int artWidth, final int artHeight,
+                                  final long artHash, final int index, final int totalCount, final boolean popup) {
+            // 获取图片需要再调用 services，放到图片线程中，按回调的顺序发送
+            getArtHandler().post(new Runnable() {
+                @Override
+                public void run() {
+                    post(new IVIMedia.MediaInfo(mediaType, name, info, getArtImage(artWidth, artHeight, artHash), index, totalCount, popup));
+                }
+            });
+        }
+
+        @Override
+        public void onPlayStateChange(int mediaType, int playState, int position, int duration) {
+            post(new IVIMedia.MediaState(mediaType, playState, position, duration));
+        }
+
+        @Override
+        public void onMediaZoneChanged(int mediaType, int zone) {
+            post(new IVIMedia.MediaZone(mediaType, zone));
+        }
+
+        @Override
+        public void onCurrentShownMediaTypeChanged(int mediaType) throws RemoteException {
+            post(new IVIMedia.MediaTypeShownInfo(mediaType));
+        }
+
+        @Override
+        public void onMediaClockChange(int mediaType, int playState, int positionMs, int durationMs, long anchorTime, float rate) {
+            IVIMedia.MediaClock clock = new IVIMedia.MediaClock(mediaType, playState, positionMs, durationMs, anchorTime, rate);
+            mMediaClock = clock;
+            post(clock);
+            post(clock.toMediaState()); // 只监听 MediaState 的应用在跳变时也能收到一次
+            scheduleMediaStateTick(clock);
+        }
+    };
+
+    /**
+     * 播放中在下一个整秒时合成一次 MediaState，暂停、停止或者播放到结尾时不再合成
+     */
+    private void scheduleMediaStateTick(IVIMedia.MediaClock clock) {
+        mMediaStateTicker.removeCallbacks(mMediaStateTickRunnable);
+        final int positionMs = clock.getPositionMs();
+        if (clock.mRate > 0 && (clock.mDurationMs <= 0 || positionMs < clock.mDurationMs)) {
+            final long delay = (long) ((1000 - positionMs % 1000) / clock.mRate);
+            mMediaStateTicker.postDelayed(mMediaStateTickRunnable, Math.max(1, delay));
+        }
+    }
+
+    private static synchronized Handler getArtHandler() {
+        if (sArtHandler == null) {
+            HandlerThread thread = new HandlerThread("MediaArt");
+            thread.start();
+            sArtHandler = new Handler(thread.getLooper());
+        }
+        return sArtHandler;
+    }
+
+    /**
+     * 根据内容哈希获取专辑图片，本地缓存中没有时从 services 获取像素，在图片线程中调用
+     */
+    private IVIMedia.ArtImage getArtImage(int width, int height, long hash) {
+        if (hash == 0) {
+            return new IVIMedia.ArtImage(0, 0, new byte[0]);
+        }
+
+        IVIMedia.ArtImage image = sArtImageCache.get(hash);
+        if (image != null) {
+            return image;
+        }
+
+        IMedia mediaInterface = mMediaInterface;
+        if (mediaInterface != null) {
+            try {
+                if (mArtTransportVersion >= IVIMedia.ArtImage.TRANSPORT_SHARED_MEMORY) {
+                    ParcelFileDescriptor fd = mediaInterface.getArtFd(hash);
+                    if (fd != null) {
+                        image = ArtImageMemory.read(fd, hash);
+                        closeQuietly(fd);
+                    }
+                }
+                if (image == null) {
+                    byte[] pixels = mediaInterface.getArtPixels(hash);
+                    if (pixels != null) {
+                        image = new IVIMedia.ArtImage(width, height, pixels, hash);
+                    }
+                }
+            } catch (RemoteException e) {
+                e.printStackTrace();
+            }
+        }
+        if (image == null) {
+            Logcat.w("art " + Long.toHexString(hash) + " not available");
+            return new IVIMedia.ArtImage(0, 0, new byte[0]);
+        }
+        return sArtImageCache.put(image);
+    }
+
+    private static void closeQuietly(ParcelFileDescriptor fd) {
+        try {
+            fd.close();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
     /**
      * 注册媒体信息监听，通过EventBus获取媒体数据的更新
      * @param callback 监听媒体信息改变的广播
@@ -1059,6 +1219,50 @@ public class MediaManager extends BaseManager {
         }
     }
 
+    /**
+     * 注册媒体会话监听，只在媒体信息或者播放状态有字段改变时回调，并带上改变的字段，
+     * 当前状态可以随时通过 {@link #getMediaSession()} 同步获取
+     * @param listener 监听对象
+     */
+    public void registerMediaSessionListener(MediaSessionState.Listener listener) {
+        if (listener != null) {
+            final boolean first = !hasMediaInfoListeners();
+            mMediaSession.addListener(listener);
+            if (first) {
+                registerMediaInfoCallback();
+            }
+            if (!mMediaSession.isComplete()) {
+                requestMediaInfoAndStateEvent(); // 只在第一次没有数据时请求
+            }
+        }
+    }
+
+    /**
+     * 取消注册媒体会话监听
+     * @param listener 监听对象，要和 registerMediaSessionListener 对应
+     */
+    public void unregisterMediaSessionListener(MediaSessionState.Listener listener) {
+        if (listener != null) {
+            mMediaSession.removeListener(listener);
+            if (!hasMediaInfoListeners()) {
+                unregisterMediaInfoCallback();
+            }
+        }
+    }
+
+    /**
+     * 同步获取当前媒体会话的状态，需要先注册 registerMediaSessionListener 或者 registerMediaInfoListener，
+     * 不需要再通过 requestMediaInfoAndStateEvent 请求
+     * @return 不会为null，还没有收到数据时 {@link MediaSessionState.Snapshot#isValid()} 返回false
+     */
+    public MediaSessionState.Snapshot getMediaSession() {
+        return mMediaSession.getSnapshot();
+    }
+
+    private boolean hasMediaInfoListeners() {
+        return (mMediaInfoListeners != null && mMediaInfoListeners.size() > 0) || mMediaSession.hasListeners();
+    }
+
     /**
      * 取消注册媒体信息监听
      * @param callback 媒体信息改变的广播，注：要和 registerMediaInfoListener 指针对应
@@ -1067,7 +1271,7 @@ public class MediaManager extends BaseManager {
         if (callback != null) {
             if (mMediaInfoListeners != null) {
                 mMediaInfoListeners.remove(callback);
-                if (mMediaInfoListeners.size() == 0) {
+                if (!hasMediaInfoListeners()) {
                     unregisterMediaInfoCallback();
                 }
             }
@@ -1078,6 +1282,19 @@ public class MediaManager extends BaseManager {
      * 注册数据监听回调，该方法主要是在非媒体界面，希望获取媒体的数据，通过监听该回调
      */
     private void registerMediaInfoCallback() {
+        if (mArtTransportVersion >= IVIMedia.ArtImage.TRANSPORT_HASH) {
+            super.registerCallback(mMediaInfoHashCallback);
+            if (mMediaInterface != null && mMediaInfoHashCallback != null) {
+                try {
+                    mMediaInterface.registerMediaInfoHashCallback(mMediaInfoHashCallback);
+                    mMediaInfoHashCallbackRegistered = true;
+                } catch (RemoteException e) {
+                    e.printStackTrace();
+                }
+            }
+            return;
+        }
+
         super.registerCallback(mMediaInfoCallback);
         if (mMediaInterface != null) {
             if (mMediaInfoCallback != null) {
@@ -1094,6 +1311,18 @@ public class MediaManager extends BaseManager {
      * 注销数据监听回调
      */
     private void unregisterMediaInfoCallback() {
+        super.unRegisterCallback(mMediaInfoHashCallback);
+        if (mMediaInfoHashCallbackRegistered) {
+            mMediaInfoHashCallbackRegistered = false;
+            if (mMediaInterface != null && mMediaInfoHashCallback != null) {
+                try {
+                    mMediaInterface.unRegisterMediaInfoHashCallback(mMediaInfoHashCallback);
+                } catch (RemoteException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
         super.unRegisterCallback(mMediaInfoCallback);
         if (mMediaInterface != null) {
             if (null != mMediaInfoCallback) {
@@ -1206,11 +1435,26 @@ public class MediaManager extends BaseManager {
      * @param index 第几首
      * @param totalCount 总歌曲数
      * @param popup 是否弹出媒体信息小窗口，一般在上下曲的时候为true，其他为false
+     * services 支持时，同一张图片只传一次像素，之后只传内容哈希
      */
     public void setMediaInfo(int mediaType, String name, String info, Bitmap artImage, int index, int totalCount, boolean popup) {
         if (mMediaInterface != null) {
             try {
-                IVIMedia.ArtImage image = new IVIMedia.ArtImage(artImage);
+                IVIMedia.ArtImage image = toArtImage(artImage);
+                if (mArtTransportVersion >= IVIMedia.ArtImage.TRANSPORT_HASH &&
+                        mMediaInterface.setMediaInfoByArtHash(mediaType, name, info, image.getHash(), index, totalCount, popup)) {
+                    return;
+                }
+                if (mArtTransportVersion >= IVIMedia.ArtImage.TRANSPORT_SHARED_MEMORY && !image.isEmpty()) {
+                    ParcelFileDescriptor fd = ArtImageMemory.write(image);
+                    if (fd != null) {
+                        boolean sent = mMediaInterface.setMediaInfoByArtFd(mediaType, name, info, image.getHash(), fd, index, totalCount, popup);
+                        closeQuietly(fd);
+                        if (sent) {
+                            return;
+                        }
+                    }
+                }
                 mMediaInterface.setMediaInfo(mediaType, name, info, image.mWidth, image.mHeight, image.mPixels, index, totalCount, popup);
             } catch (RemoteException e) {
                 e.printStackTrace();
@@ -1218,6 +1462,38 @@ public class MediaManager extends BaseManager {
         }
     }
 
+    /**
+     * 设置 setMediaInfo 的专辑图片是否转换成 RGB_565 格式，传输和缓存占用的内存减半，默认不转换
+     * @param rgb565 true 转换
+     */
+    public void setArtImageRgb565(boolean rgb565) {
+        if (mArtRgb565 != rgb565) {
+            mArtRgb565 = rgb565;
+            mLastArtImage = null;
+        }
+    }
+
+    /**
+     * 把 Bitmap 转换成 ArtImage，和上一次是同一张没有修改过的图片时直接使用上一次的结果
+     */
+    private IVIMedia.ArtImage toArtImage(Bitmap artImage) {
+        // Bitmap.getGenerationId() 是 API 12 才有的，之前的版本不能判断图片是否修改过，每次都重新转换
+        final boolean canReuse = Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB_MR1;
+        if (canReuse && artImage != null && mLastArtBitmap != null && artImage == mLastArtBitmap.get() && mLastArtImage != null &&
+                !artImage.isRecycled() && artImage.getGenerationId() == mLastArtGenerationId) {
+            return mLastArtImage;
+        }
+
+        IVIMedia.ArtImage image = new IVIMedia.ArtImage(artImage, mArtRgb565);
+        if (!canReuse) {
+            return image;
+        }
+        mLastArtBitmap = (artImage != null) ? new WeakReference<>(artImage) : null;
+        mLastArtGenerationId = (artImage != null && !artImage.isRecycled()) ? artImage.getGenerationId() : 0;
+        mLastArtImage = image;
+        return image;
+    }
+
     /**
      * 设置当前播放状态
      * @param playState {@link IVIMedia.MediaState}
@@ -1227,6 +1503,20 @@ public class MediaManager extends BaseManager {
     public void setMediaState(int mediaType, int playState, int position, int duration) {
         if (mMediaInterface != null) {
             try {
+                if (mMediaClockSupported) {
+                    IVIMedia.MediaClock clock = mMediaClockPublisher.check(mediaType, playState, position * 1000,
+                            duration * 1000, SystemClock.elapsedRealtime());
+                    if (clock == null) {
+                        return; // 进度没有跳变，接收方自己推算
+                    }
+                    if (mMediaInterface.setMediaClock(clock.mMediaType, clock.mState, clock.mPositionMs,
+                            clock.mDurationMs, clock.mAnchorTime, clock.mRate)) {
+                        mMediaClockPublisher.commit(clock);
+                        return;
+                    }
+                    Logcat.d("media clock not supported by service");
+                    mMediaClockSupported = false;
+                }
                 mMediaInterface.setMediaState(mediaType, playState, position, duration);
             } catch (RemoteException e) {
                 e.printStackTrace();
@@ -1234,6 +1524,23 @@ public class MediaManager extends BaseManager {
         }
     }
 
+    /**
+     * 获取最近一次收到的播放时钟，通过 {@link IVIMedia.MediaClock#getPositionMs()} 推算当前进度，
+     * 需要先通过 registerMediaInfoListener 注册媒体信息监听
+     * @return services 不支持播放时钟或者还没有收到时返回null
+     */
+    public IVIMedia.MediaClock getMediaClock() {
+        return mMediaClock;
+    }
+
+    /**
+     * 获取 setMediaState 的调用次数和实际发送给 services 的次数，用于统计节省的binder通信
+     * @return [调用次数, 发送次数]
+     */
+    public int[] getMediaStateTraffic() {
+        return new int[] {mMediaClockPublisher.getCallCount(), mMediaClockPublisher.getPublishCount()};
+    }
+
     /**
      * 设置当前播放状态信息
      * 仅作为当前不能作为媒体源的媒体类型信息，如图库。
@@ -1540,6 +1847,7 @@ public class MediaManager extends BaseManager {
     @Subscribe(threadMode = ThreadMode.MAIN)
     public void onMediaInfoChanged(IVIMedia.MediaInfo event) {
         if (event != null && event.mArtImage != null) {
+            mMediaSession.update(event); // 只对媒体会话监听去重，老的回调每次都回调
             if (mMediaInfoListeners != null) {
                 for (IMediaInfoCallback.Stub callback : mMediaInfoListeners) {
                     try {
@@ -1567,6 +1875,7 @@ public class MediaManager extends BaseManager {
     @Subscribe(threadMode = ThreadMode.MAIN)
     public void onMediaStateChanged(IVIMedia.MediaState event) {
         if (event != null) {
+            mMediaSession.update(event); // 只对媒体会话监听去重，老的回调每次都回调
             if (mMediaInfoListeners != null) {
                 for (IMediaInfoCallback.Stub callback : mMediaInfoListeners) {
                     try {
@@ -1582,6 +1891,15 @@ public class MediaManager extends BaseManager {
         }
     }
 
+    /**
+     * 监听播放时钟改变的event事件
+     * @param event
+     */
+    @Subscribe(threadMode = ThreadMode.MAIN)
+    public void onMediaClockChanged(IVIMedia.MediaClock event) {
+        mMediaSession.update(event);
+    }
+
     /**
      * 监听mediaZone改变的event事件
      * @param event
@@ -0,0 +1,278 @@
+package com.roadrover.sdk.media;
+
+import android.text.TextUtils;
+
+import com.roadrover.sdk.utils.SnapshotState;
+
+/**
+ * 当前媒体会话的状态，合并 {@link IVIMedia.MediaInfo}、{@link IVIMedia.MediaState} 和 {@link IVIMedia.MediaClock} <br/>
+ * 每次更新按字段比较，只在有字段改变时回调，并带上改变的字段 {@link Field}，界面只需要刷新改变的部分；
+ * 可以随时通过 {@link #getSnapshot()} 同步获取当前状态，不需要再请求 services 重新发送
+ */
+public class MediaSessionState extends SnapshotState<MediaSessionState.Snapshot, MediaSessionState.Listener> {
+
+    /**
+     * 字段定义，回调中改变的字段按位或
+     */
+    public static class Field {
+        /** 媒体类型 */
+        public static final int MEDIA_TYPE = 0x001;
+        /** 名字 */
+        public static final int NAME       = 0x002;
+        /** 信息，一般为歌手 */
+        public static final int INFO       = 0x004;
+        /** 专辑图片，按内容哈希比较 */
+        public static final int ART        = 0x008;
+        /** 第几首和总数 */
+        public static final int INDEX      = 0x010;
+        /** 播放状态 */
+        public static final int STATE      = 0x020;
+        /** 进度 */
+        public static final int POSITION   = 0x040;
+        /** 总时间 */
+        public static final int DURATION   = 0x080;
+        /** 需要弹出媒体信息，每次 MediaInfo 的 mPopup 为true，或者从true变为false时带上 */
+        public static final int POPUP      = 0x100;
+
+        private static final int[] FIELDS = {MEDIA_TYPE, NAME, INFO, ART, INDEX, STATE, POSITION, DURATION, POPUP};
+        private static final String[] NAMES = {"MEDIA_TYPE", "NAME", "INFO", "ART", "INDEX", "STATE", "POSITION",
+                "DURATION", "POPUP"};
+
+        /**
+         * 获取改变字段的名字，一般用作打印 log
+         * @param mask 改变的字段
+         * @return 例：0x006 返回 "NAME|INFO"
+         */
+        public static String getName(int mask) {
+            return getFieldNames(mask, FIELDS, NAMES);
+        }
+    }
+
+    /**
+     * 状态改变的回调，在更新状态的线程（一般是主线程）中执行
+     */
+    public interface Listener {
+        /**
+         * 媒体会话状态改变
+         * @param snapshot 改变之后的状态
+         * @param changed 改变的字段，见 {@link Field}
+         */
+        void onMediaSessionChanged(Snapshot snapshot, int changed);
+    }
+
+    /**
+     * 媒体会话状态的快照，字段都是final，发布之后不会再修改；引用的专辑图片和播放时钟也是共享的，不要修改
+     */
+    public static class Snapshot {
+        public final int mMediaType;
+        public final String mName;
+        public final String mInfo;
+        public final IVIMedia.ArtImage mArtImage;
+        public final int mIndex;
+        public final int mTotalCount;
+        public final boolean mPopup;
+        /** 播放状态 {@link IVIMedia.MediaState} */
+        public final int mState;
+        /** 进度，单位秒，有播放时钟时为收到时钟时的进度 */
+        public final int mPosition;
+        /** 总时间，单位秒 */
+        public final int mDuration;
+        /** 播放时钟，services 不支持时为null */
+        public final IVIMedia.MediaClock mClock;
+
+        private Snapshot() {
+            this(IVIMedia.Type.NONE, null, null, null, -1, -1, false, 0, 0, 0, null);
+        }
+
+        private Snapshot(int mediaType, String name, String info, IVIMedia.ArtImage artImage, int index, int totalCount,
+                         boolean popup, int state, int position, int duration, IVIMedia.MediaClock clock) {
+            mMediaType = mediaType;
+            mName = name;
+            mInfo = info;
+            mArtImage = artImage;
+            mIndex = index;
+            mTotalCount = totalCount;
+            mPopup = popup;
+            mState = state;
+            mPosition = position;
+            mDuration = duration;
+            mClock = clock;
+        }
+
+        /**
+         * 当前会话是否有效
+         */
+        public boolean isValid() {
+            return mMediaType != IVIMedia.Type.NONE;
+        }
+
+        /**
+         * 当前是否是播放状态
+         */
+        public boolean isPlaying() {
+            return mState == IVIMedia.MediaState.PLAYING;
+        }
+
+        /**
+         * 获取当前进度，有播放时钟时按时钟推算
+         * @return 单位ms
+         */
+        public int getPositionMs() {
+            return (mClock != null) ? mClock.getPositionMs() : mPosition * 1000;
+        }
+
+        @Override
+        public String toString() {
+            return "type:" + IVIMedia.Type.getName(mMediaType) + " name:" + mName + " info:" + mInfo +
+                    " art:" + ((mArtImage != null) ? Long.toHexString(mArtImage.getHash()) : "0") +
+                    " index:" + mIndex + "/" + mTotalCount + " state:" + IVIMedia.MediaState.getName(mState) +
+                    " position:" + getPositionMs() + "ms duration:" + mDuration + "s";
+        }
+    }
+
+    private volatile boolean mHasInfo = false;
+    private volatile boolean mHasState = false;
+
+    public MediaSessionState() {
+        super(new Snapshot()); // 没有收到过数据时 Snapshot#isValid() 返回false
+    }
+
+    /**
+     * 是否已经收到过媒体信息和播放状态
+     */
+    public boolean isComplete() {
+        return mHasInfo && mHasState;
+    }
+
+    /**
+     * 更新媒体信息
+     * @return 改变的字段，没有改变返回0
+     */
+    public int update(IVIMedia.MediaInfo info) {
+        if (info == null) {
+            return 0;
+        }
+        return notifyListeners(apply(info));
+    }
+
+    private synchronized int apply(IVIMedia.MediaInfo info) {
+        final Snapshot last = getSnapshot();
+        int changed = 0;
+        if (last.mMediaType != info.mMediaType) {
+            changed |= Field.MEDIA_TYPE;
+        }
+        if (!TextUtils.equals(last.mName, info.mName)) {
+            changed |= Field.NAME;
+        }
+        if (!TextUtils.equals(last.mInfo, info.mInfo)) {
+            changed |= Field.INFO;
+        }
+        if (artHash(last.mArtImage) != artHash(info.mArtImage)) {
+            changed |= Field.ART;
+        }
+        if (last.mIndex != info.mIndex || last.mTotalCount != info.mTotalCount) {
+            changed |= Field.INDEX;
+        }
+        if (info.mPopup || last.mPopup) { // 从true变为false也要更新快照
+            changed |= Field.POPUP;
+        }
+        mHasInfo = true;
+        return commit(new Snapshot(info.mMediaType, info.mName, info.mInfo,
+                ((changed & Field.ART) != 0) ? info.mArtImage : last.mArtImage, info.mIndex, info.mTotalCount,
+                info.mPopup, last.mState, last.mPosition, last.mDuration, last.mClock), changed);
+    }
+
+    /**
+     * 更新播放状态
+     * @return 改变的字段，没有改变返回0
+     */
+    public int update(IVIMedia.MediaState state) {
+        if (state == null) {
+            return 0;
+        }
+        return notifyListeners(apply(state));
+    }
+
+    private synchronized int apply(IVIMedia.MediaState state) {
+        final Snapshot last = getSnapshot();
+        final int changed = diffState(last, state.mMediaType, state.mState, state.mPosition, state.mDuration);
+        IVIMedia.MediaClock clock = last.mClock;
+        if (clock != null && (clock.mMediaType != state.mMediaType || clock.mState != state.mState ||
+                clock.mDurationMs / 1000 != state.mDuration)) {
+            clock = null; // 时钟已经过期
+        }
+        mHasState = true;
+        return commit(withState(last, state.mMediaType, state.mState, state.mPosition, state.mDuration, clock), changed);
+    }
+
+    /**
+     * 更新播放时钟
+     * @return 改变的字段，没有改变返回0
+     */
+    public int update(IVIMedia.MediaClock clock) {
+        if (clock == null) {
+            return 0;
+        }
+        return notifyListeners(apply(clock));
+    }
+
+    private synchronized int apply(IVIMedia.MediaClock clock) {
+        final Snapshot last = getSnapshot();
+        final int position = clock.getPositionMs() / 1000;
+        int changed = diffState(last, clock.mMediaType, clock.mState, position, clock.mDurationMs / 1000);
+        if (last.mClock == null || last.mClock.mPositionMs != clock.mPositionMs ||
+                last.mClock.mAnchorTime != clock.mAnchorTime || last.mClock.mRate != clock.mRate) {
+            changed |= Field.POSITION; // 锚点改变，接收方需要重新推算
+        }
+        mHasState = true;
+        return commit(withState(last, clock.mMediaType, clock.mState, position, clock.mDurationMs / 1000, clock), changed);
+    }
+
+    /**
+     * 清除状态，services 断开时调用
+     */
+    public synchronized void clear() {
+        reset();
+        mHasInfo = false;
+        mHasState = false;
+    }
+
+    private static int diffState(Snapshot last, int mediaType, int state, int position, int duration) {
+        int changed = 0;
+        if (last.mMediaType != mediaType) {
+            changed |= Field.MEDIA_TYPE;
+        }
+        if (last.mState != state) {
+            changed |= Field.STATE;
+        }
+        if (last.mPosition != position) {
+            changed |= Field.POSITION;
+        }
+        if (last.mDuration != duration) {
+            changed |= Field.DURATION;
+        }
+        return changed;
+    }
+
+    private static Snapshot withState(Snapshot last, int mediaType, int state, int position, int duration,
+                                      IVIMedia.MediaClock clock) {
+        return new Snapshot(mediaType, last.mName, last.mInfo, last.mArtImage, last.mIndex, last.mTotalCount,
+                last.mPopup, state, position, duration, clock);
+    }
+
+    private static long artHash(IVIMedia.ArtImage image) {
+        return (image != null) ? image.getHash() : 0;
+    }
+
+    private int commit(Snapshot next, int changed) {
+        if (changed != 0) {
+            publish(next);
+        }
+        return changed;
+    }
+
+    @Override
+    protected void onChanged(Listener listener, Snapshot snapshot, int changed) {
+        listener.onMediaSessionChanged(snapshot, changed);
+    }
+}
@@ -25,6 +25,8 @@ import java.util.List;
 public class MediaSqlManager {
 	/** content provider uri */
 	private static final String URI_STRING = "content://com.roadrover.services/tbl_scanmedia";
+	/** 媒体数据库的 uri，可以用来监听数据库改变 */
+	public static final Uri CONTENT_URI = Uri.parse(URI_STRING);
 
 	/**
 	 * 类型定义列表
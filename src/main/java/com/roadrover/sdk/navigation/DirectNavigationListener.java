@@ -0,0 +1,90 @@
+package com.roadrover.sdk.navigation;
+
+import com.roadrover.sdk.DirectCallbackMonitor;
+
+/**
+ * 在binder线程中直接回调的监听，见 {@link NavigationManager#setDirectNavigationListener(NavigationManager.NavigationListener)} <br/>
+ * 没有设置监听时直接返回；设置了时直接调用并统计耗时，监听抛出的异常在这里捕获，不影响之后的 EventBus 通知
+ */
+final class DirectNavigationListener implements NavigationManager.NavigationListener {
+
+    private final DirectCallbackMonitor mMonitor;
+    private final DirectCallbackMonitor.Stat mOnNavigationType;
+    private final DirectCallbackMonitor.Stat mOnNavigationAddress;
+    private final DirectCallbackMonitor.Stat mOnNavigationGuide;
+    private final DirectCallbackMonitor.Stat mOnNavigationEyeInfo;
+    private volatile NavigationManager.NavigationListener mListener = null;
+
+    DirectNavigationListener(DirectCallbackMonitor monitor) {
+        mMonitor = monitor;
+        mOnNavigationType = monitor.getStat("onNavigationType");
+        mOnNavigationAddress = monitor.getStat("onNavigationAddress");
+        mOnNavigationGuide = monitor.getStat("onNavigationGuide");
+        mOnNavigationEyeInfo = monitor.getStat("onNavigationEyeInfo");
+    }
+
+    /**
+     * @param listener 监听，null表示取消
+     */
+    void setListener(NavigationManager.NavigationListener listener) {
+        mListener = listener;
+    }
+
+    @Override
+    public void onNavigationType(int twelveClock, int turnID, int[] arrayTurn, int guideType, int distance,
+            int destDistance, int destTime, String roadName, String nextRoadName, String destName) {
+        final NavigationManager.NavigationListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onNavigationType(twelveClock, turnID, arrayTurn, guideType, distance, destDistance, destTime,
+                        roadName, nextRoadName, destName);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnNavigationType, e);
+            }
+            mMonitor.end(mOnNavigationType, begin);
+        }
+    }
+
+    @Override
+    public void onNavigationAddress(String province, String city, String county) {
+        final NavigationManager.NavigationListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onNavigationAddress(province, city, county);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnNavigationAddress, e);
+            }
+            mMonitor.end(mOnNavigationAddress, begin);
+        }
+    }
+
+    @Override
+    public void onNavigationGuide(int direction) {
+        final NavigationManager.NavigationListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onNavigationGuide(direction);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnNavigationGuide, e);
+            }
+            mMonitor.end(mOnNavigationGuide, begin);
+        }
+    }
+
+    @Override
+    public void onNavigationEyeInfo(int type, int distance, int speedLimit) {
+        final NavigationManager.NavigationListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onNavigationEyeInfo(type, distance, speedLimit);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnNavigationEyeInfo, e);
+            }
+            mMonitor.end(mOnNavigationEyeInfo, begin);
+        }
+    }
+}
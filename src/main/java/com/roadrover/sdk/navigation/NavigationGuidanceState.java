@@ -0,0 +1,266 @@
+package com.roadrover.sdk.navigation;
+
+import android.text.TextUtils;
+
+import com.roadrover.sdk.utils.SnapshotState;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 导航引导状态，由 {@link IVINavigation.EventNavigationType} 更新 <br/>
+ * 每次更新按字段比较，只在有字段改变时回调，并带上改变的字段 {@link Field}，仪表、HUD 只需要重绘改变的部分；
+ * 只有距离、时间改变时，按 {@link #setGranularity(int, int, int)} 设置的粒度合并，不会每个引导tick都回调；
+ * 重复的道路名使用同一个字符串对象，可以随时通过 {@link #getSnapshot()} 同步获取当前状态，其中的距离和时间总是最新的值，不受粒度影响
+ */
+public class NavigationGuidanceState extends SnapshotState<NavigationGuidanceState.Snapshot, NavigationGuidanceState.Listener> {
+
+    /** 默认到下一个引导点距离的粒度，单位m */
+    public static final int DEFAULT_DISTANCE_GRANULARITY = 10;
+    /** 默认到目的地距离的粒度，单位m */
+    public static final int DEFAULT_DEST_DISTANCE_GRANULARITY = 100;
+    /** 默认到目的地时间的粒度，单位s */
+    public static final int DEFAULT_DEST_TIME_GRANULARITY = 60;
+
+    /** 保存的道路名个数 */
+    private static final int MAX_NAMES = 64;
+
+    /**
+     * 字段定义，回调中改变的字段按位或
+     */
+    public static class Field {
+        /** 引导动作，包括 mTwelveClock、mTurnID、mGuideType */
+        public static final int MANEUVER       = 0x01;
+        /** 引导背景图片 mArrayTurn */
+        public static final int TURN_ICONS     = 0x02;
+        /** 到下一个引导点的距离 */
+        public static final int DISTANCE       = 0x04;
+        /** 到目的地的距离 */
+        public static final int DEST_DISTANCE  = 0x08;
+        /** 到目的地的时间 */
+        public static final int DEST_TIME      = 0x10;
+        /** 道路名称 */
+        public static final int ROAD_NAME      = 0x20;
+        /** 下一个道路名称 */
+        public static final int NEXT_ROAD_NAME = 0x40;
+        /** 目的地名称 */
+        public static final int DEST_NAME      = 0x80;
+
+        private static final int[] FIELDS = {MANEUVER, TURN_ICONS, DISTANCE, DEST_DISTANCE, DEST_TIME, ROAD_NAME,
+                NEXT_ROAD_NAME, DEST_NAME};
+        private static final String[] NAMES = {"MANEUVER", "TURN_ICONS", "DISTANCE", "DEST_DISTANCE", "DEST_TIME",
+                "ROAD_NAME", "NEXT_ROAD_NAME", "DEST_NAME"};
+
+        /**
+         * 获取改变字段的名字，一般用作打印 log
+         * @param mask 改变的字段
+         * @return 例：0x24 返回 "DISTANCE|ROAD_NAME"
+         */
+        public static String getName(int mask) {
+            return getFieldNames(mask, FIELDS, NAMES);
+        }
+    }
+
+    /**
+     * 状态改变的回调，在更新状态的线程（主线程）中执行
+     */
+    public interface Listener {
+        /**
+         * 导航引导状态改变
+         * @param snapshot 改变之后的状态
+         * @param changed 改变的字段，见 {@link Field}
+         */
+        void onGuidanceChanged(Snapshot snapshot, int changed);
+    }
+
+    /**
+     * 导航引导状态的快照，字段都是final，发布之后不会再修改
+     */
+    public static class Snapshot {
+        /** {@link IVINavigation.TwelveClockType} */
+        public final int mTwelveClock;
+        public final int mTurnID;
+        /** 引导背景图片，不要修改数组内容 */
+        public final int[] mArrayTurn;
+        /** {@link IVINavigation.GuideType} */
+        public final int mGuideType;
+        /** 到下一个引导点的距离，单位 m */
+        public final int mDistance;
+        /** 到目的地的距离，单位 m */
+        public final int mDestDistance;
+        /** 到目的地所需要的时间，单位 s */
+        public final int mDestTime;
+        public final String mRoadName;
+        public final String mNextRoadName;
+        public final String mDestName;
+
+        private final boolean mValid;
+
+        private Snapshot() {
+            this(0, 0, null, 0, 0, 0, 0, null, null, null, false);
+        }
+
+        private Snapshot(int twelveClock, int turnID, int[] arrayTurn, int guideType, int distance, int destDistance,
+                         int destTime, String roadName, String nextRoadName, String destName, boolean valid) {
+            mTwelveClock = twelveClock;
+            mTurnID = turnID;
+            mArrayTurn = arrayTurn;
+            mGuideType = guideType;
+            mDistance = distance;
+            mDestDistance = destDistance;
+            mDestTime = destTime;
+            mRoadName = roadName;
+            mNextRoadName = nextRoadName;
+            mDestName = destName;
+            mValid = valid;
+        }
+
+        /**
+         * 是否收到过引导数据
+         */
+        public boolean isValid() {
+            return mValid;
+        }
+
+        @Override
+        public String toString() {
+            return "turn:" + IVINavigation.TwelveClockType.getName(mTwelveClock) + "/" + mTurnID +
+                    " guide:" + mGuideType + " distance:" + mDistance + "m dest:" + mDestDistance + "m " +
+                    mDestTime + "s road:" + mRoadName + " next:" + mNextRoadName + " destName:" + mDestName;
+        }
+    }
+
+    // 最近一次回调时的距离和时间，只有进度改变时和这些值比较
+    private int mReportedDistance;
+    private int mReportedDestDistance;
+    private int mReportedDestTime;
+
+    private int mDistanceGranularity = DEFAULT_DISTANCE_GRANULARITY;
+    private int mDestDistanceGranularity = DEFAULT_DEST_DISTANCE_GRANULARITY;
+    private int mDestTimeGranularity = DEFAULT_DEST_TIME_GRANULARITY;
+
+    private final Map<String, String> mNames = new LinkedHashMap<String, String>(MAX_NAMES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_NAMES;
+        }
+    };
+
+    public NavigationGuidanceState() {
+        super(new Snapshot()); // 没有收到过数据时 Snapshot#isValid() 返回false
+    }
+
+    /**
+     * 设置只有距离、时间改变时的回调粒度，0表示每次改变都回调
+     * @param distanceMeters 到下一个引导点的距离，单位m
+     * @param destDistanceMeters 到目的地的距离，单位m
+     * @param destTimeSeconds 到目的地的时间，单位s
+     */
+    public synchronized void setGranularity(int distanceMeters, int destDistanceMeters, int destTimeSeconds) {
+        mDistanceGranularity = Math.max(0, distanceMeters);
+        mDestDistanceGranularity = Math.max(0, destDistanceMeters);
+        mDestTimeGranularity = Math.max(0, destTimeSeconds);
+    }
+
+    /**
+     * 更新引导数据
+     * @return 回调的改变字段，没有改变或者被粒度合并时返回0
+     */
+    public int update(IVINavigation.EventNavigationType event) {
+        if (event == null) {
+            return 0;
+        }
+
+        return notifyListeners(apply(event));
+    }
+
+    @Override
+    protected void onChanged(Listener listener, Snapshot snapshot, int changed) {
+        listener.onGuidanceChanged(snapshot, changed);
+    }
+
+    /**
+     * 清除状态，services 断开时调用
+     */
+    public synchronized void clear() {
+        reset();
+        mNames.clear();
+        mReportedDistance = 0;
+        mReportedDestDistance = 0;
+        mReportedDestTime = 0;
+    }
+
+    private synchronized int apply(IVINavigation.EventNavigationType event) {
+        final Snapshot last = getSnapshot();
+        int changed = 0;
+        if (last.mTwelveClock != event.mTwelveClock || last.mTurnID != event.mTurnID ||
+                last.mGuideType != event.mGuideType) {
+            changed |= Field.MANEUVER;
+        }
+        int[] arrayTurn = last.mArrayTurn;
+        if (!Arrays.equals(arrayTurn, event.mArrayTurn)) {
+            arrayTurn = event.mArrayTurn;
+            changed |= Field.TURN_ICONS;
+        }
+        String roadName = last.mRoadName;
+        if (!TextUtils.equals(roadName, event.mRoadName)) {
+            roadName = intern(event.mRoadName);
+            changed |= Field.ROAD_NAME;
+        }
+        String nextRoadName = last.mNextRoadName;
+        if (!TextUtils.equals(nextRoadName, event.mNextRoadName)) {
+            nextRoadName = intern(event.mNextRoadName);
+            changed |= Field.NEXT_ROAD_NAME;
+        }
+        String destName = last.mDestName;
+        if (!TextUtils.equals(destName, event.mDestName)) {
+            destName = intern(event.mDestName);
+            changed |= Field.DEST_NAME;
+        }
+
+        // 进度和上一次回调的值比较，其它字段改变时一起回调所有改变的进度，
+        // 只有进度改变时按粒度合并，到达引导点（距离为0）时总是回调
+        final boolean exact = (changed != 0);
+        if (exceeds(event.mDistance, mReportedDistance, exact ? 1 : mDistanceGranularity) ||
+                (event.mDistance == 0 && mReportedDistance != 0)) {
+            changed |= Field.DISTANCE;
+        }
+        if (exceeds(event.mDestDistance, mReportedDestDistance, exact ? 1 : mDestDistanceGranularity)) {
+            changed |= Field.DEST_DISTANCE;
+        }
+        if (exceeds(event.mDestTime, mReportedDestTime, exact ? 1 : mDestTimeGranularity)) {
+            changed |= Field.DEST_TIME;
+        }
+        if (!last.mValid) {
+            changed |= Field.MANEUVER | Field.DISTANCE | Field.DEST_DISTANCE | Field.DEST_TIME;
+        }
+
+        // 被合并的进度也要更新，getSnapshot 总是最新的
+        publish(new Snapshot(event.mTwelveClock, event.mTurnID, arrayTurn, event.mGuideType, event.mDistance,
+                event.mDestDistance, event.mDestTime, roadName, nextRoadName, destName, true));
+        if (changed != 0) {
+            // 不管哪个字段改变，回调中的距离和时间都是最新的值
+            mReportedDistance = event.mDistance;
+            mReportedDestDistance = event.mDestDistance;
+            mReportedDestTime = event.mDestTime;
+        }
+        return changed;
+    }
+
+    private static boolean exceeds(int value, int reported, int granularity) {
+        return Math.abs(value - reported) >= Math.max(1, granularity);
+    }
+
+    private String intern(String name) {
+        if (name == null) {
+            return null;
+        }
+        String cached = mNames.get(name);
+        if (cached == null) {
+            mNames.put(name, name);
+            cached = name;
+        }
+        return cached;
+    }
+}
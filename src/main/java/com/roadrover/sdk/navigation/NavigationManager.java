@@ -25,6 +25,8 @@ public class NavigationManager extends BaseManager {
     private INavigation mNavigationInterface = null; // 导航接口类
 
     private NavigationListener mNavigationListener;
+    private final DirectNavigationListener mDirectNavigation = new DirectNavigationListener(mDirectCallbackMonitor); // 在binder线程中直接回调的监听
+    private final NavigationGuidanceState mGuidance = new NavigationGuidanceState(); // 导航引导状态
 
     public interface NavigationListener {
 
@@ -56,11 +58,22 @@ public class NavigationManager extends BaseManager {
         mNavigationListener = navigationListener;
     }
 
+    /**
+     * 设置在binder线程中直接回调的监听，不经过EventBus和主线程，适合仪表这类对延时敏感的应用 <br/>
+     * 回调时services在等待返回，监听里不能做耗时操作，也不能直接操作界面，
+     * 耗时见 {@link #getDirectCallbackMonitor()}；和构造函数传入的监听互不影响，可以同时使用
+     * @param listener 监听，null表示取消
+     */
+    public void setDirectNavigationListener(NavigationListener listener) {
+        mDirectNavigation.setListener(listener);
+    }
+
     @Override
     public void disconnect() {
         mINavigationCallback = null;
         mNavigationInterface = null;
         mNavigationListener = null;
+        mDirectNavigation.setListener(null);
         super.disconnect();
     }
 
@@ -71,7 +84,7 @@ public class NavigationManager extends BaseManager {
 
     @Override
     protected void onServiceConnected(IBinder service) {
-        mNavigationInterface = INavigation.Stub.asInterface(service);
+        mNavigationInterface = wrapInterface(INavigation.class, INavigation.Stub.asInterface(service));
 
         // 如果服务挂了，重启，必须在该位置重新注册回调，否则会没反应
         registerNavigationCallback();
@@ -80,6 +93,38 @@ public class NavigationManager extends BaseManager {
     @Override
     protected void onServiceDisconnected() {
         mNavigationInterface = null;
+        mGuidance.clear();
+    }
+
+    /**
+     * 添加导航引导状态的监听，只在引导字段改变时回调，并带上改变的字段，适合仪表、HUD只重绘改变的部分
+     * @param listener 监听，在主线程回调
+     */
+    public void addGuidanceListener(NavigationGuidanceState.Listener listener) {
+        mGuidance.addListener(listener);
+    }
+
+    /**
+     * 移除导航引导状态的监听
+     * @param listener 监听，要和 addGuidanceListener 对应
+     */
+    public void removeGuidanceListener(NavigationGuidanceState.Listener listener) {
+        mGuidance.removeListener(listener);
+    }
+
+    /**
+     * 设置只有距离、时间改变时的回调粒度，见 {@link NavigationGuidanceState#setGranularity(int, int, int)}
+     */
+    public void setGuidanceGranularity(int distanceMeters, int destDistanceMeters, int destTimeSeconds) {
+        mGuidance.setGranularity(distanceMeters, destDistanceMeters, destTimeSeconds);
+    }
+
+    /**
+     * 同步获取当前的导航引导状态
+     * @return 不会为null，还没有收到引导数据时 {@link NavigationGuidanceState.Snapshot#isValid()} 返回false
+     */
+    public NavigationGuidanceState.Snapshot getGuidance() {
+        return mGuidance.getSnapshot();
     }
 
     /**
@@ -133,6 +178,7 @@ public class NavigationManager extends BaseManager {
 
     @Subscribe(threadMode = ThreadMode.MAIN)
     public void onNavigationType(IVINavigation.EventNavigationType event) {
+        mGuidance.update(event);
         if (mNavigationListener != null) {
             mNavigationListener.onNavigationType(event.mTwelveClock,
                     event.mTurnID,
@@ -151,21 +197,25 @@ public class NavigationManager extends BaseManager {
 
         @Override
         public void onNavigationType(int twelveClock, int turnID, int[] arrayTurn, int guideType, int distance, int destDistance, int destTime, String roadName, String nextRoadName, String destName) throws RemoteException {
+            mDirectNavigation.onNavigationType(twelveClock, turnID, arrayTurn, guideType, distance, destDistance, destTime, roadName, nextRoadName, destName);
             post(new IVINavigation.EventNavigationType(twelveClock, turnID, arrayTurn, guideType, distance, destDistance, destTime, roadName, nextRoadName, destName));
         }
 
         @Override
         public void onNavigationAddress(String province, String city, String county) throws RemoteException {
+            mDirectNavigation.onNavigationAddress(province, city, county);
             post(new IVINavigation.EventNavigationAddress(province, city, county));
         }
 
         @Override
         public void onNavigationGuide(int direction) throws RemoteException {
+            mDirectNavigation.onNavigationGuide(direction);
             post(new IVINavigation.EventNavigationGuide(direction));
         }
 
         @Override
         public void onNavigationEyeInfo(int type, int distance, int speedLimit) throws RemoteException {
+            mDirectNavigation.onNavigationEyeInfo(type, distance, speedLimit);
             post(new IVINavigation.EventNavigationEyeInfo(type, distance, speedLimit));
         }
     };
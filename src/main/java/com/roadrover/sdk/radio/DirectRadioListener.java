@@ -0,0 +1,392 @@
+package com.roadrover.sdk.radio;
+
+import com.roadrover.sdk.DirectCallbackMonitor;
+
+/**
+ * 在binder线程中直接回调的监听，见 {@link RadioManager#setDirectRadioListener(RadioManager.RadioListener)} <br/>
+ * 没有设置监听时直接返回；设置了时直接调用并统计耗时，监听抛出的异常在这里捕获，不影响之后的 EventBus 通知
+ */
+final class DirectRadioListener implements RadioManager.RadioListener {
+
+    private final DirectCallbackMonitor mMonitor;
+    private final DirectCallbackMonitor.Stat mOnFreqChanged;
+    private final DirectCallbackMonitor.Stat mOnScanResult;
+    private final DirectCallbackMonitor.Stat mOnScanStart;
+    private final DirectCallbackMonitor.Stat mOnScanEnd;
+    private final DirectCallbackMonitor.Stat mOnScanAbort;
+    private final DirectCallbackMonitor.Stat mOnSignalUpdate;
+    private final DirectCallbackMonitor.Stat mSuspend;
+    private final DirectCallbackMonitor.Stat mResume;
+    private final DirectCallbackMonitor.Stat mPause;
+    private final DirectCallbackMonitor.Stat mPlay;
+    private final DirectCallbackMonitor.Stat mPlayPause;
+    private final DirectCallbackMonitor.Stat mStop;
+    private final DirectCallbackMonitor.Stat mNext;
+    private final DirectCallbackMonitor.Stat mPrev;
+    private final DirectCallbackMonitor.Stat mQuitApp;
+    private final DirectCallbackMonitor.Stat mSelect;
+    private final DirectCallbackMonitor.Stat mSetFavour;
+    private final DirectCallbackMonitor.Stat mOnRdsPsChanged;
+    private final DirectCallbackMonitor.Stat mOnRdsRtChanged;
+    private final DirectCallbackMonitor.Stat mOnRdsMaskChanged;
+    private final DirectCallbackMonitor.Stat mScanUp;
+    private final DirectCallbackMonitor.Stat mScanDown;
+    private final DirectCallbackMonitor.Stat mScanAll;
+    private volatile RadioManager.RadioListener mListener = null;
+
+    DirectRadioListener(DirectCallbackMonitor monitor) {
+        mMonitor = monitor;
+        mOnFreqChanged = monitor.getStat("onFreqChanged");
+        mOnScanResult = monitor.getStat("onScanResult");
+        mOnScanStart = monitor.getStat("onScanStart");
+        mOnScanEnd = monitor.getStat("onScanEnd");
+        mOnScanAbort = monitor.getStat("onScanAbort");
+        mOnSignalUpdate = monitor.getStat("onSignalUpdate");
+        mSuspend = monitor.getStat("suspend");
+        mResume = monitor.getStat("resume");
+        mPause = monitor.getStat("pause");
+        mPlay = monitor.getStat("play");
+        mPlayPause = monitor.getStat("playPause");
+        mStop = monitor.getStat("stop");
+        mNext = monitor.getStat("next");
+        mPrev = monitor.getStat("prev");
+        mQuitApp = monitor.getStat("quitApp");
+        mSelect = monitor.getStat("select");
+        mSetFavour = monitor.getStat("setFavour");
+        mOnRdsPsChanged = monitor.getStat("onRdsPsChanged");
+        mOnRdsRtChanged = monitor.getStat("onRdsRtChanged");
+        mOnRdsMaskChanged = monitor.getStat("onRdsMaskChanged");
+        mScanUp = monitor.getStat("scanUp");
+        mScanDown = monitor.getStat("scanDown");
+        mScanAll = monitor.getStat("scanAll");
+    }
+
+    /**
+     * @param listener 监听，null表示取消
+     */
+    void setListener(RadioManager.RadioListener listener) {
+        mListener = listener;
+    }
+
+    @Override
+    public void onFreqChanged(int freq) {
+        final RadioManager.RadioListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onFreqChanged(freq);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnFreqChanged, e);
+            }
+            mMonitor.end(mOnFreqChanged, begin);
+        }
+    }
+
+    @Override
+    public void onScanResult(int freq, int signalStrength) {
+        final RadioManager.RadioListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onScanResult(freq, signalStrength);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnScanResult, e);
+            }
+            mMonitor.end(mOnScanResult, begin);
+        }
+    }
+
+    @Override
+    public void onScanStart(boolean isScanAll) {
+        final RadioManager.RadioListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onScanStart(isScanAll);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnScanStart, e);
+            }
+            mMonitor.end(mOnScanStart, begin);
+        }
+    }
+
+    @Override
+    public void onScanEnd(boolean isScanAll) {
+        final RadioManager.RadioListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onScanEnd(isScanAll);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnScanEnd, e);
+            }
+            mMonitor.end(mOnScanEnd, begin);
+        }
+    }
+
+    @Override
+    public void onScanAbort(boolean isScanAll) {
+        final RadioManager.RadioListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onScanAbort(isScanAll);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnScanAbort, e);
+            }
+            mMonitor.end(mOnScanAbort, begin);
+        }
+    }
+
+    @Override
+    public void onSignalUpdate(int freq, int signalStrength) {
+        final RadioManager.RadioListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onSignalUpdate(freq, signalStrength);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnSignalUpdate, e);
+            }
+            mMonitor.end(mOnSignalUpdate, begin);
+        }
+    }
+
+    @Override
+    public void suspend() {
+        final RadioManager.RadioListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.suspend();
+            } catch (RuntimeException e) {
+                mMonitor.fail(mSuspend, e);
+            }
+            mMonitor.end(mSuspend, begin);
+        }
+    }
+
+    @Override
+    public void resume() {
+        final RadioManager.RadioListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.resume();
+            } catch (RuntimeException e) {
+                mMonitor.fail(mResume, e);
+            }
+            mMonitor.end(mResume, begin);
+        }
+    }
+
+    @Override
+    public void pause() {
+        final RadioManager.RadioListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.pause();
+            } catch (RuntimeException e) {
+                mMonitor.fail(mPause, e);
+            }
+            mMonitor.end(mPause, begin);
+        }
+    }
+
+    @Override
+    public void play() {
+        final RadioManager.RadioListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.play();
+            } catch (RuntimeException e) {
+                mMonitor.fail(mPlay, e);
+            }
+            mMonitor.end(mPlay, begin);
+        }
+    }
+
+    @Override
+    public void playPause() {
+        final RadioManager.RadioListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.playPause();
+            } catch (RuntimeException e) {
+                mMonitor.fail(mPlayPause, e);
+            }
+            mMonitor.end(mPlayPause, begin);
+        }
+    }
+
+    @Override
+    public void stop() {
+        final RadioManager.RadioListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.stop();
+            } catch (RuntimeException e) {
+                mMonitor.fail(mStop, e);
+            }
+            mMonitor.end(mStop, begin);
+        }
+    }
+
+    @Override
+    public void next() {
+        final RadioManager.RadioListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.next();
+            } catch (RuntimeException e) {
+                mMonitor.fail(mNext, e);
+            }
+            mMonitor.end(mNext, begin);
+        }
+    }
+
+    @Override
+    public void prev() {
+        final RadioManager.RadioListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.prev();
+            } catch (RuntimeException e) {
+                mMonitor.fail(mPrev, e);
+            }
+            mMonitor.end(mPrev, begin);
+        }
+    }
+
+    @Override
+    public void quitApp() {
+        final RadioManager.RadioListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.quitApp();
+            } catch (RuntimeException e) {
+                mMonitor.fail(mQuitApp, e);
+            }
+            mMonitor.end(mQuitApp, begin);
+        }
+    }
+
+    @Override
+    public void select(int index) {
+        final RadioManager.RadioListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.select(index);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mSelect, e);
+            }
+            mMonitor.end(mSelect, begin);
+        }
+    }
+
+    @Override
+    public void setFavour(boolean isFavour) {
+        final RadioManager.RadioListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.setFavour(isFavour);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mSetFavour, e);
+            }
+            mMonitor.end(mSetFavour, begin);
+        }
+    }
+
+    @Override
+    public void onRdsPsChanged(int pi, int freq, String ps) {
+        final RadioManager.RadioListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onRdsPsChanged(pi, freq, ps);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnRdsPsChanged, e);
+            }
+            mMonitor.end(mOnRdsPsChanged, begin);
+        }
+    }
+
+    @Override
+    public void onRdsRtChanged(int pi, int freq, String rt) {
+        final RadioManager.RadioListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onRdsRtChanged(pi, freq, rt);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnRdsRtChanged, e);
+            }
+            mMonitor.end(mOnRdsRtChanged, begin);
+        }
+    }
+
+    @Override
+    public void onRdsMaskChanged(int pi, int freq, int pty, int tp, int ta) {
+        final RadioManager.RadioListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.onRdsMaskChanged(pi, freq, pty, tp, ta);
+            } catch (RuntimeException e) {
+                mMonitor.fail(mOnRdsMaskChanged, e);
+            }
+            mMonitor.end(mOnRdsMaskChanged, begin);
+        }
+    }
+
+    @Override
+    public void scanUp() {
+        final RadioManager.RadioListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.scanUp();
+            } catch (RuntimeException e) {
+                mMonitor.fail(mScanUp, e);
+            }
+            mMonitor.end(mScanUp, begin);
+        }
+    }
+
+    @Override
+    public void scanDown() {
+        final RadioManager.RadioListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.scanDown();
+            } catch (RuntimeException e) {
+                mMonitor.fail(mScanDown, e);
+            }
+            mMonitor.end(mScanDown, begin);
+        }
+    }
+
+    @Override
+    public void scanAll() {
+        final RadioManager.RadioListener listener = mListener;
+        if (listener != null) {
+            final long begin = mMonitor.begin();
+            try {
+                listener.scanAll();
+            } catch (RuntimeException e) {
+                mMonitor.fail(mScanAll, e);
+            }
+            mMonitor.end(mScanAll, begin);
+        }
+    }
+}
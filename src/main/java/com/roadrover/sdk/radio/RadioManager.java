@@ -19,10 +19,13 @@ import org.greenrobot.eventbus.ThreadMode;
 public class RadioManager extends BaseManager {
 	private IRadio mRadioInterface; // 收音机接口类
 	private RadioListener mRadioListener;
+	private final DirectRadioListener mDirectRadio = new DirectRadioListener(mDirectCallbackMonitor); // 在binder线程中直接回调的监听，不经过 mTelemetry 合并
 	private boolean mIsOpen = false;
 	private int mFreq = -1;
 	private int mAudioZone = IVIMedia.Zone.UNKNOWN;
 	private RadioScanAbortListener mRadioScanAbortListener ;   // 直接监听 收音机 搜索过程中停止
+	private RadioTelemetry mTelemetry = new RadioTelemetry(); // 信号强度、搜台结果和RDS的回调通道，合并之后再发事件
+	private volatile RadioStationMap mStationMap = null; // 客户端电台表，调用 getStationMap 之后才会创建
 
 	public interface RadioListener {
 		void onFreqChanged(int freq);
@@ -61,14 +64,59 @@ public class RadioManager extends BaseManager {
 	public RadioManager(Context context, ConnectListener connectListener, RadioListener radioListener) {
 		super(context, connectListener, true);
 		mRadioListener = radioListener;
+		mTelemetry.setSink(mTelemetrySink);
+	}
+
+	/**
+	 * 设置在binder线程中直接回调的监听，不经过EventBus和主线程，信号强度、搜台结果和RDS数据也不按间隔合并 <br/>
+	 * 回调时services在等待返回，监听里不能做耗时操作，也不能直接操作界面，
+	 * 耗时见 {@link #getDirectCallbackMonitor()}；和构造函数传入的监听互不影响，可以同时使用
+	 * @param listener 监听，null表示取消
+	 */
+	public void setDirectRadioListener(RadioListener listener) {
+		mDirectRadio.setListener(listener);
+	}
+
+	/**
+	 * 设置信号强度、搜台结果和RDS数据的回调间隔，默认 {@value RadioTelemetry#DEFAULT_INTERVAL_MS}ms
+	 * 一个间隔内同一个频率的数据只回调最新的值，相同PI的重复RT文本不回调，
+	 * {@link IVIRadio.EventScanResult}、{@link IVIRadio.EventSignalUpdate}、{@link IVIRadio.EventRdsPs}、
+	 * {@link IVIRadio.EventRdsRt}、{@link IVIRadio.EventRdsMask} 事件也按这个间隔发送
+	 * @param intervalMs 单位ms，0表示每个数据都尽快回调
+	 */
+	public void setTelemetryInterval(int intervalMs) {
+		mTelemetry.setInterval(intervalMs);
+	}
+
+	/**
+	 * 获取客户端的电台表，第一次调用时在后台加载上次保存的电台，之后由收音机的回调增量更新
+	 * 电台表是进程内唯一的，同一个进程多个 RadioManager 对象共用，{@link #disconnect()} 之后返回null
+	 */
+	public RadioStationMap getStationMap() {
+		if (mStationMap == null) {
+			synchronized (this) {
+				if (mStationMap == null) {
+					mStationMap = RadioStationMap.acquire(mContext);
+				}
+			}
+		}
+		return mStationMap;
 	}
 
 	@Override
 	public void disconnect() {
 		mRadioInterface = null;
 		mRadioListener = null;
+		mDirectRadio.setListener(null);
+		mTelemetry.setSink(null);
 		mRadioCallback = null;
 		mRadioScanAbortListener = null;
+		synchronized (this) {
+			if (mStationMap != null) {
+				mStationMap.release();
+				mStationMap = null;
+			}
+		}
 		super.disconnect();
 	}
 
@@ -79,7 +127,7 @@ public class RadioManager extends BaseManager {
 
 	@Override
 	protected void onServiceConnected(IBinder service) {
-		mRadioInterface = IRadio.Stub.asInterface(service);
+		mRadioInterface = wrapInterface(IRadio.class, IRadio.Stub.asInterface(service));
 		if (mIsOpen) {
 			Logcat.d("Reopen radio: " + mFreq + " at service connected on zone: " + IVIMedia.Zone.getName(mAudioZone));
 			if (mFreq != -1) {
@@ -228,24 +276,73 @@ public class RadioManager extends BaseManager {
 		}
 	}
 
+	/**
+	 * mTelemetry 合并之后在主线程中发送事件，事件对象只按回调间隔创建
+	 */
+	private final RadioTelemetry.Sink mTelemetrySink = new RadioTelemetry.Sink() {
+		@Override
+		public void onScanResult(int freq, int signalStrength) {
+			post(new IVIRadio.EventScanResult(freq, signalStrength));
+		}
+
+		@Override
+		public void onSignalUpdate(int freq, int signalStrength) {
+			post(new IVIRadio.EventSignalUpdate(freq, signalStrength));
+		}
+
+		@Override
+		public void onRdsPsChanged(int pi, int freq, String ps) {
+			post(new IVIRadio.EventRdsPs(pi, freq, ps));
+		}
+
+		@Override
+		public void onRdsRtChanged(int pi, int freq, String rt) {
+			post(new IVIRadio.EventRdsRt(pi, freq, rt));
+		}
+
+		@Override
+		public void onRdsMaskChanged(int pi, int freq, int pty, int tp, int ta) {
+			post(new IVIRadio.EventRdsMask(pi, freq, pty, tp, ta));
+		}
+	};
+
 	private IRadioCallback mRadioCallback = new IRadioCallback.Stub() {
 		@Override
 		public void onFreqChanged(int freq) {
+			mDirectRadio.onFreqChanged(freq);
+			mTelemetry.resetRt();
 			post(new IVIRadio.EventFreqChanged(freq));
 		}
 
 		@Override
 		public void onScanResult(int freq, int signalStrength) {
-			post(new IVIRadio.EventScanResult(freq, signalStrength));
+			RadioStationMap stationMap = mStationMap;
+			if (stationMap != null) {
+				stationMap.onScanResult(freq, signalStrength);
+			}
+			mDirectRadio.onScanResult(freq, signalStrength);
+			mTelemetry.onScanResult(freq, signalStrength);
 		}
 
 		@Override
 		public void onScanStart(boolean isScanAll) {
+			RadioStationMap stationMap = mStationMap;
+			if (stationMap != null) {
+				stationMap.onScanStart(isScanAll);
+			}
+			mDirectRadio.onScanStart(isScanAll);
+			mTelemetry.flushSoon();
 			post(new IVIRadio.EventScanStart(isScanAll));
 		}
 
 		@Override
 		public void onScanEnd(boolean isScanAll) {
+			RadioStationMap stationMap = mStationMap;
+			if (stationMap != null) {
+				stationMap.onScanEnd(isScanAll);
+			}
+			mDirectRadio.onScanEnd(isScanAll);
+			mTelemetry.flushSoon(); // 搜台结果先于搜台结束回调
 			post(new IVIRadio.EventScanEnd(isScanAll));
 		}
 
@@ -255,40 +352,56 @@ public class RadioManager extends BaseManager {
 			if(mRadioScanAbortListener != null){
 				mRadioScanAbortListener.onScanAbort(isScanAll);
 			}
+			RadioStationMap stationMap = mStationMap;
+			if (stationMap != null) {
+				stationMap.onScanAbort(isScanAll);
+			}
+			mDirectRadio.onScanAbort(isScanAll);
+			mTelemetry.flushSoon();
 			post(new IVIRadio.EventScanAbort(isScanAll));
 		}
 
 		@Override
 		public void onSignalUpdate(int freq, int signalStrength) {
-			post(new IVIRadio.EventSignalUpdate(freq, signalStrength));
+			RadioStationMap stationMap = mStationMap;
+			if (stationMap != null) {
+				stationMap.onSignalUpdate(freq, signalStrength);
+			}
+			mDirectRadio.onSignalUpdate(freq, signalStrength);
+			mTelemetry.onSignalUpdate(freq, signalStrength);
 		}
 
         @Override
         public void suspend() throws RemoteException {
+            mDirectRadio.suspend();
             post(new IVIRadio.EventControl(
                     IVIRadio.EventControl.Action.SUSPEND));
         }
 
         @Override
         public void resume() throws RemoteException {
+            mDirectRadio.resume();
             post(new IVIRadio.EventControl(
                     IVIRadio.EventControl.Action.RESUME));
         }
 
         @Override
         public void pause() throws RemoteException {
+            mDirectRadio.pause();
             post(new IVIRadio.EventControl(
                     IVIRadio.EventControl.Action.PAUSE));
         }
 
         @Override
         public void play() throws RemoteException {
+            mDirectRadio.play();
             post(new IVIRadio.EventControl(
                     IVIRadio.EventControl.Action.PLAY));
         }
 
 		@Override
 		public void playPause() throws RemoteException {
+			mDirectRadio.playPause();
 			post(new IVIRadio.EventControl(
 					IVIRadio.EventControl.Action.PLAY_PAUSE));
 		}
@@ -296,53 +409,70 @@ public class RadioManager extends BaseManager {
         @Override
 		public void stop() {
 			mIsOpen = false;
+			mDirectRadio.stop();
 			post(new IVIRadio.EventControl(
 					IVIRadio.EventControl.Action.STOP));
 		}
 
 		@Override
 		public void next() {
+			mDirectRadio.next();
 			post(new IVIRadio.EventControl(
 					IVIRadio.EventControl.Action.NEXT));
 		}
 
 		@Override
 		public void prev() {
+			mDirectRadio.prev();
 			post(new IVIRadio.EventControl(
 					IVIRadio.EventControl.Action.PREV));
 		}
 
 		@Override
 		public void quitApp() {
+			mDirectRadio.quitApp();
 			post(new IVIRadio.EventControl(
 					IVIRadio.EventControl.Action.QUIT_APP));
 		}
 
 		@Override
 		public void select(int index) {
+			mDirectRadio.select(index);
 			post(new IVIRadio.EventControl(
 					IVIRadio.EventControl.Action.SELECT, index));
 		}
 
 		@Override
 		public void setFavour(boolean isFavour) {
+			mDirectRadio.setFavour(isFavour);
 			post(new IVIRadio.EventControl(
 					IVIRadio.EventControl.Action.SET_FAVOUR, isFavour ? 1 : 0));
 		}
 
 		@Override
 		public void onRdsPsChanged(int pi, int freq, String ps) {
-			post(new IVIRadio.EventRdsPs(pi, freq, ps));
+			RadioStationMap stationMap = mStationMap;
+			if (stationMap != null) {
+				stationMap.onRdsPsChanged(pi, freq, ps);
+			}
+			mDirectRadio.onRdsPsChanged(pi, freq, ps);
+			mTelemetry.onRdsPsChanged(pi, freq, ps);
 		}
 
 		@Override
 		public void onRdsRtChanged(int pi, int freq, String rt) {
-			post(new IVIRadio.EventRdsRt(pi, freq, rt));
+			mDirectRadio.onRdsRtChanged(pi, freq, rt);
+			mTelemetry.onRdsRtChanged(pi, freq, rt);
 		}
 
 		@Override
 		public void onRdsMaskChanged(int pi, int freq, int pty, int tp, int ta) {
-			post(new IVIRadio.EventRdsMask(pi, freq, pty, tp, ta));
+			RadioStationMap stationMap = mStationMap;
+			if (stationMap != null) {
+				stationMap.onRdsMaskChanged(pi, freq, pty);
+			}
+			mDirectRadio.onRdsMaskChanged(pi, freq, pty, tp, ta);
+			mTelemetry.onRdsMaskChanged(pi, freq, pty, tp, ta);
 		}
 
 		@Override
@@ -353,18 +483,21 @@ public class RadioManager extends BaseManager {
 
 		@Override
 		public void scanUp() throws RemoteException {
+			mDirectRadio.scanUp();
 			post(new IVIRadio.EventControl(
 					IVIRadio.EventControl.Action.SCAN_UP));
 		}
 
 		@Override
 		public void scanDown() throws RemoteException {
+			mDirectRadio.scanDown();
 			post(new IVIRadio.EventControl(
 					IVIRadio.EventControl.Action.SCAN_DOWN));
 		}
 
 		@Override
 		public void scanAll() throws RemoteException {
+			mDirectRadio.scanAll();
 			post(new IVIRadio.EventControl(
 					IVIRadio.EventControl.Action.SCAN_ALL));
 		}
@@ -470,6 +603,10 @@ public class RadioManager extends BaseManager {
 	 * 会自动终止上次未完成的搜索任务
 	 */
 	public void setLocation(int location) {
+		RadioStationMap stationMap = mStationMap;
+		if (stationMap != null) {
+			stationMap.setLocation(location);
+		}
 		if (null != mRadioInterface) {
 			try {
 				mRadioInterface.setLocation(location);
@@ -722,7 +859,7 @@ public class RadioManager extends BaseManager {
 	}
 
 	/**
-	 * 获取PS文本
+	 * 获取PS文本，每次都是跨进程调用，不需要最新值时可以使用 {@link RadioStationMap#getPs(int)}
 	 * @param freq 指定频率
 	 */
 	public String getPSText(int freq) {
@@ -2,16 +2,16 @@ package com.roadrover.sdk.radio;
 
 import android.content.ContentProviderClient;
 import android.content.Context;
-import android.database.ContentObserver;
 import android.database.Cursor;
 import android.database.SQLException;
 import android.net.Uri;
-import android.os.Handler;
 
 import com.roadrover.sdk.utils.Logcat;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 收音机数据.
@@ -39,6 +39,7 @@ public class RadioModel {
 
     /**
      * 获取收音机站台频率列表，该方法时直接获取收音机数据库的数据
+     * 频繁读取或者需要按频率查找时使用 {@link RadioStationRepository}
      *
      * @param context
      * @return
@@ -66,9 +67,9 @@ public class RadioModel {
                         station.mPosition = cursor.getInt(cursor.getColumnIndex(Provider.TableColumns.KEY_POSITION));
                         station.mIsLove = cursor.getInt(cursor.getColumnIndex(Provider.TableColumns.KEY_ISLOVE));
                         stations.add(station);
-                        Logcat.d("station = " + station.toString());
                     } while (cursor.moveToNext());
                 }
+                Logcat.dFormat("stations:%d", stations.size());
             } catch (SQLException e) {
                 e.printStackTrace();
             } finally {
@@ -85,31 +86,34 @@ public class RadioModel {
         void onChange(List<RadioModel.Station> stations);
     }
 
-    private static ContentObserver mContentObserver = null;
+    /**已经注册的监听，每个对应一个站台缓存的监听*/
+    private static final Map<ModelListener, RadioStationRepository.OnStationsChangedListener> sListeners = new HashMap<>();
 
     /**
      * 监听收音站台频率的接口，语音等应用需要知道收音站台频率发生改变
+     * 站台列表在后台线程中加载，自动搜台时连续的改变只回调一次，列表内容没有改变时不回调；
+     * 需要知道具体哪些站台改变时使用 {@link RadioStationRepository#registerListener}
      *
      * @param context
      * @param listener
      */
     public static void registerStationListener(final Context context, final ModelListener listener) {
         if (context != null && listener != null) {
-            if (mContentObserver != null) {
-                return;
-            }
-            mContentObserver = new ContentObserver(new Handler()) {
-                @Override
-                public void onChange(boolean selfChange) {
-                    Logcat.d("selfChange:" + selfChange);
-                    if (!selfChange) {
-                        if (listener != null) {
-                            listener.onChange(getStationList(context));
-                        }
-                    }
+            RadioStationRepository.OnStationsChangedListener stationsListener;
+            synchronized (sListeners) {
+                if (sListeners.containsKey(listener)) {
+                    return;
                 }
-            };
-            context.getContentResolver().registerContentObserver(Provider.TableColumns.CONTENT_URI, false, mContentObserver);
+                stationsListener = new RadioStationRepository.OnStationsChangedListener() {
+                    @Override
+                    public void onStationsChanged(List<Station> stations, List<Station> added,
+                                                  List<Station> removed, List<Station> changed) {
+                        listener.onChange(new ArrayList<>(stations));
+                    }
+                };
+                sListeners.put(listener, stationsListener);
+            }
+            RadioStationRepository.getInstance(context).registerListener(stationsListener);
         }
     }
 
@@ -119,9 +123,14 @@ public class RadioModel {
      * @param context
      */
     public static void unregisterStationListener(Context context) {
-        if (context != null && mContentObserver != null) {
-            context.getContentResolver().unregisterContentObserver(mContentObserver);
-            mContentObserver = null;
+        if (context != null) {
+            RadioStationRepository repository = RadioStationRepository.getInstance(context);
+            synchronized (sListeners) {
+                for (RadioStationRepository.OnStationsChangedListener stationsListener : sListeners.values()) {
+                    repository.unregisterListener(stationsListener);
+                }
+                sListeners.clear();
+            }
         }
     }
 
@@ -0,0 +1,488 @@
+package com.roadrover.sdk.radio;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.text.TextUtils;
+import android.util.SparseArray;
+
+import com.roadrover.sdk.system.IVIConfig;
+import com.roadrover.sdk.utils.Logcat;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 客户端的电台表，按频率索引
+ * 合并搜台结果、信号强度和RDS的PS、PTY，按收音机区域分别保存到应用的私有目录，
+ * 应用启动时不需要重新搜台就可以得到电台列表和AF候选频率，之后由 {@link RadioManager} 的回调增量更新；
+ * 读取PS不需要再通过 {@link RadioManager#getPSText(int)} 跨进程调用；
+ * 电台表是进程内唯一的，多个 {@link RadioManager} 共用，最后一个使用的 RadioManager 断开时保存并退出文件读写线程
+ * @使用方法 {@link RadioManager#getStationMap()}
+ */
+public final class RadioStationMap {
+
+    private static final int MAGIC = 0x52525354; // "RRST"
+    private static final int VERSION = 1;
+    private static final String FILE_NAME = "radio-stations-%d.dat";
+    /**最后一次改变之后多久保存，单位ms*/
+    private static final int SAVE_DELAY_MS = 2000;
+
+    /**
+     * 一个电台
+     */
+    public static final class Entry {
+        /** 频率 KHz */
+        public int mFreq;
+        /** 最近一次的信号强度 */
+        public int mSignalStrength;
+        /** RDS PI，没有收到为 {@link IVIRadio.RDS#PI_UNKNOWN} */
+        public int mPI = IVIRadio.RDS.PI_UNKNOWN;
+        /** RDS PS，没有收到为null */
+        public String mPs;
+        /** RDS 节目类型，没有收到为 {@link IVIRadio.RDS#PTY_UNKNOWN} */
+        public int mPty = IVIRadio.RDS.PTY_UNKNOWN;
+        /** 最近一次收到该频率数据的时间，System.currentTimeMillis() */
+        public long mLastSeen;
+
+        Entry(int freq) {
+            mFreq = freq;
+        }
+
+        Entry(Entry other) {
+            mFreq = other.mFreq;
+            mSignalStrength = other.mSignalStrength;
+            mPI = other.mPI;
+            mPs = other.mPs;
+            mPty = other.mPty;
+            mLastSeen = other.mLastSeen;
+        }
+
+        @Override
+        public String toString() {
+            return "mFreq = " + mFreq + ", mSignalStrength = " + mSignalStrength + ", mPI = " + mPI
+                    + ", mPs = " + mPs + ", mPty = " + mPty;
+        }
+    }
+
+    private static RadioStationMap sInstance = null;
+
+    private final File mDir;
+    private final Object mFileLock = new Object(); // 退出中的线程和新线程不能同时写文件
+    private Handler mHandler = null; // 文件读写线程，没有 RadioManager 使用时为空，由 this 保护
+    private int mRefCount = 0;
+    private final SparseArray<Entry> mEntries = new SparseArray<>(); // 频率 -> 电台，由 this 保护
+    private int mLocation;
+    private boolean mLoaded = false;
+    private long mScanAllStartTime = 0; // 正在全部搜台时不为0
+
+    private final Runnable mSaveRunnable = new Runnable() {
+        @Override
+        public void run() {
+            save();
+        }
+    };
+
+    private RadioStationMap(Context context) {
+        mDir = context.getFilesDir();
+        mLocation = IVIConfig.getRadioDefaultLocation();
+    }
+
+    /**
+     * 获取进程内唯一的电台表并增加引用计数，和 {@link #release()} 成对调用
+     * @param context 上下文对象
+     * @return context 为空返回null
+     */
+    static synchronized RadioStationMap acquire(Context context) {
+        if (context == null) {
+            return null;
+        }
+        if (sInstance == null) {
+            Context appContext = context.getApplicationContext();
+            sInstance = new RadioStationMap(appContext != null ? appContext : context);
+        }
+        sInstance.retain();
+        return sInstance;
+    }
+
+    private synchronized void retain() {
+        if (mRefCount++ == 0) {
+            HandlerThread thread = new HandlerThread("RadioStationMap");
+            thread.start();
+            mHandler = new Handler(thread.getLooper());
+            if (!mLoaded) {
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        load();
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * 减少引用计数，最后一个引用释放时保存未保存的改变并退出文件读写线程，内存中的电台表保留到下次使用
+     */
+    synchronized void release() {
+        if (mRefCount <= 0 || --mRefCount > 0) {
+            return;
+        }
+        final Handler handler = mHandler;
+        mHandler = null;
+        handler.removeCallbacks(mSaveRunnable);
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                save();
+                handler.getLooper().quit();
+            }
+        });
+    }
+
+    /**
+     * 切换收音机区域，保存当前区域的电台表，加载新区域的电台表
+     * @param location 区域 {@link IVIRadio.Location}
+     */
+    void setLocation(final int location) {
+        final Handler handler;
+        synchronized (this) {
+            if (mLocation == location || mHandler == null) {
+                return;
+            }
+            handler = mHandler;
+        }
+        handler.removeCallbacks(mSaveRunnable);
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                save();
+                synchronized (RadioStationMap.this) {
+                    mLocation = location;
+                    mLoaded = false;
+                    mEntries.clear();
+                }
+                load();
+            }
+        });
+    }
+
+    void onScanStart(boolean isScanAll) {
+        if (isScanAll) {
+            synchronized (this) {
+                mScanAllStartTime = System.currentTimeMillis();
+            }
+        }
+    }
+
+    /**
+     * 全部搜台完成后删除这次没有搜到的电台
+     */
+    void onScanEnd(boolean isScanAll) {
+        if (isScanAll) {
+            synchronized (this) {
+                if (mScanAllStartTime != 0) {
+                    for (int i = mEntries.size() - 1; i >= 0; --i) {
+                        if (mEntries.valueAt(i).mLastSeen < mScanAllStartTime) {
+                            mEntries.removeAt(i);
+                        }
+                    }
+                    mScanAllStartTime = 0;
+                }
+            }
+            scheduleSave();
+        }
+    }
+
+    void onScanAbort(boolean isScanAll) {
+        if (isScanAll) {
+            synchronized (this) {
+                mScanAllStartTime = 0;
+            }
+        }
+    }
+
+    void onScanResult(int freq, int signalStrength) {
+        synchronized (this) {
+            Entry entry = obtain(freq);
+            entry.mSignalStrength = signalStrength;
+            entry.mLastSeen = System.currentTimeMillis();
+        }
+        scheduleSave();
+    }
+
+    /**
+     * 信号强度只更新已经在表中的电台，不保存，避免持续写文件
+     */
+    void onSignalUpdate(int freq, int signalStrength) {
+        synchronized (this) {
+            Entry entry = mEntries.get(freq);
+            if (entry != null) {
+                entry.mSignalStrength = signalStrength;
+                entry.mLastSeen = System.currentTimeMillis();
+            }
+        }
+    }
+
+    void onRdsPsChanged(int pi, int freq, String ps) {
+        synchronized (this) {
+            Entry entry = obtain(freq);
+            if (entry.mPI == pi && TextUtils.equals(entry.mPs, ps)) {
+                return;
+            }
+            entry.mPI = pi;
+            entry.mPs = ps;
+            entry.mLastSeen = System.currentTimeMillis();
+        }
+        scheduleSave();
+    }
+
+    void onRdsMaskChanged(int pi, int freq, int pty) {
+        synchronized (this) {
+            Entry entry = obtain(freq);
+            if (entry.mPI == pi && entry.mPty == pty) {
+                return;
+            }
+            entry.mPI = pi;
+            entry.mPty = pty;
+        }
+        scheduleSave();
+    }
+
+    /**
+     * 获取当前区域
+     * @return {@link IVIRadio.Location}
+     */
+    public synchronized int getLocation() {
+        return mLocation;
+    }
+
+    /**
+     * 电台表是否已经从文件加载完成
+     */
+    public synchronized boolean isLoaded() {
+        return mLoaded;
+    }
+
+    /**
+     * 获取一个频率的电台
+     * @param freq 频率 KHz
+     * @return 电台的拷贝，表中没有返回null
+     */
+    public synchronized Entry getEntry(int freq) {
+        Entry entry = mEntries.get(freq);
+        return entry != null ? new Entry(entry) : null;
+    }
+
+    /**
+     * 获取一个频率的PS，不需要跨进程调用
+     * @param freq 频率 KHz
+     * @return 没有收到过返回null
+     */
+    public synchronized String getPs(int freq) {
+        Entry entry = mEntries.get(freq);
+        return entry != null ? entry.mPs : null;
+    }
+
+    /**
+     * 获取电台列表
+     * @param minSignalStrength 最低信号强度，比如 {@link IVIConfig#getMinSignalLevel(int)}
+     * @return 按频率从小到大排列的电台拷贝
+     */
+    public synchronized List<Entry> getStations(int minSignalStrength) {
+        List<Entry> stations = new ArrayList<>(mEntries.size());
+        for (int i = 0; i < mEntries.size(); ++i) { // SparseArray 按频率有序
+            Entry entry = mEntries.valueAt(i);
+            if (entry.mSignalStrength >= minSignalStrength) {
+                stations.add(new Entry(entry));
+            }
+        }
+        return stations;
+    }
+
+    /**
+     * 获取AF候选频率，即PI相同的其它频率
+     * @param pi RDS PI
+     * @param currentFreq 当前频率，不包含在结果中
+     * @return 按信号强度从大到小排列的频率
+     */
+    public List<Integer> getAfCandidates(int pi, int currentFreq) {
+        final List<Entry> candidates = new ArrayList<>();
+        if (pi != IVIRadio.RDS.PI_UNKNOWN) {
+            synchronized (this) {
+                for (int i = 0; i < mEntries.size(); ++i) {
+                    Entry entry = mEntries.valueAt(i);
+                    if (entry.mPI == pi && entry.mFreq != currentFreq) {
+                        candidates.add(new Entry(entry));
+                    }
+                }
+            }
+        }
+        Collections.sort(candidates, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry lhs, Entry rhs) {
+                return rhs.mSignalStrength - lhs.mSignalStrength;
+            }
+        });
+        List<Integer> freqs = new ArrayList<>(candidates.size());
+        for (Entry entry : candidates) {
+            freqs.add(entry.mFreq);
+        }
+        return freqs;
+    }
+
+    private Entry obtain(int freq) {
+        Entry entry = mEntries.get(freq);
+        if (entry == null) {
+            entry = new Entry(freq);
+            mEntries.put(freq, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * 没有 RadioManager 使用时不保存，改变留在内存中，下次使用时再保存
+     */
+    private synchronized void scheduleSave() {
+        if (mHandler != null) {
+            mHandler.removeCallbacks(mSaveRunnable);
+            mHandler.postDelayed(mSaveRunnable, SAVE_DELAY_MS);
+        }
+    }
+
+    private File getFile(int location) {
+        return new File(mDir, String.format(FILE_NAME, location));
+    }
+
+    /**
+     * 从文件加载，加载之前已经收到的数据优先
+     */
+    private void load() {
+        final int location;
+        synchronized (this) {
+            location = mLocation;
+        }
+        File file = getFile(location);
+        List<Entry> entries = new ArrayList<>();
+        if (file.exists()) {
+            DataInputStream in = null;
+            try {
+                in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+                if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readInt() != location) {
+                    throw new IOException("bad header");
+                }
+                final int count = in.readInt();
+                for (int i = 0; i < count; ++i) {
+                    Entry entry = new Entry(in.readInt());
+                    entry.mSignalStrength = in.readInt();
+                    entry.mPI = in.readInt();
+                    entry.mPty = in.readInt();
+                    entry.mLastSeen = in.readLong();
+                    entry.mPs = in.readBoolean() ? in.readUTF() : null;
+                    entries.add(entry);
+                }
+            } catch (IOException e) {
+                Logcat.w("load " + file + " failed, " + e);
+                entries.clear();
+            } finally {
+                if (in != null) {
+                    try {
+                        in.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        }
+
+        boolean changed = false;
+        synchronized (this) {
+            if (location == mLocation) {
+                changed = mEntries.size() > 0; // 加载之前收到的数据需要保存
+                for (Entry entry : entries) {
+                    if (mEntries.get(entry.mFreq) == null) {
+                        mEntries.put(entry.mFreq, entry);
+                    }
+                }
+                mLoaded = true;
+            }
+        }
+        if (changed) {
+            scheduleSave();
+        }
+        Logcat.d("location:" + location + " stations:" + entries.size());
+    }
+
+    /**
+     * 保存到文件，先写临时文件再重命名，掉电时不会破坏原来的文件
+     */
+    private void save() {
+        final int location;
+        final List<Entry> entries = new ArrayList<>();
+        synchronized (this) {
+            if (!mLoaded) { // 还没有加载，保存会覆盖文件中的电台
+                return;
+            }
+            location = mLocation;
+            for (int i = 0; i < mEntries.size(); ++i) {
+                entries.add(new Entry(mEntries.valueAt(i)));
+            }
+        }
+
+        synchronized (mFileLock) {
+            write(location, entries);
+        }
+    }
+
+    private void write(int location, List<Entry> entries) {
+        File file = getFile(location);
+        File tmp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            FileOutputStream fos = new FileOutputStream(tmp);
+            out = new DataOutputStream(new BufferedOutputStream(fos));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(location);
+            out.writeInt(entries.size());
+            for (Entry entry : entries) {
+                out.writeInt(entry.mFreq);
+                out.writeInt(entry.mSignalStrength);
+                out.writeInt(entry.mPI);
+                out.writeInt(entry.mPty);
+                out.writeLong(entry.mLastSeen);
+                out.writeBoolean(entry.mPs != null);
+                if (entry.mPs != null) {
+                    out.writeUTF(entry.mPs);
+                }
+            }
+            out.flush();
+            fos.getFD().sync();
+            out.close();
+            out = null;
+            if (!tmp.renameTo(file)) {
+                Logcat.w("rename " + tmp + " failed");
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.roadrover.sdk.radio;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.text.TextUtils;
+
+import com.roadrover.sdk.utils.Logcat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 收音机站台列表的进程内缓存
+ * 整个进程只注册一个 {@link ContentObserver}，在后台线程中加载站台列表；
+ * 自动搜台时数据库每秒会改变很多次，连续的改变在 {@link #COALESCE_DELAY_MS} 内只加载一次，
+ * 一直在改变时最多等待 {@link #MAX_COALESCE_DELAY_MS} 也会加载一次，搜台过程中监听者能看到新搜到的站台；
+ * 每次加载后按 波段+频率 和上一次的列表比较，只把新增、删除和改变了的站台通知给监听者；
+ * 按频率查找站台不需要遍历列表
+ * @注意 返回的站台对象是共享的，调用者不要修改
+ */
+public final class RadioStationRepository {
+
+    /**
+     * 连续的数据库改变合并加载的时间，单位ms
+     */
+    public static final int COALESCE_DELAY_MS = 300;
+
+    /**
+     * 连续改变时，从第一次改变开始最多等待的时间，单位ms
+     */
+    public static final int MAX_COALESCE_DELAY_MS = 4 * COALESCE_DELAY_MS;
+
+    /**
+     * 站台列表改变的监听，在主线程中回调
+     */
+    public interface OnStationsChangedListener {
+        /**
+         * 站台列表改变
+         * @param stations 改变后的全部站台，不可修改
+         * @param added 新增的站台
+         * @param removed 删除的站台
+         * @param changed 波段和频率不变，其它内容改变了的站台
+         */
+        void onStationsChanged(List<RadioModel.Station> stations, List<RadioModel.Station> added,
+                               List<RadioModel.Station> removed, List<RadioModel.Station> changed);
+    }
+
+    /**
+     * 一次加载的不可变结果
+     */
+    private static final class Snapshot {
+        final List<RadioModel.Station> mStations;
+        final Map<Long, RadioModel.Station> mByKey; // 波段+频率 -> 站台
+        final Map<Integer, RadioModel.Station> mByFreq; // 频率 -> 列表中的第一个站台
+
+        Snapshot(List<RadioModel.Station> stations) {
+            mStations = Collections.unmodifiableList(stations);
+            mByKey = new HashMap<>(stations.size() * 2);
+            mByFreq = new HashMap<>(stations.size() * 2);
+            for (RadioModel.Station station : stations) {
+                mByKey.put(getKey(station.mBand, station.mFreq), station);
+                if (!mByFreq.containsKey(station.mFreq)) {
+                    mByFreq.put(station.mFreq, station);
+                }
+            }
+        }
+    }
+
+    private static RadioStationRepository sInstance = null;
+
+    private final Context mContext;
+    private final Handler mHandler; // 后台线程的handler，数据库查询都在该线程
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final ContentObserver mContentObserver;
+    private final List<OnStationsChangedListener> mListeners = new CopyOnWriteArrayList<>();
+    private volatile Snapshot mSnapshot = null; // 为空表示还没有加载
+    private boolean mObserving = false;
+    private long mFirstChangeTime = -1; // 还没有加载的第一次改变的时间，-1表示没有，只在后台线程访问
+
+    private final Runnable mReloadRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mFirstChangeTime = -1;
+            reload();
+        }
+    };
+
+    private RadioStationRepository(Context context) {
+        mContext = context;
+        HandlerThread thread = new HandlerThread("RadioStations");
+        thread.start();
+        mHandler = new Handler(thread.getLooper());
+        mContentObserver = new ContentObserver(mHandler) {
+            @Override
+            public void onChange(boolean selfChange) {
+                if (!selfChange) {
+                    // 合并连续的改变，最后一次改变之后再加载，但是不超过第一次改变之后的最大等待时间
+                    final long now = SystemClock.uptimeMillis();
+                    if (mFirstChangeTime < 0) {
+                        mFirstChangeTime = now;
+                    }
+                    final long delay = Math.min(COALESCE_DELAY_MS, mFirstChangeTime + MAX_COALESCE_DELAY_MS - now);
+                    mHandler.removeCallbacks(mReloadRunnable);
+                    mHandler.postDelayed(mReloadRunnable, Math.max(0, delay));
+                }
+            }
+        };
+    }
+
+    /**
+     * 获取进程内唯一的站台列表缓存
+     * @param context 上下文对象
+     * @return context 为空返回null
+     */
+    public static synchronized RadioStationRepository getInstance(Context context) {
+        if (sInstance == null && context != null) {
+            Context appContext = context.getApplicationContext();
+            sInstance = new RadioStationRepository(appContext != null ? appContext : context);
+        }
+        return sInstance;
+    }
+
+    /**
+     * 注册站台列表改变的监听，第一个监听者注册时开始监听数据库，并在后台线程中加载
+     * @param listener 监听对象
+     */
+    public void registerListener(OnStationsChangedListener listener) {
+        if (listener == null || mListeners.contains(listener)) {
+            return;
+        }
+        mListeners.add(listener);
+        synchronized (this) {
+            if (!mObserving) {
+                try {
+                    mContext.getContentResolver().registerContentObserver(Provider.TableColumns.CONTENT_URI,
+                            false, mContentObserver);
+                    mObserving = true;
+                } catch (Exception e) { // 收音机数据库不存在
+                    e.printStackTrace();
+                }
+            }
+        }
+        preload();
+    }
+
+    /**
+     * 注销站台列表改变的监听，没有监听者时不再监听数据库，缓存的列表可能会过期
+     * @param listener 监听对象
+     */
+    public void unregisterListener(OnStationsChangedListener listener) {
+        mListeners.remove(listener);
+        synchronized (this) {
+            if (mListeners.isEmpty() && mObserving) {
+                mContext.getContentResolver().unregisterContentObserver(mContentObserver);
+                mObserving = false;
+                mSnapshot = null; // 不再监听，下次使用时重新加载
+            }
+        }
+    }
+
+    /**
+     * 在后台线程中预先加载，不阻塞调用者
+     */
+    public void preload() {
+        if (mSnapshot == null) {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    ensureLoaded();
+                }
+            });
+        }
+    }
+
+    /**
+     * 获取全部站台，第一次调用时在调用线程中加载
+     * @return 不可修改的站台列表
+     */
+    public List<RadioModel.Station> getStations() {
+        return ensureLoaded().mStations;
+    }
+
+    /**
+     * 按波段和频率查找站台
+     * @param band 波段，取值见{@link IVIRadio.Band}
+     * @param freq 频率
+     * @return 没有该站台返回null
+     */
+    public RadioModel.Station getStation(int band, int freq) {
+        return ensureLoaded().mByKey.get(getKey(band, freq));
+    }
+
+    /**
+     * 按频率查找站台，不区分波段
+     * @param freq 频率
+     * @return 列表中第一个该频率的站台，没有返回null
+     */
+    public RadioModel.Station getStation(int freq) {
+        return ensureLoaded().mByFreq.get(freq);
+    }
+
+    private Snapshot ensureLoaded() {
+        Snapshot snapshot = mSnapshot;
+        if (snapshot == null) {
+            synchronized (this) {
+                snapshot = mSnapshot;
+                if (snapshot == null) {
+                    snapshot = new Snapshot(RadioModel.getStationList(mContext));
+                    if (mObserving) { // 没有监听数据库时不保存，避免一直使用过期的列表
+                        mSnapshot = snapshot;
+                    }
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * 重新加载，和上一次的结果比较后通知改变了的站台
+     */
+    private void reload() {
+        final Snapshot newSnapshot = new Snapshot(RadioModel.getStationList(mContext));
+        Snapshot oldSnapshot;
+        synchronized (this) {
+            if (!mObserving) {
+                return;
+            }
+            oldSnapshot = mSnapshot;
+            mSnapshot = newSnapshot;
+        }
+
+        final List<RadioModel.Station> added = new ArrayList<>();
+        final List<RadioModel.Station> removed = new ArrayList<>();
+        final List<RadioModel.Station> changed = new ArrayList<>();
+        if (oldSnapshot == null) {
+            added.addAll(newSnapshot.mStations);
+        } else {
+            for (Map.Entry<Long, RadioModel.Station> entry : newSnapshot.mByKey.entrySet()) {
+                RadioModel.Station old = oldSnapshot.mByKey.get(entry.getKey());
+                if (old == null) {
+                    added.add(entry.getValue());
+                } else if (!isSameContent(old, entry.getValue())) {
+                    changed.add(entry.getValue());
+                }
+            }
+            for (Map.Entry<Long, RadioModel.Station> entry : oldSnapshot.mByKey.entrySet()) {
+                if (!newSnapshot.mByKey.containsKey(entry.getKey())) {
+                    removed.add(entry.getValue());
+                }
+            }
+        }
+        if (added.isEmpty() && removed.isEmpty() && changed.isEmpty()) {
+            return;
+        }
+        Logcat.d("stations:" + newSnapshot.mStations.size() + " added:" + added.size()
+                + " removed:" + removed.size() + " changed:" + changed.size());
+
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                for (OnStationsChangedListener listener : mListeners) {
+                    listener.onStationsChanged(newSnapshot.mStations, added, removed, changed);
+                }
+            }
+        });
+    }
+
+    private static long getKey(int band, int freq) {
+        return ((long) band << 32) | (freq & 0xFFFFFFFFL);
+    }
+
+    private static boolean isSameContent(RadioModel.Station a, RadioModel.Station b) {
+        return a.mKind == b.mKind && a.mPosition == b.mPosition && a.mIsLove == b.mIsLove
+                && TextUtils.equals(a.mName, b.mName) && TextUtils.equals(a.mDesp, b.mDesp);
+    }
+}
@@ -0,0 +1,259 @@
+package com.roadrover.sdk.radio;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.text.TextUtils;
+import android.util.SparseArray;
+
+/**
+ * 收音机的信号强度、搜台结果和RDS数据通道
+ * 服务端在binder线程中回调的数据只写入最新值槽位，不创建事件对象；
+ * 主线程按 {@link #setInterval(int)} 设置的频率把槽位中的最新值交给 {@link Sink}，
+ * 搜台时同一个频率的多次信号强度只回调最后一次，RT文本和该PI上一次回调的相同时不再回调
+ */
+final class RadioTelemetry {
+
+    /**
+     * 默认的回调间隔，单位ms
+     */
+    static final int DEFAULT_INTERVAL_MS = 100;
+
+    /**
+     * 合并后的数据的接收者，在主线程中回调
+     */
+    interface Sink {
+        void onScanResult(int freq, int signalStrength);
+        void onSignalUpdate(int freq, int signalStrength);
+        void onRdsPsChanged(int pi, int freq, String ps);
+        void onRdsRtChanged(int pi, int freq, String rt);
+        void onRdsMaskChanged(int pi, int freq, int pty, int tp, int ta);
+    }
+
+    /**
+     * 按频率保存最新值的槽位，按第一次写入的顺序回调，每个槽位最多 {@link #INTS} 个整型和一个字符串
+     */
+    private static final class FreqSlots {
+        static final int INTS = 4;
+        int[] mFreqs = new int[16];
+        int[] mInts = new int[16 * INTS];
+        String[] mTexts = new String[16];
+        int mSize = 0;
+
+        void put(int freq, int a, int b, int c, int d, String text) {
+            int index = 0;
+            while (index < mSize && mFreqs[index] != freq) {
+                ++index;
+            }
+            if (index == mFreqs.length) { // 一个回调间隔内的频率超过了容量才会扩容
+                int[] freqs = new int[index * 2];
+                int[] ints = new int[index * 2 * INTS];
+                String[] texts = new String[index * 2];
+                System.arraycopy(mFreqs, 0, freqs, 0, index);
+                System.arraycopy(mInts, 0, ints, 0, index * INTS);
+                System.arraycopy(mTexts, 0, texts, 0, index);
+                mFreqs = freqs;
+                mInts = ints;
+                mTexts = texts;
+            }
+            if (index == mSize) {
+                ++mSize;
+            }
+            mFreqs[index] = freq;
+            mInts[index * INTS] = a;
+            mInts[index * INTS + 1] = b;
+            mInts[index * INTS + 2] = c;
+            mInts[index * INTS + 3] = d;
+            mTexts[index] = text;
+        }
+
+        int getInt(int index, int field) {
+            return mInts[index * INTS + field];
+        }
+
+        void clear() {
+            for (int i = 0; i < mSize; ++i) {
+                mTexts[i] = null;
+            }
+            mSize = 0;
+        }
+
+        /**
+         * 取出所有值到 out，清空自己，两个对象交替使用，不需要重新分配
+         */
+        void moveTo(FreqSlots out) {
+            out.clear();
+            int[] freqs = out.mFreqs;
+            int[] ints = out.mInts;
+            String[] texts = out.mTexts;
+            out.mFreqs = mFreqs;
+            out.mInts = mInts;
+            out.mTexts = mTexts;
+            out.mSize = mSize;
+            mFreqs = freqs;
+            mInts = ints;
+            mTexts = texts;
+            mSize = 0;
+        }
+    }
+
+    private final Object mLock = new Object();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private volatile Sink mSink = null;
+    private int mInterval = DEFAULT_INTERVAL_MS;
+    private long mLastFlushTime = 0;
+    private boolean mFlushScheduled = false;
+
+    // 以下由 mLock 保护，binder线程写入
+    private final FreqSlots mScanResults = new FreqSlots();
+    private final FreqSlots mSignals = new FreqSlots();
+    private final FreqSlots mRdsPs = new FreqSlots();
+    private final FreqSlots mRdsRt = new FreqSlots();
+    private final FreqSlots mRdsMask = new FreqSlots();
+
+    // 以下只在主线程中使用
+    private final FreqSlots mPendingScanResults = new FreqSlots();
+    private final FreqSlots mPendingSignals = new FreqSlots();
+    private final FreqSlots mPendingRdsPs = new FreqSlots();
+    private final FreqSlots mPendingRdsRt = new FreqSlots();
+    private final FreqSlots mPendingRdsMask = new FreqSlots();
+    private final SparseArray<String> mLastRt = new SparseArray<>(); // PI -> 上一次回调的RT文本
+
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    private final Runnable mResetRtRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mLastRt.clear();
+        }
+    };
+
+    /**
+     * 设置接收者，为空时丢弃所有数据
+     */
+    void setSink(Sink sink) {
+        mSink = sink;
+        if (sink == null) {
+            synchronized (mLock) {
+                mScanResults.clear();
+                mSignals.clear();
+                mRdsPs.clear();
+                mRdsRt.clear();
+                mRdsMask.clear();
+            }
+        }
+    }
+
+    /**
+     * 设置回调间隔
+     * @param interval 单位ms，0表示每个数据都尽快回调
+     */
+    void setInterval(int interval) {
+        synchronized (mLock) {
+            mInterval = Math.max(0, interval);
+        }
+    }
+
+    void onScanResult(int freq, int signalStrength) {
+        synchronized (mLock) {
+            mScanResults.put(freq, signalStrength, 0, 0, 0, null);
+            scheduleLocked();
+        }
+    }
+
+    void onSignalUpdate(int freq, int signalStrength) {
+        synchronized (mLock) {
+            mSignals.put(freq, signalStrength, 0, 0, 0, null);
+            scheduleLocked();
+        }
+    }
+
+    void onRdsPsChanged(int pi, int freq, String ps) {
+        synchronized (mLock) {
+            mRdsPs.put(freq, pi, 0, 0, 0, ps);
+            scheduleLocked();
+        }
+    }
+
+    void onRdsRtChanged(int pi, int freq, String rt) {
+        synchronized (mLock) {
+            mRdsRt.put(freq, pi, 0, 0, 0, rt);
+            scheduleLocked();
+        }
+    }
+
+    void onRdsMaskChanged(int pi, int freq, int pty, int tp, int ta) {
+        synchronized (mLock) {
+            mRdsMask.put(freq, pi, pty, tp, ta, null);
+            scheduleLocked();
+        }
+    }
+
+    /**
+     * 立即在主线程中回调所有待回调的数据，在搜台开始、结束等事件之前调用，保证回调顺序
+     */
+    void flushSoon() {
+        synchronized (mLock) {
+            mHandler.removeCallbacks(mFlushRunnable);
+            mHandler.post(mFlushRunnable);
+            mFlushScheduled = true;
+        }
+    }
+
+    /**
+     * 切换频率时清除RT去重记录，重新收到的RT都会回调
+     */
+    void resetRt() {
+        mHandler.post(mResetRtRunnable);
+    }
+
+    private void scheduleLocked() {
+        if (!mFlushScheduled) {
+            mFlushScheduled = true;
+            mHandler.postAtTime(mFlushRunnable, Math.max(SystemClock.uptimeMillis(), mLastFlushTime + mInterval));
+        }
+    }
+
+    private void flush() {
+        synchronized (mLock) {
+            mFlushScheduled = false;
+            mLastFlushTime = SystemClock.uptimeMillis();
+            mScanResults.moveTo(mPendingScanResults);
+            mSignals.moveTo(mPendingSignals);
+            mRdsPs.moveTo(mPendingRdsPs);
+            mRdsRt.moveTo(mPendingRdsRt);
+            mRdsMask.moveTo(mPendingRdsMask);
+        }
+
+        Sink listener = mSink;
+        if (listener == null) {
+            return;
+        }
+        for (int i = 0; i < mPendingScanResults.mSize; ++i) {
+            listener.onScanResult(mPendingScanResults.mFreqs[i], mPendingScanResults.getInt(i, 0));
+        }
+        for (int i = 0; i < mPendingSignals.mSize; ++i) {
+            listener.onSignalUpdate(mPendingSignals.mFreqs[i], mPendingSignals.getInt(i, 0));
+        }
+        for (int i = 0; i < mPendingRdsPs.mSize; ++i) {
+            listener.onRdsPsChanged(mPendingRdsPs.getInt(i, 0), mPendingRdsPs.mFreqs[i], mPendingRdsPs.mTexts[i]);
+        }
+        for (int i = 0; i < mPendingRdsRt.mSize; ++i) {
+            final int pi = mPendingRdsRt.getInt(i, 0);
+            final String rt = mPendingRdsRt.mTexts[i];
+            if (!TextUtils.equals(mLastRt.get(pi), rt)) {
+                mLastRt.put(pi, rt);
+                listener.onRdsRtChanged(pi, mPendingRdsRt.mFreqs[i], rt);
+            }
+        }
+        for (int i = 0; i < mPendingRdsMask.mSize; ++i) {
+            listener.onRdsMaskChanged(mPendingRdsMask.getInt(i, 0), mPendingRdsMask.mFreqs[i],
+                    mPendingRdsMask.getInt(i, 1), mPendingRdsMask.getInt(i, 2), mPendingRdsMask.getInt(i, 3));
+        }
+    }
+}
@@ -11,6 +11,9 @@ import com.roadrover.sdk.utils.IniFileUtil;
 import com.roadrover.sdk.utils.Logcat;
 
 import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Setting定义
@@ -39,6 +42,49 @@ public class IVISetting {
     public static final String ENABLE = "Enable";
     /** ini file object */
     private static IniFileUtil mIniFile = null;
+
+    /**
+     * 应用启动时常用的设置，用于 {@link #preload(Context, SettingModel.PreloadListener)}
+     */
+    private static final String[] STARTUP_NAMES = {
+            getName(Global.NAME, Global.CCDCamera),
+            getName(Global.NAME, Global.CCDCameraLine),
+            getName(Global.NAME, Global.CCDMirror),
+            getName(Global.NAME, Global.Brake),
+            getName(Global.NAME, Global.DefaultNaviPackage),
+            getName(Global.NAME, Global.FloatMenu),
+            getName(Global.NAME, Global.CarDoorSwitch),
+            getName(Global.NAME, Global.CarRadarSwitch),
+            getName(Global.NAME, Global.AVM360),
+            getName(Global.NAME, Global.MediaNotification),
+            getName(Global.NAME, Global.SmartAccOff),
+            getName(Global.NAME, Global.Skin),
+            getName(Global.NAME, Global.FatigueDrivingCount),
+            getName(Global.NAME, Global.OriginalCarAVM),
+            getName(Network.NAME, Network.WifiSignalStrength),
+            getName(Network.NAME, Network.WifiSignalMaxLevel),
+            getName(Network.NAME, Network.MobileSignalStrength),
+    };
+    private static final List<String> STARTUP_NAME_LIST = Collections.unmodifiableList(Arrays.asList(STARTUP_NAMES));
+
+    /**
+     * 获取应用启动时常用的设置名字
+     * @return 不可修改的列表
+     */
+    public static List<String> getStartupNames() {
+        return STARTUP_NAME_LIST;
+    }
+
+    /**
+     * 在后台线程中批量预加载应用启动时常用的设置 {@link #getStartupNames()}，
+     * 通过 {@link SettingModel#setCacheEnabled(boolean)} 打开缓存后，
+     * 之后调用 {@link #isCcdEnable(Context)}、{@link #getSkin(Context)} 等方法时直接从内存中读取
+     * @param context 上下文对象
+     * @param listener 预加载完成的回调，可以为空
+     */
+    public static void preload(Context context, SettingModel.PreloadListener listener) {
+        SettingModel.preload(context, STARTUP_NAMES, listener);
+    }
     /**
      * 启动设置页面
      * @param childName 设置名称，见{@link Global} {@link System} {@link Network}，为空则跳转设置主页面
@@ -0,0 +1,321 @@
+package com.roadrover.sdk.setting;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.text.TextUtils;
+
+import com.roadrover.sdk.utils.Logcat;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进程内的设置缓存
+ * 整个进程只注册一个 {@link ContentObserver}，设置数据库变化时一次查询出所有 name,value 放到内存中，
+ * 和上一次的结果比较，只通知值真正改变了的项；读取设置时直接从内存中获取，不再每次查询数据库。
+ * 读取缓存需要通过 {@link SettingModel#setCacheEnabled(boolean)} 打开；
+ * 写设置的进程在写入后调用 {@link SettingModel#invalidateCache(Context, String, String)}，
+ * 在收到变化通知之前该项直接查询数据库，不会读到旧值；
+ * 批量查询只在缓存线程中执行，不会阻塞读取设置的线程，还没有加载完成时读取直接查询单项；
+ * 批量查询失败时按 {@link #RETRY_MIN_MS} 到 {@link #RETRY_MAX_MS} 退避后在缓存线程中重试，重试之前直接查询数据库
+ */
+final class SettingCache {
+
+    /**
+     * 设置项改变的回调，在缓存线程中执行
+     */
+    interface OnChangeListener {
+        /**
+         * 设置项改变
+         * @param changes 改变了的 name -> {旧值, 新值}
+         */
+        void onChange(Map<String, String[]> changes);
+    }
+
+    /**
+     * 批量查询失败后第一次重试的间隔，单位ms，之后每次失败加倍
+     */
+    static final long RETRY_MIN_MS = 1000;
+
+    /**
+     * 批量查询失败后重试的最大间隔，单位ms
+     */
+    static final long RETRY_MAX_MS = 60 * 1000;
+
+    private static SettingCache sInstance = null;
+
+    private final Context mContext;
+    private final Handler mHandler; // 缓存线程的handler，数据库查询都在该线程
+    private final ContentObserver mContentObserver;
+    private volatile Map<String, String> mValues = null; // 不可修改的 name -> value，为空表示还没有加载
+    private volatile long mRetryTime = 0; // 批量查询失败后，在这个时间（uptimeMillis）之前不使用缓存
+    private long mRetryDelay = RETRY_MIN_MS; // 下一次失败后的重试间隔，只在缓存线程访问
+    private boolean mObserving = false; // 是否已经监听数据库，没有监听时缓存会过期，不能使用
+    private final Map<String, Long> mInvalidated = new ConcurrentHashMap<>(); // 写入后还没有重新加载的项 -> 写入时间
+    private OnChangeListener mOnChangeListener = null;
+
+    private final Runnable mReloadRunnable = new Runnable() {
+        @Override
+        public void run() {
+            reload();
+        }
+    };
+
+    private final Runnable mLoadRunnable = new Runnable() {
+        @Override
+        public void run() {
+            ensureLoaded();
+        }
+    };
+
+    private SettingCache(Context context) {
+        mContext = context;
+        HandlerThread thread = new HandlerThread("SettingCache");
+        thread.start();
+        mHandler = new Handler(thread.getLooper());
+        mContentObserver = new ContentObserver(mHandler) {
+            @Override
+            public void onChange(boolean selfChange) {
+                if (!selfChange) {
+                    // 连续的多次改变只需要查询一次
+                    mHandler.removeCallbacks(mReloadRunnable);
+                    mHandler.post(mReloadRunnable);
+                }
+            }
+        };
+        registerObserver();
+    }
+
+    /**
+     * 监听数据库，失败时在下一次加载时重试
+     * @return 是否已经在监听
+     */
+    private synchronized boolean registerObserver() {
+        if (!mObserving) {
+            try {
+                mContext.getContentResolver().registerContentObserver(Provider.NameValueColumns.CONTENT_URI,
+                        false, mContentObserver);
+                mObserving = true;
+            } catch (Exception e) { // 设置数据库不存在
+                e.printStackTrace();
+            }
+        }
+        return mObserving;
+    }
+
+    /**
+     * 获取进程内唯一的设置缓存
+     * @param context 上下文对象
+     * @return context 为空返回null
+     */
+    static synchronized SettingCache getInstance(Context context) {
+        if (sInstance == null && context != null) {
+            Context appContext = context.getApplicationContext();
+            sInstance = new SettingCache(appContext != null ? appContext : context);
+        }
+        return sInstance;
+    }
+
+    /**
+     * 设置改变的监听，只允许一个，由 {@link SettingModel} 分发
+     */
+    synchronized void setOnChangeListener(OnChangeListener listener) {
+        mOnChangeListener = listener;
+    }
+
+    /**
+     * 缓存是否可用，批量查询失败后到下一次重试之前不可用
+     */
+    boolean isAvailable() {
+        return mValues != null || SystemClock.uptimeMillis() >= mRetryTime;
+    }
+
+    /**
+     * 该项是否需要直接查询数据库，本进程写入后到重新加载之前返回true
+     * @param name 名字，由 {@link IVISetting#getName(String, String)} 生成
+     */
+    boolean isInvalidated(String name) {
+        return mInvalidated.containsKey(name);
+    }
+
+    /**
+     * 标记本进程刚写入的项，在下一次重新加载之前读取该项时直接查询数据库
+     * @param name 名字，由 {@link IVISetting#getName(String, String)} 生成
+     */
+    void invalidate(String name) {
+        if (name != null) {
+            mInvalidated.put(name, SystemClock.uptimeMillis());
+        }
+    }
+
+    /**
+     * 在缓存线程中预先加载，不阻塞调用者；失败后等待重试期间不重复加载
+     */
+    void preload() {
+        if (mValues == null && isAvailable()) {
+            mHandler.removeCallbacks(mLoadRunnable);
+            mHandler.post(mLoadRunnable);
+        }
+    }
+
+    /**
+     * 在缓存线程中执行，和数据库的变化通知按顺序执行
+     */
+    void post(Runnable runnable) {
+        mHandler.post(runnable);
+    }
+
+    /**
+     * 获取当前缓存的全部设置，在其它线程调用时不会批量查询数据库
+     * @return 不可修改的 name -> value，还没有加载完成或者加载失败返回null，调用者直接查询需要的项
+     */
+    Map<String, String> getAll() {
+        if (Looper.myLooper() == mHandler.getLooper()) {
+            return ensureLoaded();
+        }
+        final Map<String, String> values = mValues;
+        if (values == null) {
+            preload(); // 在缓存线程中加载，本次读取由调用者直接查询
+        }
+        return values;
+    }
+
+    /**
+     * 还没有加载时批量查询，只在缓存线程中执行
+     */
+    private Map<String, String> ensureLoaded() {
+        Map<String, String> values = mValues;
+        if (values == null && isAvailable()) {
+            values = registerObserver() ? query() : null;
+            if (values != null) {
+                mValues = values;
+                mRetryTime = 0;
+                mRetryDelay = RETRY_MIN_MS;
+            } else {
+                scheduleRetry("load");
+            }
+        }
+        return values;
+    }
+
+    /**
+     * 批量查询失败后退避，在缓存线程中重新加载，重试之前写入过的项依然直接查询数据库
+     */
+    private void scheduleRetry(String what) {
+        final long delay = mRetryDelay;
+        mRetryDelay = Math.min(mRetryDelay * 2, RETRY_MAX_MS);
+        mRetryTime = SystemClock.uptimeMillis() + delay;
+        Logcat.w(what + " failed, retry after " + delay + "ms");
+        mHandler.removeCallbacks(mLoadRunnable);
+        mHandler.removeCallbacks(mReloadRunnable);
+        mHandler.postDelayed(mReloadRunnable, delay);
+    }
+
+    /**
+     * 重新批量查询，和上一次的结果比较后通知改变了的项
+     */
+    private void reload() {
+        final long begin = SystemClock.uptimeMillis();
+        Map<String, String> newValues = registerObserver() ? query() : null;
+        if (newValues == null) { // 保留旧的值
+            scheduleRetry("reload");
+            return;
+        }
+        for (Map.Entry<String, Long> entry : mInvalidated.entrySet()) { // 查询之前写入的项已经是新值
+            if (entry.getValue() <= begin) {
+                mInvalidated.remove(entry.getKey(), entry.getValue());
+            }
+        }
+        final Map<String, String> oldValues = mValues;
+        mValues = newValues;
+        mRetryTime = 0;
+        mRetryDelay = RETRY_MIN_MS;
+
+        Map<String, String[]> changes = new HashMap<>();
+        if (oldValues == null) {
+            // 第一次加载失败或者还没有加载过，不知道旧值，所有项都当作改变，不会漏掉这期间的改变通知
+            for (Map.Entry<String, String> entry : newValues.entrySet()) {
+                changes.put(entry.getKey(), new String[]{null, entry.getValue()});
+            }
+        } else {
+            Set<String> names = new HashSet<>(oldValues.keySet());
+            names.addAll(newValues.keySet());
+            for (String name : names) {
+                final String oldVal = oldValues.get(name);
+                final String newVal = newValues.get(name);
+                if (!TextUtils.equals(oldVal, newVal)) {
+                    changes.put(name, new String[]{oldVal, newVal});
+                }
+            }
+        }
+
+        OnChangeListener listener;
+        synchronized (this) {
+            listener = mOnChangeListener;
+        }
+        if (!changes.isEmpty() && listener != null) {
+            listener.onChange(changes);
+        }
+    }
+
+    /**
+     * 一次查询出所有的设置
+     * @return 查询失败返回null
+     */
+    private Map<String, String> query() {
+        return query(null, null);
+    }
+
+    /**
+     * 一次查询出指定的多个设置，不经过缓存
+     * @param names 名字，由 {@link IVISetting#getName(String, String)} 生成
+     * @return 查询失败返回null
+     */
+    Map<String, String> query(String[] names) {
+        StringBuilder selection = new StringBuilder(Provider.NameValueColumns.NAME).append(" IN (");
+        for (int i = 0; i < names.length; ++i) {
+            selection.append(i == 0 ? "?" : ",?");
+        }
+        selection.append(')');
+        return query(selection.toString(), names);
+    }
+
+    private Map<String, String> query(String selection, String[] selectionArgs) {
+        Cursor cursor = null;
+        try {
+            cursor = mContext.getContentResolver().query(Provider.NameValueColumns.CONTENT_URI,
+                    new String[]{Provider.NameValueColumns.NAME, Provider.NameValueColumns.VALUE},
+                    selection, selectionArgs, null);
+            if (cursor == null) {
+                Logcat.w("query " + Provider.NameValueColumns.CONTENT_URI + " failed");
+                return null;
+            }
+            Map<String, String> values = new HashMap<>(cursor.getCount() * 2);
+            final int nameIndex = cursor.getColumnIndexOrThrow(Provider.NameValueColumns.NAME);
+            final int valueIndex = cursor.getColumnIndexOrThrow(Provider.NameValueColumns.VALUE);
+            while (cursor.moveToNext()) {
+                values.put(cursor.getString(nameIndex), cursor.getString(valueIndex));
+            }
+            return Collections.unmodifiableMap(values);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } catch (IllegalArgumentException e) {
+            e.printStackTrace();
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        return null;
+    }
+}
@@ -1,7 +1,6 @@
 package com.roadrover.sdk.setting;
 
 import android.content.Context;
-import android.database.ContentObserver;
 import android.database.Cursor;
 import android.database.SQLException;
 import android.os.Handler;
@@ -12,11 +11,10 @@ import android.text.TextUtils;
 import com.roadrover.sdk.system.SystemManager;
 import com.roadrover.sdk.utils.Logcat;
 
-import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * 设置model类，和{@link SystemManager}分开处理</br></br>
@@ -43,15 +41,45 @@ import java.util.concurrent.Executors;
 
 public class SettingModel {
 
-    /**model集合*/
-    private static List<Bean> sModels = new ArrayList<>();
+    /**
+     * 批量预加载完成的回调，见 {@link #preload(Context, String[], PreloadListener)}
+     */
+    public interface PreloadListener {
+        /**
+         * 预加载完成，在主线程中回调
+         * @param values 预加载的设置值，查询失败时所有的值都为空
+         */
+        void onPreloaded(SettingValues values);
+    }
 
-    /**单列线程池*/
-    private static ExecutorService sSignalExecutorService = Executors.newSingleThreadExecutor();
+    /**model集合，在缓存线程中遍历分发，所以使用写时复制的列表*/
+    private static List<Bean> sModels = new CopyOnWriteArrayList<>();
 
     /**最后将数据返回到主线程handler对象*/
     private static Handler sHandler = null;
 
+    /**是否从进程内的设置缓存读取，默认关闭，见{@link SettingCache}*/
+    private static volatile boolean sCacheEnabled = false;
+
+    /**设置缓存的改变通知，只分发给监听了改变项的model*/
+    private static SettingCache.OnChangeListener sCacheListener = new SettingCache.OnChangeListener() {
+        @Override
+        public void onChange(Map<String, String[]> changes) {
+            for (final Bean bean : sModels) {
+                final String[] change = changes.get(bean.name);
+                if (change != null && null != bean.modelListener) {
+                    sHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            bean.modelListener.onChange(change[0], change[1]);
+                            bean.value = change[1];
+                        }
+                    });
+                }
+            }
+        }
+    };
+
     /**model监听器*/
     public interface ModelListener {
         /**
@@ -68,8 +96,6 @@ public class SettingModel {
         public Context context;
         /**数据监听对象*/
         public ModelListener modelListener;
-        /**数据库内容监听对象*/
-        public ContentObserver contentObserver;
         /**名字*/
         public String name;
         /**数值*/
@@ -222,63 +248,13 @@ public class SettingModel {
             bean.context = context;
             bean.name = IVISetting.getName(name, item);
             bean.modelListener = listener;
-            sSignalExecutorService.execute(new Runnable() {
-                @Override
-                public void run() {
-                    bean.value = getContent(bean.context, name, item);
-                }
-            });
             if (sHandler == null) {
                 sHandler = new Handler(Looper.getMainLooper());
             }
-            bean.contentObserver = new ContentObserver(new Handler()) {
-                @Override
-                public void onChange(boolean selfChange) {
-                    if (!selfChange) {
-                        // 数据只允许被设置本身改变
-                        if (null != sModels) {
-                            for (Bean loop : sModels) {
-                                if (null != loop) {
-                                    if (this == loop.contentObserver) {
-                                        if (null != bean.modelListener) {
-                                            sSignalExecutorService.execute(new Runnable() {
-                                                @Override
-                                                public void run() {
-                                                    String oldVal = bean.value;
-                                                    final String newVal = getContent(bean.context, bean.name);
-                                                    boolean change = false;
-                                                    if (null == oldVal && null != newVal) {
-                                                        change = true;
-                                                    } else if (null != oldVal && null == newVal) {
-                                                        change = true;
-                                                    } else if (null != oldVal && null != newVal) {
-                                                        if (!oldVal.equals(newVal)) {
-                                                            change = true;
-                                                        }
-                                                    }
-                                                    if (change) {
-                                                        sHandler.post(new Runnable() {
-                                                            @Override
-                                                            public void run() {
-                                                                bean.modelListener.onChange(bean.value, newVal);
-                                                                bean.value = newVal;
-                                                            }
-                                                        });
-                                                    }
-                                                }
-                                            });
-                                        }
-                                        break;
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-            };
+            SettingCache cache = SettingCache.getInstance(context);
+            cache.setOnChangeListener(sCacheListener);
+            cache.preload(); // 在缓存线程中加载，加载之后的改变才会通知
             sModels.add(bean);
-            context.getContentResolver().registerContentObserver(Provider.NameValueColumns.CONTENT_URI,
-                    false, bean.contentObserver);
         } else {
             Logcat.w("context = " + context + " listener = " + listener);
         }
@@ -290,12 +266,9 @@ public class SettingModel {
      */
     public static void unregisterModelListener(Context context) {
         if (context != null) {
-            Iterator<Bean> iterator = sModels.iterator();
-            while (iterator.hasNext()) {
-                Bean bean = iterator.next();
+            for (Bean bean : sModels) {
                 if (bean != null && bean.context == context) {
-                    context.getContentResolver().unregisterContentObserver(bean.contentObserver);
-                    iterator.remove();
+                    sModels.remove(bean);
                 }
             }
         }
@@ -312,7 +285,6 @@ public class SettingModel {
                 for (Bean bean : sModels) {
                     if (null != bean) {
                         if (listener == bean.modelListener) {
-                            context.getContentResolver().unregisterContentObserver(bean.contentObserver);
                             sModels.remove(bean);
                             break;
                         }
@@ -323,11 +295,104 @@ public class SettingModel {
     }
 
     /**
-     * 根据名字获取设置的内容
+     * 在后台线程中批量预加载设置，一般在应用启动时调用，不阻塞调用线程
+     * 缓存打开并且可用时一次加载所有设置到进程内的缓存，之后的 getContent 和 {@link IVISetting} 的读取方法都直接从内存中获取；
+     * 缓存关闭或者不可用时只用一次查询读取指定的设置
+     * @param context 上下文对象
+     * @param names 需要的设置名字，由 {@link IVISetting#getName(String, String)} 生成，比如 {@link IVISetting#getStartupNames()}
+     * @param listener 预加载完成的回调，可以为空
+     */
+    public static void preload(final Context context, @NonNull final String[] names, final PreloadListener listener) {
+        if (null == context || null == names) {
+            Logcat.w("context = " + context + " names = " + names);
+            return;
+        }
+        if (sHandler == null) {
+            sHandler = new Handler(Looper.getMainLooper());
+        }
+        final SettingCache cache = SettingCache.getInstance(context);
+        cache.post(new Runnable() {
+            @Override
+            public void run() {
+                Map<String, String> strings = null;
+                if (sCacheEnabled && cache.isAvailable()) {
+                    strings = cache.getAll();
+                    if (strings != null) { // 本进程刚写入的项直接查询数据库
+                        Map<String, String> merged = null;
+                        for (String name : names) {
+                            if (cache.isInvalidated(name)) {
+                                if (merged == null) {
+                                    merged = new HashMap<>(strings);
+                                }
+                                merged.put(name, queryContent(context, name));
+                            }
+                        }
+                        if (merged != null) {
+                            strings = merged;
+                        }
+                    }
+                }
+                if (strings == null && names.length > 0) {
+                    strings = cache.query(names);
+                }
+                final SettingValues values = new SettingValues(names, strings);
+                if (null != listener) {
+                    sHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            listener.onPreloaded(values);
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    /**
+     * 设置是否从进程内的缓存读取设置，默认关闭，只读取设置的应用可以打开
+     * 打开后，本进程写入设置时需要调用 {@link #invalidateCache(Context, String, String)}，否则在收到改变通知之前可能读到旧值
+     * @param enabled false 每次都直接查询数据库
+     */
+    public static void setCacheEnabled(boolean enabled) {
+        sCacheEnabled = enabled;
+    }
+
+    /**
+     * 本进程写入设置后调用，在缓存收到数据库改变通知并重新加载之前，读取该项时直接查询数据库
+     * @param context 上下文对象
+     * @param name 名字, 比如{@link com.roadrover.sdk.setting.IVISetting.Network#NAME}
+     * @param item 哪一项，比如热点名称{@link com.roadrover.sdk.setting.IVISetting.Network#HotspotName}
+     */
+    public static void invalidateCache(Context context, @NonNull String name, @NonNull String item) {
+        if (null != context) {
+            SettingCache.getInstance(context).invalidate(IVISetting.getName(name, item));
+        }
+    }
+
+    /**
+     * 根据名字获取设置的内容，缓存可用时直接从内存中读取
+     * @param context 上下文对象
+     * @param name 名字
+     */
+    static String getContent(Context context, @NonNull String name) {
+        if (null != context && sCacheEnabled) {
+            SettingCache cache = SettingCache.getInstance(context);
+            if (cache.isAvailable() && !cache.isInvalidated(name)) {
+                Map<String, String> values = cache.getAll();
+                if (values != null) { // 加载失败时直接查询数据库
+                    return values.get(name);
+                }
+            }
+        }
+        return queryContent(context, name);
+    }
+
+    /**
+     * 直接查询数据库获取设置的内容
      * @param context 上下文对象
      * @param name 名字
      */
-    private static String getContent(Context context, @NonNull String name) {
+    private static String queryContent(Context context, @NonNull String name) {
         String ret = null;
         if (null != context) {
             Cursor cursor = null;
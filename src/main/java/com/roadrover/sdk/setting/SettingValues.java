@@ -0,0 +1,97 @@
+package com.roadrover.sdk.setting;
+
+import android.support.annotation.NonNull;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 批量预加载得到的设置值，见 {@link SettingModel#preload(android.content.Context, String[], SettingModel.PreloadListener)}
+ * 构造时预先解析好整型和开关状态，读取时不需要再查询数据库，也不需要再解析字符串；
+ * 这是预加载时刻的快照，之后的改变通过 {@link SettingModel#registerModelListener} 获取
+ */
+public final class SettingValues {
+
+    /**
+     * 一个设置值，构造时预先解析好各个类型
+     */
+    private static final class Value {
+        final String mString;
+        final boolean mIsInteger;
+        final int mInteger;
+
+        Value(String string) {
+            mString = string;
+            boolean isInteger = false;
+            int integer = 0;
+            if (string != null) {
+                try {
+                    integer = Integer.parseInt(string.trim());
+                    isInteger = true;
+                } catch (NumberFormatException e) {
+                    // 不是整型，读取时返回默认值
+                }
+            }
+            mIsInteger = isInteger;
+            mInteger = integer;
+        }
+    }
+
+    private final Map<String, Value> mValues;
+
+    /**
+     * @param names 预加载的名字，由 {@link IVISetting#getName(String, String)} 生成
+     * @param strings 查询到的 name -> value，没有查询到的名字也会记录为null
+     */
+    SettingValues(String[] names, Map<String, String> strings) {
+        Map<String, Value> values = new HashMap<>(names.length * 2);
+        for (String name : names) {
+            if (name != null) {
+                values.put(name, new Value(strings != null ? strings.get(name) : null));
+            }
+        }
+        mValues = Collections.unmodifiableMap(values);
+    }
+
+    /**
+     * 是否预加载了该项
+     * @param name 名字, 比如{@link IVISetting.Network#NAME}
+     * @param item 哪一项，比如{@link IVISetting.Network#HotspotName}
+     */
+    public boolean contains(@NonNull String name, @NonNull String item) {
+        return mValues.containsKey(IVISetting.getName(name, item));
+    }
+
+    /**
+     * 获取字符串
+     * @param name 名字, 比如{@link IVISetting.Network#NAME}
+     * @param item 哪一项，比如{@link IVISetting.Network#HotspotName}
+     * @return 没有设置或者没有预加载返回null
+     */
+    public String getString(@NonNull String name, @NonNull String item) {
+        Value value = mValues.get(IVISetting.getName(name, item));
+        return value != null ? value.mString : null;
+    }
+
+    /**
+     * 获取整型
+     * @param name 名字, 比如{@link IVISetting.Global#NAME}
+     * @param item 哪一项，比如{@link IVISetting.Global#SmartAccOff}
+     * @param defValue 没有设置或者不是整型时返回的默认值
+     */
+    public int getInt(@NonNull String name, @NonNull String item, int defValue) {
+        Value value = mValues.get(IVISetting.getName(name, item));
+        return (value != null && value.mIsInteger) ? value.mInteger : defValue;
+    }
+
+    /**
+     * 开关是否打开
+     * @param name 名字, 比如{@link IVISetting.Global#NAME}
+     * @param item 哪一项，比如{@link IVISetting.Global#FloatMenu}
+     * @return 值为 {@link IVISetting.SwitchStatus#On} 返回true
+     */
+    public boolean isOn(@NonNull String name, @NonNull String item) {
+        return IVISetting.SwitchStatus.On.equals(getString(name, item));
+    }
+}
@@ -0,0 +1,260 @@
+package com.roadrover.sdk.system;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * gps 定位数据流，通过 {@link SystemManager#getGpsLocationStream()} 获取 <br/>
+ * 1. 每个监听可以设置自己的回调间隔，例：时钟控件 {@link #WIDGET_INTERVAL_MS}，导航 {@link #NAVIGATION_INTERVAL_MS}，
+ * services 按所有监听里最小的间隔发送；<br/>
+ * 2. 最近的 {@link #HISTORY_SIZE} 个定位保存在环形缓冲里，航位推算等需要历史轨迹的应用可以随时读取；<br/>
+ * 3. 定位数据保存在预先分配的对象里，收到定位和回调都不会分配内存，回调来不及处理时只回调最新的定位
+ */
+public class GpsLocationStream {
+
+    /**
+     * 环形缓冲保存的定位个数
+     */
+    public static final int HISTORY_SIZE = 64;
+
+    /**
+     * 导航使用的回调间隔，10Hz
+     */
+    public static final int NAVIGATION_INTERVAL_MS = 100;
+
+    /**
+     * 时钟等控件使用的回调间隔，1Hz
+     */
+    public static final int WIDGET_INTERVAL_MS = 1000;
+
+    /**
+     * 定位回调
+     */
+    public interface Listener {
+        /**
+         * 收到新的定位
+         * @param fix 定位数据，每个监听有一个固定的对象，回调之后会被重复使用，需要保存时复制一份
+         */
+        void onGpsFix(IVISystem.GpsFix fix);
+    }
+
+    /**
+     * 所有监听里最小的回调间隔改变，SystemManager 据此向 services 重新注册 <br/>
+     * 在持有监听列表的锁（本对象）时回调，多个线程同时增删监听时按顺序注册，不会用旧的间隔覆盖新的
+     */
+    interface IntervalListener {
+        /**
+         * @param minIntervalMs 最小的回调间隔，单位ms，-1表示没有监听
+         */
+        void onIntervalChanged(int minIntervalMs);
+    }
+
+    /**
+     * 一个监听，间隔判断在收到定位的线程，回调在监听指定的线程
+     */
+    private class Subscriber implements Runnable {
+        final Listener mListener;
+        final int mIntervalMs;
+        final Handler mHandler;
+        final IVISystem.GpsFix mFix = new IVISystem.GpsFix();
+        final AtomicBoolean mPending = new AtomicBoolean(false);
+        long mLastElapsedRealtime = -1; // 上一次回调的定位时间，在锁里访问
+        volatile boolean mRemoved = false;
+
+        Subscriber(Listener listener, int intervalMs, Handler handler) {
+            mListener = listener;
+            mIntervalMs = intervalMs;
+            mHandler = handler;
+        }
+
+        @Override
+        public void run() {
+            mPending.set(false);
+            if (!mRemoved && getLatest(mFix)) {
+                mListener.onGpsFix(mFix);
+            }
+        }
+    }
+
+    private final IntervalListener mIntervalListener;
+    private final List<Subscriber> mSubscribers = new CopyOnWriteArrayList<>();
+    private Handler mMainHandler = null;
+    private int mMinIntervalMs = -1;
+
+    private final IVISystem.GpsFix[] mHistory = new IVISystem.GpsFix[HISTORY_SIZE];
+    private int mHead = 0; // 下一个写入的位置
+    private int mSize = 0;
+    private long mFixCount = 0;
+
+    GpsLocationStream(IntervalListener listener) {
+        mIntervalListener = listener;
+        for (int i = 0; i < HISTORY_SIZE; ++i) {
+            mHistory[i] = new IVISystem.GpsFix();
+        }
+    }
+
+    /**
+     * 添加监听，在主线程回调
+     * @param listener 监听
+     * @param intervalMs 最小回调间隔，单位ms，0表示每个定位都回调
+     */
+    public void addListener(Listener listener, int intervalMs) {
+        addListener(listener, intervalMs, null);
+    }
+
+    /**
+     * 添加监听，同一个监听再次添加时更新间隔和线程
+     * @param listener 监听
+     * @param intervalMs 最小回调间隔，单位ms，0表示每个定位都回调
+     * @param handler 回调的线程，null表示主线程
+     */
+    public void addListener(Listener listener, int intervalMs, Handler handler) {
+        if (listener == null) {
+            return;
+        }
+        if (handler == null) {
+            handler = getMainHandler();
+        }
+
+        synchronized (this) {
+            removeSubscriber(listener);
+            mSubscribers.add(new Subscriber(listener, Math.max(0, intervalMs), handler));
+        }
+        updateInterval();
+    }
+
+    /**
+     * 移除监听
+     * @param listener 监听，要和 addListener 对应
+     */
+    public void removeListener(Listener listener) {
+        if (listener == null) {
+            return;
+        }
+
+        synchronized (this) {
+            removeSubscriber(listener);
+        }
+        updateInterval();
+    }
+
+    /**
+     * 获取最新的定位
+     * @param out 保存定位数据
+     * @return 还没有定位时返回false
+     */
+    public synchronized boolean getLatest(IVISystem.GpsFix out) {
+        if (out == null || mSize == 0) {
+            return false;
+        }
+        out.set(mHistory[(mHead + HISTORY_SIZE - 1) % HISTORY_SIZE]);
+        return true;
+    }
+
+    /**
+     * 获取最近的定位，最新的在前面
+     * @param out 保存定位数据，数组里为null的元素会新建，调用者可以重复使用同一个数组
+     * @return 实际复制的个数，不超过 out 的长度和 {@link #HISTORY_SIZE}
+     */
+    public synchronized int getHistory(IVISystem.GpsFix[] out) {
+        if (out == null) {
+            return 0;
+        }
+
+        final int count = Math.min(out.length, mSize);
+        for (int i = 0; i < count; ++i) {
+            if (out[i] == null) {
+                out[i] = new IVISystem.GpsFix();
+            }
+            out[i].set(mHistory[(mHead + HISTORY_SIZE - 1 - i) % HISTORY_SIZE]);
+        }
+        return count;
+    }
+
+    /**
+     * 收到的定位总数
+     */
+    public synchronized long getFixCount() {
+        return mFixCount;
+    }
+
+    /**
+     * 所有监听里最小的回调间隔
+     * @return 单位ms，-1表示没有监听
+     */
+    public synchronized int getMinInterval() {
+        return mMinIntervalMs;
+    }
+
+    /**
+     * 收到定位，在binder线程中调用
+     */
+    void onFix(double longitude, double latitude, float accuracy, double altitude, float speed, float bearing, long time) {
+        final long now = SystemClock.elapsedRealtime();
+        synchronized (this) {
+            IVISystem.GpsFix fix = mHistory[mHead];
+            fix.mLongitude = longitude;
+            fix.mLatitude = latitude;
+            fix.mAccuracy = accuracy;
+            fix.mAltitude = altitude;
+            fix.mSpeed = speed;
+            fix.mBearing = bearing;
+            fix.mTime = time;
+            fix.mElapsedRealtime = now;
+            mHead = (mHead + 1) % HISTORY_SIZE;
+            mSize = Math.min(mSize + 1, HISTORY_SIZE);
+            ++mFixCount;
+
+            for (Subscriber subscriber : mSubscribers) {
+                // 允许10%的抖动，免得1Hz的定位在1s的间隔下被丢掉一半
+                if (subscriber.mLastElapsedRealtime < 0 ||
+                        now - subscriber.mLastElapsedRealtime >= subscriber.mIntervalMs * 9L / 10) {
+                    subscriber.mLastElapsedRealtime = now;
+                    if (subscriber.mPending.compareAndSet(false, true)) { // 上一次还没回调时，回调时直接取最新的
+                        subscriber.mHandler.post(subscriber);
+                    }
+                }
+            }
+        }
+    }
+
+    private void removeSubscriber(Listener listener) {
+        for (Subscriber subscriber : mSubscribers) {
+            if (subscriber.mListener == listener) {
+                subscriber.mRemoved = true;
+                mSubscribers.remove(subscriber);
+            }
+        }
+    }
+
+    private void updateInterval() {
+        synchronized (this) {
+            int interval = -1;
+            for (Subscriber subscriber : mSubscribers) {
+                if (interval < 0 || subscriber.mIntervalMs < interval) {
+                    interval = subscriber.mIntervalMs;
+                }
+            }
+            if (interval == mMinIntervalMs) {
+                return;
+            }
+            mMinIntervalMs = interval;
+
+            if (mIntervalListener != null) {
+                mIntervalListener.onIntervalChanged(interval);
+            }
+        }
+    }
+
+    private synchronized Handler getMainHandler() {
+        if (mMainHandler == null) {
+            mMainHandler = new Handler(Looper.getMainLooper());
+        }
+        return mMainHandler;
+    }
+}
@@ -1,6 +1,7 @@
 package com.roadrover.sdk.system;
 
 import android.graphics.Color;
+import android.os.FileObserver;
 import android.support.annotation.NonNull;
 import android.text.TextUtils;
 import android.util.SparseArray;
@@ -27,6 +28,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * 全局配置.
@@ -562,7 +564,14 @@ public class IVIConfig {
     /** TBox HOST 默认配置 */
     private static final String DEF_TBOX_HOST = "192.168.100.1";
 
-    private static IniFileUtil mIniFileUtil = null; // INI文件工具类对象
+    private static IniFileUtil mIniFileUtil = null; // INI文件工具类对象，只给 getIniFileUtil() 使用
+    private static volatile IVIConfigSnapshot sSnapshot = null; // 解析后的配置快照，读取配置不需要加锁
+    private static final List<OnConfigChangedListener> sConfigChangedListeners = new CopyOnWriteArrayList<>();
+    private static FileObserver sFileObserver = null; // 监听配置文件变化，自动重新加载
+    private static volatile Resolved sResolved = null; // 和 sSnapshot 一起更新的热点配置
+    private static final IVIConfigSnapshot EMPTY_SNAPSHOT = new IVIConfigSnapshot(null, 0, 0,
+            new HashMap<String, Map<String, String>>());
+    private static final Resolved DEFAULT_RESOLVED = new Resolved(null); // 配置文件不存在时使用默认值
     // 动态轨迹线 start
     /** 动态轨迹线 */
     private static final String CAR_CCD_LINE                     = "car_ccd_line";
@@ -802,7 +811,7 @@ public class IVIConfig {
      * @return
      */
     public static int getCamera_R() {
-        return getInteger(CAR_CCD_LINE, CAMERA_R, 96);
+        return resolved().mCameraR;
     }
 
 	/**
@@ -810,7 +819,7 @@ public class IVIConfig {
      * @return
      */
     public static int getTrack_Max_Len() {
-        return getInteger(CAR_CCD_LINE, TRACK_MAX_LEN, 4);
+        return resolved().mTrackMaxLen;
     }
 
 	/**
@@ -818,7 +827,7 @@ public class IVIConfig {
      * @return
      */
     public static int getTrack_Min_Len() {
-        return getInteger(CAR_CCD_LINE, TRACK_MIN_LEN, 40);
+        return resolved().mTrackMinLen;
     }
 
 	/**
@@ -826,7 +835,7 @@ public class IVIConfig {
      * @return
      */
     public static int getCar_Width() {
-        return getInteger(CAR_CCD_LINE, CAR_WIDTH, 1799);
+        return resolved().mCarWidth;
     }
 
 	/**
@@ -834,7 +843,7 @@ public class IVIConfig {
      * @return
      */
     public static int getCar_WheelBase() {
-        return getInteger(CAR_CCD_LINE, CAR_WHEELBASE, 2637);
+        return resolved().mCarWheelBase;
     }
 
 	/**
@@ -842,7 +851,7 @@ public class IVIConfig {
      * @return
      */
     public static int getCar_Front_Track_Width() {
-        return getInteger(CAR_CCD_LINE, CAR_FORNT_TRACK_WIDTH, 1549);
+        return resolved().mCarFrontTrackWidth;
     }
 
 	/**
@@ -850,7 +859,7 @@ public class IVIConfig {
      * @return
      */
     public static int getCar_Rear_Track_Width() {
-        return getInteger(CAR_CCD_LINE, CAR_REAR_TRACK_WIDTH, 1520);
+        return resolved().mCarRearTrackWidth;
     }
 
 	/**
@@ -858,7 +867,7 @@ public class IVIConfig {
      * @return
      */
     public static int getCar_Rear_Len() {
-        return getInteger(CAR_CCD_LINE, CAR_REAR_LEN, 763);
+        return resolved().mCarRearLen;
     }
 
 	/**
@@ -866,7 +875,7 @@ public class IVIConfig {
      * @return
      */
     public static int getCar_Rear_Tyre_Width() {
-        return getInteger(CAR_CCD_LINE, CAR_REAR_TYRE_WIDTH, 195);
+        return resolved().mCarRearTyreWidth;
     }
 
 	/**
@@ -874,7 +883,7 @@ public class IVIConfig {
      * @return
      */
     public static int getCar_Steering_Wheel_Angle_Max() {
-        return getInteger(CAR_CCD_LINE, CAR_STEERING_WHEEL_ANGLE_MAX, 200);
+        return resolved().mSteeringWheelAngleMax;
     }
 
 	/**
@@ -882,7 +891,7 @@ public class IVIConfig {
      * @return
      */
     public static int getCar_Wheel_Angel_Max() {
-        return getInteger(CAR_CCD_LINE, CAR_WHEEL_ANGEL_MAX, 385);
+        return resolved().mWheelAngleMax;
     }
 
 	/**
@@ -890,7 +899,7 @@ public class IVIConfig {
      * @return
      */
     public static int getDisp_Style() {
-        return getInteger(CAR_CCD_LINE, DISP_STYLE, 1);
+        return resolved().mDispStyle;
     }
 
 	/**
@@ -900,32 +909,11 @@ public class IVIConfig {
      * @return
      */
     public static float getPts(int x, int y) {
-        if (x == 0 ) {
-            if (y == 0) {
-                return getFloat(CAR_CCD_LINE, PTS00, (float) -139.4);
-            } else {
-                return getFloat(CAR_CCD_LINE, PTS01, (float) -36.5);
-            }
-        } else if (x == 1) {
-            if (y == 0) {
-                return getFloat(CAR_CCD_LINE, PTS10, (float) 145.9);
-            } else {
-                return getFloat(CAR_CCD_LINE, PTS11, (float) -36.5);
-            }
-        } else  if (x == 2) {
-            if (y == 0) {
-                return getFloat(CAR_CCD_LINE, PTS20, (float) 228.1);
-            } else {
-                return getFloat(CAR_CCD_LINE, PTS21, (float) 34.4);
-            }
-        } else if (x == 3) {
-            if (y == 0) {
-                return getFloat(CAR_CCD_LINE, PTS30, (float) -225.7);
-            } else {
-                return getFloat(CAR_CCD_LINE, PTS31, (float) 34.4);
-            }
+        final float[][] pts = resolved().mPts;
+        if (x < 0 || x >= pts.length) {
+            return pts[0][0];
         }
-        return getFloat(CAR_CCD_LINE, PTS00, (float) -139.4);
+        return pts[x][y == 0 ? 0 : 1];
     }
 
     /**
@@ -1070,7 +1058,7 @@ public class IVIConfig {
      * @return 见{@link {@link com.roadrover.sdk.avin.VideoParam.CvbsType}}
      */
     public static int getAVInDefaultCVBSType() {
-        return getInteger(SECTION_AVIN, AVIN_DEFAULT_CVBS_TYPE, VideoParam.CvbsType.AUTO);
+        return resolved().mAVInDefaultCvbsType;
     }
 
     /**
@@ -1079,7 +1067,7 @@ public class IVIConfig {
      * @return
      */
     public static int getAVInVideoBrightness() {
-        return getInteger(SECTION_AVIN_VIDEO_ADJUST, AVIN_DEFAULT_BRIGHTNESS, 0x00);
+        return resolved().mAVInBrightness;
     }
 
     /**
@@ -1088,7 +1076,7 @@ public class IVIConfig {
      * @return
      */
     public static int getAVInVideoContrast() {
-        return getInteger(SECTION_AVIN_VIDEO_ADJUST, AVIN_DEFAULT_CONTRAST, 0x64);
+        return resolved().mAVInContrast;
     }
 
     /**
@@ -1097,7 +1085,7 @@ public class IVIConfig {
      * @return
      */
     public static int getAVInVideoSaturation() {
-        return getInteger(SECTION_AVIN_VIDEO_ADJUST, AVIN_DEFAULT_SATURATION, 0x80);
+        return resolved().mAVInSaturation;
     }
     /**
      * 获取AVIN检测变化次数，500ms一次
@@ -1113,7 +1101,7 @@ public class IVIConfig {
      * @return
      */
     public static boolean getAVDelayShowVideo() {
-        return getBoolean(SECTION_AVIN_VIDEO_ADJUST, AVIN_DELAY_SHOW_VIDEO, false);
+        return resolved().mAVDelayShowVideo;
     }
 
     public static int getPowerKeyLongAction() {
@@ -1377,7 +1365,7 @@ public class IVIConfig {
      * @return
      */
     public static boolean getBrightnessChangeLinearable() {
-        return getBoolean(SECTION_BRIGHTNESS, BRIGHTNESS_NEED_LINEAR_VARIATE, false);
+        return resolved().mBrightnessLinear;
     }
 
     /**
@@ -1385,7 +1373,7 @@ public class IVIConfig {
      * @return
      */
     public static int getBrightnessMax() {
-        return getInteger(SECTION_BRIGHTNESS, BRIGHTNESS_MAX, 100);
+        return resolved().mBrightnessMax;
     }
 
     /**
@@ -1393,7 +1381,7 @@ public class IVIConfig {
      * @return
      */
     public static int getBrightnessMin() {
-        return getInteger(SECTION_BRIGHTNESS, BRIGHTNESS_MIN, 0);
+        return resolved().mBrightnessMin;
     }
 
     /**
@@ -1608,7 +1596,7 @@ public class IVIConfig {
      * @return
      */
     public static int getCarCCDTrackOffsetByX(){
-        return getInteger(SECTION_CAR_CCD, CARCCD_TRACKOFFSET_X, CARCCD_TRACKOFFSET_DEFAULT);
+        return resolved().mCcdTrackOffsetX;
     }
 
     /**
@@ -1616,7 +1604,7 @@ public class IVIConfig {
      * @return
      */
     public static int getCarCCDTrackOffsetByY(){
-        return getInteger(SECTION_CAR_CCD, CARCCD_TRACKOFFSET_Y, CARCCD_TRACKOFFSET_DEFAULT);
+        return resolved().mCcdTrackOffsetY;
     }
 
     /**
@@ -1624,7 +1612,7 @@ public class IVIConfig {
      * @return
      */
     public static int getCameraRectLeft(){
-        return getInteger(SECTION_CAMERA_RECT, CAMERA_RECT_LEFT, CAMERA_RECT_DEFAULT);
+        return resolved().mCameraRectLeft;
     }
 
     /**
@@ -1632,7 +1620,7 @@ public class IVIConfig {
      * @return
      */
     public static int getCameraRectTop(){
-        return getInteger(SECTION_CAMERA_RECT, CAMERA_RECT_TOP, CAMERA_RECT_DEFAULT);
+        return resolved().mCameraRectTop;
     }
 
     /**
@@ -1818,23 +1806,14 @@ public class IVIConfig {
      * 获取只可读文件夹
      * @return 文件夹列表
      */
-    public static synchronized List<String> getOnlyReadDirs() {
+    public static List<String> getOnlyReadDirs() {
         ArrayList<String> dirs = new ArrayList<>();
-        if (checkRead() && mIniFileUtil != null) {
-            IniFileUtil.Section section = mIniFileUtil.get(SECTION_FILE_MANAGER);
-            if (section != null) {
-                Map<String, Object> values = section.getValues();
+        if (checkRead()) {
+            Map<String, String> values = sSnapshot.getSection(SECTION_FILE_MANAGER);
+            if (values != null) {
                 String prefix = getINandDiskPath() + "/";
-                if (values != null) {
-                    Set<String> keys = values.keySet();
-                    for (String key : keys) {
-                        try {
-                            String value = (String) values.get(key);
-                            dirs.add(prefix + value);
-                        } catch (Exception e) {
-
-                        }
-                    }
+                for (String value : values.values()) {
+                    dirs.add(prefix + value);
                 }
             }
 
@@ -1843,23 +1822,12 @@ public class IVIConfig {
         return dirs;
     }
 
-    public static synchronized List<String> getMapDataDirs() {
+    public static List<String> getMapDataDirs() {
         ArrayList<String> dirs = new ArrayList<>();
-        if (checkRead() && mIniFileUtil != null) {
-            IniFileUtil.Section section = mIniFileUtil.get(SECTION_MAP_DATA);
-            if (section != null) {
-                Map<String, Object> values = section.getValues();
-                if (values != null) {
-                    Set<String> keys = values.keySet();
-                    for (String key : keys) {
-                        try {
-                            String value = (String) values.get(key);
-                            dirs.add(value);
-                        } catch (Exception e) {
-
-                        }
-                    }
-                }
+        if (checkRead()) {
+            Map<String, String> values = sSnapshot.getSection(SECTION_MAP_DATA);
+            if (values != null) {
+                dirs.addAll(values.values());
             }
         }
         return dirs;
@@ -1874,8 +1842,15 @@ public class IVIConfig {
      * @return INI解析对象
      */
     public static IniFileUtil getIniFileUtil() {
-        checkRead();
-        return mIniFileUtil;
+        synchronized (IVIConfig.class) {
+            if (null == mIniFileUtil) {
+                File file = new File(INI_FILE_PATH);
+                if (file.exists()) {
+                    mIniFileUtil = new IniFileUtil(file);
+                }
+            }
+            return mIniFileUtil;
+        }
     }
 
 	/**
@@ -1885,10 +1860,10 @@ public class IVIConfig {
      * @param key     key名称
      * @return 配置字段
      */
-    public static synchronized Object get(String section, String key) {
+    public static Object get(String section, String key) {
         boolean ret = false;
-        if (checkRead() && mIniFileUtil != null) {
-            Object object = mIniFileUtil.get(section, key);
+        if (checkRead()) {
+            Object object = sSnapshot.getString(section, key);
             if (null != object) {
                 if (object instanceof Boolean) {
                     ret = (Boolean) object;
@@ -1905,22 +1880,17 @@ public class IVIConfig {
      * 获取配置字段
      * @return 配置字段
      */
-    public static synchronized SparseArray<String> getRemoteControlKeyCodes() {
+    public static SparseArray<String> getRemoteControlKeyCodes() {
         SparseArray<String> keyCodes = new SparseArray<>();
-        if (checkRead() && mIniFileUtil != null) {
-            IniFileUtil.Section section = mIniFileUtil.get(SECTION_REMOTE_CONTROL);
-            if (section != null) {
-                Map<String, Object> values = section.getValues();
-                if (values != null) {
-                    Set<String> keys = values.keySet();
-                    for (String key : keys) {
-                        try {
-                            int keyCode = Integer.valueOf(key);
-                            String value = (String) values.get(key);
-                            keyCodes.append(keyCode, value); // 获取所有键值
-                        } catch (Exception e) {
+        if (checkRead()) {
+            Map<String, String> values = sSnapshot.getSection(SECTION_REMOTE_CONTROL);
+            if (values != null) {
+                for (Map.Entry<String, String> entry : values.entrySet()) {
+                    try {
+                        int keyCode = Integer.valueOf(entry.getKey());
+                        keyCodes.append(keyCode, entry.getValue()); // 获取所有键值
+                    } catch (Exception e) {
 
-                        }
                     }
                 }
             }
@@ -1934,7 +1904,7 @@ public class IVIConfig {
      */
     public static List<String> getModeControlAppList() {
         List<String> apps = new ArrayList<>();
-        if (checkRead() && mIniFileUtil != null) {
+        if (checkRead()) {
             Integer count = getInteger(SECTION_MODE_CONTROL, MODE_COUNT);
             Logcat.d("count:" + count);
             if (count != null) {
@@ -1955,7 +1925,7 @@ public class IVIConfig {
      */
     public static List<String> getIgnoreLaunchApps() {
         List<String> apps = new ArrayList<>();
-        if (checkRead() && mIniFileUtil != null) {
+        if (checkRead()) {
             Integer count = getInteger(SECTION_IGNORE_APP, IGNORE_COUNT);
             Logcat.d("count:" + count);
             if (count != null) {
@@ -1992,7 +1962,7 @@ public class IVIConfig {
      */
     public static List<String> getMemoryToHomeAppList() {
         List<String> apps = new ArrayList<>();
-        if (checkRead() && mIniFileUtil != null) {
+        if (checkRead()) {
             Integer count = getInteger(SECTION_MEMORY_TO_HOME, MEMORY_COUNT);
             Logcat.d("count:" + count);
             if (count != null) {
@@ -2013,7 +1983,7 @@ public class IVIConfig {
      */
     public static Map<String, String> getBootMemoryAppMap() {
         Map<String, String> appsMap = new HashMap<>();
-        if (checkRead() && mIniFileUtil != null) {
+        if (checkRead()) {
             Integer count = getInteger(SECTION_BOOT_MEMORY, MEMORY_COUNT);
             Logcat.d("count:" + count);
             if (count != null) {
@@ -2069,15 +2039,7 @@ public class IVIConfig {
      * @return
      */
     public static int getStatusBarColor() {
-        String color = getString(SECTION_SYSTEM_UI, STATUS_BAR_COLOR);
-        if (!TextUtils.isEmpty(color)) {
-            try {
-                return Color.parseColor("#" + color);
-            } catch (Exception e) {
-
-            }
-        }
-        return -1;
+        return resolved().mStatusBarColor;
     }
 
 	/**
@@ -2085,7 +2047,7 @@ public class IVIConfig {
      * @return
      */
     public static boolean getNeedMediaPlayTime() {
-        return getBoolean(SECTION_MEDIA, MEDIA_NEED_PLAYTIME, false);
+        return resolved().mNeedMediaPlayTime;
     }
 
     /**
@@ -2248,20 +2210,11 @@ public class IVIConfig {
      * @param key     key名称
      * @return 配置字符串
      */
-    public static synchronized String getString(String section, String key) {
-        String ret = null;
-        if (checkRead() && mIniFileUtil != null) {
-            Object object = mIniFileUtil.get(section, key);
-            if (null != object) {
-                if (object instanceof String) {
-                    ret = (String) object;
-                } else {
-                    Logcat.w("failed, " + object + " is not instanceof String.");
-                }
-            }
+    public static String getString(String section, String key) {
+        if (checkRead()) {
+            return sSnapshot.getString(section, key);
         }
-
-        return ret;
+        return null;
     }
 
     /**
@@ -2287,17 +2240,16 @@ public class IVIConfig {
      * @return 整型值
      */
     public static Integer getInteger(String section, String key) {
-        Integer ret = null;
-        final String string = getString(section, key);
-        if (null != string) {
-            try {
-                ret = Integer.valueOf(string);
-            } catch (Exception e) {
-                e.printStackTrace();
+        if (checkRead()) {
+            IVIConfigSnapshot.Value value = sSnapshot.getValue(section, key);
+            if (value != null) {
+                if (value.mIsInteger) {
+                    return value.mInteger;
+                }
                 Logcat.w("failed, " + section + " " + key);
             }
         }
-        return ret;
+        return null;
     }
 
     /**
@@ -2308,16 +2260,16 @@ public class IVIConfig {
      * @return 浮点值
      */
     private static Float getFloat(String section, String key) {
-        Float ret = null;
-        final String string = getString(section, key);
-        if (null != string) {
-            try {
-                ret = Float.valueOf(string);
-            } catch (Exception e) {
+        if (checkRead()) {
+            IVIConfigSnapshot.Value value = sSnapshot.getValue(section, key);
+            if (value != null) {
+                if (value.mIsFloat) {
+                    return value.mFloat;
+                }
                 Logcat.w("failed, " + section + " " + key);
             }
         }
-        return ret;
+        return null;
     }
 
     /**
@@ -2329,12 +2281,16 @@ public class IVIConfig {
      * @return 整型值
      */
     public static int getInteger(String section, String key, int defaultValue) {
-        Integer ret = getInteger(section, key);
-        if (ret != null) {
-            return ret;
-        } else {
-            return defaultValue;
+        if (checkRead()) {
+            IVIConfigSnapshot.Value value = sSnapshot.getValue(section, key);
+            if (value != null) {
+                if (value.mIsInteger) {
+                    return value.mInteger;
+                }
+                Logcat.w("failed, " + section + " " + key);
+            }
         }
+        return defaultValue;
     }
 
     /**
@@ -2346,12 +2302,16 @@ public class IVIConfig {
      * @return 整型值
      */
     public static float getFloat(String section, String key, float defaultValue) {
-        Float ret = getFloat(section, key);
-        if (ret != null) {
-            return ret;
-        } else {
-            return defaultValue;
+        if (checkRead()) {
+            IVIConfigSnapshot.Value value = sSnapshot.getValue(section, key);
+            if (value != null) {
+                if (value.mIsFloat) {
+                    return value.mFloat;
+                }
+                Logcat.w("failed, " + section + " " + key);
+            }
         }
+        return defaultValue;
     }
 
     /**
@@ -2362,37 +2322,239 @@ public class IVIConfig {
      * @param defaultValue 默认值
      * @return 整型值
      */
-    public static synchronized boolean getBoolean(String section, String key, boolean defaultValue) {
-        boolean ret = defaultValue;
-        final String string = getString(section, key);
-        if (null != string) {
-            if ("true".equals(string)) {
-                ret = true;
-            } else if ("false".equals(string)) {
-                ret = false;
-            } else {
+    public static boolean getBoolean(String section, String key, boolean defaultValue) {
+        if (checkRead()) {
+            IVIConfigSnapshot.Value value = sSnapshot.getValue(section, key);
+            if (value != null) {
+                if (value.mIsBoolean) {
+                    return value.mBoolean;
+                }
                 Logcat.w("failed, " + section + " " + key + " " + defaultValue);
             }
         }
-        return ret;
+        return defaultValue;
+    }
+
+    /**
+     * 绘制倒车轨迹、调节背光等热点路径上读取的配置，每个快照加载时解析一次，读取时直接返回字段，不需要查表
+     */
+    private static final class Resolved {
+        final int mCameraR;
+        final int mTrackMaxLen;
+        final int mTrackMinLen;
+        final int mCarWidth;
+        final int mCarWheelBase;
+        final int mCarFrontTrackWidth;
+        final int mCarRearTrackWidth;
+        final int mCarRearLen;
+        final int mCarRearTyreWidth;
+        final int mSteeringWheelAngleMax;
+        final int mWheelAngleMax;
+        final int mDispStyle;
+        final int mAVInDefaultCvbsType;
+        final int mAVInBrightness;
+        final int mAVInContrast;
+        final int mAVInSaturation;
+        final boolean mAVDelayShowVideo;
+        final boolean mBrightnessLinear;
+        final int mBrightnessMax;
+        final int mBrightnessMin;
+        final int mCcdTrackOffsetX;
+        final int mCcdTrackOffsetY;
+        final int mCameraRectLeft;
+        final int mCameraRectTop;
+        final boolean mNeedMediaPlayTime;
+        final float[][] mPts; // 四个标定点的 x y 值
+        final int mStatusBarColor;
+
+        /**
+         * @param snapshot 配置快照，为空时全部使用默认值
+         */
+        Resolved(IVIConfigSnapshot snapshot) {
+            if (snapshot == null) {
+                snapshot = EMPTY_SNAPSHOT;
+            }
+            mCameraR = snapshot.getInt(CAR_CCD_LINE, CAMERA_R, 96);
+            mTrackMaxLen = snapshot.getInt(CAR_CCD_LINE, TRACK_MAX_LEN, 4);
+            mTrackMinLen = snapshot.getInt(CAR_CCD_LINE, TRACK_MIN_LEN, 40);
+            mCarWidth = snapshot.getInt(CAR_CCD_LINE, CAR_WIDTH, 1799);
+            mCarWheelBase = snapshot.getInt(CAR_CCD_LINE, CAR_WHEELBASE, 2637);
+            mCarFrontTrackWidth = snapshot.getInt(CAR_CCD_LINE, CAR_FORNT_TRACK_WIDTH, 1549);
+            mCarRearTrackWidth = snapshot.getInt(CAR_CCD_LINE, CAR_REAR_TRACK_WIDTH, 1520);
+            mCarRearLen = snapshot.getInt(CAR_CCD_LINE, CAR_REAR_LEN, 763);
+            mCarRearTyreWidth = snapshot.getInt(CAR_CCD_LINE, CAR_REAR_TYRE_WIDTH, 195);
+            mSteeringWheelAngleMax = snapshot.getInt(CAR_CCD_LINE, CAR_STEERING_WHEEL_ANGLE_MAX, 200);
+            mWheelAngleMax = snapshot.getInt(CAR_CCD_LINE, CAR_WHEEL_ANGEL_MAX, 385);
+            mDispStyle = snapshot.getInt(CAR_CCD_LINE, DISP_STYLE, 1);
+            mAVInDefaultCvbsType = snapshot.getInt(SECTION_AVIN, AVIN_DEFAULT_CVBS_TYPE, VideoParam.CvbsType.AUTO);
+            mAVInBrightness = snapshot.getInt(SECTION_AVIN_VIDEO_ADJUST, AVIN_DEFAULT_BRIGHTNESS, 0x00);
+            mAVInContrast = snapshot.getInt(SECTION_AVIN_VIDEO_ADJUST, AVIN_DEFAULT_CONTRAST, 0x64);
+            mAVInSaturation = snapshot.getInt(SECTION_AVIN_VIDEO_ADJUST, AVIN_DEFAULT_SATURATION, 0x80);
+            mAVDelayShowVideo = snapshot.getBoolean(SECTION_AVIN_VIDEO_ADJUST, AVIN_DELAY_SHOW_VIDEO, false);
+            mBrightnessLinear = snapshot.getBoolean(SECTION_BRIGHTNESS, BRIGHTNESS_NEED_LINEAR_VARIATE, false);
+            mBrightnessMax = snapshot.getInt(SECTION_BRIGHTNESS, BRIGHTNESS_MAX, 100);
+            mBrightnessMin = snapshot.getInt(SECTION_BRIGHTNESS, BRIGHTNESS_MIN, 0);
+            mCcdTrackOffsetX = snapshot.getInt(SECTION_CAR_CCD, CARCCD_TRACKOFFSET_X, CARCCD_TRACKOFFSET_DEFAULT);
+            mCcdTrackOffsetY = snapshot.getInt(SECTION_CAR_CCD, CARCCD_TRACKOFFSET_Y, CARCCD_TRACKOFFSET_DEFAULT);
+            mCameraRectLeft = snapshot.getInt(SECTION_CAMERA_RECT, CAMERA_RECT_LEFT, CAMERA_RECT_DEFAULT);
+            mCameraRectTop = snapshot.getInt(SECTION_CAMERA_RECT, CAMERA_RECT_TOP, CAMERA_RECT_DEFAULT);
+            mNeedMediaPlayTime = snapshot.getBoolean(SECTION_MEDIA, MEDIA_NEED_PLAYTIME, false);
+
+            mPts = new float[][] {
+                    {snapshot.getFloat(CAR_CCD_LINE, PTS00, -139.4f), snapshot.getFloat(CAR_CCD_LINE, PTS01, -36.5f)},
+                    {snapshot.getFloat(CAR_CCD_LINE, PTS10, 145.9f), snapshot.getFloat(CAR_CCD_LINE, PTS11, -36.5f)},
+                    {snapshot.getFloat(CAR_CCD_LINE, PTS20, 228.1f), snapshot.getFloat(CAR_CCD_LINE, PTS21, 34.4f)},
+                    {snapshot.getFloat(CAR_CCD_LINE, PTS30, -225.7f), snapshot.getFloat(CAR_CCD_LINE, PTS31, 34.4f)}};
+
+            int color = -1; // 不设置沉浸式为 -1
+            String string = snapshot.getString(SECTION_SYSTEM_UI, STATUS_BAR_COLOR);
+            if (!TextUtils.isEmpty(string)) {
+                try {
+                    color = Color.parseColor("#" + string);
+                } catch (Exception e) {
+                    Logcat.w("failed, " + SECTION_SYSTEM_UI + " " + STATUS_BAR_COLOR + " " + string);
+                }
+            }
+            mStatusBarColor = color;
+        }
     }
 
     /**
-     * 检查可读
+     * 获取当前快照解析好的热点配置
+     * @return 不会为null，配置文件不存在时返回默认值
+     */
+    private static Resolved resolved() {
+        Resolved resolved = sResolved;
+        if (null == resolved && checkRead()) {
+            resolved = sResolved;
+        }
+        return (null != resolved) ? resolved : DEFAULT_RESOLVED;
+    }
+
+    /**
+     * 发布新的快照，在 IVIConfig.class 锁里调用
+     */
+    private static void publish(IVIConfigSnapshot snapshot) {
+        sResolved = new Resolved(snapshot); // 先更新热点配置，读到新快照时热点配置一定也是新的
+        sSnapshot = snapshot;
+    }
+
+    /**
+     * 检查可读，第一次调用时解析配置文件生成快照
      */
     private static boolean checkRead() {
-        if (null == mIniFileUtil) {
+        if (null != sSnapshot) {
+            return true;
+        }
+        synchronized (IVIConfig.class) {
+            if (null == sSnapshot) {
+                File file = new File(INI_FILE_PATH);
+                if (file.exists()) {
+                    Logcat.d("ready to read " + INI_FILE_PATH);
+                    IVIConfigSnapshot snapshot = IVIConfigSnapshot.load(file);
+                    if (null != snapshot) {
+                        publish(snapshot);
+                    }
+                } else {
+                    Logcat.e("failed, file " + INI_FILE_PATH + " not exist.");
+                }
+            }
+            return null != sSnapshot;
+        }
+    }
+
+    /**
+     * 配置改变的监听
+     */
+    public interface OnConfigChangedListener {
+        /**
+         * 配置文件重新加载后回调，在重新加载的线程中执行
+         * @param snapshot 新的配置快照
+         */
+        void onConfigChanged(IVIConfigSnapshot snapshot);
+    }
+
+    /**
+     * 获取当前的配置快照，同一个快照里的配置是一致的，需要读取多个相关配置时可以使用
+     * @return 配置文件不存在返回null
+     */
+    public static IVIConfigSnapshot getSnapshot() {
+        checkRead();
+        return sSnapshot;
+    }
+
+    /**
+     * 如果配置文件已经修改，重新解析并整体替换当前快照，正在读取旧快照的调用不受影响
+     * @return 重新加载了返回true
+     */
+    public static boolean reload() {
+        IVIConfigSnapshot snapshot;
+        synchronized (IVIConfig.class) {
             File file = new File(INI_FILE_PATH);
-            if (file.exists()) {
-                Logcat.d("ready to read " + INI_FILE_PATH);
-                mIniFileUtil = new IniFileUtil(file);
-                return true;
-            } else {
-                Logcat.e("failed, file " + INI_FILE_PATH + " not exist.");
+            if (null != sSnapshot && !sSnapshot.isStale(file)) {
                 return false;
             }
-        } else {
-            return true;
+            snapshot = IVIConfigSnapshot.load(file);
+            if (null == snapshot) { // 文件被删除了，保留原来的配置
+                Logcat.w("failed, file " + INI_FILE_PATH + " not exist.");
+                return false;
+            }
+            Logcat.d("reload " + INI_FILE_PATH);
+            publish(snapshot);
+            mIniFileUtil = null;
+        }
+
+        for (OnConfigChangedListener listener : sConfigChangedListeners) {
+            listener.onConfigChanged(snapshot);
+        }
+        return true;
+    }
+
+    /**
+     * 注册配置改变的监听，需要配合 {@link #startWatching()} 或者主动调用 {@link #reload()}
+     * @param listener
+     */
+    public static void registerConfigChangedListener(OnConfigChangedListener listener) {
+        if (listener != null && !sConfigChangedListeners.contains(listener)) {
+            sConfigChangedListeners.add(listener);
+        }
+    }
+
+    /**
+     * 注销配置改变的监听
+     * @param listener
+     */
+    public static void unregisterConfigChangedListener(OnConfigChangedListener listener) {
+        sConfigChangedListeners.remove(listener);
+    }
+
+    /**
+     * 开始监听配置文件，文件被修改或者被替换后自动重新加载
+     */
+    public static synchronized void startWatching() {
+        if (sFileObserver == null) {
+            final File file = new File(INI_FILE_PATH);
+            // 监听所在目录，文件以改名的方式整体替换时也能收到
+            sFileObserver = new FileObserver(file.getParent(),
+                    FileObserver.CLOSE_WRITE | FileObserver.MOVED_TO | FileObserver.CREATE) {
+                @Override
+                public void onEvent(int event, String path) {
+                    if (TextUtils.equals(path, file.getName())) {
+                        reload();
+                    }
+                }
+            };
+            sFileObserver.startWatching();
+        }
+    }
+
+    /**
+     * 停止监听配置文件
+     */
+    public static synchronized void stopWatching() {
+        if (sFileObserver != null) {
+            sFileObserver.stopWatching();
+            sFileObserver = null;
         }
     }
 
@@ -2408,23 +2570,13 @@ public class IVIConfig {
      * 返回一个string list
      * @return
      */
-    public static synchronized List<String> getStringList(String sectionName) {
+    public static List<String> getStringList(String sectionName) {
         List<String> apps = new ArrayList<>();
-        if (checkRead() && mIniFileUtil != null) {
-            IniFileUtil.Section section = mIniFileUtil.get(sectionName);
-            if (section != null) {
-                Map<String, Object> values = section.getValues();
-                if (values != null) {
-                    Set<String> keys = values.keySet();
-                    for (String key : keys) {
-                        try {
-                            String value = (String) values.get(key);
-                            apps.add(value);
-                        } catch (Exception e) {
-                        }
-                    } // end of  for (String key : keys)
-                } // end of  if (values != null)
-            } // end of  if (section != null)
+        if (checkRead()) {
+            Map<String, String> values = sSnapshot.getSection(sectionName);
+            if (values != null) {
+                apps.addAll(values.values());
+            }
         }
         return apps;
     }
@@ -2702,7 +2854,7 @@ public class IVIConfig {
      */
     public static int getPanelLightPowerStatus() {
         int status = PanelLightPowerStatus.PANEL_LIGHT_NORMAL;
-        if (checkRead() && mIniFileUtil != null) {
+        if (checkRead()) {
             status = getInteger(PANEL_LIGHT_POWER, PANEL_LIGHT_POWER_STATUS, PanelLightPowerStatus.PANEL_LIGHT_NORMAL);
             Logcat.d("status:" + status);
         }
@@ -2731,7 +2883,7 @@ public class IVIConfig {
      */
     public static int getMediaStatusCcdOn() {
         int status = MediaStatusOnCcd.MEDIA_STATUS_ON_CCD_VOLUME_PERCENT;
-        if (checkRead() && mIniFileUtil != null) {
+        if (checkRead()) {
             status = getInteger(CCD_MEDIA_STATUS, MEDIA_STATUS_ON_CCD, MediaStatusOnCcd.MEDIA_STATUS_ON_CCD_VOLUME_PERCENT);
             Logcat.d("status:" + status);
         }
@@ -2801,15 +2953,14 @@ public class IVIConfig {
     public static Map<Integer, int[]> getAudioEffect() {
         Map<Integer, int[]> results = new HashMap<>();
         boolean isHasRet = false;
-        if (checkRead() && mIniFileUtil != null) {
-            IniFileUtil.Section section = mIniFileUtil.get(SECTION_AUDIO_EFFECT);
-            if (section != null) {
-                Map<String, Object> maps = section.getValues();
+        if (checkRead()) {
+            Map<String, String> maps = sSnapshot.getSection(SECTION_AUDIO_EFFECT);
+            if (maps != null) {
                 Set<String> keys = maps.keySet();
                 if (keys != null && keys.size() != 0) {
                     try {
                         for (String key : keys) {
-                            String values = (String) maps.get(key);
+                            String values = maps.get(key);
                             String[] effects = values.split(",");
                             if (!ListUtils.isEmpty(effects)) {
                                 int[] intEffects = new int[effects.length];
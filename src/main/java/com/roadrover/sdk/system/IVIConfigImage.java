@@ -0,0 +1,431 @@
+package com.roadrover.sdk.system;
+
+import android.os.Process;
+
+import com.roadrover.sdk.utils.Logcat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 全局配置文件预编译后的二进制镜像
+ * 开机时十几个进程同时读取配置，每个进程都要完整解析一遍ini文件；第一个进程解析后把结果编译成二进制镜像，
+ * 后面的进程直接内存映射镜像文件，按 section/key 的哈希二分查找，不需要再解析文本。
+ * 镜像记录了ini文件的修改时间、长度和CRC32，任何一项不一致都认为镜像过期，重新从ini解析并编译。
+ *
+ * 文件格式（大端）：
+ *   文件头：魔数"RRCF"(4) + 版本(4) + ini修改时间(8) + ini长度(8) + ini的CRC32(4)
+ *          + section个数(4) + 配置项个数(4) + section表偏移(4) + 配置项表偏移(4) + 哈希索引偏移(4) + 字符串池偏移(4)
+ *   section表：每个section 名字偏移(4) + 第一个配置项下标(4) + 配置项个数(4)，按文件顺序
+ *   配置项表：每项 section下标(4) + key偏移(4) + 值偏移(4) + 类型标记(4) + 整型值(4) + 浮点值(4)，按文件顺序
+ *   哈希索引：每项 哈希值(4) + 配置项下标(4)，按哈希值排序
+ *   字符串池：每个字符串 长度(4) + UTF-8内容
+ */
+final class IVIConfigImage {
+    private static final int MAGIC = 0x52524346; // "RRCF"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 52;
+    private static final int SECTION_SIZE = 12;
+    private static final int ENTRY_SIZE = 24;
+    private static final int INDEX_SIZE = 8;
+
+    private static final int FLAG_INTEGER = 1;
+    private static final int FLAG_FLOAT = 1 << 1;
+    private static final int FLAG_BOOLEAN = 1 << 2;
+    private static final int FLAG_TRUE = 1 << 3;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * 镜像文件的候选路径，优先放在ini同目录下，ini所在目录不可写时放到数据分区
+     */
+    private static final String[] CACHE_PATHS = {
+            IVIConfig.INI_FILE_PATH + ".bin",
+            "/data/rr_data/ivi-config.ini.bin"
+    };
+
+    private final ByteBuffer mBuffer;
+    private final int mSectionCount;
+    private final int mEntryCount;
+    private final int mSectionOffset;
+    private final int mEntryOffset;
+    private final int mIndexOffset;
+    private final AtomicReferenceArray<IVIConfigSnapshot.Value> mValues; // 已经读取过的值，避免重复创建对象
+    private final AtomicReferenceArray<Map<String, String>> mSections; // 已经读取过的section
+    private volatile Map<String, Map<String, String>> mAllSections = null;
+
+    private IVIConfigImage(ByteBuffer buffer) {
+        mBuffer = buffer;
+        mSectionCount = buffer.getInt(28);
+        mEntryCount = buffer.getInt(32);
+        mSectionOffset = buffer.getInt(36);
+        mEntryOffset = buffer.getInt(40);
+        mIndexOffset = buffer.getInt(44);
+        mValues = new AtomicReferenceArray<>(mEntryCount);
+        mSections = new AtomicReferenceArray<>(mSectionCount);
+    }
+
+    /**
+     * 打开和ini文件一致的镜像
+     * @param lastModified ini文件修改时间
+     * @param length ini文件长度
+     * @param crc ini文件内容的CRC32
+     * @return 没有一致的镜像返回null
+     */
+    static IVIConfigImage open(long lastModified, long length, int crc) {
+        for (String path : CACHE_PATHS) {
+            File file = new File(path);
+            if (!file.exists()) {
+                continue;
+            }
+            RandomAccessFile raf = null;
+            try {
+                raf = new RandomAccessFile(file, "r");
+                if (raf.length() < HEADER_SIZE) {
+                    continue;
+                }
+                ByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+                if (buffer.getInt(0) == MAGIC && buffer.getInt(4) == VERSION
+                        && buffer.getLong(8) == lastModified && buffer.getLong(16) == length
+                        && buffer.getInt(24) == crc) {
+                    if (isValid(buffer)) {
+                        return new IVIConfigImage(buffer);
+                    }
+                    Logcat.w(path + " is corrupt");
+                    continue;
+                }
+                Logcat.d(path + " is out of date");
+            } catch (Exception e) { // 镜像损坏时回退到解析ini
+                e.printStackTrace();
+            } finally {
+                if (raf != null) {
+                    try {
+                        raf.close(); // 关闭文件不影响已经建立的映射
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 检查镜像的表结构和字符串都在文件范围内，镜像被截断或者损坏时返回false，回退到解析ini，
+     * 检查通过之后读取时不需要再判断越界
+     */
+    private static boolean isValid(ByteBuffer buffer) {
+        final long limit = buffer.limit();
+        final int sectionCount = buffer.getInt(28);
+        final int entryCount = buffer.getInt(32);
+        final int sectionOffset = buffer.getInt(36);
+        final int entryOffset = buffer.getInt(40);
+        final int indexOffset = buffer.getInt(44);
+        final int poolOffset = buffer.getInt(48);
+        if (sectionCount < 0 || entryCount < 0 || sectionOffset != HEADER_SIZE
+                || entryOffset != sectionOffset + (long) sectionCount * SECTION_SIZE
+                || indexOffset != entryOffset + (long) entryCount * ENTRY_SIZE
+                || poolOffset != indexOffset + (long) entryCount * INDEX_SIZE
+                || poolOffset > limit) {
+            return false;
+        }
+
+        for (int i = 0; i < sectionCount; ++i) {
+            final int position = sectionOffset + i * SECTION_SIZE;
+            final int first = buffer.getInt(position + 4);
+            final int count = buffer.getInt(position + 8);
+            if (!isValidString(buffer, buffer.getInt(position), poolOffset)
+                    || first < 0 || count < 0 || (long) first + count > entryCount) {
+                return false;
+            }
+        }
+        for (int i = 0; i < entryCount; ++i) {
+            final int position = entryOffset + i * ENTRY_SIZE;
+            final int section = buffer.getInt(position);
+            if (section < 0 || section >= sectionCount
+                    || !isValidString(buffer, buffer.getInt(position + 4), poolOffset)
+                    || !isValidString(buffer, buffer.getInt(position + 8), poolOffset)) {
+                return false;
+            }
+            final int entry = buffer.getInt(indexOffset + i * INDEX_SIZE + 4);
+            if (entry < 0 || entry >= entryCount) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isValidString(ByteBuffer buffer, int offset, int poolOffset) {
+        if (offset < poolOffset || (long) offset + 4 > buffer.limit()) {
+            return false;
+        }
+        final int length = buffer.getInt(offset);
+        return length >= 0 && (long) offset + 4 + length <= buffer.limit();
+    }
+
+    /**
+     * 把解析好的配置编译成镜像，写入第一个可写的候选路径，先写临时文件再改名，其他进程不会读到写了一半的镜像
+     * @param sections 按文件顺序的 section -> key -> 字符串
+     * @param lastModified ini文件修改时间
+     * @param length ini文件长度
+     * @param crc ini文件内容的CRC32
+     * @return 成功返回true
+     */
+    static boolean compile(Map<String, Map<String, String>> sections, long lastModified, long length, int crc) {
+        byte[] image = build(sections, lastModified, length, crc);
+        for (String path : CACHE_PATHS) {
+            File file = new File(path);
+            File dir = file.getParentFile();
+            if (dir == null || !dir.canWrite()) {
+                continue;
+            }
+            File temp = new File(dir, file.getName() + "." + Process.myPid() + ".tmp");
+            FileOutputStream out = null;
+            try {
+                out = new FileOutputStream(temp);
+                out.write(image);
+                out.getFD().sync();
+                out.close();
+                out = null;
+                if (temp.renameTo(file)) {
+                    Logcat.d("compiled " + path);
+                    return true;
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                if (out != null) {
+                    try {
+                        out.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+                if (temp.exists() && !temp.delete()) {
+                    Logcat.w("delete " + temp + " failed");
+                }
+            }
+        }
+        return false;
+    }
+
+    private static byte[] build(Map<String, Map<String, String>> sections, long lastModified, long length, int crc) {
+        List<String> pool = new ArrayList<>();
+        Map<String, Integer> poolOffsets = new LinkedHashMap<>();
+        int poolSize = 0;
+
+        int entryCount = 0;
+        for (Map<String, String> values : sections.values()) {
+            entryCount += values.size();
+        }
+        final int sectionOffset = HEADER_SIZE;
+        final int entryOffset = sectionOffset + sections.size() * SECTION_SIZE;
+        final int indexOffset = entryOffset + entryCount * ENTRY_SIZE;
+        final int poolOffset = indexOffset + entryCount * INDEX_SIZE;
+
+        ByteBuffer sectionTable = ByteBuffer.allocate(sections.size() * SECTION_SIZE);
+        ByteBuffer entryTable = ByteBuffer.allocate(entryCount * ENTRY_SIZE);
+        long[] index = new long[entryCount]; // 高32位哈希值，低32位下标，排序后即按哈希值排序
+        int sectionIndex = 0;
+        int entryIndex = 0;
+        for (Map.Entry<String, Map<String, String>> section : sections.entrySet()) {
+            poolSize = intern(section.getKey(), pool, poolOffsets, poolSize);
+            sectionTable.putInt(poolOffset + poolOffsets.get(section.getKey()));
+            sectionTable.putInt(entryIndex);
+            sectionTable.putInt(section.getValue().size());
+
+            for (Map.Entry<String, String> entry : section.getValue().entrySet()) {
+                poolSize = intern(entry.getKey(), pool, poolOffsets, poolSize);
+                poolSize = intern(entry.getValue(), pool, poolOffsets, poolSize);
+                IVIConfigSnapshot.Value value = new IVIConfigSnapshot.Value(entry.getValue());
+                int flags = (value.mIsInteger ? FLAG_INTEGER : 0) | (value.mIsFloat ? FLAG_FLOAT : 0)
+                        | (value.mIsBoolean ? FLAG_BOOLEAN : 0) | (value.mBoolean ? FLAG_TRUE : 0);
+                entryTable.putInt(sectionIndex);
+                entryTable.putInt(poolOffset + poolOffsets.get(entry.getKey()));
+                entryTable.putInt(poolOffset + poolOffsets.get(entry.getValue()));
+                entryTable.putInt(flags);
+                entryTable.putInt(value.mInteger);
+                entryTable.putFloat(value.mFloat);
+
+                index[entryIndex] = ((long) hash(section.getKey(), entry.getKey()) << 32) | entryIndex;
+                ++entryIndex;
+            }
+            ++sectionIndex;
+        }
+        Arrays.sort(index);
+
+        ByteBuffer buffer = ByteBuffer.allocate(poolOffset + poolSize);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(lastModified);
+        buffer.putLong(length);
+        buffer.putInt(crc);
+        buffer.putInt(sections.size());
+        buffer.putInt(entryCount);
+        buffer.putInt(sectionOffset);
+        buffer.putInt(entryOffset);
+        buffer.putInt(indexOffset);
+        buffer.putInt(poolOffset);
+        buffer.put(sectionTable.array());
+        buffer.put(entryTable.array());
+        for (long item : index) {
+            buffer.putInt((int) (item >> 32));
+            buffer.putInt((int) item);
+        }
+        for (String string : pool) {
+            byte[] bytes = string.getBytes(UTF8);
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+        return buffer.array();
+    }
+
+    private static int intern(String string, List<String> pool, Map<String, Integer> offsets, int poolSize) {
+        if (!offsets.containsKey(string)) {
+            offsets.put(string, poolSize);
+            pool.add(string);
+            poolSize += 4 + string.getBytes(UTF8).length;
+        }
+        return poolSize;
+    }
+
+    private static int hash(String section, String key) {
+        return section.hashCode() * 31 + key.hashCode();
+    }
+
+    /**
+     * 查找配置值
+     * @return 没有配置返回null
+     */
+    IVIConfigSnapshot.Value getValue(String section, String key) {
+        if (section == null || key == null) {
+            return null;
+        }
+        final int hash = hash(section, key);
+        int low = 0;
+        int high = mEntryCount - 1;
+        while (low <= high) { // 二分查找第一个哈希值相等的位置
+            int mid = (low + high) >>> 1;
+            if (mBuffer.getInt(mIndexOffset + mid * INDEX_SIZE) < hash) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        for (int i = low; i < mEntryCount; ++i) {
+            final int position = mIndexOffset + i * INDEX_SIZE;
+            if (mBuffer.getInt(position) != hash) {
+                break;
+            }
+            final int entry = mBuffer.getInt(position + 4);
+            final int entryPosition = mEntryOffset + entry * ENTRY_SIZE;
+            final int sectionPosition = mSectionOffset + mBuffer.getInt(entryPosition) * SECTION_SIZE;
+            if (equalsAt(mBuffer.getInt(entryPosition + 4), key)
+                    && equalsAt(mBuffer.getInt(sectionPosition), section)) {
+                return getValue(entry);
+            }
+        }
+        return null;
+    }
+
+    private IVIConfigSnapshot.Value getValue(int entry) {
+        IVIConfigSnapshot.Value value = mValues.get(entry);
+        if (value == null) {
+            final int position = mEntryOffset + entry * ENTRY_SIZE;
+            final int flags = mBuffer.getInt(position + 12);
+            value = new IVIConfigSnapshot.Value(getString(mBuffer.getInt(position + 8)),
+                    (flags & FLAG_INTEGER) != 0, mBuffer.getInt(position + 16),
+                    (flags & FLAG_FLOAT) != 0, mBuffer.getFloat(position + 20),
+                    (flags & FLAG_BOOLEAN) != 0, (flags & FLAG_TRUE) != 0);
+            mValues.compareAndSet(entry, null, value);
+        }
+        return value;
+    }
+
+    /**
+     * 获取一个section下所有的配置，按配置文件中的顺序
+     * @return 没有该section返回null
+     */
+    Map<String, String> getSection(String section) {
+        for (int i = 0; i < mSectionCount; ++i) {
+            if (equalsAt(mBuffer.getInt(mSectionOffset + i * SECTION_SIZE), section)) {
+                return getSection(i);
+            }
+        }
+        return null;
+    }
+
+    private Map<String, String> getSection(int section) {
+        Map<String, String> values = mSections.get(section);
+        if (values == null) {
+            final int position = mSectionOffset + section * SECTION_SIZE;
+            final int first = mBuffer.getInt(position + 4);
+            final int count = mBuffer.getInt(position + 8);
+            Map<String, String> map = new LinkedHashMap<>();
+            for (int i = first; i < first + count; ++i) {
+                final int entryPosition = mEntryOffset + i * ENTRY_SIZE;
+                map.put(getString(mBuffer.getInt(entryPosition + 4)), getValue(i).mString);
+            }
+            values = Collections.unmodifiableMap(map);
+            mSections.compareAndSet(section, null, values);
+        }
+        return values;
+    }
+
+    /**
+     * 获取所有section，按配置文件中的顺序
+     */
+    Map<String, Map<String, String>> getSections() {
+        Map<String, Map<String, String>> sections = mAllSections;
+        if (sections == null) {
+            Map<String, Map<String, String>> map = new LinkedHashMap<>();
+            for (int i = 0; i < mSectionCount; ++i) {
+                map.put(getString(mBuffer.getInt(mSectionOffset + i * SECTION_SIZE)), getSection(i));
+            }
+            sections = Collections.unmodifiableMap(map);
+            mAllSections = sections;
+        }
+        return sections;
+    }
+
+    private String getString(int offset) {
+        final int length = mBuffer.getInt(offset);
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; ++i) {
+            bytes[i] = mBuffer.get(offset + 4 + i);
+        }
+        return new String(bytes, UTF8);
+    }
+
+    /**
+     * 比较字符串池中的字符串，ASCII字符串直接逐字节比较，不创建对象
+     */
+    private boolean equalsAt(int offset, String string) {
+        final int length = mBuffer.getInt(offset);
+        if (length < string.length()) { // UTF-8字节数不会少于字符数
+            return false;
+        }
+        for (int i = 0; i < length; ++i) {
+            final byte b = mBuffer.get(offset + 4 + i);
+            if (b < 0) { // 非ASCII，解码后比较
+                return string.equals(getString(offset));
+            }
+            if (i >= string.length() || b != string.charAt(i)) {
+                return false;
+            }
+        }
+        return length == string.length();
+    }
+}
@@ -0,0 +1,304 @@
+package com.roadrover.sdk.system;
+
+import com.roadrover.sdk.utils.IniFileUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * 全局配置文件解析后的不可变快照
+ * 配置文件只解析一次，每个值在构造时就预先转换好整型、浮点、布尔值，读取时不需要加锁，也不需要再解析字符串；
+ * 配置文件更新时重新构造一个新的快照整体替换，见 {@link IVIConfig#reload()}；
+ * 有预编译镜像时直接从内存映射的镜像读取，见 {@link IVIConfigImage}
+ */
+public final class IVIConfigSnapshot {
+
+    /**
+     * 一个配置值，构造时预先解析好各个类型
+     */
+    public static final class Value {
+        /** 原始字符串 */
+        public final String mString;
+        /** 是否是合法的整型 */
+        public final boolean mIsInteger;
+        /** 整型值，mIsInteger 为 true 时有效 */
+        public final int mInteger;
+        /** 是否是合法的浮点数 */
+        public final boolean mIsFloat;
+        /** 浮点值，mIsFloat 为 true 时有效 */
+        public final float mFloat;
+        /** 是否是合法的布尔值，只接受 "true" 和 "false" */
+        public final boolean mIsBoolean;
+        /** 布尔值，mIsBoolean 为 true 时有效 */
+        public final boolean mBoolean;
+
+        Value(String string) {
+            mString = string;
+
+            boolean isInteger = false;
+            int integer = 0;
+            try {
+                integer = Integer.parseInt(string);
+                isInteger = true;
+            } catch (NumberFormatException e) {
+                // 不是整型，读取整型时由调用者打印警告
+            }
+            mIsInteger = isInteger;
+            mInteger = integer;
+
+            boolean isFloat = false;
+            float f = 0;
+            try {
+                f = Float.parseFloat(string);
+                isFloat = true;
+            } catch (NumberFormatException e) {
+                // 不是浮点数
+            }
+            mIsFloat = isFloat;
+            mFloat = f;
+
+            mIsBoolean = "true".equals(string) || "false".equals(string);
+            mBoolean = "true".equals(string);
+        }
+
+        Value(String string, boolean isInteger, int integer, boolean isFloat, float f,
+              boolean isBoolean, boolean b) {
+            mString = string;
+            mIsInteger = isInteger;
+            mInteger = integer;
+            mIsFloat = isFloat;
+            mFloat = f;
+            mIsBoolean = isBoolean;
+            mBoolean = b;
+        }
+    }
+
+    private final String mPath;
+    private final long mLastModified;
+    private final long mLength;
+    private final Map<String, Map<String, Value>> mValues; // section -> key -> 预解析的值
+    private final Map<String, Map<String, String>> mSections; // section -> 按文件顺序的 key -> 原始字符串
+    private final IVIConfigImage mImage; // 从预编译镜像加载时不为空，此时直接从镜像读取
+
+    /**
+     * 构造快照
+     * @param path 配置文件路径
+     * @param lastModified 配置文件修改时间，用于判断是否需要重新加载
+     * @param length 配置文件长度，用于判断是否需要重新加载
+     * @param sections 按文件顺序的 section -> key -> 字符串
+     */
+    IVIConfigSnapshot(String path, long lastModified, long length, Map<String, Map<String, String>> sections) {
+        mPath = path;
+        mLastModified = lastModified;
+        mLength = length;
+
+        Map<String, Map<String, Value>> values = new HashMap<>();
+        Map<String, Map<String, String>> ordered = new LinkedHashMap<>();
+        for (Map.Entry<String, Map<String, String>> section : sections.entrySet()) {
+            Map<String, Value> sectionValues = new HashMap<>();
+            Map<String, String> sectionStrings = new LinkedHashMap<>();
+            for (Map.Entry<String, String> entry : section.getValue().entrySet()) {
+                final String value = entry.getValue();
+                if (entry.getKey() != null && value != null && value.trim().length() > 0) { // 同 IniFileUtil，空值当作没有配置
+                    sectionValues.put(entry.getKey(), new Value(value));
+                    sectionStrings.put(entry.getKey(), value);
+                }
+            }
+            values.put(section.getKey(), sectionValues);
+            ordered.put(section.getKey(), Collections.unmodifiableMap(sectionStrings));
+        }
+        mValues = values;
+        mSections = Collections.unmodifiableMap(ordered);
+        mImage = null;
+    }
+
+    /**
+     * 从预编译镜像构造快照
+     */
+    private IVIConfigSnapshot(String path, long lastModified, long length, IVIConfigImage image) {
+        mPath = path;
+        mLastModified = lastModified;
+        mLength = length;
+        mValues = null;
+        mSections = null;
+        mImage = image;
+    }
+
+    /**
+     * 加载配置文件，生成快照
+     * 优先使用和配置文件一致的预编译镜像，没有时解析配置文件，并编译镜像给后面的进程使用
+     * @param file 配置文件
+     * @return 文件不存在返回null
+     */
+    static IVIConfigSnapshot load(File file) {
+        if (file == null || !file.exists()) {
+            return null;
+        }
+        final long lastModified = file.lastModified();
+        final long length = file.length();
+        final byte[] content = readFile(file);
+        if (content == null) {
+            return null;
+        }
+        CRC32 crc32 = new CRC32();
+        crc32.update(content);
+        final int crc = (int) crc32.getValue();
+
+        IVIConfigImage image = IVIConfigImage.open(lastModified, length, crc);
+        if (image != null) {
+            return new IVIConfigSnapshot(file.getPath(), lastModified, length, image);
+        }
+
+        IniFileUtil iniFileUtil = new IniFileUtil(new ByteArrayInputStream(content));
+        IVIConfigSnapshot snapshot = fromIniFileUtil(iniFileUtil, file.getPath(), lastModified, length);
+        IVIConfigImage.compile(snapshot.getSections(), lastModified, length, crc);
+        return snapshot;
+    }
+
+    private static byte[] readFile(File file) {
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+            byte[] buffer = new byte[4096];
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                out.write(buffer, 0, len);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * 从已经解析好的 {@link IniFileUtil} 生成快照
+     */
+    static IVIConfigSnapshot fromIniFileUtil(IniFileUtil iniFileUtil, String path, long lastModified, long length) {
+        Map<String, Map<String, String>> sections = new LinkedHashMap<>();
+        for (IniFileUtil.Section section : iniFileUtil.getSections()) {
+            Map<String, String> strings = new LinkedHashMap<>();
+            for (Map.Entry<String, Object> entry : section.getValues().entrySet()) {
+                if (entry.getValue() instanceof String) {
+                    strings.put(entry.getKey(), (String) entry.getValue());
+                }
+            }
+            sections.put(section.getName(), strings);
+        }
+        return new IVIConfigSnapshot(path, lastModified, length, sections);
+    }
+
+    /**
+     * 配置文件是否已经修改，和快照不一致
+     * @param file 配置文件
+     */
+    boolean isStale(File file) {
+        return file == null || !file.exists()
+                || file.lastModified() != mLastModified || file.length() != mLength;
+    }
+
+    /**
+     * 获取配置文件路径
+     */
+    public String getPath() {
+        return mPath;
+    }
+
+    /**
+     * 获取配置值
+     * @param section section名称
+     * @param key key名称
+     * @return 没有配置返回null
+     */
+    public Value getValue(String section, String key) {
+        if (mImage != null) {
+            return mImage.getValue(section, key);
+        }
+        Map<String, Value> values = mValues.get(section);
+        return values != null ? values.get(key) : null;
+    }
+
+    /**
+     * 获取配置字符串
+     * @param section section名称
+     * @param key key名称
+     * @return 没有配置返回null
+     */
+    public String getString(String section, String key) {
+        Value value = getValue(section, key);
+        return value != null ? value.mString : null;
+    }
+
+    /**
+     * 获取整型
+     * @param section section名称
+     * @param key key名称
+     * @param defaultValue 没有配置或者不是整型时返回的默认值
+     */
+    public int getInt(String section, String key, int defaultValue) {
+        Value value = getValue(section, key);
+        return (value != null && value.mIsInteger) ? value.mInteger : defaultValue;
+    }
+
+    /**
+     * 获取浮点值
+     * @param section section名称
+     * @param key key名称
+     * @param defaultValue 没有配置或者不是浮点数时返回的默认值
+     */
+    public float getFloat(String section, String key, float defaultValue) {
+        Value value = getValue(section, key);
+        return (value != null && value.mIsFloat) ? value.mFloat : defaultValue;
+    }
+
+    /**
+     * 获取布尔值
+     * @param section section名称
+     * @param key key名称
+     * @param defaultValue 没有配置或者不是 "true"/"false" 时返回的默认值
+     */
+    public boolean getBoolean(String section, String key, boolean defaultValue) {
+        Value value = getValue(section, key);
+        return (value != null && value.mIsBoolean) ? value.mBoolean : defaultValue;
+    }
+
+    /**
+     * 获取一个section下所有的配置，按配置文件中的顺序
+     * @param section section名称
+     * @return 不可修改的 key -> 字符串，没有该section返回null
+     */
+    public Map<String, String> getSection(String section) {
+        if (mImage != null) {
+            return mImage.getSection(section);
+        }
+        return mSections.get(section);
+    }
+
+    /**
+     * 获取所有section，按配置文件中的顺序
+     * @return 不可修改的 section -> key -> 字符串
+     */
+    public Map<String, Map<String, String>> getSections() {
+        if (mImage != null) {
+            return mImage.getSections();
+        }
+        return mSections;
+    }
+}
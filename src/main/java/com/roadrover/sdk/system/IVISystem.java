@@ -730,6 +730,59 @@ public class IVISystem {
         }
     }
 
+    /**
+     * gps 定位数据，坐标用 double 保存，不需要再解析字符串 <br/>
+     * 回调中传入的对象会被重复使用，需要保存时调用 {@link #set(GpsFix)} 复制一份
+     */
+    public static class GpsFix {
+        /** 经度 */
+        public double mLongitude;
+        /** 纬度 */
+        public double mLatitude;
+        /** 海拔，单位m */
+        public double mAltitude;
+        /** 精度，单位m */
+        public float mAccuracy;
+        /** 速度 km/h */
+        public float mSpeed;
+        /** 方向，单位度，正北为0，未知时为 NaN */
+        public float mBearing = Float.NaN;
+        /** 定位的 UTC 时间，单位ms，未知时为0 */
+        public long mTime;
+        /** 收到定位的时间，SystemClock.elapsedRealtime() */
+        public long mElapsedRealtime;
+
+        /**
+         * 复制另一个定位的数据
+         * @param other 定位数据
+         */
+        public void set(GpsFix other) {
+            if (other != null) {
+                mLongitude = other.mLongitude;
+                mLatitude = other.mLatitude;
+                mAltitude = other.mAltitude;
+                mAccuracy = other.mAccuracy;
+                mSpeed = other.mSpeed;
+                mBearing = other.mBearing;
+                mTime = other.mTime;
+                mElapsedRealtime = other.mElapsedRealtime;
+            }
+        }
+
+        /**
+         * 是否有方向数据
+         */
+        public boolean hasBearing() {
+            return !Float.isNaN(mBearing);
+        }
+
+        @Override
+        public String toString() {
+            return "lon:" + mLongitude + " lat:" + mLatitude + " alt:" + mAltitude + " accuracy:" + mAccuracy +
+                    " speed:" + mSpeed + " bearing:" + mBearing + " time:" + mTime + " elapsed:" + mElapsedRealtime;
+        }
+    }
+
     /**
      * 电话类
      */
@@ -7,6 +7,7 @@ import android.os.RemoteException;
 
 import com.roadrover.sdk.BaseManager;
 import com.roadrover.services.system.IGpsCallback;
+import com.roadrover.services.system.IGpsFixCallback;
 import com.roadrover.services.system.ISystem;
 import com.roadrover.services.system.ISystemCallback;
 import com.roadrover.sdk.utils.Logcat;
@@ -26,10 +27,20 @@ public class SystemManager extends BaseManager {
 
     private SystemUpgrade mSystemUpgrade = null; // 系统升级类，需要移入服务内
 
+    private final GpsLocationStream mGpsStream; // gps 定位数据流
+    private boolean mGpsFixRegistered = false; // 是否已经通过二进制接口监听定位，在 mGpsStream 的锁内访问
+    private volatile boolean mGpsFixFromLegacy = false; // 老版本services，定位数据从字符串接口解析
+
     public SystemManager(Context context, ConnectListener listener) {
         super(context, listener, true);
 
         mSystemUpgrade = new SystemUpgrade(context);
+        mGpsStream = new GpsLocationStream(new GpsLocationStream.IntervalListener() {
+            @Override
+            public void onIntervalChanged(int minIntervalMs) {
+                updateGpsListeners();
+            }
+        });
     }
 
     @Override
@@ -39,9 +50,16 @@ public class SystemManager extends BaseManager {
             mSystemUpgrade = null;
         }
         mISettingCallback = null;
-        mGpsCallback = null;
-        mUserGpsCallback = null;
-        mSystemInterface = null;
+        synchronized (mGpsStream) {
+            if (mGpsFixRegistered) {
+                unregisterGpsFixListener();
+                mGpsFixRegistered = false;
+            }
+            mGpsCallback = null;
+            mGpsFixCallback = null;
+            mUserGpsCallback = null;
+            mSystemInterface = null;
+        }
 
         super.disconnect();
     }
@@ -53,14 +71,15 @@ public class SystemManager extends BaseManager {
 
     @Override
     protected void onServiceConnected(IBinder service) {
-        mSystemInterface = ISystem.Stub.asInterface(service);
+        mSystemInterface = wrapInterface(ISystem.class, ISystem.Stub.asInterface(service));
 
         // 如果服务挂了，重启，必须在该位置重新注册回调，否则会没反应
         registerSystemCallback();
 
-        // 用户已经设过 gps 监听
-        if (mUserGpsCallback != null) {
-            registerGpsListener();
+        // 用户已经设过 gps 监听，或者有定位数据流的监听
+        synchronized (mGpsStream) {
+            mGpsFixRegistered = false;
+            updateGpsListeners();
         }
     }
 
@@ -579,6 +598,18 @@ public class SystemManager extends BaseManager {
 
         @Override
         public void onGpsLocationInfoChanged(String longitude, String latitude, float accuracy, double altitude, float fSpeed) {
+            if (mGpsFixFromLegacy) {
+                if (longitude == null || latitude == null) { // 还没有定位时services可能传null
+                    Logcat.w("invalid gps location " + longitude + ", " + latitude);
+                } else {
+                    try {
+                        mGpsStream.onFix(Double.parseDouble(longitude), Double.parseDouble(latitude),
+                                accuracy, altitude, fSpeed, Float.NaN, 0);
+                    } catch (NumberFormatException e) {
+                        Logcat.w("invalid gps location " + longitude + ", " + latitude);
+                    }
+                }
+            }
             post(new IVISystem.EventGpsChanged(longitude, latitude, accuracy, altitude, fSpeed));
         }
 
@@ -589,18 +620,33 @@ public class SystemManager extends BaseManager {
     };
     private IGpsCallback.Stub mUserGpsCallback = null;
 
+    /**
+     * gps 二进制定位回调，直接写入定位数据流，不经过EventBus
+     */
+    private IGpsFixCallback.Stub mGpsFixCallback = new IGpsFixCallback.Stub() {
+
+        @Override
+        public void onGpsFix(double longitude, double latitude, float accuracy, double altitude, float speed, float bearing, long time) {
+            mGpsStream.onFix(longitude, latitude, accuracy, altitude, speed, bearing, time);
+        }
+    };
+
+    /**
+     * 获取 gps 定位数据流，可以按不同的间隔监听定位，也可以读取最近的定位
+     * @return 不会为null
+     */
+    public GpsLocationStream getGpsLocationStream() {
+        return mGpsStream;
+    }
+
     /**
      * 监听 gps 信息变化
      * @param callback
      */
     public void setGpsInfoListener(IGpsCallback.Stub callback) {
-        mUserGpsCallback = callback;
-        if (callback != null) {
-            if (mSystemInterface != null) {
-                registerGpsListener();
-            }
-        } else {
-            unregisterGpsListener();
+        synchronized (mGpsStream) {
+            mUserGpsCallback = callback;
+            updateGpsListeners();
         }
     }
 
@@ -693,6 +739,53 @@ public class SystemManager extends BaseManager {
         }
     }
 
+    /**
+     * 根据当前的监听向services注册或者注销gps回调，
+     * 定位数据流优先使用二进制接口，services 不支持时从字符串接口解析 <br/>
+     * 必须持有 mGpsStream 的锁，和定位数据流的监听改变按顺序执行
+     */
+    private void updateGpsListeners() {
+        if (mSystemInterface == null) {
+            return;
+        }
+
+        final int interval = mGpsStream.getMinInterval();
+        if (interval >= 0) {
+            mGpsFixRegistered = registerGpsFixListener(interval);
+        } else if (mGpsFixRegistered) {
+            unregisterGpsFixListener();
+            mGpsFixRegistered = false;
+        }
+        mGpsFixFromLegacy = (interval >= 0 && !mGpsFixRegistered);
+
+        if (mUserGpsCallback != null || mGpsFixFromLegacy) {
+            registerGpsListener();
+        } else {
+            unregisterGpsListener();
+        }
+    }
+
+    private boolean registerGpsFixListener(int minIntervalMs) {
+        if (mSystemInterface != null && mGpsFixCallback != null) {
+            try {
+                return mSystemInterface.registerGpsFixListener(mGpsFixCallback, minIntervalMs);
+            } catch (RemoteException e) {
+                e.printStackTrace();
+            }
+        }
+        return false;
+    }
+
+    private void unregisterGpsFixListener() {
+        if (mSystemInterface != null && mGpsFixCallback != null) {
+            try {
+                mSystemInterface.unregisterGpsFixListener(mGpsFixCallback);
+            } catch (RemoteException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
     /**
      * 监听gps回调
      */
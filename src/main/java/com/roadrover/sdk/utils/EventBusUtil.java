@@ -2,6 +2,9 @@ package com.roadrover.sdk.utils;
 
 import org.greenrobot.eventbus.EventBus;
 
+import java.lang.reflect.Field;
+import java.util.Map;
+
 /**
  * event bus util class.
  */
@@ -10,6 +13,13 @@ public class EventBusUtil {
 
     private EventBus mEventBus; // 封装的EventBus对象
 
+    /**
+     * EventBus 保存粘性消息的 Map，第一次使用时查找
+     */
+    private static final class StickyEvents {
+        static final Field FIELD = FieldUtil.getField(EventBus.class.getName(), "stickyEvents");
+    }
+
     public EventBusUtil(boolean useDefaultEventBus) {
         this(null, useDefaultEventBus);
     }
@@ -96,6 +106,32 @@ public class EventBusUtil {
         }
     }
 
+    /**
+     * 只保存粘性消息，不发送，之后注册的粘性订阅和 getStickyEvent 立即可以得到，再通过 {@link #post(Object)} 发送 <br/>
+     * EventBus 没有只保存的接口，通过反射保存，和 EventBus.postSticky 一样锁住 Map
+     * @param object
+     * @return 反射失败时返回false，需要改用 {@link #postSticky(Object)}
+     */
+    @SuppressWarnings("unchecked")
+    public boolean setSticky(Object object) {
+        if (mEventBus == null || object == null || StickyEvents.FIELD == null) {
+            return false;
+        }
+        try {
+            Map<Class<?>, Object> stickyEvents = (Map<Class<?>, Object>) StickyEvents.FIELD.get(mEventBus);
+            if (stickyEvents == null) {
+                return false;
+            }
+            synchronized (stickyEvents) {
+                stickyEvents.put(object.getClass(), object);
+            }
+            return true;
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
     /**
      * 发送一个粘性消息
      * @param object
@@ -6,15 +6,67 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 针对类，对象反射使用到的工具类
+ * 类、变量和方法查找后会缓存，同一个类/签名只查找一次，找不到的结果也会缓存，不会每次都抛出异常；
+ * 频繁调用的地方使用 {@link #findMethod(Class, String, Class[])} 保存 Method 对象，再用 {@link #invokeInt} 等方法调用
  */
 
 public class FieldUtil {
 
+    /** 缓存中表示找不到 */
+    private static final Object NOT_FOUND = new Object();
+    /** 类名 -> Class */
+    private static final Map<String, Object> sClasses = new ConcurrentHashMap<>();
+    /** 类名 -> 变量名 -> Field */
+    private static final Map<String, Map<String, Object>> sFields = new ConcurrentHashMap<>();
+    /** 类 -> 方法名 -> 同名方法的链表，查找时不需要拼接字符串 */
+    private static final Map<Class<?>, Map<String, MethodEntry>> sMethods = new ConcurrentHashMap<>();
+    private static final Class<?>[] NO_TYPES = new Class<?>[0];
+
+    /**
+     * 一个方法签名的缓存，同名的重载方法通过 mNext 连接，创建后不再修改
+     */
+    private static final class MethodEntry {
+        final Class<?>[] mParameterTypes;
+        final Object mMethod; // Method 或者 NOT_FOUND
+        final MethodEntry mNext;
+
+        MethodEntry(Class<?>[] parameterTypes, Object method, MethodEntry next) {
+            mParameterTypes = parameterTypes;
+            mMethod = method;
+            mNext = next;
+        }
+    }
+
+    /**
+     * 通过类名获取类，结果会缓存
+     * @param className 类名
+     * @return 找不到返回null
+     */
+    public static Class<?> findClass(String className) {
+        if (TextUtils.isEmpty(className)) {
+            return null;
+        }
+        Object c = sClasses.get(className);
+        if (c == null) {
+            try {
+                c = Class.forName(className);
+            } catch (ClassNotFoundException e) {
+                e.printStackTrace();
+                c = NOT_FOUND;
+            }
+            sClasses.put(className, c);
+        }
+        return (c != NOT_FOUND) ? (Class<?>) c : null;
+    }
+
     /**
      * 获取变量属性 field
      * @param className 类名
@@ -26,19 +78,28 @@ public class FieldUtil {
             return null;
         }
 
-        Class c = null;
-        try {
-            c = Class.forName(className);
-            Field[] fields = c.getDeclaredFields();
-            for (Field field : fields) {
-                if (field != null && TextUtils.equals(field.getName(), fieldName)) {
-                    return field;
+        Map<String, Object> fieldsOfClass = sFields.get(className);
+        if (fieldsOfClass == null) {
+            fieldsOfClass = new ConcurrentHashMap<>();
+            sFields.put(className, fieldsOfClass);
+        }
+        Object cached = fieldsOfClass.get(fieldName);
+        if (cached == null) {
+            cached = NOT_FOUND;
+            Class c = findClass(className);
+            if (c != null) {
+                Field[] fields = c.getDeclaredFields();
+                for (Field field : fields) {
+                    if (field != null && TextUtils.equals(field.getName(), fieldName)) {
+                        field.setAccessible(true);
+                        cached = field;
+                        break;
+                    }
                 }
             }
-        } catch (ClassNotFoundException e) {
-            e.printStackTrace();
+            fieldsOfClass.put(fieldName, cached);
         }
-        return null;
+        return (cached != NOT_FOUND) ? (Field) cached : null;
     }
 
     /**
@@ -102,6 +163,10 @@ public class FieldUtil {
      * @return
      */
     public static int getFieldIntValue(String className, Object object, String fieldName) {
+        Field field = getField(className, fieldName);
+        if (field != null && field.getType() == int.class) { // 不需要装箱
+            return getFieldIntValue(field, object, -1);
+        }
         Object ret = getFieldValue(className, object, fieldName);
         if (ret != null) {
             try {
@@ -113,6 +178,43 @@ public class FieldUtil {
         return -1;
     }
 
+    /**
+     * 获取int成员的变量值，不需要装箱
+     * @param field    变量，通过 {@link #getField(String, String)} 获取
+     * @param object   对象，静态变量传null
+     * @param defValue 获取失败时的返回值
+     */
+    public static int getFieldIntValue(Field field, Object object, int defValue) {
+        if (field != null) {
+            try {
+                return field.getInt(object);
+            } catch (IllegalAccessException e) {
+                e.printStackTrace();
+            } catch (IllegalArgumentException e) {
+                e.printStackTrace();
+            }
+        }
+        return defValue;
+    }
+
+    /**
+     * 设置int成员的变量值，不需要装箱
+     * @param field  变量，通过 {@link #getField(String, String)} 获取
+     * @param object 对象，静态变量传null
+     * @param value  值
+     */
+    public static void setFieldIntValue(Field field, Object object, int value) {
+        if (field != null) {
+            try {
+                field.setInt(object, value);
+            } catch (IllegalAccessException e) {
+                e.printStackTrace();
+            } catch (IllegalArgumentException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
     /**
      * 获取该类所有的属性，包括父对象的属性
      * @param c 类
@@ -235,20 +337,12 @@ public class FieldUtil {
             return null;
         }
 
-        Class<?>[] parameterTypes = getParameterTypes(params);
-        try {
-            Method method = getMethod(Class.forName(className), methodName, parameterTypes);
-            if (method != null) {
-                return method.invoke(null, params);
-            }
-        } catch (IllegalAccessException e) {
-            e.printStackTrace();
-        } catch (InvocationTargetException e) {
-            e.printStackTrace();
-        } catch (ClassNotFoundException e) {
-            e.printStackTrace();
+        Class<?> c = findClass(className);
+        if (c == null) {
+            return null;
         }
-        return null;
+        // null 需要转换成 Object，否则和 invoke(Object, String, Object...) 有歧义
+        return invoke(getMethod(c, methodName, getParameterTypes(params)), (Object) null, params);
     }
 
     /**
@@ -264,17 +358,7 @@ public class FieldUtil {
             Logcat.w("object is null, methodName:" + methodName);
             return null;
         }
-        Method method = getMethod(object.getClass(), methodName, parameterTypes);
-        if (method != null) {
-            try {
-                return method.invoke(object, params);
-            } catch (IllegalAccessException e) {
-                e.printStackTrace();
-            } catch (InvocationTargetException e) {
-                e.printStackTrace();
-            }
-        }
-        return null;
+        return invoke(getMethod(object.getClass(), methodName, parameterTypes), object, params);
     }
 
     /**
@@ -288,34 +372,93 @@ public class FieldUtil {
             Logcat.w("object is null, methodName:" + methodName);
             return null;
         }
-        try {
-            Class<?>[] parameterTypes = getParameterTypes(params);
-            Method method = getMethod(object.getClass(), methodName, parameterTypes);
-            if (method != null) {
+        return invoke(getMethod(object.getClass(), methodName, getParameterTypes(params)), object, params);
+    }
+
+    /**
+     * 执行已经获取到的方法
+     * @param method 方法，通过 {@link #findMethod(Class, String, Class[])} 获取，为空时返回null
+     * @param object 调用对象，静态方法传null
+     * @param params 参数列表
+     * @return 方法的返回值，调用失败返回null
+     */
+    public static Object invoke(Method method, Object object, Object... params) {
+        if (method != null) {
+            try {
                 return method.invoke(object, params);
+            } catch (IllegalAccessException e) {
+                e.printStackTrace();
+            } catch (InvocationTargetException e) {
+                e.printStackTrace();
+            } catch (IllegalArgumentException e) {
+                e.printStackTrace();
             }
-        } catch (IllegalAccessException e) {
-            e.printStackTrace();
-        } catch (InvocationTargetException e) {
-            e.printStackTrace();
         }
         return null;
     }
 
     /**
-     * 获取指定类的指定方法，包含父类的方法
+     * 执行已经获取到的返回int的方法
+     * @param method   方法，通过 {@link #findMethod(Class, String, Class[])} 获取
+     * @param object   调用对象，静态方法传null
+     * @param defValue 方法为空、调用失败或者返回值不是int时的返回值
+     * @param params   参数列表
+     */
+    public static int invokeInt(Method method, Object object, int defValue, Object... params) {
+        Object ret = invoke(method, object, params);
+        return (ret instanceof Integer) ? (Integer) ret : defValue;
+    }
+
+    /**
+     * 获取指定类的指定方法，包含父类的方法，结果会缓存，找不到时也只查找一次
+     * @param clasz          类
+     * @param name           方法名
+     * @param parameterTypes 参数类型列表
+     * @return 找不到返回null
+     */
+    public static Method findMethod(Class<?> clasz, String name, Class<?>... parameterTypes) {
+        return (clasz != null && !TextUtils.isEmpty(name)) ? getMethod(clasz, name, parameterTypes) : null;
+    }
+
+    /**
+     * 从缓存获取方法，没有时查找并缓存，命中缓存时不分配对象
+     */
+    private static Method getMethod(Class<?> clasz, String name, Class<?>... parameterTypes) {
+        if (parameterTypes == null) {
+            parameterTypes = NO_TYPES;
+        }
+        Map<String, MethodEntry> methodsOfClass = sMethods.get(clasz);
+        if (methodsOfClass == null) {
+            methodsOfClass = new ConcurrentHashMap<>();
+            sMethods.put(clasz, methodsOfClass);
+        }
+        final MethodEntry head = methodsOfClass.get(name);
+        for (MethodEntry entry = head; entry != null; entry = entry.mNext) {
+            if (Arrays.equals(entry.mParameterTypes, parameterTypes)) {
+                return (entry.mMethod != NOT_FOUND) ? (Method) entry.mMethod : null;
+            }
+        }
+
+        Method method = lookupMethod(clasz, name, parameterTypes);
+        // 多个线程同时添加时可能丢掉一个，之后再查找一次即可
+        methodsOfClass.put(name, new MethodEntry(parameterTypes.clone(), (method != null) ? method : NOT_FOUND, head));
+        return method;
+    }
+
+    /**
+     * 查找指定类的指定方法，包含父类的方法
      * @param clasz          类
      * @param name           方法名
      * @param parameterTypes 参数列表
      * @return
      */
-    private static Method getMethod(Class<?> clasz, String name, Class<?>... parameterTypes) {
+    private static Method lookupMethod(Class<?> clasz, String name, Class<?>... parameterTypes) {
 //        Logcat.d("clasz:" + clasz.getName() + " name:" + name + " parameterTypes.length:" + parameterTypes);
         try {
             return clasz.getMethod(name, parameterTypes);
         } catch (NoSuchMethodException e) {
             if (clasz.getSuperclass() != null) { // 如果存在父类，到父类获取方法
-                return getMethod(clasz.getSuperclass(), name, parameterTypes);
+                return lookupMethod(clasz.getSuperclass(), name, parameterTypes);
             } else {
                 e.printStackTrace();
             }
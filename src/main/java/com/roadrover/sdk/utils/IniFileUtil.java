@@ -4,22 +4,30 @@ import android.text.TextUtils;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
 
 /**
  * ini文件解析类
+ * 保存到文件时先写临时文件再改名，掉电时文件要么是旧的内容，要么是新的内容，不会写坏；
+ * 需要频繁修改的文件可以调用 {@link #enableJournal()} 打开日志模式，修改只追加到日志文件中，
+ * 多次修改在 {@link #commit()} 时一次写入，日志超过一定大小后再整体写回ini文件
  */
 
 public class IniFileUtil {
@@ -43,6 +51,7 @@ public class IniFileUtil {
 
         public void set(String key, Object value) {
             values.put(key, value);
+            journal(JOURNAL_SET, name, key, value);
         }
 
         public Object get(String key) {
@@ -110,6 +119,15 @@ public class IniFileUtil {
         return sections.get(section);
     }
 
+    /**
+     * 获取所有节点，按文件中的顺序
+     *
+     * @return
+     */
+    public Collection<Section> getSections() {
+        return sections.values();
+    }
+
     /**
      * 获取值
      *
@@ -147,6 +165,7 @@ public class IniFileUtil {
      */
     public void remove(String section) {
         sections.remove(section);
+        journal(JOURNAL_REMOVE_SECTION, section, null, null);
     }
 
     /**
@@ -158,6 +177,7 @@ public class IniFileUtil {
     public void remove(String section, String key) {
         Section sectionObject = sections.get(section);
         if (sectionObject != null) sectionObject.getValues().remove(key);
+        journal(JOURNAL_REMOVE, section, key, null);
     }
 
 
@@ -166,6 +186,19 @@ public class IniFileUtil {
      */
     private File file = null;
 
+    private static final String TEMP_SUFFIX = ".tmp"; // 保存时的临时文件后缀
+    private static final String JOURNAL_SUFFIX = ".journal"; // 日志文件后缀
+    private static final String JOURNAL_CHARSET = "UTF-8";
+    private static final long JOURNAL_COMPACT_SIZE = 16 * 1024; // 日志超过该大小时整体写回ini文件
+    private static final char JOURNAL_SET = 'S'; // 日志记录：设置值
+    private static final char JOURNAL_REMOVE = 'R'; // 日志记录：删除属性
+    private static final char JOURNAL_REMOVE_SECTION = 'D'; // 日志记录：删除节点
+    private static final char JOURNAL_COMMIT = 'C'; // 日志记录：事务结束
+
+    private boolean mJournalEnabled = false; // 是否是日志模式
+    private boolean mSuppressJournal = false; // 正在加载文件或者回放日志，不需要再记录
+    private final StringBuilder mPendingJournal = new StringBuilder(); // 未提交的日志
+
     public IniFileUtil() {
 
     }
@@ -219,23 +252,280 @@ public class IniFileUtil {
      * 保存到文件
      *
      * @param file
+     * @return 写入、同步和改名都成功返回true，失败时原文件保持不变
      */
-    public void save(File file) {
-        if (null != file) {
-            try {
-                BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(file));
-                saveConfig(bufferedWriter);
-            } catch (IOException e) {
-                e.printStackTrace();
+    public boolean save(File file) {
+        if (null == file) {
+            return false;
+        }
+        File temp = new File(file.getPath() + TEMP_SUFFIX);
+        FileOutputStream outputStream = null;
+        try { // 先写临时文件，同步到存储后再改名替换，保证掉电时文件是完整的
+            outputStream = new FileOutputStream(temp);
+            BufferedWriter bufferedWriter = new BufferedWriter(new OutputStreamWriter(outputStream));
+            writeConfig(bufferedWriter);
+            bufferedWriter.flush();
+            outputStream.getFD().sync();
+            bufferedWriter.close();
+            outputStream = null;
+            if (!temp.renameTo(file)) {
+                Logcat.w("rename " + temp + " failed");
+                return false;
+            }
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            closeQuietly(outputStream);
+            if (temp.exists()) {
+                temp.delete();
             }
         }
     }
 
     /**
      * 保存到当前文件
+     * 日志模式下只把未提交的修改追加到日志，日志过大时再整体写回文件
      */
     public void save() {
-        save(this.file);
+        if (mJournalEnabled) {
+            commit();
+            File journal = getJournalFile();
+            if (journal != null && journal.length() > JOURNAL_COMPACT_SIZE) {
+                compact();
+            }
+        } else {
+            save(this.file);
+        }
+    }
+
+    /**
+     * 打开日志模式，需要先 {@link #load(File)} 或者用文件构造
+     * 日志模式下 set/remove 的修改先缓存在内存中，{@link #commit()} 或者 {@link #save()} 时一次追加到日志文件并同步到存储，
+     * 加载文件时会自动回放日志文件中已提交的修改
+     */
+    public void enableJournal() {
+        mJournalEnabled = (file != null);
+    }
+
+    /**
+     * 把缓存的修改作为一次事务追加到日志文件，只同步一次
+     * @return 成功返回true，没有修改也返回true
+     */
+    public boolean commit() {
+        if (!mJournalEnabled || mPendingJournal.length() == 0) {
+            return true;
+        }
+        final int pendingLength = mPendingJournal.length();
+        mPendingJournal.append(JOURNAL_COMMIT).append('\n'); // 事务结束标记，回放时没有结束标记的修改会被丢弃
+        final File journal = getJournalFile();
+        final long journalLength = journal.length();
+        FileOutputStream outputStream = null;
+        try {
+            outputStream = new FileOutputStream(journal, true);
+            outputStream.write(mPendingJournal.toString().getBytes(JOURNAL_CHARSET));
+            outputStream.getFD().sync();
+            mPendingJournal.setLength(0);
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            // 去掉本次添加的结束标记和可能写了一半的内容，下次提交时重试
+            mPendingJournal.setLength(pendingLength);
+            closeQuietly(outputStream);
+            outputStream = null;
+            truncate(journal, journalLength);
+            return false;
+        } finally {
+            closeQuietly(outputStream);
+        }
+    }
+
+    /**
+     * 把内存中的内容整体写回文件，并删除日志文件，例如在ACC OFF时调用
+     * @return 成功返回true；写回失败时保留日志文件，下次加载时依然会回放
+     */
+    public boolean compact() {
+        if (file == null) {
+            return false;
+        }
+        if (mJournalEnabled && !commit()) { // 未提交的修改先写入日志，写回失败时日志依然有效
+            return false;
+        }
+        if (!save(file)) {
+            Logcat.w("compact " + file + " failed, keep the journal");
+            return false;
+        }
+        File journal = getJournalFile();
+        if (journal.exists() && !journal.delete()) {
+            Logcat.w("delete " + journal + " failed");
+        }
+        return true;
+    }
+
+    private static void truncate(File file, long length) {
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "rw");
+            if (raf.length() > length) {
+                raf.setLength(length);
+                raf.getFD().sync();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            closeQuietly(raf);
+        }
+    }
+
+    private File getJournalFile() {
+        return file != null ? new File(file.getPath() + JOURNAL_SUFFIX) : null;
+    }
+
+    /**
+     * 记录一条修改到未提交的日志中
+     */
+    private void journal(char op, String section, String key, Object value) {
+        if (!mJournalEnabled || mSuppressJournal) {
+            return;
+        }
+        mPendingJournal.append(op);
+        appendEscaped(section);
+        if (key != null) {
+            appendEscaped(key);
+        }
+        if (value != null) {
+            appendEscaped(value.toString());
+        }
+        mPendingJournal.append('\n');
+    }
+
+    private void appendEscaped(String string) {
+        mPendingJournal.append('\t');
+        if (string == null) {
+            return;
+        }
+        for (int i = 0; i < string.length(); ++i) {
+            final char c = string.charAt(i);
+            if (c == '\\') {
+                mPendingJournal.append("\\\\");
+            } else if (c == '\t') {
+                mPendingJournal.append("\\t");
+            } else if (c == '\n') {
+                mPendingJournal.append("\\n");
+            } else if (c == '\r') {
+                mPendingJournal.append("\\r");
+            } else {
+                mPendingJournal.append(c);
+            }
+        }
+    }
+
+    private static String unescape(String string) {
+        if (string.indexOf('\\') < 0) {
+            return string;
+        }
+        StringBuilder builder = new StringBuilder(string.length());
+        for (int i = 0; i < string.length(); ++i) {
+            char c = string.charAt(i);
+            if (c == '\\' && i + 1 < string.length()) {
+                c = string.charAt(++i);
+                builder.append(c == 't' ? '\t' : (c == 'n' ? '\n' : (c == 'r' ? '\r' : c)));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 回放日志文件中已提交的修改，掉电时最后一次没有写完的事务会被丢弃，
+     * 并把日志截断到最后一次提交的位置，否则下一次追加会接在写了一半的行后面，
+     * 被丢弃的修改也会和下一次事务一起被提交
+     */
+    private void replayJournal() {
+        File journal = getJournalFile();
+        if (journal == null || !journal.exists()) {
+            return;
+        }
+        RandomAccessFile raf = null;
+        mSuppressJournal = true;
+        try {
+            raf = new RandomAccessFile(journal, "rw");
+            byte[] content = new byte[(int) raf.length()];
+            raf.readFully(content);
+
+            List<String[]> transaction = new ArrayList<>();
+            int committedLength = 0; // 最后一个结束标记之后的位置
+            int lineStart = 0;
+            for (int i = 0; i < content.length; ++i) {
+                if (content[i] != '\n') {
+                    continue;
+                }
+                String line = new String(content, lineStart, i - lineStart, JOURNAL_CHARSET);
+                lineStart = i + 1;
+                if (line.length() == 0) {
+                    continue;
+                }
+                if (line.equals(String.valueOf(JOURNAL_COMMIT))) {
+                    for (String[] record : transaction) {
+                        apply(record);
+                    }
+                    transaction.clear();
+                    committedLength = lineStart;
+                } else {
+                    transaction.add(line.split("\t", -1));
+                }
+            }
+
+            if (committedLength < content.length) {
+                Logcat.w("drop " + (content.length - committedLength) + " uncommitted bytes of " + journal);
+                raf.setLength(committedLength);
+                raf.getFD().sync();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            mSuppressJournal = false;
+            closeQuietly(raf);
+        }
+    }
+
+    private void apply(String[] record) {
+        if (record.length < 2 || record[0].length() != 1) {
+            return;
+        }
+        final String section = unescape(record[1]);
+        switch (record[0].charAt(0)) {
+            case JOURNAL_SET:
+                if (record.length == 4) {
+                    set(section, unescape(record[2]), unescape(record[3]));
+                }
+                break;
+
+            case JOURNAL_REMOVE:
+                if (record.length == 3) {
+                    remove(section, unescape(record[2]));
+                }
+                break;
+
+            case JOURNAL_REMOVE_SECTION:
+                remove(section);
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
     }
 
     /**
@@ -248,11 +538,14 @@ public class IniFileUtil {
             return;
         }
         BufferedReader bufferedReader;
+        mSuppressJournal = true; // 加载的内容已经在文件里，不需要写入日志
         try {
             bufferedReader = new BufferedReader(new InputStreamReader(inputStream, charSet));
             toIniFile(bufferedReader);
         } catch (UnsupportedEncodingException e) {
             e.printStackTrace();
+        } finally {
+            mSuppressJournal = false;
         }
     }
 
@@ -267,13 +560,17 @@ public class IniFileUtil {
         }
         if (file.exists()) {
             BufferedReader bufferedReader;
+            mSuppressJournal = true; // 加载的内容已经在文件里，不需要写入日志
             try {
                 bufferedReader = new BufferedReader(new FileReader(file));
                 toIniFile(bufferedReader);
             } catch (FileNotFoundException e) {
                 e.printStackTrace();
+            } finally {
+                mSuppressJournal = false;
             }
         }
+        replayJournal();
     }
 
     /**
@@ -333,35 +630,44 @@ public class IniFileUtil {
         }
 
         try {
-            boolean line_spe = false;
-            if (line_separator == null || line_separator.trim().equals("")) line_spe = true;
-            for (Section section : sections.values()) {
-                bufferedWriter.write("[" + section.getName() + "]");
-                if (line_spe)
-                    bufferedWriter.newLine();
-                else
-                    bufferedWriter.write(line_separator);
-
-                for (Map.Entry<String, Object> entry : section.getValues().entrySet()) {
-                    final String key = entry.getKey();
-                    final Object object = entry.getValue();
-                    if (null != object) {
-                        final String value = object.toString();
-                        if (null != key && null != value) {
-                            bufferedWriter.write(entry.getKey());
-                            bufferedWriter.write("=");
-                            bufferedWriter.write(entry.getValue().toString());
-                            if (line_spe)
-                                bufferedWriter.newLine();
-                            else
-                                bufferedWriter.write(line_separator);
-                        }
-                    }
-                }
-            }
+            writeConfig(bufferedWriter);
             bufferedWriter.close();
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
+
+    /**
+     * 写入Ini文件内容，不关闭
+     *
+     * @param bufferedWriter
+     */
+    private void writeConfig(BufferedWriter bufferedWriter) throws IOException {
+        boolean line_spe = false;
+        if (line_separator == null || line_separator.trim().equals("")) line_spe = true;
+        for (Section section : sections.values()) {
+            bufferedWriter.write("[" + section.getName() + "]");
+            if (line_spe)
+                bufferedWriter.newLine();
+            else
+                bufferedWriter.write(line_separator);
+
+            for (Map.Entry<String, Object> entry : section.getValues().entrySet()) {
+                final String key = entry.getKey();
+                final Object object = entry.getValue();
+                if (null != object) {
+                    final String value = object.toString();
+                    if (null != key && null != value) {
+                        bufferedWriter.write(entry.getKey());
+                        bufferedWriter.write("=");
+                        bufferedWriter.write(entry.getValue().toString());
+                        if (line_spe)
+                            bufferedWriter.newLine();
+                        else
+                            bufferedWriter.write(line_separator);
+                    }
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,98 @@
+package com.roadrover.sdk.utils;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 带优先通道的串行执行器 <br/>
+ * 普通任务按顺序放到 Looper 队列末尾；紧急任务放到单独的通道里，
+ * 通道由一个插在 Looper 队列最前面的任务按顺序执行完，所以紧急任务会跳过已经排队的大量普通任务，
+ * 而紧急任务之间仍然保持先后顺序（例如按键的按下和抬起）
+ */
+public class LaneExecutor {
+
+    private static LaneExecutor sMain = null;
+    private static LaneExecutor sBackground = null;
+
+    private final Handler mHandler;
+    private final Queue<Runnable> mUrgentQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean mUrgentScheduled = new AtomicBoolean(false);
+
+    private final Runnable mDrainUrgent = new Runnable() {
+        @Override
+        public void run() {
+            // 先清除标志再取任务，取的过程中新加入的任务最多多调度一次空的执行
+            mUrgentScheduled.set(false);
+            Runnable task;
+            while ((task = mUrgentQueue.poll()) != null) {
+                runSafely(task);
+            }
+        }
+    };
+
+    public LaneExecutor(Looper looper) {
+        mHandler = new Handler(looper);
+    }
+
+    /**
+     * 获取主线程的执行器
+     */
+    public static synchronized LaneExecutor getMain() {
+        if (sMain == null) {
+            sMain = new LaneExecutor(Looper.getMainLooper());
+        }
+        return sMain;
+    }
+
+    /**
+     * 获取进程共用的后台串行执行器，所有 manager 共用一个后台线程
+     */
+    public static synchronized LaneExecutor getBackground() {
+        if (sBackground == null) {
+            HandlerThread thread = new HandlerThread("LaneExecutor");
+            thread.start();
+            sBackground = new LaneExecutor(thread.getLooper());
+        }
+        return sBackground;
+    }
+
+    /**
+     * 当前是否在执行器的线程中
+     */
+    public boolean isCurrentThread() {
+        return Looper.myLooper() == mHandler.getLooper();
+    }
+
+    /**
+     * 执行任务
+     * @param task 任务
+     * @param urgent 是否是紧急任务，紧急任务跳过已经排队的普通任务
+     */
+    public void execute(Runnable task, boolean urgent) {
+        if (task == null) {
+            return;
+        }
+
+        if (urgent) {
+            mUrgentQueue.add(task);
+            if (mUrgentScheduled.compareAndSet(false, true)) {
+                mHandler.postAtFrontOfQueue(mDrainUrgent);
+            }
+        } else {
+            mHandler.post(task);
+        }
+    }
+
+    private static void runSafely(Runnable task) {
+        try {
+            task.run();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.roadrover.sdk.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁的延时直方图，单位us <br/>
+ * 按 HDR 直方图的方式分桶：小于 {@link #SUB_BUCKET_COUNT} 的值每个值一个桶，
+ * 之后每个2的幂区间再平均分成 {@link #SUB_BUCKET_COUNT} 个桶，相对误差不超过 1/{@link #SUB_BUCKET_COUNT}，
+ * 桶的数量固定，记录只有几次原子操作，可以在binder线程里随时记录
+ */
+public class LatencyHistogram {
+
+    /** 每个2的幂区间分成的桶数，必须是2的幂 */
+    public static final int SUB_BUCKET_COUNT = 16;
+    private static final int SUB_BUCKET_BITS = 4;
+    /** 能记录的最大值的位数，超过的记到最后一个桶，2^36us 约19小时 */
+    private static final int MAX_VALUE_BITS = 36;
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT * (MAX_VALUE_BITS - SUB_BUCKET_BITS + 2);
+
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mSum = new AtomicLong();
+    private final AtomicLong mMax = new AtomicLong();
+
+    /**
+     * 记录一个值
+     * @param micros 单位us，小于0按0记录
+     */
+    public void record(long micros) {
+        if (micros < 0) {
+            micros = 0;
+        }
+        mBuckets.incrementAndGet(getIndex(micros));
+        mCount.incrementAndGet();
+        mSum.addAndGet(micros);
+
+        long max = mMax.get();
+        while (micros > max && !mMax.compareAndSet(max, micros)) {
+            max = mMax.get();
+        }
+    }
+
+    /**
+     * 记录的个数
+     */
+    public long getCount() {
+        return mCount.get();
+    }
+
+    /**
+     * 最大值，单位us
+     */
+    public long getMax() {
+        return mMax.get();
+    }
+
+    /**
+     * 平均值，单位us
+     */
+    public long getMean() {
+        final long count = mCount.get();
+        return (count > 0) ? mSum.get() / count : 0;
+    }
+
+    /**
+     * 获取百分位的值
+     * @param percentile 百分位，例：99.9
+     * @return 所在桶的上限，单位us，没有记录时返回0
+     */
+    public long getPercentile(double percentile) {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; ++i) {
+            total += mBuckets.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        final long target = Math.max(1, (long) Math.ceil(total * Math.min(percentile, 100.0) / 100.0));
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; ++i) {
+            count += mBuckets.get(i);
+            if (count >= target) {
+                return Math.min(getUpperBound(i), mMax.get());
+            }
+        }
+        return mMax.get();
+    }
+
+    /**
+     * 清除所有记录，和 record 同时调用时可能少算正在记录的值
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; ++i) {
+            mBuckets.set(i, 0);
+        }
+        mCount.set(0);
+        mSum.set(0);
+        mMax.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "count:" + getCount() + " mean:" + getMean() + "us p50:" + getPercentile(50) +
+                "us p90:" + getPercentile(90) + "us p99:" + getPercentile(99) +
+                "us p99.9:" + getPercentile(99.9) + "us max:" + getMax() + "us";
+    }
+
+    private static int getIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value); // >= SUB_BUCKET_BITS
+        if (exponent > MAX_VALUE_BITS) {
+            return BUCKET_COUNT - 1;
+        }
+        final int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return SUB_BUCKET_COUNT * (exponent - SUB_BUCKET_BITS + 1) + sub;
+    }
+
+    private static long getUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        final int exponent = index / SUB_BUCKET_COUNT - 1 + SUB_BUCKET_BITS;
+        final int sub = index % SUB_BUCKET_COUNT;
+        final long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (1L << exponent) + (sub + 1) * width - 1;
+    }
+}
@@ -0,0 +1,148 @@
+package com.roadrover.sdk.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * {@link LogFileSink} 输出的二进制日志文件的离线解码工具，不依赖安卓，可以在PC上直接运行
+ * @使用方法 java -cp sdk.jar com.roadrover.sdk.utils.LogFileDecoder 日志目录或文件 > log.txt
+ *
+ * 文件格式：
+ *   文件头：魔数"RRLG"(4) + 版本(1) + 文件序号(4) + 文件创建时间毫秒数(8)
+ *   记录：类型(1) + 内容，类型为0表示文件结束，TAG定义和日志记录的格式见 {@link LogFileSink#RECORD_TAG}
+ *         和 {@link LogFileSink#RECORD_LOG}，整数都是varint编码
+ *   输出格式和 logcat -v threadtime 类似：时间 线程id 级别 TAG: 内容
+ */
+public class LogFileDecoder {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String LEVELS = "??VDIWEA"; // 下标对应 android.util.Log 的级别
+
+    private LogFileDecoder() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("usage: LogFileDecoder <dir|file>...");
+            return;
+        }
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(System.out, UTF8));
+        for (String arg : args) {
+            File file = new File(arg);
+            if (file.isDirectory()) {
+                for (File child : LogFileSink.listFiles(file)) {
+                    decode(child, out);
+                }
+            } else {
+                decode(file, out);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * 解码一个日志文件
+     * @param file 日志文件
+     * @param out 解码后的文本输出
+     * @return 解码的日志条数
+     * @throws IOException 文件读取失败，或者不是日志文件
+     */
+    public static int decode(File file, Writer out) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(readFile(file));
+        if (buffer.remaining() < LogFileSink.HEADER_SIZE || buffer.getInt() != LogFileSink.MAGIC) {
+            throw new IOException(file + " is not a log file");
+        }
+        int version = buffer.get();
+        if (version != LogFileSink.VERSION) {
+            throw new IOException(file + " unsupported version " + version);
+        }
+        buffer.getInt(); // 文件序号，文件名中已经有
+        long fileTime = buffer.getLong();
+
+        SimpleDateFormat format = new SimpleDateFormat("MM-dd HH:mm:ss.SSS", Locale.US);
+        List<String> tags = new ArrayList<>();
+        int count = 0;
+        try {
+            while (buffer.hasRemaining()) {
+                byte type = buffer.get();
+                if (type == LogFileSink.RECORD_END) {
+                    break;
+                } else if (type == LogFileSink.RECORD_TAG) {
+                    int id = (int) getVarint(buffer);
+                    String tag = getString(buffer);
+                    while (tags.size() <= id) {
+                        tags.add("");
+                    }
+                    tags.set(id, tag);
+                } else if (type == LogFileSink.RECORD_LOG) {
+                    int level = buffer.get();
+                    int tagId = (int) getVarint(buffer);
+                    long tid = getVarint(buffer);
+                    long time = fileTime + getVarint(buffer);
+                    String msg = getString(buffer);
+                    out.write(format.format(new Date(time)) + " " + tid + " " + levelName(level) + " "
+                            + (tagId < tags.size() ? tags.get(tagId) : "?") + ": " + msg + "\n");
+                    ++count;
+                } else {
+                    throw new IOException(file + " bad record type " + type + " at " + (buffer.position() - 1));
+                }
+            }
+        } catch (RuntimeException e) { // 掉电时最后一条记录可能不完整，前面的日志依然有效
+            out.write("--- " + file.getName() + " truncated after " + count + " logs\n");
+        }
+        return count;
+    }
+
+    private static char levelName(int level) {
+        return (level >= 0 && level < LEVELS.length()) ? LEVELS.charAt(level) : '?';
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = (int) getVarint(buffer);
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    private static long getVarint(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("bad varint");
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] bytes = new byte[(int) file.length()];
+            int offset = 0;
+            while (offset < bytes.length) {
+                int len = in.read(bytes, offset, bytes.length - offset);
+                if (len < 0) {
+                    break;
+                }
+                offset += len;
+            }
+            return offset == bytes.length ? bytes : Arrays.copyOf(bytes, offset);
+        } finally {
+            in.close();
+        }
+    }
+}
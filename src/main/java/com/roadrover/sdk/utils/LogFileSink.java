@@ -0,0 +1,381 @@
+package com.roadrover.sdk.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 进程内的日志文件输出，用于路测时保存SDK自身的诊断日志，避免logcat缓冲区被覆盖后日志丢失
+ * @使用方法 LogFileSink sink = new LogFileSink(dir, fileSize, fileCount); Logcat.setFileSink(sink);
+ *         不再需要时调用 Logcat.setFileSink(null); sink.close();
+ *
+ *         打印日志的线程只把日志放入一个无锁的环形缓冲区，缓冲区满时直接丢弃并计数，不会阻塞调用者；
+ *         后台线程定时把缓冲区的日志编码成二进制写入内存映射文件，文件写满后切换到下一个文件，
+ *         超过文件个数后删除最旧的文件。文件格式见 {@link LogFileDecoder}
+ */
+public class LogFileSink {
+    /**
+     * 文件头的魔数 "RRLG"
+     */
+    static final int MAGIC = 0x52524C47;
+    /**
+     * 文件格式版本
+     */
+    static final int VERSION = 1;
+    /**
+     * 文件头长度：魔数(4) + 版本(1) + 文件序号(4) + 文件创建时间(8)
+     */
+    static final int HEADER_SIZE = 17;
+    /**
+     * 记录类型：文件结束，映射文件未写入的部分都是0，读到0即结束
+     */
+    static final byte RECORD_END = 0;
+    /**
+     * 记录类型：TAG定义，格式 类型(1) + TAG编号(varint) + 长度(varint) + UTF-8内容
+     */
+    static final byte RECORD_TAG = 1;
+    /**
+     * 记录类型：日志，格式 类型(1) + 级别(1) + TAG编号(varint) + 线程id(varint) + 距离文件创建时间的毫秒数(varint)
+     *          + 长度(varint) + UTF-8内容
+     */
+    static final byte RECORD_LOG = 2;
+    /**
+     * 文件名后缀
+     */
+    static final String FILE_SUFFIX = ".rrlog";
+
+    private static final String FILE_PREFIX = "sdk-";
+    private static final int DEFAULT_CAPACITY = 1024; // 默认环形缓冲区大小，必须是2的幂
+    private static final int MAX_MESSAGE_BYTES = 4096; // 单条日志最大字节数，超过的部分截断
+    private static final long FLUSH_INTERVAL_NS = 200 * 1000 * 1000L; // 后台线程的刷新间隔
+    private static final int LEVEL_WARN = 5; // 同 android.util.Log.WARN
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * 环形缓冲区的一个槽位，由生产者填充，后台线程读取
+     */
+    private static class Entry {
+        long time;
+        int level;
+        long tid;
+        String tag;
+        String msg;
+    }
+
+    private final File mDir;
+    private final int mFileSize;
+    private final int mFileCount;
+
+    private final Entry[] mEntries;
+    private final AtomicLongArray mPublished; // 每个槽位已发布的序号，用于判断槽位是否写完
+    private final int mMask;
+    private final AtomicLong mHead = new AtomicLong(0); // 生产者下一个要写的序号
+    private volatile long mTail = 0; // 后台线程下一个要读的序号
+    private final AtomicLong mDropped = new AtomicLong(0); // 缓冲区满时丢弃的日志条数
+
+    private final Thread mThread;
+    private volatile boolean mRunning = true;
+
+    // 以下变量只在后台线程中访问
+    private RandomAccessFile mFile;
+    private MappedByteBuffer mBuffer;
+    private int mFileIndex = 0;
+    private long mFileTime = 0;
+    private final Map<String, Integer> mTagIds = new HashMap<>();
+    private final ByteBuffer mRecord = ByteBuffer.allocate(MAX_MESSAGE_BYTES + 64);
+    private long mReportedDropped = 0;
+
+    /**
+     * 构造函数，构造后立即启动后台写文件的线程
+     * @param dir 日志文件目录，例如 iNand 上的目录
+     * @param fileSize 单个文件大小，单位字节
+     * @param fileCount 最多保存的文件个数
+     */
+    public LogFileSink(String dir, int fileSize, int fileCount) {
+        this(dir, fileSize, fileCount, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * 构造函数，构造后立即启动后台写文件的线程
+     * @param dir 日志文件目录
+     * @param fileSize 单个文件大小，单位字节
+     * @param fileCount 最多保存的文件个数
+     * @param capacity 环形缓冲区能缓存的日志条数，会向上取整为2的幂
+     */
+    public LogFileSink(String dir, int fileSize, int fileCount, int capacity) {
+        mDir = new File(dir);
+        mFileSize = Math.max(fileSize, HEADER_SIZE + mRecord.capacity() * 2);
+        mFileCount = Math.max(fileCount, 1);
+
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        mEntries = new Entry[size];
+        for (int i = 0; i < size; ++i) {
+            mEntries[i] = new Entry();
+        }
+        mPublished = new AtomicLongArray(size);
+        for (int i = 0; i < size; ++i) {
+            mPublished.set(i, -1);
+        }
+        mMask = size - 1;
+
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, "LogFileSink");
+        mThread.setDaemon(true);
+        mThread.start();
+    }
+
+    /**
+     * 写入一条日志，不会阻塞，缓冲区满时丢弃
+     * @param level 日志级别，取值同 android.util.Log.VERBOSE ~ ASSERT
+     * @param tag 日志TAG
+     * @param msg 日志内容
+     */
+    public void write(int level, String tag, String msg) {
+        if (!mRunning) {
+            return;
+        }
+        long seq;
+        do {
+            seq = mHead.get();
+            if (seq - mTail >= mEntries.length) {
+                mDropped.incrementAndGet();
+                return;
+            }
+        } while (!mHead.compareAndSet(seq, seq + 1));
+
+        int index = (int) (seq & mMask);
+        Entry entry = mEntries[index];
+        entry.time = System.currentTimeMillis();
+        entry.level = level;
+        entry.tid = Thread.currentThread().getId();
+        entry.tag = tag;
+        entry.msg = msg;
+        mPublished.lazySet(index, seq);
+
+        if (seq - mTail == (mEntries.length >> 1)) { // 缓冲区过半时提前唤醒后台线程，减少丢弃
+            LockSupport.unpark(mThread);
+        }
+    }
+
+    /**
+     * 获取因为缓冲区满而丢弃的日志条数
+     */
+    public long getDroppedCount() {
+        return mDropped.get();
+    }
+
+    /**
+     * 停止后台线程，缓冲区剩余的日志写入文件后关闭文件
+     */
+    public void close() {
+        mRunning = false;
+        LockSupport.unpark(mThread);
+        try {
+            mThread.join(FLUSH_INTERVAL_NS / 1000000 * 5);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void loop() {
+        try {
+            openNextFile();
+            while (mRunning) {
+                LockSupport.parkNanos(this, FLUSH_INTERVAL_NS);
+                if (drain() > 0) {
+                    mBuffer.force();
+                }
+            }
+            drain();
+            mBuffer.force();
+        } catch (IOException e) {
+            e.printStackTrace();
+            mRunning = false;
+        } finally {
+            closeFile();
+        }
+    }
+
+    /**
+     * 把环形缓冲区里已发布的日志写入文件
+     * @return 写入的条数
+     */
+    private int drain() throws IOException {
+        int count = 0;
+        long tail = mTail;
+        while (true) {
+            int index = (int) (tail & mMask);
+            if (mPublished.get(index) != tail) {
+                break;
+            }
+            Entry entry = mEntries[index];
+            append(entry.level, entry.tag, entry.msg, entry.time, entry.tid);
+            entry.tag = null;
+            entry.msg = null;
+            mTail = ++tail; // 释放槽位给生产者
+            ++count;
+        }
+
+        long dropped = mDropped.get();
+        if (dropped != mReportedDropped) { // 把丢弃的条数也记录到文件中，方便分析
+            append(LEVEL_WARN, LogFileSink.class.getSimpleName(), "dropped " + (dropped - mReportedDropped) + " logs",
+                    System.currentTimeMillis(), Thread.currentThread().getId());
+            mReportedDropped = dropped;
+        }
+        return count;
+    }
+
+    private void append(int level, String tag, String msg, long time, long tid) throws IOException {
+        if (tag == null) {
+            tag = "";
+        }
+        Integer tagId = mTagIds.get(tag);
+        if (tagId == null) {
+            byte[] bytes = truncate(tag.getBytes(UTF8));
+            mRecord.clear();
+            mRecord.put(RECORD_TAG);
+            putVarint(mRecord, mTagIds.size());
+            putVarint(mRecord, bytes.length);
+            mRecord.put(bytes);
+            if (!writeRecord()) { // 切换了文件，TAG需要在新文件中重新定义
+                append(level, tag, msg, time, tid);
+                return;
+            }
+            tagId = mTagIds.size();
+            mTagIds.put(tag, tagId);
+        }
+
+        byte[] bytes = truncate((msg == null ? "" : msg).getBytes(UTF8));
+        mRecord.clear();
+        mRecord.put(RECORD_LOG);
+        mRecord.put((byte) level);
+        putVarint(mRecord, tagId);
+        putVarint(mRecord, tid);
+        putVarint(mRecord, Math.max(time - mFileTime, 0));
+        putVarint(mRecord, bytes.length);
+        mRecord.put(bytes);
+        if (!writeRecord()) {
+            append(level, tag, msg, time, tid);
+        }
+    }
+
+    /**
+     * 把 mRecord 写入当前文件，当前文件剩余空间不够时切换文件
+     * @return 写入当前文件返回true，切换了文件返回false，需要重新编码
+     */
+    private boolean writeRecord() throws IOException {
+        mRecord.flip();
+        if (mBuffer.remaining() <= mRecord.remaining()) { // 至少保留一个字节的结束标记
+            openNextFile();
+            return false;
+        }
+        mBuffer.put(mRecord);
+        return true;
+    }
+
+    private void openNextFile() throws IOException {
+        closeFile();
+        if (!mDir.exists() && !mDir.mkdirs()) {
+            throw new IOException("can not create " + mDir);
+        }
+        File[] files = listFiles(mDir);
+        if (files.length > 0) {
+            mFileIndex = parseIndex(files[files.length - 1]) + 1;
+        }
+        for (int i = 0; i <= files.length - mFileCount; ++i) { // 删除最旧的文件，给新文件腾位置
+            if (!files[i].delete()) {
+                Logcat.w("delete " + files[i] + " failed");
+            }
+        }
+
+        File file = new File(mDir, FILE_PREFIX + String.format("%08d", mFileIndex) + FILE_SUFFIX);
+        mFile = new RandomAccessFile(file, "rw");
+        mFile.setLength(0); // 清空，保证未写入的部分都是0
+        mBuffer = mFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, mFileSize);
+        mFileTime = System.currentTimeMillis();
+        mTagIds.clear();
+
+        mBuffer.putInt(MAGIC);
+        mBuffer.put((byte) VERSION);
+        mBuffer.putInt(mFileIndex);
+        mBuffer.putLong(mFileTime);
+    }
+
+    private void closeFile() {
+        if (mFile != null) {
+            try {
+                mBuffer.force();
+                mFile.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            mFile = null;
+            mBuffer = null;
+        }
+    }
+
+    /**
+     * 列出目录下的日志文件，按文件序号从小到大排序
+     */
+    static File[] listFiles(File dir) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+        int count = 0;
+        for (File file : files) {
+            if (parseIndex(file) >= 0) {
+                files[count++] = file;
+            }
+        }
+        files = Arrays.copyOf(files, count);
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                int l = parseIndex(lhs);
+                int r = parseIndex(rhs);
+                return l < r ? -1 : (l == r ? 0 : 1);
+            }
+        });
+        return files;
+    }
+
+    private static int parseIndex(File file) {
+        String name = file.getName();
+        if (name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX)) {
+            try {
+                return Integer.parseInt(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] truncate(byte[] bytes) {
+        return bytes.length > MAX_MESSAGE_BYTES ? Arrays.copyOf(bytes, MAX_MESSAGE_BYTES) : bytes;
+    }
+
+    private static void putVarint(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+}
@@ -31,28 +31,79 @@ import android.util.Log;
  * 增加不需要TAG的打印方法
  * @date 2016/8/11
  *
+ * @version 1.3
+ * 增加日志级别控制，延迟格式化的打印方法，调用位置信息只在需要打印时获取
+ *
  * @author bin.xie
  */
 public final class Logcat {
 
-    private static boolean LOG_PRINT_FLAG = true;
+    /**
+     * 调试日志的编译期开关，置为false后，v/d 的打印以及 if (Logcat.DEBUG_ENABLED) 包裹的代码都会被编译器去掉
+     */
+    public static final boolean DEBUG_ENABLED = true;
 
     private static final String TAG_PREFIX = "RRIVI";
 
+    private static volatile int sLevel = Log.VERBOSE; // 运行时日志级别，低于该级别的日志不打印
+    private static volatile boolean sCallSiteEnabled = true; // 是否打印调用的文件名，方法名，行号
+    private static volatile LogFileSink sFileSink = null; // 日志同时写入文件，为空时只输出到logcat
+
+    /**
+     * 延迟生成日志内容的接口，只有在该级别的日志需要打印时才会调用
+     */
+    public interface Supplier {
+        String get();
+    }
+
     private Logcat() {
     }
 
+    /**
+     * 设置运行时的日志级别
+     * @param level 取值 {@link Log#VERBOSE}, {@link Log#DEBUG}, {@link Log#INFO}, {@link Log#WARN}, {@link Log#ERROR}
+     */
+    public static void setLevel(int level) {
+        sLevel = level;
+    }
+
+    /**
+     * 获取运行时的日志级别
+     */
+    public static int getLevel() {
+        return sLevel;
+    }
+
+    /**
+     * 该级别的日志是否需要打印，热点路径上拼接日志前先判断，避免无用的字符串拼接
+     * @param level 取值 {@link Log#VERBOSE}, {@link Log#DEBUG}, {@link Log#INFO}, {@link Log#WARN}, {@link Log#ERROR}
+     */
+    public static boolean isLoggable(int level) {
+        if (!DEBUG_ENABLED && level < Log.INFO) {
+            return false;
+        }
+        return level >= sLevel;
+    }
+
+    /**
+     * 设置是否打印调用位置，关闭后不再获取调用栈，只打印日志内容
+     * @param enabled
+     */
+    public static void setCallSiteEnabled(boolean enabled) {
+        sCallSiteEnabled = enabled;
+    }
+
     /**
      * 打印日志
      * @param msg
      */
     public static void v(String msg) {
-        if (LOG_PRINT_FLAG) {
-            StackTraceElement[] elements = Thread.currentThread().getStackTrace();
+        if (DEBUG_ENABLED && isLoggable(Log.VERBOSE)) {
+            StackTraceElement[] elements = sCallSiteEnabled ? Thread.currentThread().getStackTrace() : null;
             if (elements == null || elements.length < 4) {
-                Log.v(TAG_PREFIX, msg);
+                write(Log.VERBOSE, TAG_PREFIX, msg);
             } else {
-                Log.v(TAG_PREFIX, elements[3].getFileName()
+                write(Log.VERBOSE, TAG_PREFIX, elements[3].getFileName()
                         + "(" + elements[3].getLineNumber() + "):" + elements[3].getMethodName()
                         + ": " + msg);
             }
@@ -60,26 +111,26 @@ public final class Logcat {
     }
 
     public static void v(String TAG, String msg) {
-        if (LOG_PRINT_FLAG) {
-            StackTraceElement[] elements = Thread.currentThread().getStackTrace();
+        if (DEBUG_ENABLED && isLoggable(Log.VERBOSE)) {
+            StackTraceElement[] elements = sCallSiteEnabled ? Thread.currentThread().getStackTrace() : null;
             if (elements == null || elements.length < 4) {
-                Log.v(TAG_PREFIX + TAG, msg);
+                write(Log.VERBOSE, TAG_PREFIX + TAG, msg);
             } else {
                 if (TextUtils.isEmpty(TAG)) {
                     TAG = elements[3].getFileName();
                 }
-                Log.v(TAG_PREFIX + TAG, elements[3].getMethodName() + " " + elements[3].getLineNumber() + " " +  msg);
+                write(Log.VERBOSE, TAG_PREFIX + TAG, elements[3].getMethodName() + " " + elements[3].getLineNumber() + " " +  msg);
             }
         }
     }
 
     public static void v(String TAG, String msg, Throwable tr) {
-        if (LOG_PRINT_FLAG) {
-            StackTraceElement[] elements = Thread.currentThread().getStackTrace();
+        if (DEBUG_ENABLED && isLoggable(Log.VERBOSE)) {
+            StackTraceElement[] elements = sCallSiteEnabled ? Thread.currentThread().getStackTrace() : null;
             if (elements == null || elements.length < 4) {
-                Log.v(TAG_PREFIX, TAG + msg);
+                write(Log.VERBOSE, TAG_PREFIX, TAG + msg);
             } else {
-                Log.v(TAG_PREFIX, TAG + elements[3].getFileName()
+                write(Log.VERBOSE, TAG_PREFIX, TAG + elements[3].getFileName()
                         + "(" + elements[3].getLineNumber() + "):" + elements[3].getMethodName()
                         + ": " + msg);
             }
@@ -90,12 +141,12 @@ public final class Logcat {
      * 只打印函数名和行号
      */
     public static void d() {
-        if (LOG_PRINT_FLAG) {
-            StackTraceElement[] elements = Thread.currentThread().getStackTrace();
+        if (DEBUG_ENABLED && isLoggable(Log.DEBUG)) {
+            StackTraceElement[] elements = sCallSiteEnabled ? Thread.currentThread().getStackTrace() : null;
             if (elements == null || elements.length < 4) {
-                Log.d(TAG_PREFIX, "");
+                write(Log.DEBUG, TAG_PREFIX, "");
             } else {
-                Log.d(TAG_PREFIX, elements[3].getFileName() + "(" + elements[3].getLineNumber() + "):"
+                write(Log.DEBUG, TAG_PREFIX, elements[3].getFileName() + "(" + elements[3].getLineNumber() + "):"
                         + elements[3].getMethodName());
             }
         }
@@ -106,38 +157,38 @@ public final class Logcat {
      * @param msg
      */
     public static void d(String msg) {
-        if (LOG_PRINT_FLAG) {
-            StackTraceElement[] elements = Thread.currentThread().getStackTrace();
+        if (DEBUG_ENABLED && isLoggable(Log.DEBUG)) {
+            StackTraceElement[] elements = sCallSiteEnabled ? Thread.currentThread().getStackTrace() : null;
             if (elements == null || elements.length < 4) {
-                Log.d(TAG_PREFIX, msg);
+                write(Log.DEBUG, TAG_PREFIX, msg);
             } else {
-                Log.d(TAG_PREFIX, elements[3].getFileName() + "(" + elements[3].getLineNumber() + "):"
+                write(Log.DEBUG, TAG_PREFIX, elements[3].getFileName() + "(" + elements[3].getLineNumber() + "):"
                         + elements[3].getMethodName() + ": " + msg);
             }
         }
     }
 
     public static void d(String TAG, String msg) {
-        if (LOG_PRINT_FLAG) {
-            StackTraceElement[] elements = Thread.currentThread().getStackTrace();
+        if (DEBUG_ENABLED && isLoggable(Log.DEBUG)) {
+            StackTraceElement[] elements = sCallSiteEnabled ? Thread.currentThread().getStackTrace() : null;
             if (elements == null || elements.length < 4) {
-                Log.d(TAG_PREFIX, TAG + msg);
+                write(Log.DEBUG, TAG_PREFIX, TAG + msg);
             } else {
                 if (TextUtils.isEmpty(TAG)) {
                     TAG = elements[3].getClassName();
                 }
-                Log.d(TAG_PREFIX, TAG + elements[3].getMethodName() + " " + elements[3].getLineNumber() + " " +  msg);
+                write(Log.DEBUG, TAG_PREFIX, TAG + elements[3].getMethodName() + " " + elements[3].getLineNumber() + " " +  msg);
             }
         }
     }
 
     public static void d(String TAG, String msg, Throwable tr) {
-        if (LOG_PRINT_FLAG) {
-            StackTraceElement[] elements = Thread.currentThread().getStackTrace();
+        if (DEBUG_ENABLED && isLoggable(Log.DEBUG)) {
+            StackTraceElement[] elements = sCallSiteEnabled ? Thread.currentThread().getStackTrace() : null;
             if (elements == null || elements.length < 4) {
-                Log.d(TAG_PREFIX, TAG + msg);
+                write(Log.DEBUG, TAG_PREFIX, TAG + msg);
             } else {
-                Log.d(TAG_PREFIX, TAG + elements[3].getMethodName() + " " + elements[3].getLineNumber() + " " +  msg, tr);
+                write(Log.DEBUG, TAG_PREFIX, TAG + elements[3].getMethodName() + " " + elements[3].getLineNumber() + " " +  msg, tr);
             }
         }
     }
@@ -147,38 +198,38 @@ public final class Logcat {
      * @param msg
      */
     public static void i(String msg) {
-        if (LOG_PRINT_FLAG) {
-            StackTraceElement[] elements = Thread.currentThread().getStackTrace();
+        if (isLoggable(Log.INFO)) {
+            StackTraceElement[] elements = sCallSiteEnabled ? Thread.currentThread().getStackTrace() : null;
             if (elements == null || elements.length < 4) {
-                Log.i(TAG_PREFIX, msg);
+                write(Log.INFO, TAG_PREFIX, msg);
             } else {
-                Log.i(TAG_PREFIX + elements[3].getClassName(), elements[3].getMethodName() + " " + elements[3].getLineNumber() + " " +  msg);
+                write(Log.INFO, TAG_PREFIX + elements[3].getClassName(), elements[3].getMethodName() + " " + elements[3].getLineNumber() + " " +  msg);
             }
         }
     }
 
     public static void i(String TAG, String msg) {
-        if (LOG_PRINT_FLAG) {
-            StackTraceElement[] elements = Thread.currentThread().getStackTrace();
+        if (isLoggable(Log.INFO)) {
+            StackTraceElement[] elements = sCallSiteEnabled ? Thread.currentThread().getStackTrace() : null;
             if (elements == null || elements.length < 4) {
-                Log.i(TAG_PREFIX + TAG, msg);
+                write(Log.INFO, TAG_PREFIX + TAG, msg);
             } else {
                 if (TextUtils.isEmpty(TAG)) {
                     TAG = elements[3].getClassName();
                 }
-                Log.i(TAG_PREFIX + TAG, elements[3].getMethodName() + " " + elements[3].getLineNumber() + " " +  msg);
+                write(Log.INFO, TAG_PREFIX + TAG, elements[3].getMethodName() + " " + elements[3].getLineNumber() + " " +  msg);
             }
         }
 
     }
 
     public static void i(String TAG, String msg, Throwable tr) {
-        if (LOG_PRINT_FLAG) {
-            StackTraceElement[] elements = Thread.currentThread().getStackTrace();
+        if (isLoggable(Log.INFO)) {
+            StackTraceElement[] elements = sCallSiteEnabled ? Thread.currentThread().getStackTrace() : null;
             if (elements == null || elements.length < 4) {
-                Log.i(TAG_PREFIX + TAG, msg);
+                write(Log.INFO, TAG_PREFIX + TAG, msg);
             } else {
-                Log.i(TAG, elements[3].getMethodName() + " " + elements[3].getLineNumber() + " " +  msg, tr);
+                write(Log.INFO, TAG, elements[3].getMethodName() + " " + elements[3].getLineNumber() + " " +  msg, tr);
             }
         }
 
@@ -189,49 +240,49 @@ public final class Logcat {
      * @param msg
      */
     public static void w(String msg) {
-        if (LOG_PRINT_FLAG) {
-            StackTraceElement[] elements = Thread.currentThread().getStackTrace();
+        if (isLoggable(Log.WARN)) {
+            StackTraceElement[] elements = sCallSiteEnabled ? Thread.currentThread().getStackTrace() : null;
             if (elements == null || elements.length < 4) {
-                Log.w(TAG_PREFIX, msg);
+                write(Log.WARN, TAG_PREFIX, msg);
             } else {
-                Log.w(TAG_PREFIX, elements[3].getFileName() + "(" + elements[3].getLineNumber() + "):"
+                write(Log.WARN, TAG_PREFIX, elements[3].getFileName() + "(" + elements[3].getLineNumber() + "):"
                         + elements[3].getMethodName() + ": " + msg);
             }
         }
     }
 
     public static void w(String TAG, String msg) {
-        if (LOG_PRINT_FLAG) {
-            StackTraceElement[] elements = Thread.currentThread().getStackTrace();
+        if (isLoggable(Log.WARN)) {
+            StackTraceElement[] elements = sCallSiteEnabled ? Thread.currentThread().getStackTrace() : null;
             if (elements == null || elements.length < 4) {
-                Log.w(TAG_PREFIX + TAG, msg);
+                write(Log.WARN, TAG_PREFIX + TAG, msg);
             } else {
                 if (TextUtils.isEmpty(TAG)) {
                     TAG = elements[3].getClassName();
                 }
-                Log.w(TAG_PREFIX + TAG, elements[3].getMethodName() + " " + elements[3].getLineNumber() + " " +  msg);
+                write(Log.WARN, TAG_PREFIX + TAG, elements[3].getMethodName() + " " + elements[3].getLineNumber() + " " +  msg);
             }
         }
     }
 
     public static void w(String TAG, Throwable tr) {
-        if (LOG_PRINT_FLAG) {
-            StackTraceElement[] elements = Thread.currentThread().getStackTrace();
+        if (isLoggable(Log.WARN)) {
+            StackTraceElement[] elements = sCallSiteEnabled ? Thread.currentThread().getStackTrace() : null;
             if (elements == null || elements.length < 4) {
-                Log.w(TAG_PREFIX + TAG, tr);
+                write(Log.WARN, TAG_PREFIX + TAG, tr);
             } else {
-                Log.w(TAG_PREFIX + TAG, elements[3].getMethodName() + " " + elements[3].getLineNumber(), tr);
+                write(Log.WARN, TAG_PREFIX + TAG, elements[3].getMethodName() + " " + elements[3].getLineNumber(), tr);
             }
         }
     }
 
     public static void w(String TAG, String msg, Throwable tr) {
-        if (LOG_PRINT_FLAG) {
-            StackTraceElement[] elements = Thread.currentThread().getStackTrace();
+        if (isLoggable(Log.WARN)) {
+            StackTraceElement[] elements = sCallSiteEnabled ? Thread.currentThread().getStackTrace() : null;
             if (elements == null || elements.length < 4) {
-                Log.w(TAG_PREFIX + TAG, msg);
+                write(Log.WARN, TAG_PREFIX + TAG, msg);
             } else {
-                Log.w(TAG_PREFIX + TAG, elements[3].getMethodName() + " " + elements[3].getLineNumber() + " " +  msg, tr);
+                write(Log.WARN, TAG_PREFIX + TAG, elements[3].getMethodName() + " " + elements[3].getLineNumber() + " " +  msg, tr);
             }
         }
     }
@@ -241,34 +292,222 @@ public final class Logcat {
      * @param msg
      */
     public static void e(String msg) {
-        StackTraceElement[] elements = Thread.currentThread().getStackTrace();
-        if (elements == null || elements.length < 4) {
-            Log.e(TAG_PREFIX, msg);
-        } else {
-            Log.e(TAG_PREFIX, elements[3].getFileName() + "(" + elements[3].getLineNumber() + "):"
-                    + elements[3].getMethodName() + ": " + msg);
+        if (isLoggable(Log.ERROR)) {
+            StackTraceElement[] elements = sCallSiteEnabled ? Thread.currentThread().getStackTrace() : null;
+            if (elements == null || elements.length < 4) {
+                write(Log.ERROR, TAG_PREFIX, msg);
+            } else {
+                write(Log.ERROR, TAG_PREFIX, elements[3].getFileName() + "(" + elements[3].getLineNumber() + "):"
+                        + elements[3].getMethodName() + ": " + msg);
+            }
         }
     }
 
     public static void e(String TAG, String msg) {
-        StackTraceElement[] elements = Thread.currentThread().getStackTrace();
-        if (elements == null || elements.length < 4) {
-            Log.w(TAG_PREFIX + TAG, msg);
-        } else {
-            if (TextUtils.isEmpty(TAG)) {
-                TAG = elements[3].getClassName();
+        if (isLoggable(Log.ERROR)) {
+            StackTraceElement[] elements = sCallSiteEnabled ? Thread.currentThread().getStackTrace() : null;
+            if (elements == null || elements.length < 4) {
+                write(Log.WARN, TAG_PREFIX + TAG, msg);
+            } else {
+                if (TextUtils.isEmpty(TAG)) {
+                    TAG = elements[3].getClassName();
+                }
+                write(Log.WARN, TAG_PREFIX + TAG, elements[3].getMethodName() + " " + elements[3].getLineNumber() + " " +  msg);
             }
-            Log.w(TAG_PREFIX + TAG, elements[3].getMethodName() + " " + elements[3].getLineNumber() + " " +  msg);
         }
     }
 
     public static void e(String TAG, String msg, Throwable tr) {
+        if (isLoggable(Log.ERROR)) {
+            StackTraceElement[] elements = sCallSiteEnabled ? Thread.currentThread().getStackTrace() : null;
+            if (elements == null || elements.length < 4) {
+                write(Log.WARN, TAG_PREFIX + TAG, msg);
+            } else {
+                write(Log.WARN, TAG, elements[3].getMethodName() + " " + elements[3].getLineNumber() + " " +  msg, tr);
+            }
+        }
+    }
+
+    /**
+     * 设置日志文件输出，设置后打印的日志会同时写入文件，用于保存路测时的诊断日志
+     * @param sink 传null取消文件输出，取消后由调用者调用 {@link LogFileSink#close()}
+     */
+    public static void setFileSink(LogFileSink sink) {
+        sFileSink = sink;
+    }
+
+    /**
+     * 延迟生成内容的打印方法，例：Logcat.d(new Logcat.Supplier() { public String get() { return "size:" + list.size(); } });
+     * @param supplier 只有在该级别日志需要打印时才会调用
+     */
+    public static void v(Supplier supplier) {
+        if (DEBUG_ENABLED && isLoggable(Log.VERBOSE)) {
+            println(Log.VERBOSE, null, get(supplier));
+        }
+    }
+
+    public static void v(String TAG, Supplier supplier) {
+        if (DEBUG_ENABLED && isLoggable(Log.VERBOSE)) {
+            println(Log.VERBOSE, TAG, get(supplier));
+        }
+    }
+
+    public static void d(Supplier supplier) {
+        if (DEBUG_ENABLED && isLoggable(Log.DEBUG)) {
+            println(Log.DEBUG, null, get(supplier));
+        }
+    }
+
+    public static void d(String TAG, Supplier supplier) {
+        if (DEBUG_ENABLED && isLoggable(Log.DEBUG)) {
+            println(Log.DEBUG, TAG, get(supplier));
+        }
+    }
+
+    public static void i(Supplier supplier) {
+        if (isLoggable(Log.INFO)) {
+            println(Log.INFO, null, get(supplier));
+        }
+    }
+
+    public static void i(String TAG, Supplier supplier) {
+        if (isLoggable(Log.INFO)) {
+            println(Log.INFO, TAG, get(supplier));
+        }
+    }
+
+    public static void w(Supplier supplier) {
+        if (isLoggable(Log.WARN)) {
+            println(Log.WARN, null, get(supplier));
+        }
+    }
+
+    public static void w(String TAG, Supplier supplier) {
+        if (isLoggable(Log.WARN)) {
+            println(Log.WARN, TAG, get(supplier));
+        }
+    }
+
+    public static void e(Supplier supplier) {
+        if (isLoggable(Log.ERROR)) {
+            println(Log.ERROR, null, get(supplier));
+        }
+    }
+
+    public static void e(String TAG, Supplier supplier) {
+        if (isLoggable(Log.ERROR)) {
+            println(Log.ERROR, TAG, get(supplier));
+        }
+    }
+
+    /**
+     * 格式化的打印方法，只有在该级别日志需要打印时才会调用 {@link String#format(String, Object...)}
+     * 例：Logcat.dFormat("size:%d", list.size()); <br/>
+     * 参数数组和装箱在调用处就已经发生，热点路径上先用 {@link #isLoggable(int)} 判断，或者使用 {@link Supplier}
+     * @param format 格式，同 {@link String#format(String, Object...)}
+     * @param args 参数
+     */
+    public static void vFormat(String format, Object... args) {
+        if (DEBUG_ENABLED && isLoggable(Log.VERBOSE)) {
+            println(Log.VERBOSE, null, format(format, args));
+        }
+    }
+
+    public static void dFormat(String format, Object... args) {
+        if (DEBUG_ENABLED && isLoggable(Log.DEBUG)) {
+            println(Log.DEBUG, null, format(format, args));
+        }
+    }
+
+    public static void iFormat(String format, Object... args) {
+        if (isLoggable(Log.INFO)) {
+            println(Log.INFO, null, format(format, args));
+        }
+    }
+
+    public static void wFormat(String format, Object... args) {
+        if (isLoggable(Log.WARN)) {
+            println(Log.WARN, null, format(format, args));
+        }
+    }
+
+    public static void eFormat(String format, Object... args) {
+        if (isLoggable(Log.ERROR)) {
+            println(Log.ERROR, null, format(format, args));
+        }
+    }
+
+    private static String get(Supplier supplier) {
+        return (supplier != null) ? supplier.get() : null;
+    }
+
+    private static String format(String format, Object... args) {
+        if (format == null || args == null || args.length == 0) {
+            return format;
+        }
+        try {
+            return String.format(format, args);
+        } catch (Exception e) { // 格式不对时，不能影响调用者
+            return format;
+        }
+    }
+
+    /**
+     * 延迟打印方法的统一出口，调用位置在已经确定需要打印后才获取
+     */
+    private static void println(int priority, String TAG, String msg) {
+        if (msg == null) {
+            msg = "";
+        }
+        String tag = TAG_PREFIX;
+        StackTraceElement caller = sCallSiteEnabled ? getCaller() : null;
+        if (caller != null) {
+            if (TextUtils.isEmpty(TAG)) {
+                msg = caller.getFileName() + "(" + caller.getLineNumber() + "):"
+                        + caller.getMethodName() + ": " + msg;
+            } else {
+                tag = TAG_PREFIX + TAG;
+                msg = caller.getMethodName() + " " + caller.getLineNumber() + " " + msg;
+            }
+        } else if (!TextUtils.isEmpty(TAG)) {
+            tag = TAG_PREFIX + TAG;
+        }
+        write(priority, tag, msg);
+    }
+
+    /**
+     * 获取调用Logcat的位置，跳过调用栈中Logcat自身以及之前虚拟机的栈帧
+     */
+    private static StackTraceElement getCaller() {
         StackTraceElement[] elements = Thread.currentThread().getStackTrace();
-        if (elements == null || elements.length < 4) {
-            Log.w(TAG_PREFIX + TAG, msg);
-        } else {
-            Log.w(TAG, elements[3].getMethodName() + " " + elements[3].getLineNumber() + " " +  msg, tr);
+        if (elements == null) {
+            return null;
+        }
+        final String name = Logcat.class.getName();
+        boolean inLogcat = false;
+        for (StackTraceElement element : elements) {
+            if (name.equals(element.getClassName())) {
+                inLogcat = true;
+            } else if (inLogcat) {
+                return element;
+            }
+        }
+        return null;
+    }
+
+    private static void write(int priority, String tag, String msg) {
+        Log.println(priority, tag, msg);
+        LogFileSink sink = sFileSink;
+        if (sink != null) {
+            sink.write(priority, tag, msg);
         }
     }
 
-}
\ No newline at end of file
+    private static void write(int priority, String tag, String msg, Throwable tr) {
+        write(priority, tag, msg + '\n' + Log.getStackTraceString(tr));
+    }
+
+    private static void write(int priority, String tag, Throwable tr) {
+        write(priority, tag, Log.getStackTraceString(tr));
+    }
+}
@@ -0,0 +1,102 @@
+package com.roadrover.sdk.utils;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 按字段比较的状态基类，媒体会话、导航引导这类状态共用 <br/>
+ * 子类在锁内比较新数据和当前快照，生成新的不可变快照并 {@link #publish(Object)}，
+ * 再在锁外 {@link #notifyListeners(int)}，监听只在有字段改变时回调，并带上改变的字段掩码
+ * @param <S> 快照类型，发布之后不能再修改
+ * @param <L> 监听类型
+ */
+public abstract class SnapshotState<S, L> {
+
+    private final S mEmpty;
+    private volatile S mSnapshot;
+    private final List<L> mListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param empty 没有收到过数据时的快照，{@link #reset()} 之后也恢复成它
+     */
+    protected SnapshotState(S empty) {
+        mEmpty = empty;
+        mSnapshot = empty;
+    }
+
+    /**
+     * 获取当前状态
+     * @return 不会为null
+     */
+    public S getSnapshot() {
+        return mSnapshot;
+    }
+
+    public void addListener(L listener) {
+        if (listener != null && !mListeners.contains(listener)) {
+            mListeners.add(listener);
+        }
+    }
+
+    public void removeListener(L listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * 是否有监听者
+     */
+    public boolean hasListeners() {
+        return !mListeners.isEmpty();
+    }
+
+    /**
+     * 回调一个监听，由子类转成具体的监听方法
+     */
+    protected abstract void onChanged(L listener, S snapshot, int changed);
+
+    /**
+     * 发布新的快照，在子类的锁内调用
+     */
+    protected final void publish(S snapshot) {
+        mSnapshot = snapshot;
+    }
+
+    /**
+     * 恢复成没有数据时的快照，在子类的锁内调用
+     */
+    protected final void reset() {
+        mSnapshot = mEmpty;
+    }
+
+    /**
+     * 回调所有监听，在锁外调用，监听者里可以再调用 getSnapshot
+     * @param changed 改变的字段，0 不回调
+     * @return changed
+     */
+    protected final int notifyListeners(int changed) {
+        if (changed != 0) {
+            final S snapshot = mSnapshot;
+            for (L listener : mListeners) {
+                onChanged(listener, snapshot, changed);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * 获取改变字段的名字，一般用作打印 log
+     * @param mask 改变的字段
+     * @param fields 字段定义
+     * @param names 和 fields 一一对应的名字
+     * @return 例："NAME|INFO"
+     */
+    public static String getFieldNames(int mask, int[] fields, String[] names) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < fields.length; ++i) {
+            if ((mask & fields[i]) != 0) {
+                builder.append(builder.length() > 0 ? "|" : "").append(names[i]);
+            }
+        }
+        return builder.toString();
+    }
+}
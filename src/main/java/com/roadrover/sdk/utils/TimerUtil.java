@@ -1,13 +1,7 @@
 package com.roadrover.sdk.utils;
 
-import java.util.TimerTask;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
-
 import android.os.Handler;
-import android.os.Message;
+import android.os.Looper;
 
 /**
  * 安卓的定时器
@@ -16,6 +10,7 @@ import android.os.Message;
  *                       该变量传true, 回调函数在主线程执行，可以刷新UI
  *         start(传定时时间); 当定时结束时，需要调用 stop();尤其是Activity的销毁，必须调用stop()
  *        如果只是做一次的延时处理，可以使用Handler的sendMessageDelayed处理
+ *        所有定时器共用 {@link TimerWheel} 的一个线程，不再每个对象创建一个线程池
  * @author bin.xie
  * @修改时间 2015/7/22
  */
@@ -30,15 +25,20 @@ public class TimerUtil {
 
     private TimerCallback mTimerCallback = null; // 定时器时间到了的回调
 
-    private final static int TIMER_MESSAGE_HANDLE = 0; // 定时器到了，发送消息
-    private ScheduledFuture mScheduledFuture = null;
-    private TimerTask mTimerTask = null;
+    private TimerWheel.Timeout mTimeout = null;
     private Handler mHandler = null;
 
-    private ScheduledThreadPoolExecutor mScheduledThreadPoolExecutor ;
-
     private boolean mIsNeedHandler = true; // 是否需要通过handler转换到主线程，如果需要直接UI操作，需要该操作位true
 
+    private final Runnable mTimeoutRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (null != mTimerCallback) {
+                mTimerCallback.timeout();
+            }
+        }
+    };
+
     public TimerUtil(TimerCallback callback) {
         this(callback, true);
     }
@@ -48,41 +48,12 @@ public class TimerUtil {
 
         mIsNeedHandler = isNeedHandler;
 
-        mScheduledThreadPoolExecutor = (ScheduledThreadPoolExecutor) Executors.newScheduledThreadPool(1);
-
         if (isNeedHandler) {
-            mHandler = new Handler() {
-
-                @Override
-                public void handleMessage(Message msg) {
-                    if (TIMER_MESSAGE_HANDLE == msg.what) {
-                        if (null != mTimerCallback) {
-                            mTimerCallback.timeout();
-                        }
-                    }
-                }
-            };
+            Looper looper = Looper.myLooper();
+            mHandler = new Handler((looper != null) ? looper : Looper.getMainLooper());
         }
     }
 
-    private void initTimerTask() {
-        mTimerTask = new TimerTask() {
-
-            @Override
-            public void run() {
-                if (mIsNeedHandler) {
-                    // 定时器中不能刷新界面，所以发送message
-                    postHandler();
-                } else {
-                    // 不需要handler转换，直接调用
-                    if (null != mTimerCallback) {
-                        mTimerCallback.timeout();
-                    }
-                }
-            }
-        };
-    }
-
     /**
      * 开始定时器
      * @param nMesc 多长时间触发一次
@@ -93,38 +64,25 @@ public class TimerUtil {
 
         if (0 >= nMesc) { // 时间如果为0，不开启定时器，
             if (null != mHandler) { // 直接post一下
-                postHandler();
+                mHandler.post(mTimeoutRunnable);
             } else {
-                if (null != mTimerCallback) { // 直接调用结果，并且只会调用一次
-                    mTimerCallback.timeout();
-                }
+                mTimeoutRunnable.run(); // 直接调用结果，并且只会调用一次
             }
             return;
         }
 
-        initTimerTask();
-
-        mScheduledFuture = mScheduledThreadPoolExecutor.scheduleAtFixedRate(mTimerTask, nMesc,
-                nMesc, TimeUnit.MILLISECONDS);
-
+        mTimeout = TimerWheel.getInstance().schedule(mTimeoutRunnable, nMesc, nMesc,
+                mIsNeedHandler ? mHandler : null);
     }
 
     /**
      * 停止定时器
      */
     public void stop() {
-        try {
-            if (null != mScheduledFuture) {
-                mScheduledFuture.cancel(true);
-                mScheduledFuture = null;
-            }
-
-            if (null != mTimerTask) {
-                mTimerTask.cancel();
-                mTimerTask = null;
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
+        TimerWheel.Timeout timeout = mTimeout;
+        if (null != timeout) {
+            timeout.cancel();
+            mTimeout = null;
         }
     }
 
@@ -133,12 +91,6 @@ public class TimerUtil {
      * @return 激活状态返回true
      */
     public boolean isActive() {
-        return (mScheduledFuture != null);
-    }
-
-    private void postHandler() {
-        Message msg = mHandler.obtainMessage();
-        msg.what = TIMER_MESSAGE_HANDLE;
-        mHandler.sendMessage(msg);
+        return (mTimeout != null);
     }
 }
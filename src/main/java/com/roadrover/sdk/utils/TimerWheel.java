@@ -0,0 +1,438 @@
+package com.roadrover.sdk.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 进程内共享的定时器，时间轮实现 <br/>
+ * 所有定时任务共用一个线程，添加和取消都是O(1)，按到时时间分到 {@link #TICK_MS} 宽的格子里；
+ * 线程只在最早的任务到时时唤醒，不会逐格空转，没有定时任务时一直挂起。<br/>
+ * 任务默认在定时器线程中执行，不能做耗时操作；传入Handler时会post到Handler所在的线程执行，
+ * 需要刷新UI时使用 {@link #scheduleOnMainThread(Runnable, long)}
+ */
+public final class TimerWheel {
+
+    /**
+     * 时间轮每一格的时间，单位ms，到时时间在同一格的任务放在一起
+     */
+    public static final int TICK_MS = 10;
+    /** 时间轮的格数，必须是2的幂 */
+    private static final int WHEEL_SIZE = 512;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    private static final int STATE_INIT      = 0;
+    private static final int STATE_CANCELLED = 1;
+    private static final int STATE_EXPIRED   = 2;
+
+    /**
+     * 定时任务的句柄，用于取消
+     */
+    public static final class Timeout {
+        private final TimerWheel mWheel;
+        private final Runnable mTask;
+        private final Handler mHandler;
+        private final long mPeriod;
+        private final AtomicInteger mState = new AtomicInteger(STATE_INIT);
+        private volatile long mDueTime; // 本次预定执行的时间，用于统计延迟
+
+        // 以下只在定时器线程中使用
+        private long mDeadline; // 相对于时间轮启动时间，单位ms
+        private Timeout mPrev;
+        private Timeout mNext;
+        private Bucket mBucket;
+
+        private final Runnable mDelivery = new Runnable() {
+            @Override
+            public void run() {
+                if (mState.get() != STATE_CANCELLED) {
+                    execute();
+                }
+            }
+        };
+
+        private Timeout(TimerWheel wheel, Runnable task, long deadline, long period, Handler handler) {
+            mWheel = wheel;
+            mTask = task;
+            mDeadline = deadline;
+            mPeriod = period;
+            mHandler = handler;
+        }
+
+        /**
+         * 取消定时任务，已经post到Handler但还没有执行的也不会再执行
+         * @return 成功取消返回true，已经取消或者单次任务已经执行返回false
+         */
+        public boolean cancel() {
+            if (!mState.compareAndSet(STATE_INIT, STATE_CANCELLED)) {
+                return false;
+            }
+            if (mHandler != null) {
+                mHandler.removeCallbacks(mDelivery);
+            }
+            mWheel.mCancelledTimeouts.add(this);
+            return true;
+        }
+
+        /**
+         * 是否已经取消
+         */
+        public boolean isCancelled() {
+            return mState.get() == STATE_CANCELLED;
+        }
+
+        /**
+         * 单次任务是否已经到时
+         */
+        public boolean isExpired() {
+            return mState.get() == STATE_EXPIRED;
+        }
+
+        private void execute() {
+            mWheel.recordLatency(SystemClock.uptimeMillis() - mDueTime);
+            try {
+                mTask.run();
+            } catch (Throwable e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * 时间轮的一格，双向链表
+     */
+    private static final class Bucket {
+        Timeout mHead;
+        Timeout mTail;
+
+        void add(Timeout timeout) {
+            timeout.mBucket = this;
+            if (mHead == null) {
+                mHead = mTail = timeout;
+            } else {
+                mTail.mNext = timeout;
+                timeout.mPrev = mTail;
+                mTail = timeout;
+            }
+        }
+
+        Timeout remove(Timeout timeout) {
+            Timeout next = timeout.mNext;
+            if (timeout.mPrev != null) {
+                timeout.mPrev.mNext = next;
+            }
+            if (next != null) {
+                next.mPrev = timeout.mPrev;
+            }
+            if (timeout == mHead) {
+                mHead = next;
+            }
+            if (timeout == mTail) {
+                mTail = timeout.mPrev;
+            }
+            timeout.mPrev = null;
+            timeout.mNext = null;
+            timeout.mBucket = null;
+            return next;
+        }
+    }
+
+    private static volatile TimerWheel sInstance = null;
+    private static volatile Handler sMainHandler = null;
+
+    private final Bucket[] mWheel = new Bucket[WHEEL_SIZE];
+    private final ConcurrentLinkedQueue<Timeout> mPendingTimeouts = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Timeout> mCancelledTimeouts = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger mActiveCount = new AtomicInteger(0);
+    private final Object mIdleLock = new Object();
+    private final long mStartTime = SystemClock.uptimeMillis();
+    private Thread mThread = null;
+    private long mTick = 0; // 下一次从这一格开始处理，只在定时器线程中使用
+    // 定时器线程等待到的时间（相对于启动时间），Long.MAX_VALUE 表示没有任务或者线程还没有启动，-1表示正在处理
+    private volatile long mWakeTime = Long.MAX_VALUE;
+
+    // 统计数据，由 mStatsLock 保护
+    private final Object mStatsLock = new Object();
+    private long mFiredCount = 0;
+    private long mTotalLatency = 0;
+    private long mMaxLatency = 0;
+
+    /**
+     * 获取共享的定时器
+     */
+    public static TimerWheel getInstance() {
+        if (sInstance == null) {
+            synchronized (TimerWheel.class) {
+                if (sInstance == null) {
+                    sInstance = new TimerWheel();
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    private TimerWheel() {
+        for (int i = 0; i < WHEEL_SIZE; ++i) {
+            mWheel[i] = new Bucket();
+        }
+    }
+
+    /**
+     * 添加一个单次任务，在定时器线程中执行
+     * @param task 任务
+     * @param delay 延时，单位ms
+     */
+    public Timeout schedule(Runnable task, long delay) {
+        return schedule(task, delay, 0, null);
+    }
+
+    /**
+     * 添加一个单次任务，在主线程中执行
+     * @param task 任务
+     * @param delay 延时，单位ms
+     */
+    public Timeout scheduleOnMainThread(Runnable task, long delay) {
+        if (sMainHandler == null) {
+            sMainHandler = new Handler(Looper.getMainLooper());
+        }
+        return schedule(task, delay, 0, sMainHandler);
+    }
+
+    /**
+     * 添加一个定时任务
+     * @param task 任务
+     * @param delay 第一次执行的延时，单位ms
+     * @param period 之后每次执行的间隔，单位ms，小于等于0表示只执行一次
+     * @param handler 执行任务的Handler，为空时在定时器线程中执行
+     */
+    public Timeout schedule(Runnable task, long delay, long period, Handler handler) {
+        if (task == null) {
+            throw new NullPointerException("task is null");
+        }
+        final long deadline = SystemClock.uptimeMillis() - mStartTime + Math.max(0, delay);
+        Timeout timeout = new Timeout(this, task, deadline, Math.max(0, period), handler);
+        mPendingTimeouts.add(timeout);
+        mActiveCount.incrementAndGet();
+        if (deadline < mWakeTime) { // 比定时器线程等待的时间早，唤醒它重新计算
+            synchronized (mIdleLock) {
+                startIfNeedLocked();
+                mIdleLock.notifyAll();
+            }
+        }
+        return timeout;
+    }
+
+    /**
+     * 获取定时器线程数，所有 TimerUtil 和定时任务共用，最多为1
+     */
+    public int getThreadCount() {
+        synchronized (mIdleLock) {
+            return (mThread != null && mThread.isAlive()) ? 1 : 0;
+        }
+    }
+
+    /**
+     * 获取还没有到时或者周期执行中的任务数
+     */
+    public int getActiveCount() {
+        return mActiveCount.get();
+    }
+
+    /**
+     * 获取已经执行的次数
+     */
+    public long getFiredCount() {
+        synchronized (mStatsLock) {
+            return mFiredCount;
+        }
+    }
+
+    /**
+     * 获取任务实际执行时间相对于预定时间的平均延迟，包括post到Handler的时间，单位ms
+     */
+    public long getAverageLatency() {
+        synchronized (mStatsLock) {
+            return (mFiredCount > 0) ? (mTotalLatency / mFiredCount) : 0;
+        }
+    }
+
+    /**
+     * 获取任务实际执行时间相对于预定时间的最大延迟，单位ms
+     */
+    public long getMaxLatency() {
+        synchronized (mStatsLock) {
+            return mMaxLatency;
+        }
+    }
+
+    /**
+     * 清除统计数据
+     */
+    public void resetStats() {
+        synchronized (mStatsLock) {
+            mFiredCount = 0;
+            mTotalLatency = 0;
+            mMaxLatency = 0;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TimerWheel threads:" + getThreadCount() + " active:" + getActiveCount() + " fired:" + getFiredCount()
+                + " avgLatency:" + getAverageLatency() + "ms maxLatency:" + getMaxLatency() + "ms";
+    }
+
+    private void recordLatency(long latency) {
+        latency = Math.max(0, latency);
+        synchronized (mStatsLock) {
+            ++mFiredCount;
+            mTotalLatency += latency;
+            if (latency > mMaxLatency) {
+                mMaxLatency = latency;
+            }
+        }
+    }
+
+    private void startIfNeedLocked() {
+        if (mThread == null) {
+            mThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    loop();
+                }
+            }, "TimerWheel");
+            mThread.setDaemon(true);
+            mThread.start();
+        }
+    }
+
+    private void loop() {
+        mTick = (SystemClock.uptimeMillis() - mStartTime) / TICK_MS;
+        while (true) {
+            final long now = SystemClock.uptimeMillis() - mStartTime;
+            final long from = mTick;
+            mTick = now / TICK_MS; // 先更新，期间加入的已经过期的任务放到当前格子，本次就会处理
+
+            processCancelled();
+            transferPending();
+            final long count = Math.min(mTick - from + 1, WHEEL_SIZE); // 睡眠期间跳过的格子一起处理
+            for (long i = 0; i < count; ++i) {
+                expire(mWheel[(int) ((from + i) & WHEEL_MASK)], now);
+            }
+
+            if (!waitForNext(getNextDeadline())) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 等到下一个任务到时，期间添加了更早的任务时会被提前唤醒
+     * @param deadline 相对于启动时间，Long.MAX_VALUE 表示一直等待
+     * @return 被中断返回false
+     */
+    private boolean waitForNext(long deadline) {
+        synchronized (mIdleLock) {
+            mWakeTime = deadline;
+            try {
+                if (mPendingTimeouts.isEmpty()) { // 设置 mWakeTime 之前添加的任务不会唤醒，先处理
+                    final long delay = deadline - (SystemClock.uptimeMillis() - mStartTime);
+                    if (deadline == Long.MAX_VALUE) {
+                        mIdleLock.wait();
+                    } else if (delay > 0) {
+                        mIdleLock.wait(delay);
+                    }
+                }
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+                return false;
+            } finally {
+                mWakeTime = -1;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 获取时间轮中最早的到时时间，只在唤醒时计算一次
+     * @return 相对于启动时间，没有任务返回 Long.MAX_VALUE
+     */
+    private long getNextDeadline() {
+        long next = Long.MAX_VALUE;
+        for (Bucket bucket : mWheel) {
+            for (Timeout timeout = bucket.mHead; timeout != null; timeout = timeout.mNext) {
+                if (timeout.mDeadline < next) {
+                    next = timeout.mDeadline;
+                }
+            }
+        }
+        return next;
+    }
+
+    private void processCancelled() {
+        Timeout timeout;
+        while ((timeout = mCancelledTimeouts.poll()) != null) {
+            if (timeout.mBucket != null) {
+                timeout.mBucket.remove(timeout);
+            }
+            mActiveCount.decrementAndGet();
+        }
+    }
+
+    private void transferPending() {
+        Timeout timeout;
+        while ((timeout = mPendingTimeouts.poll()) != null) {
+            if (timeout.mState.get() != STATE_CANCELLED) {
+                addToWheel(timeout);
+            }
+        }
+    }
+
+    private void addToWheel(Timeout timeout) {
+        final long ticks = Math.max(timeout.mDeadline / TICK_MS, mTick); // 已经过期的放到当前格子
+        mWheel[(int) (ticks & WHEEL_MASK)].add(timeout);
+    }
+
+    /**
+     * 执行一格中已经到时的任务，后面几圈的任务留在格子里
+     * @param now 相对于启动时间，单位ms
+     */
+    private void expire(Bucket bucket, long now) {
+        Timeout timeout = bucket.mHead;
+        while (timeout != null) {
+            if (timeout.mDeadline > now) {
+                timeout = timeout.mNext;
+                continue;
+            }
+            Timeout next = bucket.remove(timeout);
+            fire(timeout);
+            timeout = next;
+        }
+    }
+
+    private void fire(Timeout timeout) {
+        if (timeout.mPeriod <= 0) {
+            if (!timeout.mState.compareAndSet(STATE_INIT, STATE_EXPIRED)) {
+                return; // 已经取消，由 processCancelled 计数
+            }
+            mActiveCount.decrementAndGet();
+        } else if (timeout.mState.get() == STATE_CANCELLED) {
+            return;
+        }
+
+        timeout.mDueTime = mStartTime + timeout.mDeadline;
+        if (timeout.mHandler != null) {
+            timeout.mHandler.post(timeout.mDelivery);
+        } else {
+            timeout.execute();
+        }
+
+        if (timeout.mPeriod > 0 && timeout.mState.get() != STATE_CANCELLED) {
+            timeout.mDeadline += timeout.mPeriod;
+            addToWheel(timeout);
+        }
+    }
+}
@@ -0,0 +1,526 @@
+package com.roadrover.sdk.voice;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.text.TextUtils;
+
+import com.roadrover.sdk.bluetooth.BluetoothModel;
+import com.roadrover.sdk.media.MediaSqlManager;
+import com.roadrover.sdk.radio.RadioModel;
+import com.roadrover.sdk.radio.RadioStationRepository;
+import com.roadrover.sdk.utils.Logcat;
+import com.roadrover.services.media.StMusic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 语音识别结果的本地查找索引，通过 {@link VoiceManager#getVoiceIndex()} 获取 <br/>
+ * 1. 媒体库、收音机站台、蓝牙联系人各建一个倒排索引，识别出 "播放 X 的 Y"、"打开 XX 电台"、"打电话给 XX" 时
+ * 直接在内存里查找，不需要每次查询数据库；<br/>
+ * 2. 文本先归一化（小写、全角转半角、去掉空格和标点），再按两个字拆分建索引，
+ * 识别结果有错字、多字、少字时也能按相似度找到；<br/>
+ * 3. 在后台线程中建立，数据库改变时在 {@link #COALESCE_DELAY_MS} 内合并后重建，一直在改变时最多等待
+ * {@link #MAX_COALESCE_DELAY_MS} 也会重建一次；重建完成或者失败之前查询使用旧的索引，查询不加锁，可以在任意线程调用
+ */
+public final class VoiceIndex {
+
+    /**
+     * 连续的数据库改变合并重建的时间，单位ms，扫描媒体时数据库会连续改变
+     */
+    public static final int COALESCE_DELAY_MS = 1000;
+
+    /**
+     * 连续改变时，从第一次改变开始最多等待的时间，单位ms，扫描大量媒体时也能陆续查到新扫描到的歌曲
+     */
+    public static final int MAX_COALESCE_DELAY_MS = 5 * COALESCE_DELAY_MS;
+
+    /**
+     * 最低的匹配分数，低于该分数的结果不返回
+     */
+    public static final float MIN_SCORE = 0.3f;
+
+    /**
+     * 包含查询文本时的分数，例：查询 "晴天"，媒体名 "晴天live版"，不低于该分数的结果可以认为是同一个对象
+     */
+    public static final float CONTAIN_SCORE = 0.8f;
+
+    /**
+     * 查找结果
+     */
+    public static class Match<T> {
+        /** 匹配到的对象，是共享的，不要修改 */
+        public final T mItem;
+        /** 匹配分数，0~1，1表示归一化之后完全相同 */
+        public final float mScore;
+
+        Match(T item, float score) {
+            mItem = item;
+            mScore = score;
+        }
+
+        @Override
+        public String toString() {
+            return mItem + " score:" + mScore;
+        }
+    }
+
+    /**
+     * 一列文本的倒排索引，建立之后不再修改
+     */
+    private static final class Column {
+        final String[] mKeys; // 每个对象归一化之后的文本
+        final int[] mGramCounts; // 每个对象不同的双字个数
+        final Map<String, int[]> mPostings; // 双字 -> 包含它的对象下标
+
+        Column(List<String> texts) {
+            final int size = texts.size();
+            mKeys = new String[size];
+            mGramCounts = new int[size];
+            Map<String, List<Integer>> postings = new HashMap<>();
+            for (int i = 0; i < size; ++i) {
+                mKeys[i] = normalize(texts.get(i));
+                Set<String> grams = getGrams(mKeys[i]);
+                mGramCounts[i] = grams.size();
+                for (String gram : grams) {
+                    List<Integer> list = postings.get(gram);
+                    if (list == null) {
+                        list = new ArrayList<>(2);
+                        postings.put(gram, list);
+                    }
+                    list.add(i);
+                }
+            }
+
+            mPostings = new HashMap<>(postings.size() * 2);
+            for (Map.Entry<String, List<Integer>> entry : postings.entrySet()) {
+                List<Integer> list = entry.getValue();
+                int[] indexes = new int[list.size()];
+                for (int i = 0; i < indexes.length; ++i) {
+                    indexes[i] = list.get(i);
+                }
+                mPostings.put(entry.getKey(), indexes);
+            }
+        }
+
+        /**
+         * 计算每个对象和查询文本的相似度（Dice 系数），包含查询文本时不低于 {@link #CONTAIN_SCORE}
+         * @param query 归一化之后的查询文本，不为空
+         * @return 每个对象的分数，没有相同双字的为0
+         */
+        float[] score(String query) {
+            final float[] scores = new float[mKeys.length];
+            if (query.length() == 1) { // 单字没有双字可以查，直接遍历
+                for (int i = 0; i < mKeys.length; ++i) {
+                    if (mKeys[i].indexOf(query.charAt(0)) >= 0) {
+                        scores[i] = mKeys[i].length() == 1 ? 1.0f : 1.0f / mKeys[i].length();
+                    }
+                }
+                return scores;
+            }
+
+            final Set<String> grams = getGrams(query);
+            final int[] shared = new int[mKeys.length];
+            for (String gram : grams) {
+                int[] indexes = mPostings.get(gram);
+                if (indexes != null) {
+                    for (int index : indexes) {
+                        ++shared[index];
+                    }
+                }
+            }
+            for (int i = 0; i < mKeys.length; ++i) {
+                if (shared[i] == 0) {
+                    continue;
+                }
+                if (mKeys[i].equals(query)) {
+                    scores[i] = 1.0f;
+                } else {
+                    scores[i] = 2.0f * shared[i] / (grams.size() + mGramCounts[i]);
+                    if (mKeys[i].contains(query)) {
+                        scores[i] = Math.max(scores[i], CONTAIN_SCORE);
+                    }
+                }
+            }
+            return scores;
+        }
+    }
+
+    /**
+     * 一种数据的索引，名字一列，媒体的歌手是第二列
+     */
+    private static final class Index<T> {
+        final List<T> mItems;
+        final Column mNames;
+        final Column mSecondary;
+
+        Index(List<T> items, List<String> names, List<String> secondary) {
+            mItems = Collections.unmodifiableList(items);
+            mNames = new Column(names);
+            mSecondary = (secondary != null) ? new Column(secondary) : null;
+        }
+
+        /**
+         * 按名字查找，有第二列的查询文本时按第二列的相似度调整分数
+         */
+        List<Match<T>> find(String name, String secondary, int max) {
+            final String nameKey = normalize(name);
+            final String secondaryKey = (mSecondary != null) ? normalize(secondary) : "";
+            if (max <= 0 || (nameKey.isEmpty() && secondaryKey.isEmpty())) {
+                return Collections.emptyList();
+            }
+
+            final float[] scores;
+            if (nameKey.isEmpty()) { // 只说了歌手，例："播放周杰伦的歌"
+                scores = mSecondary.score(secondaryKey);
+            } else {
+                scores = mNames.score(nameKey);
+                if (!secondaryKey.isEmpty()) {
+                    // 歌手不对时降低分数但仍然返回，识别结果里歌手名经常不准
+                    final float[] secondaryScores = mSecondary.score(secondaryKey);
+                    for (int i = 0; i < scores.length; ++i) {
+                        scores[i] *= 0.7f + 0.3f * secondaryScores[i];
+                    }
+                }
+            }
+
+            List<Match<T>> matches = new ArrayList<>();
+            for (int i = 0; i < scores.length; ++i) {
+                if (scores[i] >= MIN_SCORE) {
+                    matches.add(new Match<>(mItems.get(i), scores[i]));
+                }
+            }
+            Collections.sort(matches, new Comparator<Match<T>>() {
+                @Override
+                public int compare(Match<T> lhs, Match<T> rhs) {
+                    return Float.compare(rhs.mScore, lhs.mScore);
+                }
+            });
+            return (matches.size() > max) ? new ArrayList<>(matches.subList(0, max)) : matches;
+        }
+    }
+
+    private static VoiceIndex sInstance = null;
+
+    private final Context mContext;
+    private final Handler mHandler; // 后台线程的handler，查询数据库和建立索引都在该线程
+    private final ContentObserver mMediaObserver;
+    private final ContentObserver mContactObserver;
+    private volatile Index<StMusic> mMediaIndex = null; // 为空表示还没有建立
+    private volatile Index<RadioModel.Station> mStationIndex = null;
+    private volatile Index<BluetoothModel.Contact> mContactIndex = null;
+    private boolean mStarted = false;
+    // 还没有重建的第一次改变的时间，-1表示没有，只在后台线程访问
+    private long mFirstMediaChangeTime = -1;
+    private long mFirstContactChangeTime = -1;
+
+    private final Runnable mMediaRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mFirstMediaChangeTime = -1;
+            buildMediaIndex();
+        }
+    };
+
+    private final Runnable mContactRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mFirstContactChangeTime = -1;
+            buildContactIndex();
+        }
+    };
+
+    private final Runnable mStationRunnable = new Runnable() {
+        @Override
+        public void run() {
+            buildStationIndex();
+        }
+    };
+
+    private final RadioStationRepository.OnStationsChangedListener mStationsListener =
+            new RadioStationRepository.OnStationsChangedListener() {
+        @Override
+        public void onStationsChanged(List<RadioModel.Station> stations, List<RadioModel.Station> added,
+                                      List<RadioModel.Station> removed, List<RadioModel.Station> changed) {
+            mHandler.removeCallbacks(mStationRunnable);
+            mHandler.post(mStationRunnable);
+        }
+    };
+
+    private VoiceIndex(Context context) {
+        mContext = context;
+        HandlerThread thread = new HandlerThread("VoiceIndex");
+        thread.start();
+        mHandler = new Handler(thread.getLooper());
+        mMediaObserver = new ContentObserver(mHandler) {
+            @Override
+            public void onChange(boolean selfChange) {
+                mFirstMediaChangeTime = coalesce(mMediaRunnable, mFirstMediaChangeTime);
+            }
+        };
+        mContactObserver = new ContentObserver(mHandler) {
+            @Override
+            public void onChange(boolean selfChange) {
+                mFirstContactChangeTime = coalesce(mContactRunnable, mFirstContactChangeTime);
+            }
+        };
+    }
+
+    /**
+     * 合并连续的改变，最后一次改变之后再重建，但是不超过第一次改变之后的最大等待时间，在后台线程调用
+     * @param runnable 重建的任务
+     * @param firstChangeTime 还没有重建的第一次改变的时间，-1表示没有
+     * @return 新的第一次改变的时间
+     */
+    private long coalesce(Runnable runnable, long firstChangeTime) {
+        final long now = SystemClock.uptimeMillis();
+        if (firstChangeTime < 0) {
+            firstChangeTime = now;
+        }
+        final long delay = Math.min(COALESCE_DELAY_MS, firstChangeTime + MAX_COALESCE_DELAY_MS - now);
+        mHandler.removeCallbacks(runnable);
+        mHandler.postDelayed(runnable, Math.max(0, delay));
+        return firstChangeTime;
+    }
+
+    /**
+     * 获取进程内唯一的索引
+     * @param context 上下文对象
+     * @return context 为空返回null
+     */
+    public static synchronized VoiceIndex getInstance(Context context) {
+        if (sInstance == null && context != null) {
+            Context appContext = context.getApplicationContext();
+            sInstance = new VoiceIndex(appContext != null ? appContext : context);
+        }
+        return sInstance;
+    }
+
+    /**
+     * 开始监听数据库，并在后台线程中建立索引，重复调用没有影响 <br/>
+     * 语音应用启动时调用，第一次识别时索引就已经建好
+     */
+    public synchronized void start() {
+        if (mStarted) {
+            return;
+        }
+        mStarted = true;
+
+        try {
+            mContext.getContentResolver().registerContentObserver(MediaSqlManager.CONTENT_URI, true, mMediaObserver);
+            mContext.getContentResolver().registerContentObserver(BluetoothModel.Provider.URI, false, mContactObserver);
+        } catch (Exception e) { // 数据库不存在
+            e.printStackTrace();
+        }
+        RadioStationRepository repository = RadioStationRepository.getInstance(mContext);
+        if (repository != null) {
+            repository.registerListener(mStationsListener);
+        }
+
+        mHandler.post(mMediaRunnable);
+        mHandler.post(mStationRunnable);
+        mHandler.post(mContactRunnable);
+    }
+
+    /**
+     * 停止监听数据库并释放索引
+     */
+    public synchronized void stop() {
+        if (!mStarted) {
+            return;
+        }
+        mStarted = false;
+
+        mContext.getContentResolver().unregisterContentObserver(mMediaObserver);
+        mContext.getContentResolver().unregisterContentObserver(mContactObserver);
+        RadioStationRepository repository = RadioStationRepository.getInstance(mContext);
+        if (repository != null) {
+            repository.unregisterListener(mStationsListener);
+        }
+        mHandler.removeCallbacks(mMediaRunnable);
+        mHandler.removeCallbacks(mStationRunnable);
+        mHandler.removeCallbacks(mContactRunnable);
+        mHandler.post(new Runnable() { // 等正在建立的索引完成之后再清除
+            @Override
+            public void run() {
+                mMediaIndex = null;
+                mStationIndex = null;
+                mContactIndex = null;
+                mFirstMediaChangeTime = -1;
+                mFirstContactChangeTime = -1;
+            }
+        });
+    }
+
+    /**
+     * 三种索引是否都已经建立
+     */
+    public boolean isReady() {
+        return mMediaIndex != null && mStationIndex != null && mContactIndex != null;
+    }
+
+    /**
+     * 查找媒体
+     * @param title 识别出的媒体名字，可以为空
+     * @param singer 识别出的歌手名字，可以为空
+     * @param max 最多返回的个数
+     * @return 按分数从高到低排列，索引还没有建立时返回空列表
+     */
+    public List<Match<StMusic>> findMedia(String title, String singer, int max) {
+        Index<StMusic> index = mMediaIndex;
+        return (index != null) ? index.find(title, singer, max) : Collections.<Match<StMusic>>emptyList();
+    }
+
+    /**
+     * 查找收音机站台
+     * @param name 识别出的站台名字
+     * @param max 最多返回的个数
+     * @return 按分数从高到低排列，索引还没有建立时返回空列表
+     */
+    public List<Match<RadioModel.Station>> findStations(String name, int max) {
+        Index<RadioModel.Station> index = mStationIndex;
+        return (index != null) ? index.find(name, null, max) : Collections.<Match<RadioModel.Station>>emptyList();
+    }
+
+    /**
+     * 查找蓝牙联系人
+     * @param name 识别出的联系人名字
+     * @param max 最多返回的个数
+     * @return 按分数从高到低排列，索引还没有建立时返回空列表
+     */
+    public List<Match<BluetoothModel.Contact>> findContacts(String name, int max) {
+        Index<BluetoothModel.Contact> index = mContactIndex;
+        return (index != null) ? index.find(name, null, max) : Collections.<Match<BluetoothModel.Contact>>emptyList();
+    }
+
+    /**
+     * 建立媒体索引，查询失败时保留旧的索引，等下一次数据库改变再重建
+     */
+    private void buildMediaIndex() {
+        final long begin = SystemClock.uptimeMillis();
+        List<StMusic> items = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        List<String> artists = new ArrayList<>();
+        try {
+            List<StMusic> list = new MediaSqlManager(mContext).queryAudioInfoS(); // 数据库正在改变时可能抛出异常
+            if (list != null) {
+                for (StMusic music : list) {
+                    if (music != null) {
+                        items.add(music);
+                        names.add(music.mName);
+                        artists.add(music.mArtist);
+                    }
+                }
+            }
+            mMediaIndex = new Index<>(items, names, artists);
+        } catch (Exception e) {
+            e.printStackTrace();
+            Logcat.w("build media index failed, keep the previous one");
+            return;
+        }
+        Logcat.d("media:" + items.size() + " " + (SystemClock.uptimeMillis() - begin) + "ms");
+    }
+
+    /**
+     * 建立站台索引，失败时保留旧的索引，等下一次站台改变再重建
+     */
+    private void buildStationIndex() {
+        final long begin = SystemClock.uptimeMillis();
+        List<RadioModel.Station> items = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        try {
+            RadioStationRepository repository = RadioStationRepository.getInstance(mContext);
+            if (repository == null) {
+                return;
+            }
+            List<RadioModel.Station> stations = repository.getStations();
+            if (stations != null) {
+                for (RadioModel.Station station : stations) {
+                    if (station != null && !TextUtils.isEmpty(station.mName)) { // 没有名字的站台只能按频率选
+                        items.add(station);
+                        names.add(station.mName);
+                    }
+                }
+            }
+            mStationIndex = new Index<>(items, names, null);
+        } catch (Exception e) {
+            e.printStackTrace();
+            Logcat.w("build station index failed, keep the previous one");
+            return;
+        }
+        Logcat.d("stations:" + items.size() + " " + (SystemClock.uptimeMillis() - begin) + "ms");
+    }
+
+    /**
+     * 建立联系人索引，查询失败时保留旧的索引，等下一次数据库改变再重建
+     */
+    private void buildContactIndex() {
+        final long begin = SystemClock.uptimeMillis();
+        List<BluetoothModel.Contact> items = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        try {
+            List<BluetoothModel.Contact> contacts = BluetoothModel.getContactList(mContext);
+            if (contacts != null) {
+                for (BluetoothModel.Contact contact : contacts) {
+                    if (contact != null && !TextUtils.isEmpty(contact.mName)) {
+                        items.add(contact);
+                        names.add(contact.mName);
+                    }
+                }
+            }
+            mContactIndex = new Index<>(items, names, null);
+        } catch (Exception e) {
+            e.printStackTrace();
+            Logcat.w("build contact index failed, keep the previous one");
+            return;
+        }
+        Logcat.d("contacts:" + items.size() + " " + (SystemClock.uptimeMillis() - begin) + "ms");
+    }
+
+    /**
+     * 归一化文本：转小写，全角转半角，只保留文字和数字
+     * @param text 原始文本
+     * @return 不会为null，例："Jay Chou－晴天（Live）" 返回 "jaychou晴天live"
+     */
+    public static String normalize(String text) {
+        if (TextUtils.isEmpty(text)) {
+            return "";
+        }
+
+        StringBuilder builder = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); ++i) {
+            char c = text.charAt(i);
+            if (c >= '\uFF01' && c <= '\uFF5E') { // 全角字符
+                c = (char) (c - 0xFEE0);
+            }
+            if (Character.isLetterOrDigit(c)) {
+                builder.append(Character.toLowerCase(c));
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 拆分成不重复的双字，单字的文本返回它自己
+     */
+    private static Set<String> getGrams(String key) {
+        Set<String> grams = new HashSet<>();
+        if (key.length() == 1) {
+            grams.add(key);
+        } else {
+            for (int i = 0; i + 2 <= key.length(); ++i) {
+                grams.add(key.substring(i, i + 2));
+            }
+        }
+        return grams;
+    }
+}
@@ -6,11 +6,15 @@ import android.os.IInterface;
 import android.os.RemoteException;
 
 import com.roadrover.sdk.BaseManager;
+import com.roadrover.sdk.radio.RadioModel;
+import com.roadrover.services.media.StMusic;
 import com.roadrover.services.voice.IVoice;
 import com.roadrover.services.voice.IVoiceCallback;
 
 import org.greenrobot.eventbus.Subscribe;
 
+import java.util.List;
+
 /**
  * 语音管理类 </br>
  * 语音录制流程： </br>
@@ -47,7 +51,7 @@ public class VoiceManager extends BaseManager {
 
     @Override
     protected void onServiceConnected(IBinder service) {
-        mVoiceInterface = IVoice.Stub.asInterface(service);
+        mVoiceInterface = wrapInterface(IVoice.class, IVoice.Stub.asInterface(service));
         if (mVoiceInterface != null) {
             try {
                 mVoiceInterface.registerVoiceCallback(mIVoiceCallback);
@@ -62,6 +66,19 @@ public class VoiceManager extends BaseManager {
         mVoiceInterface = null;
     }
 
+    /**
+     * 获取语音识别结果的本地查找索引，第一次调用时开始在后台建立，语音应用启动时调用一次，
+     * 第一次识别时就可以直接查找，见 {@link VoiceIndex}
+     * @return 没有 context 时返回null
+     */
+    public VoiceIndex getVoiceIndex() {
+        VoiceIndex index = VoiceIndex.getInstance(mContext);
+        if (index != null) {
+            index.start();
+        }
+        return index;
+    }
+
     public void play() {
         try {
             if (mVoiceInterface != null) {
@@ -193,6 +210,28 @@ public class VoiceManager extends BaseManager {
         }
     }
 
+    /**
+     * 先在本地索引里查找，再按媒体库里准确的名字和歌手播放，services 不需要再模糊查找数据库 <br/>
+     * 索引还没有建立或者最好的匹配分数低于 {@link VoiceIndex#CONTAIN_SCORE} 时，按识别出的文本调用 {@link #playMedia(String, String)}，
+     * 免得把一个不相关的媒体当作识别结果播放
+     * @param title 识别出的媒体名字
+     * @param singer 识别出的歌手名字，可以为空
+     * @return 匹配到的媒体，没有可信的匹配返回null
+     */
+    public StMusic playMediaResolved(String title, String singer) {
+        VoiceIndex index = getVoiceIndex();
+        List<VoiceIndex.Match<StMusic>> matches = (index != null) ?
+                index.findMedia(title, singer, 1) : null;
+        if (matches == null || matches.isEmpty() || matches.get(0).mScore < VoiceIndex.CONTAIN_SCORE) {
+            playMedia(title, singer);
+            return null;
+        }
+
+        StMusic music = matches.get(0).mItem;
+        playMedia(music.mName, music.mArtist);
+        return music;
+    }
+
     public void favourMedia(boolean isFavour) {
         try {
             if (mVoiceInterface != null) {
@@ -214,6 +253,25 @@ public class VoiceManager extends BaseManager {
         }
     }
 
+    /**
+     * 按站台名字切换电台，例："打开交通广播"，在本地索引里查找站台后设置波段和频率
+     * @param name 识别出的站台名字
+     * @return 匹配到的站台，没有匹配返回null，此时不做任何操作
+     */
+    public RadioModel.Station setStation(String name) {
+        VoiceIndex index = getVoiceIndex();
+        List<VoiceIndex.Match<RadioModel.Station>> matches = (index != null) ?
+                index.findStations(name, 1) : null;
+        if (matches == null || matches.isEmpty()) {
+            return null;
+        }
+
+        RadioModel.Station station = matches.get(0).mItem;
+        setBand(station.mBand);
+        setFreq(station.mFreq);
+        return station;
+    }
+
     public void startScan() {
         try {
             if (mVoiceInterface != null) {